@@ -0,0 +1,78 @@
+package com.generallycloud.nio.balance;
+
+import com.generallycloud.nio.balance.router.PendingRequests;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.component.concurrent.Waiter;
+
+/**
+ * 一个负载节点的健康状态，由FrontHealthChecker修改，修改时持有该对象的锁
+ */
+public class BackendHealth {
+
+	public static final int			HEALTHY		= 0;
+
+	public static final int			EJECTED		= 1;
+
+	public static final int			HALF_OPEN		= 2;
+
+	IOSession					session;
+
+	volatile PendingRequests		pending		= new PendingRequests();
+
+	volatile int				state		= HEALTHY;
+
+	// 连续失败的次数
+	volatile int				failures;
+
+	// 最后一次收到回复的时间
+	volatile long				lastResponseTime;
+
+	// 连续被摘除的次数，决定下一次摘除的时间
+	int						ejections;
+
+	long						ejectedUntil;
+
+	boolean					closed;
+
+	// 正在进行的探测的发送时间，0表示没有
+	long						probeTime;
+
+	// 收到PONG时由IO线程完成
+	Waiter<Session>			probeWaiter;
+
+	long						lastProbeTime;
+
+	BackendHealth(IOSession session) {
+		this.session = session;
+	}
+
+	public IOSession getSession() {
+		return session;
+	}
+
+	public int getState() {
+		return state;
+	}
+
+	public int getFailures() {
+		return failures;
+	}
+
+	public int getEjections() {
+		return ejections;
+	}
+
+	public long getEjectedUntil() {
+		return ejectedUntil;
+	}
+
+	public int getPendingSize() {
+		return pending.size();
+	}
+
+	public String toString() {
+		String s = state == HEALTHY ? "healthy" : (state == EJECTED ? "ejected" : "half-open");
+		return session + "[" + s + ",failures=" + failures + ",ejections=" + ejections + "]";
+	}
+}
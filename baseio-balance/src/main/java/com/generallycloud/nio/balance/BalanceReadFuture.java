@@ -25,6 +25,11 @@ public interface BalanceReadFuture extends ReadFuture {
 
 	public abstract boolean isReceiveBroadcast();
 
+	/**
+	 * @return 负载节点声明的标识，不是FRONT_ROUTER_KEY报文时返回null
+	 */
+	public abstract String getRouterKey();
+
 	public abstract IOWriteFuture translate() throws IOException;
 
 }
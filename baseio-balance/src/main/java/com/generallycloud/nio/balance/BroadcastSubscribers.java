@@ -0,0 +1,166 @@
+package com.generallycloud.nio.balance;
+
+import java.util.Collections;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.nio.Releasable;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.common.ReleaseUtil;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.component.concurrent.EventLoop;
+import com.generallycloud.nio.protocol.IOWriteFuture;
+
+/**
+ * 接收广播的客户端，按连接所在的EventLoop分组。
+ * <ul>
+ * <li>客户端订阅时加入，断开时移除，广播时不需要遍历所有连接</li>
+ * <li>广播时每个EventLoop一个任务，各自写出自己的连接</li>
+ * <li>所有连接共用同一个编码好的报文，每个连接duplicate一份读写位置，
+ * 报文体按引用计数在最后一个连接写出后释放</li>
+ * </ul>
+ */
+public class BroadcastSubscribers {
+
+	private ConcurrentMap<EventLoop, Set<IOSession>>	groups	= new ConcurrentHashMap<EventLoop, Set<IOSession>>();
+
+	private AtomicInteger						size		= new AtomicInteger();
+
+	private Logger								logger	= LoggerFactory.getLogger(BroadcastSubscribers.class);
+
+	public void subscribe(IOSession session) {
+
+		Set<IOSession> group = getGroup(session.getEventLoop());
+
+		if (!group.add(session)) {
+			return;
+		}
+
+		size.incrementAndGet();
+
+		// 订阅的报文在连接断开之后才被处理
+		if (session.isClosed()) {
+			unsubscribe(session);
+		}
+	}
+
+	public void unsubscribe(IOSession session) {
+
+		Set<IOSession> group = groups.get(session.getEventLoop());
+
+		if (group != null && group.remove(session)) {
+			size.decrementAndGet();
+		}
+	}
+
+	private Set<IOSession> getGroup(EventLoop eventLoop) {
+
+		Set<IOSession> group = groups.get(eventLoop);
+
+		if (group != null) {
+			return group;
+		}
+
+		group = Collections.newSetFromMap(new ConcurrentHashMap<IOSession, Boolean>());
+
+		Set<IOSession> old = groups.putIfAbsent(eventLoop, group);
+
+		return old == null ? group : old;
+	}
+
+	/**
+	 * 调用之后writeFuture不可再使用，所有连接写出之后释放。
+	 * 不能duplicate的writeFuture(文件、binary stream等)直接释放，不广播
+	 */
+	public void broadcast(IOWriteFuture writeFuture) {
+
+		if (!writeFuture.isDuplicable()) {
+			ReleaseUtil.release(writeFuture);
+			logger.error("can not broadcast " + writeFuture);
+			return;
+		}
+
+		try {
+
+			for (Entry<EventLoop, Set<IOSession>> e : groups.entrySet()) {
+
+				Set<IOSession> group = e.getValue();
+
+				if (group.isEmpty()) {
+					continue;
+				}
+
+				// 每个任务持有一个引用
+				BroadcastTask task = new BroadcastTask(group, writeFuture.duplicate());
+
+				try {
+
+					e.getKey().dispatch(task);
+
+				} catch (RejectedExecutionException ex) {
+
+					// 队列已满，在当前线程中写出
+					task.run();
+				}
+			}
+
+		} finally {
+
+			ReleaseUtil.release(writeFuture);
+		}
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	class BroadcastTask implements Runnable, Releasable {
+
+		private Set<IOSession>	group;
+
+		private IOWriteFuture	writeFuture;
+
+		BroadcastTask(Set<IOSession> group, IOWriteFuture writeFuture) {
+			this.group = group;
+			this.writeFuture = writeFuture;
+		}
+
+		public void run() {
+
+			IOWriteFuture writeFuture = this.writeFuture;
+
+			try {
+
+				for (IOSession session : group) {
+
+					if (session.isClosed()) {
+						continue;
+					}
+
+					try {
+
+						session.flush(writeFuture.duplicate());
+
+					} catch (Exception e) {
+
+						logger.error(e.getMessage(), e);
+					}
+				}
+
+			} finally {
+
+				ReleaseUtil.release(writeFuture);
+			}
+		}
+
+		// EventLoop停止时未执行
+		public void release() {
+			ReleaseUtil.release(writeFuture);
+		}
+	}
+}
@@ -6,6 +6,8 @@ public class FrontContext {
 
 	public static final String			FRONT_CHANNEL_LOST		= "FRONT_CHANNEL_LOST";
 	public static final String			FRONT_RECEIVE_BROADCAST	= "FRONT_RECEIVE_BROADCAST";
+	// 负载节点连接后发送，text为该节点稳定的标识(如监听地址)
+	public static final String			FRONT_ROUTER_KEY		= "FRONT_ROUTER_KEY";
 
 	private FrontFacadeAcceptor			frontFacadeAcceptor;
 	private FrontReverseAcceptor			frontReverseAcceptor;
@@ -15,6 +17,9 @@ public class FrontContext {
 	private FrontReverseAcceptorHandler	frontReverseAcceptorHandler;
 	private FrontFacadeAcceptorHandler		frontFacadeAcceptorHandler;
 	private ChannelLostReadFutureFactory	channelLostReadFutureFactory;
+	private FrontHealthChecker			frontHealthChecker;
+	private FrontCounters				frontCounters			= new FrontCounters();
+	private BroadcastSubscribers			broadcastSubscribers		= new BroadcastSubscribers();
 
 	protected FrontContext(FrontFacadeAcceptor facadeAcceptor,FrontRouter frontRouter) {
 		this.frontFacadeAcceptor = facadeAcceptor;
@@ -62,4 +67,26 @@ public class FrontContext {
 		this.channelLostReadFutureFactory = channelLostReadFutureFactory;
 	}
 
+	public BroadcastSubscribers getBroadcastSubscribers() {
+		return broadcastSubscribers;
+	}
+
+	public FrontCounters getFrontCounters() {
+		return frontCounters;
+	}
+
+	/**
+	 * @return 为null时不做健康检查，只在连接断开时移除负载节点
+	 */
+	public FrontHealthChecker getFrontHealthChecker() {
+		return frontHealthChecker;
+	}
+
+	/**
+	 * 需要在启动之前设置
+	 */
+	public void setFrontHealthChecker(FrontHealthChecker frontHealthChecker) {
+		this.frontHealthChecker = frontHealthChecker;
+	}
+
 }
@@ -0,0 +1,98 @@
+package com.generallycloud.nio.balance;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 负载均衡转发的报文计数，代替每个报文一条的日志。
+ * 每traceInterval个报文(以及第一个)输出一条info日志，为0时不输出
+ */
+public class FrontCounters {
+
+	private AtomicLong	routed			= new AtomicLong();
+
+	private AtomicLong	responded			= new AtomicLong();
+
+	private AtomicLong	broadcasts		= new AtomicLong();
+
+	private AtomicLong	droppedNoBackend	= new AtomicLong();
+
+	private AtomicLong	droppedClientGone	= new AtomicLong();
+
+	private volatile int	traceInterval		= 10000;
+
+	long routed() {
+		return routed.incrementAndGet();
+	}
+
+	long responded() {
+		return responded.incrementAndGet();
+	}
+
+	long broadcast() {
+		return broadcasts.incrementAndGet();
+	}
+
+	long droppedNoBackend() {
+		return droppedNoBackend.incrementAndGet();
+	}
+
+	long droppedClientGone() {
+		return droppedClientGone.incrementAndGet();
+	}
+
+	/**
+	 * @param count 计数器加1之后的值
+	 */
+	boolean isTrace(long count) {
+
+		int interval = traceInterval;
+
+		return interval > 0 && (count - 1) % interval == 0;
+	}
+
+	/**
+	 * 转发到负载节点的请求数
+	 */
+	public long getRouted() {
+		return routed.get();
+	}
+
+	/**
+	 * 回复到客户端的报文数
+	 */
+	public long getResponded() {
+		return responded.get();
+	}
+
+	public long getBroadcasts() {
+		return broadcasts.get();
+	}
+
+	/**
+	 * 没有可用的负载节点而丢弃的请求数
+	 */
+	public long getDroppedNoBackend() {
+		return droppedNoBackend.get();
+	}
+
+	/**
+	 * 客户端已断开而丢弃的回复数
+	 */
+	public long getDroppedClientGone() {
+		return droppedClientGone.get();
+	}
+
+	public int getTraceInterval() {
+		return traceInterval;
+	}
+
+	public void setTraceInterval(int traceInterval) {
+		this.traceInterval = traceInterval;
+	}
+
+	public String toString() {
+		return "[routed=" + routed.get() + ",responded=" + responded.get() + ",broadcasts=" + broadcasts.get()
+				+ ",droppedNoBackend=" + droppedNoBackend.get() + ",droppedClientGone="
+				+ droppedClientGone.get() + "]";
+	}
+}
@@ -29,6 +29,12 @@ public class FrontFacadeAcceptor {
 
 		this.frontContext.getFrontReverseAcceptor().start(frontReverseBaseContext);
 
+		FrontHealthChecker checker = frontContext.getFrontHealthChecker();
+
+		if (checker != null) {
+			checker.start(frontContext.getFrontRouter(), frontReverseBaseContext.getBeatFutureFactory());
+		}
+
 		this.acceptor.setContext(frontBaseContext);
 
 		this.acceptor.bind();
@@ -44,6 +50,12 @@ public class FrontFacadeAcceptor {
 		this.acceptor.unbind();
 
 		this.frontContext.getFrontReverseAcceptor().stop();
+
+		FrontHealthChecker checker = frontContext.getFrontHealthChecker();
+
+		if (checker != null) {
+			checker.stop();
+		}
 	}
 
 	public FrontContext getFrontContext() {
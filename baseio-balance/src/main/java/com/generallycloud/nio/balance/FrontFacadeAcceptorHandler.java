@@ -3,6 +3,7 @@ package com.generallycloud.nio.balance;
 import com.generallycloud.nio.balance.router.FrontRouter;
 import com.generallycloud.nio.common.Logger;
 import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.component.IOEventHandle.IOEventState;
 import com.generallycloud.nio.component.IOEventHandleAdaptor;
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.component.Session;
@@ -13,28 +14,48 @@ public class FrontFacadeAcceptorHandler extends IOEventHandleAdaptor {
 
 	private Logger			logger	= LoggerFactory.getLogger(FrontFacadeAcceptorHandler.class);
 	private FrontRouter		frontRouter;
-	private byte[]		V		= {};
+	private FrontContext	frontContext;
+	private FrontCounters	counters;
 
 	public FrontFacadeAcceptorHandler(FrontContext context) {
 		this.frontRouter = context.getFrontRouter();
+		this.frontContext = context;
+		this.counters = context.getFrontCounters();
 	}
 
 	public void accept(Session session, ReadFuture future) throws Exception {
 
 		BalanceReadFuture f = (BalanceReadFuture) future;
 
-		logger.info("报文来自客户端：[ {} ]，报文：{}", session.getRemoteSocketAddress(), f);
+		if (logger.isDebugEnabled()) {
+			logger.debug("报文来自客户端：[ {} ]，报文：{}", session.getRemoteSocketAddress(), f);
+		}
 
 		//FIXME 是否需要设置取消接收广播
 		if (f.isReceiveBroadcast()) {
-			session.setAttribute(FrontContext.FRONT_RECEIVE_BROADCAST, V);
+			frontContext.getBroadcastSubscribers().subscribe((IOSession) session);
 			return;
 		}
 
 		IOSession routerSession = frontRouter.getRouterSession((IOSession) session, f);
 
+		FrontHealthChecker checker = frontContext.getFrontHealthChecker();
+
+		if (checker != null) {
+
+			// half-open的节点已有足够的试探请求，重新选择，固定路由时仍然使用该节点
+			for (int i = 0; i < 2 && routerSession != null && !checker.isAvailable(routerSession); i++) {
+				routerSession = frontRouter.getRouterSession((IOSession) session, f);
+			}
+		}
+
 		if (routerSession == null) {
-			logger.info("未发现负载节点，报文分发失败：{} ", f);
+
+			long count = counters.droppedNoBackend();
+
+			if (counters.isTrace(count)) {
+				logger.info("未发现负载节点，报文分发失败(共{}个)：{} ", count, f);
+			}
 			return;
 		}
 		
@@ -42,9 +63,41 @@ public class FrontFacadeAcceptorHandler extends IOEventHandleAdaptor {
 
 		IOWriteFuture writeFuture = f.translate();
 
+		// 回复可能在flush返回之前到达
+		frontRouter.requestSent(routerSession, f);
+
+		if (checker != null) {
+			checker.requestSent(routerSession, f);
+		}
+
 		routerSession.flush(writeFuture);
 
-		logger.info("分发请求到：[ {} ]", routerSession.getRemoteSocketAddress());
+		long count = counters.routed();
+
+		if (counters.isTrace(count)) {
+			logger.info("分发请求到：[ {} ](共{}个)", routerSession.getRemoteSocketAddress(), count);
+		} else if (logger.isDebugEnabled()) {
+			logger.debug("分发请求到：[ {} ]", routerSession.getRemoteSocketAddress());
+		}
+	}
+
+	// 分发的请求写出失败时session为负载节点的session
+	public void exceptionCaught(Session session, ReadFuture future, Exception cause, IOEventState state) {
+
+		if (state == IOEventState.WRITE && future instanceof BalanceReadFuture) {
+
+			IOSession routerSession = (IOSession) session;
+
+			frontRouter.requestFailed(routerSession, future);
+
+			FrontHealthChecker checker = frontContext.getFrontHealthChecker();
+
+			if (checker != null) {
+				checker.requestFailed(routerSession, future);
+			}
+		}
+
+		super.exceptionCaught(session, future, cause, state);
 	}
 
 }
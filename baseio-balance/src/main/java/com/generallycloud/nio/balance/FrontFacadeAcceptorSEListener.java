@@ -32,6 +32,14 @@ public class FrontFacadeAcceptorSEListener extends SEListenerAdapter {
 
 		frontRouter.removeClientSession((IOSession) session);
 
+		frontContext.getBroadcastSubscribers().unsubscribe((IOSession) session);
+
+		FrontHealthChecker checker = frontContext.getFrontHealthChecker();
+
+		if (checker != null) {
+			checker.removeClientSession((IOSession) session);
+		}
+
 		logger.info("客户端来自 [ " + session.getRemoteSocketAddress() + " ] 已断开连接.");
 
 		FrontRouter frontRouter = frontContext.getFrontRouter();
@@ -0,0 +1,486 @@
+package com.generallycloud.nio.balance;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.generallycloud.nio.balance.router.FrontRouter;
+import com.generallycloud.nio.balance.router.PendingRequests;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.component.AbstractLooper;
+import com.generallycloud.nio.component.BeatFutureFactory;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.component.concurrent.EventLoopThread;
+import com.generallycloud.nio.component.concurrent.Waiter;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 负载节点的健康检查，不健康的节点从FrontRouter中摘除一段时间。
+ * <ul>
+ * <li>主动探测：每probeInterval发送一次PING(FrontReverse的BeatFutureFactory)，
+ * probeTimeout内没有收到任何数据算一次失败，没有BeatFutureFactory时不探测</li>
+ * <li>被动检测：分发出去的请求requestTimeout内没有回复，并且发出之后该节点没有回复过任何请求，
+ * 每个请求算一次失败；节点仍在回复其它请求时，个别慢的请求不算失败</li>
+ * <li>收到回复或者探测成功时清零，连续失败maxFailures次后摘除，
+ * 摘除的时间从baseEjectionTime开始每次翻倍，最多maxEjectionTime</li>
+ * <li>摘除时间到了之后重新加入FrontRouter(half-open)，在第一个回复之前最多同时分发
+ * halfOpenRequests个请求(见{@link #isAvailable(IOSession)})，再失败一次立即摘除，
+ * 成功一次恢复正常</li>
+ * <li>被摘除的节点最多占maxEjectionPercent，避免全部被摘除</li>
+ * </ul>
+ * check(long)可以直接调用，不启动线程也可以使用
+ */
+public class FrontHealthChecker {
+
+	private long						checkInterval		= 500;
+
+	private long						probeInterval		= 2000;
+
+	private long						probeTimeout		= 3000;
+
+	private long						requestTimeout	= 10 * 1000;
+
+	private int						maxFailures		= 3;
+
+	private int						halfOpenRequests	= 1;
+
+	private long						baseEjectionTime	= 5 * 1000;
+
+	private long						maxEjectionTime	= 60 * 1000;
+
+	private int						maxEjectionPercent	= 50;
+
+	private FrontRouter					frontRouter;
+
+	private BeatFutureFactory				beatFutureFactory;
+
+	private Map<IOSession, BackendHealth>	backends			= new ConcurrentHashMap<IOSession, BackendHealth>();
+
+	private EventLoopThread				checkerThread;
+
+	private Logger						logger			= LoggerFactory.getLogger(FrontHealthChecker.class);
+
+	/**
+	 * @param beatFutureFactory 为null时不主动探测
+	 */
+	public void initialize(FrontRouter frontRouter, BeatFutureFactory beatFutureFactory) {
+		this.frontRouter = frontRouter;
+		this.beatFutureFactory = beatFutureFactory;
+	}
+
+	protected void start(FrontRouter frontRouter, BeatFutureFactory beatFutureFactory) {
+
+		initialize(frontRouter, beatFutureFactory);
+
+		checkerThread = new EventLoopThread(new CheckLooper(), "front-health-checker");
+
+		checkerThread.start();
+	}
+
+	protected void stop() {
+
+		if (checkerThread != null) {
+			checkerThread.stop();
+		}
+	}
+
+	public void addRouterSession(IOSession session) {
+		backends.put(session, new BackendHealth(session));
+	}
+
+	/**
+	 * 在从FrontRouter中移除之前调用，之后不会再被重新加入FrontRouter
+	 */
+	public void removeRouterSession(IOSession session) {
+
+		BackendHealth health = backends.remove(session);
+
+		if (health == null) {
+			return;
+		}
+
+		synchronized (health) {
+			health.closed = true;
+		}
+	}
+
+	public void removeClientSession(IOSession session) {
+
+		Integer sessionID = session.getSessionID();
+
+		for (BackendHealth health : backends.values()) {
+			health.pending.removeSession(sessionID);
+		}
+	}
+
+	public void requestSent(IOSession routerSession, ReadFuture future) {
+
+		BackendHealth health = backends.get(routerSession);
+
+		if (health == null) {
+			return;
+		}
+
+		BalanceReadFuture f = (BalanceReadFuture) future;
+
+		health.pending.put(f.getSessionID(), f.getFutureID(), System.currentTimeMillis());
+	}
+
+	/**
+	 * half-open的节点在第一个回复之前只接受halfOpenRequests个请求，
+	 * 分发之前检查，不可用时应尽量选择其它节点
+	 */
+	public boolean isAvailable(IOSession routerSession) {
+
+		BackendHealth health = backends.get(routerSession);
+
+		if (health == null || health.state != BackendHealth.HALF_OPEN) {
+			return true;
+		}
+
+		return health.pending.size() < halfOpenRequests;
+	}
+
+	/**
+	 * 请求没有写出，不计算超时
+	 */
+	public void requestFailed(IOSession routerSession, ReadFuture future) {
+
+		BackendHealth health = backends.get(routerSession);
+
+		if (health == null) {
+			return;
+		}
+
+		BalanceReadFuture f = (BalanceReadFuture) future;
+
+		health.pending.remove(f.getSessionID(), f.getFutureID());
+	}
+
+	public void responseReceived(IOSession routerSession, ReadFuture future) {
+
+		BackendHealth health = backends.get(routerSession);
+
+		if (health == null) {
+			return;
+		}
+
+		BalanceReadFuture f = (BalanceReadFuture) future;
+
+		health.pending.remove(f.getSessionID(), f.getFutureID());
+
+		health.lastResponseTime = System.currentTimeMillis();
+
+		if (health.state != BackendHealth.HEALTHY || health.failures != 0) {
+
+			synchronized (health) {
+				success(health);
+			}
+		}
+	}
+
+	public void check(long now) {
+
+		for (BackendHealth health : backends.values()) {
+
+			synchronized (health) {
+
+				if (health.closed) {
+					continue;
+				}
+
+				if (health.state == BackendHealth.EJECTED) {
+
+					if (now < health.ejectedUntil) {
+						continue;
+					}
+
+					readmit(health, now);
+				}
+
+				if (requestTimeout > 0) {
+
+					// 之后收到过其它回复的请求不算失败
+					int timeouts = health.pending.expire(now - requestTimeout, health.lastResponseTime);
+
+					if (timeouts > 0) {
+
+						failure(health, now, timeouts, timeouts + " requests timeout");
+
+						if (health.state == BackendHealth.EJECTED) {
+							continue;
+						}
+					}
+				}
+
+				probe(health, now);
+			}
+		}
+	}
+
+	// 需要持有health的锁
+	private void probe(BackendHealth health, long now) {
+
+		BeatFutureFactory factory = this.beatFutureFactory;
+
+		if (factory == null) {
+			return;
+		}
+
+		IOSession session = health.session;
+
+		if (health.probeTime > 0) {
+
+			// 只有PONG算作成功，其它报文不能说明节点仍在处理请求
+			if (health.probeWaiter.isCallbacked()) {
+
+				health.probeTime = 0;
+
+				success(health);
+
+			} else if (now - health.probeTime >= probeTimeout) {
+
+				health.probeTime = 0;
+
+				if (session.getPONGWaiter() == health.probeWaiter) {
+					session.setPONGWaiter(null);
+				}
+
+				failure(health, now, 1, "probe timeout");
+
+				if (health.state == BackendHealth.EJECTED) {
+					return;
+				}
+			} else {
+				return;
+			}
+		}
+
+		if (now - health.lastProbeTime < probeInterval) {
+			return;
+		}
+
+		ReadFuture future = factory.createPINGPacket(session);
+
+		if (future == null) {
+			// 该协议无需心跳
+			return;
+		}
+
+		health.lastProbeTime = now;
+
+		health.probeTime = now;
+
+		health.probeWaiter = new Waiter<Session>();
+
+		session.setPONGWaiter(health.probeWaiter);
+
+		try {
+
+			session.flush(future);
+
+		} catch (IOException e) {
+
+			health.probeTime = 0;
+
+			session.setPONGWaiter(null);
+
+			failure(health, now, 1, "probe failed:" + e.getMessage());
+		}
+	}
+
+	// 需要持有health的锁
+	private void success(BackendHealth health) {
+
+		health.failures = 0;
+
+		if (health.state == BackendHealth.HALF_OPEN) {
+
+			health.state = BackendHealth.HEALTHY;
+
+			health.ejections = 0;
+
+			logger.info("负载节点已恢复：{}", health.session);
+		}
+	}
+
+	// 需要持有health的锁
+	private void failure(BackendHealth health, long now, int count, String reason) {
+
+		if (health.state == BackendHealth.EJECTED) {
+			return;
+		}
+
+		health.failures += count;
+
+		if (health.state == BackendHealth.HALF_OPEN || health.failures >= maxFailures) {
+			eject(health, now, reason);
+		}
+	}
+
+	// 需要持有health的锁
+	private void eject(BackendHealth health, long now, String reason) {
+
+		int size = backends.size();
+
+		if ((getEjectedSize() + 1) * 100 > size * maxEjectionPercent) {
+			logger.info("负载节点不健康({})，已达到最大摘除比例：{}", reason, health.session);
+			return;
+		}
+
+		long time = baseEjectionTime << Math.min(health.ejections, 20);
+
+		health.ejections++;
+
+		health.ejectedUntil = now + Math.min(time, maxEjectionTime);
+
+		health.state = BackendHealth.EJECTED;
+
+		health.failures = 0;
+
+		health.probeTime = 0;
+
+		// 摘除期间的回复不再对应
+		health.pending = new PendingRequests();
+
+		frontRouter.removeRouterSession(health.session);
+
+		logger.info("摘除负载节点({})，{}ms：{}", new Object[] { reason, health.ejectedUntil - now, health.session });
+	}
+
+	// 需要持有health的锁
+	private void readmit(BackendHealth health, long now) {
+
+		health.state = BackendHealth.HALF_OPEN;
+
+		health.lastProbeTime = 0;
+
+		health.pending = new PendingRequests();
+
+		frontRouter.addRouterSession(health.session);
+
+		logger.info("重新加入负载节点(half-open)：{}", health.session);
+	}
+
+	public BackendHealth getBackendHealth(IOSession session) {
+		return backends.get(session);
+	}
+
+	public int getEjectedSize() {
+
+		int size = 0;
+
+		for (BackendHealth health : backends.values()) {
+			if (health.state == BackendHealth.EJECTED) {
+				size++;
+			}
+		}
+
+		return size;
+	}
+
+	public long getCheckInterval() {
+		return checkInterval;
+	}
+
+	public void setCheckInterval(long checkInterval) {
+		this.checkInterval = checkInterval;
+	}
+
+	public long getProbeInterval() {
+		return probeInterval;
+	}
+
+	public void setProbeInterval(long probeInterval) {
+		this.probeInterval = probeInterval;
+	}
+
+	public long getProbeTimeout() {
+		return probeTimeout;
+	}
+
+	public void setProbeTimeout(long probeTimeout) {
+		this.probeTimeout = probeTimeout;
+	}
+
+	public long getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	/**
+	 * @param requestTimeout 小于等于0时不检查请求超时
+	 */
+	public void setRequestTimeout(long requestTimeout) {
+		this.requestTimeout = requestTimeout;
+	}
+
+	public int getMaxFailures() {
+		return maxFailures;
+	}
+
+	public void setMaxFailures(int maxFailures) {
+		this.maxFailures = maxFailures;
+	}
+
+	public int getHalfOpenRequests() {
+		return halfOpenRequests;
+	}
+
+	/**
+	 * @param halfOpenRequests half-open的节点在第一个回复之前同时最多分发的请求数
+	 */
+	public void setHalfOpenRequests(int halfOpenRequests) {
+		this.halfOpenRequests = halfOpenRequests;
+	}
+
+	public long getBaseEjectionTime() {
+		return baseEjectionTime;
+	}
+
+	public void setBaseEjectionTime(long baseEjectionTime) {
+		this.baseEjectionTime = baseEjectionTime;
+	}
+
+	public long getMaxEjectionTime() {
+		return maxEjectionTime;
+	}
+
+	public void setMaxEjectionTime(long maxEjectionTime) {
+		this.maxEjectionTime = maxEjectionTime;
+	}
+
+	public int getMaxEjectionPercent() {
+		return maxEjectionPercent;
+	}
+
+	public void setMaxEjectionPercent(int maxEjectionPercent) {
+		this.maxEjectionPercent = maxEjectionPercent;
+	}
+
+	class CheckLooper extends AbstractLooper {
+
+		private volatile boolean	stopped;
+
+		public void loop() {
+
+			if (stopped) {
+				return;
+			}
+
+			sleep(checkInterval);
+
+			if (stopped) {
+				return;
+			}
+
+			check(System.currentTimeMillis());
+		}
+
+		public void stop() {
+			stopped = true;
+			super.stop();
+		}
+	}
+}
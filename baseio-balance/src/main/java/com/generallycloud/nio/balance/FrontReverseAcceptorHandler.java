@@ -1,19 +1,13 @@
 package com.generallycloud.nio.balance;
 
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.Map;
 
-import com.generallycloud.nio.acceptor.ChannelAcceptor;
 import com.generallycloud.nio.balance.router.FrontRouter;
 import com.generallycloud.nio.common.Logger;
 import com.generallycloud.nio.common.LoggerFactory;
-import com.generallycloud.nio.common.ReleaseUtil;
-import com.generallycloud.nio.component.BaseContext;
 import com.generallycloud.nio.component.IOEventHandleAdaptor;
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.component.Session;
-import com.generallycloud.nio.component.SessionMEvent;
 import com.generallycloud.nio.protocol.IOWriteFuture;
 import com.generallycloud.nio.protocol.ReadFuture;
 
@@ -22,75 +16,60 @@ public class FrontReverseAcceptorHandler extends IOEventHandleAdaptor {
 	private Logger			logger	= LoggerFactory.getLogger(FrontReverseAcceptorHandler.class);
 	private FrontContext	frontContext;
 	private FrontRouter		frontRouter;
+	private FrontCounters	counters;
 
 	public FrontReverseAcceptorHandler(FrontContext frontContext) {
 		this.frontContext = frontContext;
 		this.frontRouter = frontContext.getFrontRouter();
+		this.counters = frontContext.getFrontCounters();
 	}
 
-	private void broadcast(final BalanceReadFuture future) {
+	private void broadcast(BalanceReadFuture future) throws IOException {
 
-		FrontFacadeAcceptor frontFacadeAcceptor = frontContext.getFrontFacadeAcceptor();
+		// future在accept返回后会被release，需要在此之前translate
+		IOWriteFuture writeFuture = future.translate();
 
-		ChannelAcceptor acceptor = frontFacadeAcceptor.getAcceptor();
-
-		acceptor.offerSessionMEvent(new SessionMEvent() {
-
-			public void fire(BaseContext context, Map<Integer, Session> sessions) {
-
-				if (sessions == null || sessions.size() == 0) {
-					return;
-				}
+		frontContext.getBroadcastSubscribers().broadcast(writeFuture);
+	}
 
-				Iterator<Session> ss = sessions.values().iterator();
+	public void accept(Session session, ReadFuture future) throws Exception {
 
-				IOWriteFuture writeFuture;
-				try {
-					writeFuture = future.translate();
-				} catch (IOException e) {
-					logger.error(e.getMessage(), e);
-					return;
-				}
+		if (logger.isDebugEnabled()) {
+			logger.debug("报文来自负载均衡：[ {} ]，报文：{}", session.getRemoteSocketAddress(), future);
+		}
 
-				for (; ss.hasNext();) {
+		BalanceReadFuture f = (BalanceReadFuture) future;
 
-					IOSession s = (IOSession) ss.next();
+		String routerKey = f.getRouterKey();
 
-					if (s.getAttribute(FrontContext.FRONT_RECEIVE_BROADCAST) == null) {
+		if (routerKey != null) {
 
-						continue;
-					}
+			logger.info("负载服务器 {} 的标识为：{}", session, routerKey);
 
-					IOWriteFuture copy = writeFuture.duplicate();
+			frontRouter.setRouterKey((IOSession) session, routerKey);
 
-					try {
+			return;
+		}
 
-						s.flush(copy);
+		if (f.isBroadcast()) {
 
-					} catch (Exception e) {
+			broadcast(f);
 
-						logger.error(e.getMessage(), e);
-					}
-				}
+			long count = counters.broadcast();
 
-				ReleaseUtil.release(writeFuture);
+			if (counters.isTrace(count)) {
+				logger.info("广播报文(共{}个)：{}", count, f);
 			}
-		});
-	}
-
-	public void accept(Session session, ReadFuture future) throws Exception {
-
-		logger.info("报文来自负载均衡：[ {} ]，报文：{}", session.getRemoteSocketAddress(), future);
 
-		BalanceReadFuture f = (BalanceReadFuture) future;
-
-		if (f.isBroadcast()) {
+			return;
+		}
 
-			broadcast(f);
+		frontRouter.responseReceived((IOSession) session, f);
 
-			logger.info("广播报文");
+		FrontHealthChecker checker = frontContext.getFrontHealthChecker();
 
-			return;
+		if (checker != null) {
+			checker.responseReceived((IOSession) session, f);
 		}
 
 		int sessionID = f.getSessionID();
@@ -101,7 +80,7 @@ public class FrontReverseAcceptorHandler extends IOEventHandleAdaptor {
 
 			if (response.isClosed()) {
 
-				logger.info("回复报文到客户端失败，连接已丢失：[ {} ],{} ", sessionID, f);
+				clientGone(sessionID, f);
 
 				return;
 			}
@@ -110,11 +89,26 @@ public class FrontReverseAcceptorHandler extends IOEventHandleAdaptor {
 
 			response.flush(writeFuture);
 
-			logger.info("回复报文到客户端,{}", response);
+			long count = counters.responded();
+
+			if (counters.isTrace(count)) {
+				logger.info("回复报文到客户端,{}(共{}个)", response, count);
+			} else if (logger.isDebugEnabled()) {
+				logger.debug("回复报文到客户端,{}", response);
+			}
 
 			return;
 		}
 
-		logger.info("回复报文到客户端失败，连接已丢失，且连接已经被移除：[ {} ],{} ", sessionID, f);
+		clientGone(sessionID, f);
+	}
+
+	private void clientGone(int sessionID, BalanceReadFuture f) {
+
+		long count = counters.droppedClientGone();
+
+		if (counters.isTrace(count)) {
+			logger.info("回复报文到客户端失败，连接已丢失(共{}个)：[ {} ],{} ", new Object[] { count, sessionID, f });
+		}
 	}
 }
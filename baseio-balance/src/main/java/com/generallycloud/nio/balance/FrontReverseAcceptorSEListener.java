@@ -19,10 +19,19 @@ public class FrontReverseAcceptorSEListener extends SEListenerAdapter {
 	public void sessionOpened(Session session) {
 		logger.info("负载服务器来自 " + session + " 已建立连接.");
 		context.getFrontRouter().addRouterSession((IOSession) session);
+		FrontHealthChecker checker = context.getFrontHealthChecker();
+		if (checker != null) {
+			checker.addRouterSession((IOSession) session);
+		}
 	}
 
 	public void sessionClosed(Session session) {
 		logger.info("负载服务器来自 " + session + " 已断开连接.");
+		// 先通知健康检查，避免被摘除的节点在断开后又被重新加入
+		FrontHealthChecker checker = context.getFrontHealthChecker();
+		if (checker != null) {
+			checker.removeRouterSession((IOSession) session);
+		}
 		context.getFrontRouter().removeRouterSession((IOSession) session);
 	}
 }
@@ -24,6 +24,8 @@ public class FrontServerBootStrap {
 	private BeatFutureFactory		frontBeatFutureFactory;
 	private BeatFutureFactory		frontReverseBeatFutureFactory;
 	private FrontRouter				frontRouter;
+	private FrontHealthChecker		frontHealthChecker;
+	private FrontContext			frontContext;
 
 	public void startup() throws IOException {
 
@@ -35,6 +37,10 @@ public class FrontServerBootStrap {
 
 		FrontContext frontContext = new FrontContext(frontFacadeAcceptor,frontRouter);
 
+		this.frontContext = frontContext;
+
+		frontContext.setFrontHealthChecker(frontHealthChecker);
+
 		BaseContext frontBaseContext = getFrontBaseContext(frontContext, frontServerConfiguration, frontProtocolFactory);
 
 		BaseContext frontReverseBaseContext = getFrontReverseBaseContext(frontContext, frontReverseServerConfiguration,
@@ -158,4 +164,19 @@ public class FrontServerBootStrap {
 	public FrontRouter getFrontRouter() {
 		return frontRouter;
 	}
+
+	/**
+	 * @return startup之后才有值
+	 */
+	public FrontContext getFrontContext() {
+		return frontContext;
+	}
+
+	public FrontHealthChecker getFrontHealthChecker() {
+		return frontHealthChecker;
+	}
+
+	public void setFrontHealthChecker(FrontHealthChecker frontHealthChecker) {
+		this.frontHealthChecker = frontHealthChecker;
+	}
 }
@@ -2,6 +2,7 @@ package com.generallycloud.nio.balance.router;
 
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.component.concurrent.ReentrantMap;
+import com.generallycloud.nio.protocol.ReadFuture;
 
 public abstract class AbstractFrontRouter implements FrontRouter{
 
@@ -18,4 +19,16 @@ public abstract class AbstractFrontRouter implements FrontRouter{
 	public void removeClientSession(IOSession session) {
 		this.clients.remove(session.getSessionID());
 	}
+
+	public void setRouterKey(IOSession routerSession, String key) {
+	}
+
+	public void requestSent(IOSession routerSession, ReadFuture future) {
+	}
+
+	public void requestFailed(IOSession routerSession, ReadFuture future) {
+	}
+
+	public void responseReceived(IOSession routerSession, ReadFuture future) {
+	}
 }
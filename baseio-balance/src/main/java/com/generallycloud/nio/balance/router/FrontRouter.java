@@ -19,4 +19,24 @@ public interface FrontRouter {
 
 	public abstract void removeRouterSession(IOSession session);
 
+	/**
+	 * 负载节点通过FRONT_ROUTER_KEY报文声明了自己的标识
+	 */
+	public abstract void setRouterKey(IOSession routerSession, String key);
+
+	/**
+	 * 请求已经分发到routerSession，在flush之前调用
+	 */
+	public abstract void requestSent(IOSession routerSession, ReadFuture future);
+
+	/**
+	 * 分发到routerSession的请求写出失败，撤销requestSent
+	 */
+	public abstract void requestFailed(IOSession routerSession, ReadFuture future);
+
+	/**
+	 * 收到routerSession回复给客户端的报文(不包括广播)
+	 */
+	public abstract void responseReceived(IOSession routerSession, ReadFuture future);
+
 }
\ No newline at end of file
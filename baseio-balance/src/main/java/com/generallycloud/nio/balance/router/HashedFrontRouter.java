@@ -1,35 +1,112 @@
 package com.generallycloud.nio.balance.router;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.generallycloud.nio.balance.HashedBalanceReadFuture;
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.protocol.ReadFuture;
 
+/**
+ * 按负载节点的标识确定其在一致性hash环上的位置，节点重连后位置不变。
+ * 标识由节点连接后通过FRONT_ROUTER_KEY报文声明(如监听地址)，声明之前使用对方的IP，
+ * 同一台机器上有多个负载节点时需要各自声明。
+ */
 public class HashedFrontRouter extends AbstractFrontRouter {
 
-	public HashedFrontRouter(int maxNode) {
-		this.nodeGroup = new NodeGroup(maxNode);
+	public HashedFrontRouter() {
+		this(160);
+	}
+
+	/**
+	 * @param virtualNodes 每个负载节点在一致性hash环上的虚拟节点个数
+	 */
+	public HashedFrontRouter(int virtualNodes) {
+		this.nodeGroup = new NodeGroup(virtualNodes);
 	}
 
-	private NodeGroup	nodeGroup;
+	private NodeGroup				nodeGroup;
+
+	private Map<String, Machine>	machines	= new HashMap<String, Machine>();
+
+	/**
+	 * 负载节点声明标识之前使用的key，默认为对方的IP，子类可以改为配置的key
+	 */
+	protected String getDefaultRouterKey(IOSession session) {
+		return session.getRemoteAddr();
+	}
 
 	public void addRouterSession(IOSession session) {
-		Machine machine = new Machine(session);
-		nodeGroup.addMachine(machine);
+
+		synchronized (machines) {
+
+			Machine machine = new Machine(uniqueKey(getDefaultRouterKey(session)), session);
+
+			machines.put(machine.key, machine);
+
+			nodeGroup.addMachine(machine);
+		}
+	}
+
+	public void setRouterKey(IOSession session, String key) {
+
+		synchronized (machines) {
+
+			Machine old = (Machine) session.getAttachment();
+
+			if (old == null || machines.get(old.key) != old || old.key.equals(key)) {
+				return;
+			}
+
+			machines.remove(old.key);
+
+			Machine machine = new Machine(uniqueKey(key), session);
+
+			machines.put(machine.key, machine);
+
+			nodeGroup.replaceMachine(old, machine);
+		}
+	}
+
+	// 相同的key得到相同的位置，已被其它连接使用时加上序号区分
+	private String uniqueKey(String key) {
+
+		String unique = key;
+
+		for (int i = 2; machines.containsKey(unique); i++) {
+			unique = key + "#" + i;
+		}
+
+		return unique;
 	}
 
 	public void removeRouterSession(IOSession session) {
-		Machine machine = (Machine) session.getAttachment();
-		if (machine == null) {
-			return;
+
+		synchronized (machines) {
+
+			Machine machine = (Machine) session.getAttachment();
+
+			if (machine == null || machines.get(machine.key) != machine) {
+				return;
+			}
+
+			machines.remove(machine.key);
+
+			nodeGroup.removeMachine(machine);
 		}
-		nodeGroup.removeMachine(machine);
 	}
 
 	public IOSession getRouterSession(IOSession session, ReadFuture future) {
 
 		HashedBalanceReadFuture f = (HashedBalanceReadFuture) future;
 
-		return nodeGroup.getMachine(f.getHashCode()).session;
+		Machine machine = nodeGroup.getMachine(f.getHashCode());
+
+		if (machine == null) {
+			return null;
+		}
+
+		return machine.session;
 	}
 
 	public IOSession getRouterSession(IOSession session) {
@@ -0,0 +1,208 @@
+package com.generallycloud.nio.balance.router;
+
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.generallycloud.nio.balance.BalanceReadFuture;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 每个请求单独选择负载节点(power of two choices)：随机取两个节点，
+ * 选择{@link RouterLoad#getCost()}较小的一个。
+ * <ul>
+ * <li>一个节点变慢(比如GC停顿)时，它的请求堆积、响应时间变大，新的请求会绕开它</li>
+ * <li>同一个客户端的请求可能分发到不同的节点，适用于无状态的负载节点，
+ * 客户端断开时只通知最后一次使用的节点</li>
+ * </ul>
+ */
+public class LeastLoadedFrontRouter extends AbstractFrontRouter {
+
+	private String				SESSION_ID_ROUTER	= "_SESSION_ID_ROUTER";
+	private volatile RouterLoad[]	loads			= new RouterLoad[0];
+	private ReentrantLock		lock				= new ReentrantLock();
+	private Random				random			= new Random();
+	private long				decayTime;
+
+	public LeastLoadedFrontRouter() {
+		this(10 * 1000);
+	}
+
+	/**
+	 * @param decayTime 响应时间衰减的时间常数(毫秒)，越小越快忘记之前的慢响应
+	 */
+	public LeastLoadedFrontRouter(long decayTime) {
+
+		if (decayTime < 1) {
+			throw new IllegalArgumentException("decayTime:" + decayTime);
+		}
+
+		this.decayTime = decayTime;
+	}
+
+	public void addRouterSession(IOSession session) {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			RouterLoad[] old = this.loads;
+
+			// 还不知道新节点的响应时间，按最慢的节点估计
+			double latency = 0;
+
+			for (RouterLoad l : old) {
+				latency = Math.max(latency, l.getLatency() * 1000000d);
+			}
+
+			RouterLoad load = new RouterLoad(session, decayTime, latency);
+
+			session.setAttachment(load);
+
+			RouterLoad[] loads = new RouterLoad[old.length + 1];
+
+			System.arraycopy(old, 0, loads, 0, old.length);
+
+			loads[old.length] = load;
+
+			this.loads = loads;
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void removeRouterSession(IOSession session) {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			RouterLoad[] old = this.loads;
+
+			for (int i = 0; i < old.length; i++) {
+
+				if (old[i].getSession() != session) {
+					continue;
+				}
+
+				RouterLoad[] loads = new RouterLoad[old.length - 1];
+
+				System.arraycopy(old, 0, loads, 0, i);
+
+				System.arraycopy(old, i + 1, loads, i, loads.length - i);
+
+				this.loads = loads;
+
+				return;
+			}
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void removeClientSession(IOSession session) {
+
+		super.removeClientSession(session);
+
+		Integer sessionID = session.getSessionID();
+
+		for (RouterLoad load : loads) {
+			load.removeClient(sessionID);
+		}
+	}
+
+	public IOSession getRouterSession(IOSession session, ReadFuture future) {
+
+		RouterLoad[] loads = this.loads;
+
+		int size = loads.length;
+
+		if (size == 0) {
+			return null;
+		}
+
+		RouterLoad load;
+
+		if (size == 1) {
+
+			load = loads[0];
+
+		} else {
+
+			int i = random.nextInt(size);
+
+			int j = random.nextInt(size - 1);
+
+			if (j >= i) {
+				j++;
+			}
+
+			RouterLoad a = loads[i];
+
+			RouterLoad b = loads[j];
+
+			load = a.getCost() <= b.getCost() ? a : b;
+		}
+
+		IOSession router_session = load.getSession();
+
+		if (session.getAttribute(SESSION_ID_ROUTER) != router_session) {
+			session.setAttribute(SESSION_ID_ROUTER, router_session);
+		}
+
+		return router_session;
+	}
+
+	public IOSession getRouterSession(IOSession session) {
+		return (IOSession) session.getAttribute(SESSION_ID_ROUTER);
+	}
+
+	public void requestSent(IOSession routerSession, ReadFuture future) {
+
+		RouterLoad load = (RouterLoad) routerSession.getAttachment();
+
+		if (load == null) {
+			return;
+		}
+
+		BalanceReadFuture f = (BalanceReadFuture) future;
+
+		load.requestSent(f.getSessionID(), f.getFutureID());
+	}
+
+	public void requestFailed(IOSession routerSession, ReadFuture future) {
+
+		Object attachment = routerSession.getAttachment();
+
+		if (!(attachment instanceof RouterLoad)) {
+			return;
+		}
+
+		BalanceReadFuture f = (BalanceReadFuture) future;
+
+		((RouterLoad) attachment).requestFailed(f.getSessionID(), f.getFutureID());
+	}
+
+	public void responseReceived(IOSession routerSession, ReadFuture future) {
+
+		RouterLoad load = (RouterLoad) routerSession.getAttachment();
+
+		if (load == null) {
+			return;
+		}
+
+		BalanceReadFuture f = (BalanceReadFuture) future;
+
+		load.responseReceived(f.getSessionID(), f.getFutureID());
+	}
+
+	public RouterLoad[] getRouterLoads() {
+		return loads.clone();
+	}
+}
@@ -4,10 +4,36 @@ import com.generallycloud.nio.component.IOSession;
 
 public class Machine {
 	
-	Machine(IOSession session) {
-		this.session = session;
+	Machine(String key, IOSession session) {
+		this(key, session, 0);
 		this.session.setAttachment(this);
 	}
 
+	/**
+	 * @param key 决定虚拟节点在环上的位置，相同的key总是得到相同的位置
+	 * @param virtualNodes 虚拟节点的个数，小于1时使用NodeGroup的默认值
+	 */
+	public Machine(String key, IOSession session, int virtualNodes) {
+		this.key = key;
+		this.session = session;
+		this.virtualNodes = virtualNodes;
+	}
+
+	String	key;
+
 	IOSession session;
+
+	int		virtualNodes;
+
+	public String getKey() {
+		return key;
+	}
+
+	public IOSession getSession() {
+		return session;
+	}
+
+	public String toString() {
+		return key;
+	}
 }
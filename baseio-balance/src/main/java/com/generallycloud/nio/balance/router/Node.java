@@ -1,12 +1,16 @@
 package com.generallycloud.nio.balance.router;
 
+/**
+ * 环上的一个虚拟节点
+ */
 public class Node {
 
-	Node(int index) {
-		this.index = index;
+	Node(int hash, Machine machine) {
+		this.hash = hash;
+		this.machine = machine;
 	}
 
-	int index;
-	
-	Machine machine;
+	final int		hash;
+
+	final Machine	machine;
 }
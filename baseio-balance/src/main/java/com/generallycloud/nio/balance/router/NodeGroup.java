@@ -1,29 +1,52 @@
 package com.generallycloud.nio.balance.router;
 
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * 一致性hash(ketama)，每个Machine在环上有多个虚拟节点，增加或删除一个Machine时
+ * 只有大约1/N的hash改变位置。
+ * <ul>
+ * <li>每次md5得到4个虚拟节点的位置</li>
+ * <li>环是排好序的数组，修改时复制一份新的再替换，getMachine不需要加锁</li>
+ * <li>getMachine先打散hash，避免连续的小整数都落在环的同一段</li>
+ * </ul>
+ */
 public class NodeGroup {
 
+	private static final Charset	UTF8		= Charset.forName("UTF-8");
+
+	private static final Comparator<Node>	NODE_COMPARATOR	= new Comparator<Node>() {
+
+		public int compare(Node o1, Node o2) {
+			return o1.hash < o2.hash ? -1 : (o1.hash == o2.hash ? 0 : 1);
+		}
+	};
+
 	private ReentrantLock	lock		= new ReentrantLock();
 
-	private int			maxNode;
+	private int			virtualNodes;
 
-	private Node[]			nodes;
+	private volatile Node[]	nodes	= new Node[0];
 
 	private List<Machine>	machines	= new ArrayList<Machine>();
 
-	public NodeGroup(int maxNode) {
-		this.maxNode = maxNode;
-		this.initialize();
-	}
+	/**
+	 * @param virtualNodes 每个Machine默认的虚拟节点个数，按4个一组
+	 */
+	public NodeGroup(int virtualNodes) {
 
-	private void initialize() {
-		this.nodes = new Node[maxNode];
-		for (int i = 0; i < nodes.length; i++) {
-			nodes[i] = new Node(i);
+		if (virtualNodes < 1) {
+			throw new IllegalArgumentException("virtualNodes:" + virtualNodes);
 		}
+
+		this.virtualNodes = virtualNodes;
 	}
 
 	public void addMachine(Machine machine) {
@@ -36,7 +59,19 @@ public class NodeGroup {
 
 			machines.add(machine);
 
-			machineChange();
+			Node[] old = this.nodes;
+
+			Node[] add = createNodes(machine);
+
+			Node[] nodes = new Node[old.length + add.length];
+
+			System.arraycopy(old, 0, nodes, 0, old.length);
+
+			System.arraycopy(add, 0, nodes, old.length, add.length);
+
+			Arrays.sort(nodes, NODE_COMPARATOR);
+
+			this.nodes = nodes;
 
 		} finally {
 
@@ -52,9 +87,22 @@ public class NodeGroup {
 
 		try {
 
-			machines.remove(machine);
+			if (!machines.remove(machine)) {
+				return;
+			}
+
+			Node[] old = this.nodes;
+
+			List<Node> list = new ArrayList<Node>(old.length);
+
+			for (Node n : old) {
+
+				if (n.machine != machine) {
+					list.add(n);
+				}
+			}
 
-			machineChange();
+			this.nodes = list.toArray(new Node[list.size()]);
 
 		} finally {
 
@@ -62,35 +110,134 @@ public class NodeGroup {
 		}
 	}
 
-	private void machineChange() {
+	/**
+	 * 用machine替换old在环上的位置(如key改变)，old不在环上时不做任何修改
+	 */
+	public void replaceMachine(Machine old, Machine machine) {
 
-		List<Machine> machines = this.machines;
+		ReentrantLock lock = this.lock;
 
-		Node[] nodes = this.nodes;
+		lock.lock();
+
+		try {
+
+			if (!machines.remove(old)) {
+				return;
+			}
+
+			machines.add(machine);
 
-		int m_index = 0;
+			Node[] add = createNodes(machine);
 
-		int m_size = machines.size();
+			List<Node> list = new ArrayList<Node>(nodes.length + add.length);
 
-		for (Node n : nodes) {
+			for (Node n : nodes) {
 
-			if (m_index == m_size) {
-				m_index = 0;
+				if (n.machine != old) {
+					list.add(n);
+				}
 			}
 
-			n.machine = machines.get(m_index++);
+			list.addAll(Arrays.asList(add));
+
+			Node[] nodes = list.toArray(new Node[list.size()]);
+
+			Arrays.sort(nodes, NODE_COMPARATOR);
+
+			this.nodes = nodes;
+
+		} finally {
+
+			lock.unlock();
 		}
 	}
 
-	//FIXME 是否要设置同步
+	private Node[] createNodes(Machine machine) {
+
+		int size = machine.virtualNodes > 0 ? machine.virtualNodes : virtualNodes;
+
+		int groups = (size + 3) >> 2;
+
+		Node[] nodes = new Node[groups << 2];
+
+		MessageDigest md5;
+
+		try {
+			md5 = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e.getMessage(), e);
+		}
+
+		for (int i = 0; i < groups; i++) {
+
+			byte[] digest = md5.digest((machine.key + "-" + i).getBytes(UTF8));
+
+			for (int j = 0; j < 4; j++) {
+
+				int hash = ((digest[3 + j * 4] & 0xFF) << 24) 
+						| ((digest[2 + j * 4] & 0xFF) << 16)
+						| ((digest[1 + j * 4] & 0xFF) << 8) 
+						| (digest[j * 4] & 0xFF);
+
+				nodes[(i << 2) + j] = new Node(hash, machine);
+			}
+		}
+
+		return nodes;
+	}
+
+	/**
+	 * @return hash顺时针方向的第一个虚拟节点所属的Machine，没有Machine时返回null
+	 */
 	public Machine getMachine(int hash) {
-		if (hash < maxNode) {
-			return nodes[hash].machine;
+
+		Node[] nodes = this.nodes;
+
+		if (nodes.length == 0) {
+			return null;
 		}
-		return nodes[hash % maxNode].machine;
+
+		hash = mix(hash);
+
+		int low = 0;
+
+		int high = nodes.length - 1;
+
+		// 第一个 >= hash 的节点
+		for (; low <= high;) {
+
+			int mid = (low + high) >>> 1;
+
+			if (nodes[mid].hash < hash) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		if (low == nodes.length) {
+			low = 0;
+		}
+
+		return nodes[low].machine;
 	}
 
-	public static void main(String[] args) {
+	// murmur3 fmix32
+	private int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	public int getMachineSize() {
+		return machines.size();
+	}
 
+	public int getVirtualNodes() {
+		return virtualNodes;
 	}
+
 }
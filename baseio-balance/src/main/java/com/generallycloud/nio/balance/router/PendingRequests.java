@@ -0,0 +1,125 @@
+package com.generallycloud.nio.balance.router;
+
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 已分发到一个负载节点、还未收到回复的请求，按(sessionID,futureID)与回复对应。
+ * futureID相同的请求同时只记录一个
+ */
+public class PendingRequests {
+
+	private static final Integer	NULL_FUTURE_ID	= Integer.valueOf(0);
+
+	private AtomicInteger		size			= new AtomicInteger();
+
+	// sessionID -> (futureID -> 发送时间)
+	private ConcurrentMap<Integer, ConcurrentMap<Object, Long>>	sessions	= new ConcurrentHashMap<Integer, ConcurrentMap<Object, Long>>();
+
+	public void put(Integer sessionID, Object futureID, long time) {
+
+		ConcurrentMap<Object, Long> futures = sessions.get(sessionID);
+
+		if (futures == null) {
+
+			futures = new ConcurrentHashMap<Object, Long>();
+
+			ConcurrentMap<Object, Long> old = sessions.putIfAbsent(sessionID, futures);
+
+			if (old != null) {
+				futures = old;
+			}
+		}
+
+		if (futureID == null) {
+			futureID = NULL_FUTURE_ID;
+		}
+
+		if (futures.put(futureID, time) == null) {
+			size.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return 请求的发送时间，没有对应的请求时返回null
+	 */
+	public Long remove(Integer sessionID, Object futureID) {
+
+		ConcurrentMap<Object, Long> futures = sessions.get(sessionID);
+
+		if (futures == null) {
+			return null;
+		}
+
+		if (futureID == null) {
+			futureID = NULL_FUTURE_ID;
+		}
+
+		Long time = futures.remove(futureID);
+
+		if (time != null) {
+			size.decrementAndGet();
+		}
+
+		return time;
+	}
+
+	/**
+	 * 客户端断开后，它未收到回复的请求不再计算
+	 */
+	public void removeSession(Integer sessionID) {
+
+		ConcurrentMap<Object, Long> futures = sessions.remove(sessionID);
+
+		if (futures == null) {
+			return;
+		}
+
+		// 与remove并发时只有一方能移除成功
+		for (Entry<Object, Long> e : futures.entrySet()) {
+
+			if (futures.remove(e.getKey(), e.getValue())) {
+				size.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * 移除发送时间早于deadline的请求
+	 * @param since 只计算发送时间晚于since的请求
+	 * @return 计算的个数
+	 */
+	public int expire(long deadline, long since) {
+
+		int count = 0;
+
+		for (ConcurrentMap<Object, Long> futures : sessions.values()) {
+
+			for (Entry<Object, Long> e : futures.entrySet()) {
+
+				long time = e.getValue().longValue();
+
+				if (time >= deadline) {
+					continue;
+				}
+
+				if (futures.remove(e.getKey(), e.getValue())) {
+
+					size.decrementAndGet();
+
+					if (time > since) {
+						count++;
+					}
+				}
+			}
+		}
+
+		return count;
+	}
+
+	public int size() {
+		return size.get();
+	}
+}
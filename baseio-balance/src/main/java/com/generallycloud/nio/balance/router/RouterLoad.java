@@ -0,0 +1,119 @@
+package com.generallycloud.nio.balance.router;
+
+import com.generallycloud.nio.component.IOSession;
+
+/**
+ * 一个负载节点的负载：正在处理的请求数，以及响应时间的peak EWMA。
+ * <ul>
+ * <li>请求按(sessionID,futureID)与回复对应，没有对应请求的回复(比如推送)不计算</li>
+ * <li>响应时间变大时立即取新值，变小时按时间衰减，没有新的回复时也按时间衰减，
+ * 所以慢过的节点过一段时间后会重新被选中</li>
+ * <li>新加入的节点按其它节点中最大的响应时间估计，避免在第一个回复之前承接所有请求</li>
+ * </ul>
+ */
+public class RouterLoad {
+
+	private IOSession			session;
+
+	private double			decayTime;
+
+	private PendingRequests		pending	= new PendingRequests();
+
+	// 纳秒
+	private volatile double		latency;
+
+	private volatile long		lastUpdate	= System.nanoTime();
+
+	/**
+	 * @param decayTime 响应时间衰减的时间常数(毫秒)
+	 * @param latency 初始的响应时间(纳秒)，还没有回复时按此估计
+	 */
+	RouterLoad(IOSession session, long decayTime, double latency) {
+		this.session = session;
+		this.decayTime = decayTime * 1000000d;
+		this.latency = latency;
+	}
+
+	void requestSent(Integer sessionID, Object futureID) {
+		pending.put(sessionID, futureID, System.nanoTime());
+	}
+
+	void responseReceived(Integer sessionID, Object futureID) {
+
+		Long sendTime = pending.remove(sessionID, futureID);
+
+		if (sendTime == null) {
+			return;
+		}
+
+		long now = System.nanoTime();
+
+		update(now - sendTime.longValue(), now);
+	}
+
+	/**
+	 * 请求没有写出，不再计算为正在处理的请求
+	 */
+	void requestFailed(Integer sessionID, Object futureID) {
+		pending.remove(sessionID, futureID);
+	}
+
+	void removeClient(Integer sessionID) {
+		pending.removeSession(sessionID);
+	}
+
+	private synchronized void update(long rtt, long now) {
+
+		double w = Math.exp(-Math.max(now - lastUpdate, 0) / decayTime);
+
+		double latency = this.latency * w;
+
+		if (rtt > latency) {
+
+			this.latency = rtt;
+
+		} else {
+
+			this.latency = latency + rtt * (1 - w);
+		}
+
+		this.lastUpdate = now;
+	}
+
+	private double decay(long now) {
+
+		long elapsed = now - lastUpdate;
+
+		if (elapsed <= 0) {
+			return latency;
+		}
+
+		return latency * Math.exp(-elapsed / decayTime);
+	}
+
+	/**
+	 * (正在处理的请求数 + 1) * 响应时间，越小越空闲
+	 */
+	public double getCost() {
+		return (pending.size() + 1) * (decay(System.nanoTime()) + 1);
+	}
+
+	public int getInflight() {
+		return pending.size();
+	}
+
+	/**
+	 * @return 衰减后的响应时间(毫秒)
+	 */
+	public double getLatency() {
+		return decay(System.nanoTime()) / 1000000d;
+	}
+
+	public IOSession getSession() {
+		return session;
+	}
+
+	public String toString() {
+		return session + "[inflight=" + pending.size() + ",latency=" + getLatency() + "ms]";
+	}
+}
@@ -1,10 +1,12 @@
 package com.generallycloud.nio.balance.router;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
-import com.generallycloud.nio.common.CloseUtil;
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.protocol.ReadFuture;
 
@@ -12,6 +14,8 @@ public class SimpleNextRouter extends AbstractFrontRouter{
 
 	private int			index			= 0;
 	private List<IOSession>	routerList		= new ArrayList<IOSession>();
+	// 被移除但仍然打开的节点(比如被健康检查摘除)不再使用
+	private Set<IOSession>	routerSet			= Collections.newSetFromMap(new ConcurrentHashMap<IOSession, Boolean>());
 	private ReentrantLock	lock				= new ReentrantLock();
 	private String			SESSION_ID_ROUTER	= "_SESSION_ID_ROUTER";
 
@@ -46,6 +50,8 @@ public class SimpleNextRouter extends AbstractFrontRouter{
 
 		this.routerList.add(session);
 
+		this.routerSet.add(session);
+
 		lock.unlock();
 	}
 
@@ -57,6 +63,8 @@ public class SimpleNextRouter extends AbstractFrontRouter{
 
 		routerList.remove(session);
 
+		routerSet.remove(session);
+
 		lock.unlock();
 	}
 
@@ -69,7 +77,7 @@ public class SimpleNextRouter extends AbstractFrontRouter{
 			return getRouterSessionFresh(session);
 		}
 
-		if (router_session.isClosed()) {
+		if (router_session.isClosed() || !routerSet.contains(router_session)) {
 
 			return getRouterSessionFresh(session);
 		}
@@ -92,11 +100,9 @@ public class SimpleNextRouter extends AbstractFrontRouter{
 			
 			IOSession router_session = (IOSession) session.getAttribute(SESSION_ID_ROUTER);
 			
-			if (router_session != null && router_session.isOpened()) {
+			if (router_session != null && router_session.isOpened() && routerSet.contains(router_session)) {
 				return router_session;
 			}
-
-			CloseUtil.close(router_session);
 			
 			router_session = getNextRouterSession();
 
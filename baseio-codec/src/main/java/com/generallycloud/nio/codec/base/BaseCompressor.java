@@ -0,0 +1,158 @@
+package com.generallycloud.nio.codec.base;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.generallycloud.nio.protocol.ProtocolException;
+
+/**
+ * 压缩V2报文的binary(raw deflate)。Deflater、Inflater以及输出缓冲区按线程复用，
+ * 编码在调用flush的线程(通常为event loop)中进行，解码在selector线程中进行，
+ * 不会为每个报文创建Deflater/Inflater。
+ */
+public class BaseCompressor {
+
+	private int						minSize	= 1024;
+
+	private int						level	= Deflater.DEFAULT_COMPRESSION;
+
+	private ThreadLocal<CompressorLocal>	locals	= new ThreadLocal<CompressorLocal>();
+
+	/**
+	 * 只有超过minSize的binary才压缩
+	 */
+	public boolean isCompressible(int size) {
+		return size >= minSize;
+	}
+
+	/**
+	 * 压缩结果写入当前线程的缓冲区，返回的数组在本线程下一次调用前有效，
+	 * 有效长度通过{@link #getCompressedLength()}获取
+	 */
+	public byte[] compress(byte[] array, int offset, int length) {
+
+		CompressorLocal local = getLocal();
+
+		Deflater deflater = local.deflater;
+
+		deflater.reset();
+
+		deflater.setInput(array, offset, length);
+
+		deflater.finish();
+
+		int count = 0;
+
+		byte[] output = local.ensureCapacity(length + (length >> 3) + 64);
+
+		for (; !deflater.finished();) {
+
+			if (count == output.length) {
+				output = local.ensureCapacity(output.length << 1);
+			}
+
+			count += deflater.deflate(output, count, output.length - count);
+		}
+
+		local.length = count;
+
+		return output;
+	}
+
+	public int getCompressedLength() {
+		return getLocal().length;
+	}
+
+	/**
+	 * @param length 解压后的长度，必须与压缩前一致
+	 */
+	public void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int length) {
+
+		Inflater inflater = getLocal().inflater;
+
+		inflater.reset();
+
+		inflater.setInput(src, srcOffset, srcLength);
+
+		try {
+
+			int count = 0;
+
+			for (; count < length;) {
+
+				int n = inflater.inflate(dst, dstOffset + count, length - count);
+
+				if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+
+				count += n;
+			}
+
+			if (count != length || !inflater.finished()) {
+				throw new ProtocolException("illegal compressed binary,expect:" + length + ",actual:" + count);
+			}
+
+		} catch (DataFormatException e) {
+			throw new ProtocolException("illegal deflate data", e);
+		}
+	}
+
+	private CompressorLocal getLocal() {
+
+		CompressorLocal local = locals.get();
+
+		if (local == null) {
+			local = new CompressorLocal(level);
+			locals.set(local);
+		}
+
+		return local;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	class CompressorLocal {
+
+		Deflater	deflater;
+
+		Inflater	inflater	= new Inflater(true);
+
+		byte[]	output	= new byte[1024 * 8];
+
+		int		length;
+
+		CompressorLocal(int level) {
+			this.deflater = new Deflater(level, true);
+		}
+
+		byte[] ensureCapacity(int capacity) {
+
+			if (output.length < capacity) {
+
+				byte[] array = new byte[capacity];
+
+				System.arraycopy(output, 0, array, 0, output.length);
+
+				output = array;
+			}
+
+			return output;
+		}
+	}
+}
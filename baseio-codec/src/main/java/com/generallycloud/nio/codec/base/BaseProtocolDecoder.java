@@ -5,9 +5,12 @@ import java.nio.ByteBuffer;
 
 import com.generallycloud.nio.buffer.ByteBuf;
 import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.codec.base.future.BaseStreamReadFuture;
+import com.generallycloud.nio.codec.base.future.BinaryStreamAcceptor;
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.protocol.IOReadFuture;
 import com.generallycloud.nio.protocol.ProtocolDecoder;
+import com.generallycloud.nio.protocol.ProtocolEncoder;
 
 /**
  * <pre>
@@ -24,13 +27,25 @@ import com.generallycloud.nio.protocol.ProtocolDecoder;
  *  
  *  B0:0-1	: 报文类型 [0=UNKONW,1=PACKET,2=BEAT.PING,3=BEAT.PONG]
  *  B0:2  	: 推送类型 [0=PUSH,1=BRODCAST]
- *  B0:3-7	: 预留
+ *  B0:3  	: 报文头版本 [0=V1,1=V2]
+ *  B0:4  	: V1:发送方可以解析V2报文头，V2:有binary
+ *  B0:5-7	: V1:预留，V2:依次为有future id,有session id,有hash code
+ *  
+ *  V1：
  *  B1		: service name  length
  *  B2  - B5 	: future  id
  *  B6  - B9 	: session id
  *  B10 - B13 	: hash    code
  *  B14 - B15 	：text          length
  *  B16 - B19 	：binary        length
+ *  
+ *  V2：
+ *  B1		: service name  length
+ *  之后依次为varint：[future id] [session id] [hash code] text length [binary length]，
+ *  方括号中的字段为0时省略，binary length的最低位为1时binary经过压缩，
+ *  压缩的binary为varint表示的原始长度加上raw deflate数据
+ *  
+ *  收到带有B0:4的V1报文后，该连接改用V2编码
  * 
  * </pre>
  */
@@ -48,23 +63,129 @@ public class BaseProtocolDecoder implements ProtocolDecoder {
 	public static final int	TEXT_BEGIN_INDEX			= 14;
 	public static final int	BINARY_BEGIN_INDEX		= 16;
 
+	public static final int	HEADER_V2				= 0x10;
+	public static final int	HEADER_V2_NEGOTIATE		= 0x08;
+	public static final int	HEADER_V2_BINARY			= 0x08;
+	public static final int	HEADER_V2_FUTURE_ID		= 0x04;
+	public static final int	HEADER_V2_SESSION_ID		= 0x02;
+	public static final int	HEADER_V2_HASH			= 0x01;
+
+	public static final int	DEFAULT_BINARY_LIMIT		= 1024 * 1024 * 2;
+
+	public static final int	DEFAULT_TEXT_LIMIT		= 1024 * 1024;
+
+	// V1报文头中text length只有两个字节
+	public static final int	V1_TEXT_LIMIT			= 0xffff;
+
+	public static final int	STREAM_CHUNK_SIZE			= 1024 * 64;
+
+	private int				binaryLimit;
+
+	private int				textLimit				= DEFAULT_TEXT_LIMIT;
+
+	private BinaryStreamAcceptor	streamAcceptor;
+
+	public BaseProtocolDecoder() {
+		this(DEFAULT_BINARY_LIMIT, null);
+	}
+
+	/**
+	 * @param binaryLimit binary的最大长度
+	 * @param streamAcceptor 不为null时，binary超过binaryLimit的报文在header与text收到后即交给业务处理，
+	 *                       binary由streamAcceptor返回的BinaryConsumer按chunk接收
+	 */
+	public BaseProtocolDecoder(int binaryLimit, BinaryStreamAcceptor streamAcceptor) {
+		this.binaryLimit = binaryLimit;
+		this.streamAcceptor = streamAcceptor;
+	}
+
 	public IOReadFuture decode(IOSession session, ByteBuffer buffer) throws IOException {
 
-		ByteBuf buf = session.getContext().getHeapByteBufferPool().allocate(PROTOCOL_HADER);
+		if (streamAcceptor != null) {
+
+			// 上一个报文的binary尚未接收，接收完成前一直保留在session中，以便关闭时释放
+			IOReadFuture future = (IOReadFuture) session.getAttribute(BaseStreamReadFuture.SESSION_KEY_STREAM);
 
-		buf.read(buffer);
+			if (future != null) {
+				return future;
+			}
+		}
 
-		byte _type = buffer.get(0);
+		// buffer中可能包含上一个报文的数据，B0从当前position读取
+		int _type = buffer.get(buffer.position()) & 0xff;
 
-		int type = (_type & 0xff) >> 6;
+		int type = _type >> 6;
 
 		if (type == PROTOCOL_PING) {
-			return new BaseReadFutureImpl(session.getContext()).setPING();
+			buffer.get();
+			return newReadFuture(session).setPING();
 		} else if (type == PROTOCOL_PONG) {
-			return new BaseReadFutureImpl(session.getContext()).setPONG();
+			buffer.get();
+			return newReadFuture(session).setPONG();
+		}
+
+		if ((_type & HEADER_V2) != 0) {
+
+			negotiate(session);
+
+			// V2报文头长度不固定，逐字节解析
+			return newReadFuture(session, null);
 		}
 
-		return new BaseReadFutureImpl(session, buf);
+		if ((_type & HEADER_V2_NEGOTIATE) != 0) {
+			negotiate(session);
+		}
+
+		ByteBuf buf = session.getContext().getHeapByteBufferPool().allocate(PROTOCOL_HADER);
+
+		return newReadFuture(session, buf);
+	}
+
+	// for ping & pong
+	protected BaseReadFutureImpl newReadFuture(IOSession session) {
+		return new BaseReadFutureImpl(session.getContext());
+	}
+
+	/**
+	 * @param buf 用于读取V1报文头，为null时为V2报文头
+	 */
+	protected BaseReadFutureImpl newReadFuture(IOSession session, ByteBuf buf) throws IOException {
+		return new BaseReadFutureImpl(session, buf, textLimit, binaryLimit, streamAcceptor);
+	}
+
+	public int getBinaryLimit() {
+		return binaryLimit;
+	}
+
+	public int getTextLimit() {
+		return textLimit;
+	}
+
+	/**
+	 * @param textLimit text的最大长度，V2报文头中text length为varint，需要限制
+	 */
+	public void setTextLimit(int textLimit) {
+		this.textLimit = textLimit;
+	}
+
+	public BinaryStreamAcceptor getStreamAcceptor() {
+		return streamAcceptor;
+	}
+
+	// 对方可以解析V2报文头，本端也允许时该连接改用V2编码
+	private void negotiate(IOSession session) {
+
+		ProtocolEncoder encoder = session.getProtocolEncoder();
+
+		if (!(encoder instanceof BaseProtocolEncoder)) {
+			return;
+		}
+
+		BaseProtocolEncoder baseEncoder = (BaseProtocolEncoder) encoder;
+
+		if (baseEncoder.isNegotiateV2() && !baseEncoder.isHeaderV2()) {
+			session.setProtocolEncoder(baseEncoder.newHeaderV2Encoder());
+		}
 	}
 
 }
@@ -1,13 +1,18 @@
 package com.generallycloud.nio.codec.base;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 
 import com.generallycloud.nio.buffer.ByteBuf;
 import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.common.CloseUtil;
 import com.generallycloud.nio.common.MathUtil;
+import com.generallycloud.nio.common.ReleaseUtil;
 import com.generallycloud.nio.common.StringUtil;
 import com.generallycloud.nio.component.BaseContext;
 import com.generallycloud.nio.component.BufferedOutputStream;
+import com.generallycloud.nio.protocol.FileRegionWriteFuture;
 import com.generallycloud.nio.protocol.IOReadFuture;
 import com.generallycloud.nio.protocol.IOWriteFuture;
 import com.generallycloud.nio.protocol.IOWriteFutureImpl;
@@ -16,36 +21,181 @@ import com.generallycloud.nio.protocol.ProtocolException;
 
 public class BaseProtocolEncoder implements ProtocolEncoder {
 
-	private final int	PROTOCOL_HADER	= BaseProtocolDecoder.PROTOCOL_HADER;
+	private static final int	PROTOCOL_HADER	= BaseProtocolDecoder.PROTOCOL_HADER;
 
-	private void calc_text(byte[] header, int text_length) {
+	private boolean			negotiateV2;
+
+	private boolean			headerV2;
+
+	private BaseCompressor		compressor;
+
+	public BaseProtocolEncoder() {
+	}
+
+	/**
+	 * @param negotiateV2 V1报文中标记本端可以解析V2报文头，见{@link BaseProtocolDecoder}
+	 * @param headerV2 使用V2报文头编码，对方确认可以解析V2报文头之后才可以使用
+	 */
+	public BaseProtocolEncoder(boolean negotiateV2, boolean headerV2) {
+		this(negotiateV2, headerV2, null);
+	}
+
+	/**
+	 * @param compressor 不为null时压缩V2报文中较大的binary
+	 */
+	public BaseProtocolEncoder(boolean negotiateV2, boolean headerV2, BaseCompressor compressor) {
+		this.negotiateV2 = negotiateV2;
+		this.headerV2 = headerV2;
+		this.compressor = compressor;
+	}
+
+	private static void calc_text(byte[] header, int text_length) {
 		MathUtil.intTo2Byte(header, text_length, BaseProtocolDecoder.TEXT_BEGIN_INDEX);
 	}
 
-	private void calc_future_id(byte[] header, int future_id) {
+	private static void calc_future_id(byte[] header, int future_id) {
 		MathUtil.int2Byte(header, future_id, BaseProtocolDecoder.FUTURE_ID_BEGIN_INDEX);
 	}
 
-	private void calc_session_id(byte[] header, int future_id) {
+	private static void calc_session_id(byte[] header, int future_id) {
 		MathUtil.int2Byte(header, future_id, BaseProtocolDecoder.SESSION_ID_BEGIN_INDEX);
 	}
 
-	private void calc_binary(byte[] header, int binary_length) {
+	private static void calc_binary(byte[] header, int binary_length) {
 		MathUtil.int2Byte(header, binary_length, BaseProtocolDecoder.BINARY_BEGIN_INDEX);
 	}
 
-	private void calc_hash(byte[] header, int hash) {
+	private static void calc_hash(byte[] header, int hash) {
 		MathUtil.int2Byte(header, hash, BaseProtocolDecoder.HASH_BEGIN_INDEX);
 	}
 
+	public static byte[] encodeHeader(BaseReadFuture f, int service_name_length, int text_length, int binary_length) {
+
+		if (text_length > BaseProtocolDecoder.V1_TEXT_LIMIT) {
+			throw new IllegalArgumentException("text too long for V1 header,length:" + text_length);
+		}
+
+		Integer future_id = f.getFutureID();
+		Integer session_id = f.getSessionID();
+
+		byte[] header = new byte[PROTOCOL_HADER];
+
+		if (f.isBroadcast()) {
+			header[0] = 0x20;
+		}
+
+		header[1] = (byte) (service_name_length);
+
+		calc_future_id(header, future_id);
+		calc_session_id(header, session_id);
+		calc_hash(header, f.getHashCode());
+		calc_text(header, text_length);
+		calc_binary(header, binary_length);
+
+		return header;
+	}
+
+	/**
+	 * 值为0的future id,session id,hash code以及binary length不写出
+	 */
+	public static byte[] encodeHeaderV2(BaseReadFuture f, int service_name_length, int text_length,
+			int binary_length) {
+		return encodeHeaderV2(f, service_name_length, text_length, binary_length, false);
+	}
+
+	/**
+	 * @param compressed binary是否经过压缩，标记在binary length的最低位
+	 */
+	public static byte[] encodeHeaderV2(BaseReadFuture f, int service_name_length, int text_length,
+			int binary_length, boolean compressed) {
+
+		int future_id = f.getFutureID();
+		int session_id = f.getSessionID();
+		int hash = f.getHashCode();
+
+		int flags = BaseProtocolDecoder.HEADER_V2;
+		int length = 2 + MathUtil.varintSize(text_length);
+
+		if (f.isBroadcast()) {
+			flags |= 0x20;
+		}
+
+		if (future_id != 0) {
+			flags |= BaseProtocolDecoder.HEADER_V2_FUTURE_ID;
+			length += MathUtil.varintSize(future_id);
+		}
+
+		if (session_id != 0) {
+			flags |= BaseProtocolDecoder.HEADER_V2_SESSION_ID;
+			length += MathUtil.varintSize(session_id);
+		}
+
+		if (hash != 0) {
+			flags |= BaseProtocolDecoder.HEADER_V2_HASH;
+			length += MathUtil.varintSize(hash);
+		}
+
+		int binary_field = (binary_length << 1) | (compressed ? 1 : 0);
+
+		if (binary_length != 0) {
+			flags |= BaseProtocolDecoder.HEADER_V2_BINARY;
+			length += MathUtil.varintSize(binary_field);
+		}
+
+		byte[] header = new byte[length];
+
+		header[0] = (byte) flags;
+		header[1] = (byte) service_name_length;
+
+		int index = 2;
+
+		if (future_id != 0) {
+			index = MathUtil.int2Varint(header, future_id, index);
+		}
+
+		if (session_id != 0) {
+			index = MathUtil.int2Varint(header, session_id, index);
+		}
+
+		if (hash != 0) {
+			index = MathUtil.int2Varint(header, hash, index);
+		}
+
+		index = MathUtil.int2Varint(header, text_length, index);
+
+		if (binary_length != 0) {
+			MathUtil.int2Varint(header, binary_field, index);
+		}
+
+		return header;
+	}
+
+	/**
+	 * 按该编码器协商的版本生成报文头
+	 */
+	protected byte[] header(BaseReadFuture f, int service_name_length, int text_length, int binary_length) {
+
+		if (headerV2) {
+			return encodeHeaderV2(f, service_name_length, text_length, binary_length);
+		}
+
+		byte[] header = encodeHeader(f, service_name_length, text_length, binary_length);
+
+		if (negotiateV2) {
+			header[0] |= BaseProtocolDecoder.HEADER_V2_NEGOTIATE;
+		}
+
+		return header;
+	}
+
 	public IOWriteFuture encode(BaseContext context, IOReadFuture readFuture) throws IOException {
 
 		if (readFuture.isHeartbeat()) {
 
 			byte[] array = new byte[1];
 
-			array[0] = (byte) (readFuture.isPING() ? BaseProtocolDecoder.PROTOCOL_PING
-					: BaseProtocolDecoder.PROTOCOL_PONG << 6);
+			array[0] = (byte) ((readFuture.isPING() ? BaseProtocolDecoder.PROTOCOL_PING
+					: BaseProtocolDecoder.PROTOCOL_PONG) << 6);
 
 			ByteBuf buffer = context.getHeapByteBufferPool().allocate(1);
 
@@ -58,8 +208,6 @@ public class BaseProtocolEncoder implements ProtocolEncoder {
 
 		BaseReadFuture f = (BaseReadFuture) readFuture;
 
-		Integer future_id = f.getFutureID();
-		Integer session_id = f.getSessionID();
 		String future_name = f.getFutureName();
 		BufferedOutputStream textOPS = f.getWriteBuffer();
 		BufferedOutputStream binaryOPS = f.getWriteBinaryBuffer();
@@ -78,25 +226,27 @@ public class BaseProtocolEncoder implements ProtocolEncoder {
 			throw new IllegalArgumentException("service name too long ," + future_name);
 		}
 
-		if (binaryOPS != null) {
+		ReadableByteChannel binaryChannel = f.getWriteBinaryChannel();
+
+		if (binaryChannel != null) {
+
+			binary_length = f.getWriteBinaryChannelLength();
+
+		} else if (binaryOPS != null) {
 			binary_length = binaryOPS.size();
 		}
 
-		int all_length = PROTOCOL_HADER + service_name_length + text_length + binary_length;
-
-		byte[] header = new byte[PROTOCOL_HADER];
+		if (binaryChannel != null) {
+			return encodeStream(context, f, future_name_array, binaryChannel, binary_length);
+		}
 
-		if (f.isBroadcast()) {
-			header[0] = 0x20;
+		if (headerV2 && compressor != null && compressor.isCompressible(binary_length)) {
+			return encodeCompressed(context, f, future_name_array, binaryOPS.array(), binary_length);
 		}
 
-		header[1] = (byte) (service_name_length);
+		byte[] header = header(f, service_name_length, text_length, binary_length);
 
-		calc_future_id(header, future_id);
-		calc_session_id(header, session_id);
-		calc_hash(header, f.getHashCode());
-		calc_text(header, text_length);
-		calc_binary(header, binary_length);
+		int all_length = header.length + service_name_length + text_length + binary_length;
 
 		ByteBuf buffer = context.getHeapByteBufferPool().allocate(all_length);
 
@@ -116,4 +266,129 @@ public class BaseProtocolEncoder implements ProtocolEncoder {
 		return new IOWriteFutureImpl(readFuture, buffer);
 	}
 
+	/**
+	 * binary为varint表示的原始长度加上raw deflate数据，压缩后没有变小时不压缩
+	 */
+	private IOWriteFuture encodeCompressed(BaseContext context, BaseReadFuture f, byte[] future_name_array,
+			byte[] binary, int binary_length) throws IOException {
+
+		BufferedOutputStream textOPS = f.getWriteBuffer();
+
+		int service_name_length = future_name_array.length;
+		int text_length = textOPS.size();
+
+		byte[] compressed = compressor.compress(binary, 0, binary_length);
+
+		int compressed_length = compressor.getCompressedLength();
+
+		int section_length = MathUtil.varintSize(binary_length) + compressed_length;
+
+		boolean useCompressed = section_length < binary_length;
+
+		if (!useCompressed) {
+			section_length = binary_length;
+		}
+
+		byte[] header = encodeHeaderV2(f, service_name_length, text_length, section_length, useCompressed);
+
+		int all_length = header.length + service_name_length + text_length + section_length;
+
+		ByteBuf buffer = context.getHeapByteBufferPool().allocate(all_length);
+
+		if (buffer == null) {
+			throw new IOException("not enough memory,length:" + all_length);
+		}
+
+		buffer.put(header);
+		buffer.put(future_name_array);
+
+		if (text_length > 0) {
+			buffer.put(textOPS.array(), 0, text_length);
+		}
+
+		if (useCompressed) {
+
+			byte[] raw_length = new byte[MathUtil.varintSize(binary_length)];
+
+			MathUtil.int2Varint(raw_length, binary_length, 0);
+
+			buffer.put(raw_length);
+			buffer.put(compressed, 0, compressed_length);
+
+		} else {
+			buffer.put(binary, 0, binary_length);
+		}
+
+		buffer.flip();
+
+		return new IOWriteFutureImpl(f, buffer);
+	}
+
+	/**
+	 * 协商成功后该连接使用的编码器
+	 */
+	public BaseProtocolEncoder newHeaderV2Encoder() {
+		return new BaseProtocolEncoder(true, true, compressor);
+	}
+
+	public BaseCompressor getCompressor() {
+		return compressor;
+	}
+
+	public boolean isNegotiateV2() {
+		return negotiateV2;
+	}
+
+	public boolean isHeaderV2() {
+		return headerV2;
+	}
+
+	// binary不经过报文的缓冲区，见BaseStreamWriteFuture
+	private IOWriteFuture encodeStream(BaseContext context, BaseReadFuture f, byte[] future_name_array,
+			ReadableByteChannel binaryChannel, int binary_length) throws IOException {
+
+		if (context.isEnableSSL()) {
+			CloseUtil.close(binaryChannel);
+			throw new IOException("binary stream can not be wrapped by ssl");
+		}
+
+		BufferedOutputStream textOPS = f.getWriteBuffer();
+
+		int service_name_length = future_name_array.length;
+		int text_length = textOPS.size();
+
+		byte[] header = header(f, service_name_length, text_length, binary_length);
+
+		ByteBuf buffer = context.getHeapByteBufferPool().allocate(header.length + service_name_length + text_length);
+
+		buffer.put(header);
+		buffer.put(future_name_array);
+
+		if (text_length > 0) {
+			buffer.put(textOPS.array(), 0, text_length);
+		}
+
+		buffer.flip();
+
+		if (binaryChannel instanceof FileChannel) {
+
+			FileChannel fileChannel = (FileChannel) binaryChannel;
+
+			// 文件通过transferTo写出
+			return new FileRegionWriteFuture(f, buffer, fileChannel, fileChannel.position(), binary_length);
+		}
+
+		int chunk_length = Math.max(1, Math.min(binary_length, BaseProtocolDecoder.STREAM_CHUNK_SIZE));
+
+		ByteBuf chunk = context.getHeapByteBufferPool().allocate(chunk_length);
+
+		if (chunk == null) {
+			ReleaseUtil.release(buffer);
+			CloseUtil.close(binaryChannel);
+			throw new IOException("not enough memory,length:" + chunk_length);
+		}
+
+		return new BaseStreamWriteFuture(f, buffer, chunk, binaryChannel, binary_length);
+	}
+
 }
@@ -1,17 +1,76 @@
 package com.generallycloud.nio.codec.base;
 
+import com.generallycloud.nio.codec.base.future.BinaryStreamAcceptor;
 import com.generallycloud.nio.protocol.ProtocolDecoder;
 import com.generallycloud.nio.protocol.ProtocolEncoder;
 import com.generallycloud.nio.protocol.ProtocolFactory;
 
 public class BaseProtocolFactory implements ProtocolFactory{
 
+	private int					binaryLimit	= BaseProtocolDecoder.DEFAULT_BINARY_LIMIT;
+
+	private int					textLimit		= BaseProtocolDecoder.DEFAULT_TEXT_LIMIT;
+
+	private BinaryStreamAcceptor		streamAcceptor;
+
+	private boolean				headerV2		= true;
+
+	private BaseCompressor			compressor;
+
+	public BaseProtocolFactory() {
+	}
+
+	/**
+	 * binary超过binaryLimit的报文以流的方式接收，见{@link BinaryStreamAcceptor}
+	 */
+	public BaseProtocolFactory(int binaryLimit, BinaryStreamAcceptor streamAcceptor) {
+		this.binaryLimit = binaryLimit;
+		this.streamAcceptor = streamAcceptor;
+	}
+
 	public ProtocolDecoder getProtocolDecoder() {
-		return new BaseProtocolDecoder();
+		BaseProtocolDecoder decoder = new BaseProtocolDecoder(binaryLimit, streamAcceptor);
+
+		decoder.setTextLimit(textLimit);
+
+		return decoder;
+	}
+
+	public int getTextLimit() {
+		return textLimit;
+	}
+
+	/**
+	 * 收到的text的最大长度，默认为BaseProtocolDecoder.DEFAULT_TEXT_LIMIT
+	 */
+	public void setTextLimit(int textLimit) {
+		this.textLimit = textLimit;
 	}
 
 	public ProtocolEncoder getProtocolEncoder() {
-		return new BaseProtocolEncoder();
+		return new BaseProtocolEncoder(headerV2, false, compressor);
+	}
+
+	public BaseCompressor getCompressor() {
+		return compressor;
+	}
+
+	/**
+	 * @param compressor 不为null时，协商使用V2报文头的连接压缩超过minSize的binary，默认不压缩
+	 */
+	public void setCompressor(BaseCompressor compressor) {
+		this.compressor = compressor;
+	}
+
+	public boolean isHeaderV2() {
+		return headerV2;
+	}
+
+	/**
+	 * @param headerV2 是否与对方协商使用V2报文头，默认为true，对方不支持时仍使用V1
+	 */
+	public void setHeaderV2(boolean headerV2) {
+		this.headerV2 = headerV2;
 	}
 
 	public String getProtocolID() {
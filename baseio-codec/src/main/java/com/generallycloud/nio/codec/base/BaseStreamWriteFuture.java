@@ -0,0 +1,137 @@
+package com.generallycloud.nio.codec.base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import javax.net.ssl.SSLEngine;
+
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.ReleaseUtil;
+import com.generallycloud.nio.common.ssl.SslHandler;
+import com.generallycloud.nio.component.SocketChannel;
+import com.generallycloud.nio.protocol.IOWriteFuture;
+import com.generallycloud.nio.protocol.IOWriteFutureImpl;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 先写出buf中的报文头与text，binary从source中按chunk读取后写出，
+ * 同一时间只占用一个chunk的内存。source在flusher线程中读取，没有读到数据时让出线程，写完后关闭。
+ * 不支持SSL，不支持duplicate(广播)
+ */
+public class BaseStreamWriteFuture extends IOWriteFutureImpl {
+
+	private ByteBuf				chunk;
+	private int					chunkSize;
+	private int					remaining;
+	private ReadableByteChannel		source;
+
+	public BaseStreamWriteFuture(ReadFuture readFuture, ByteBuf buf, ByteBuf chunk, ReadableByteChannel source,
+			int length) {
+		super(readFuture, buf);
+		this.chunk = chunk;
+		this.chunkSize = chunk.limit();
+		this.source = source;
+		this.remaining = length;
+		// 第一次写出时再读取
+		this.chunk.position(chunk.limit());
+	}
+
+	public boolean write(SocketChannel channel) throws IOException {
+
+		ByteBuf buffer = this.buf;
+
+		if (buffer.hasRemaining()) {
+
+			buffer.write(channel);
+
+			if (buffer.hasRemaining()) {
+				return false;
+			}
+		}
+
+		ByteBuf chunk = this.chunk;
+
+		for (;;) {
+
+			if (!chunk.hasRemaining()) {
+
+				if (remaining == 0) {
+					return true;
+				}
+
+				if (fill(chunk) == 0) {
+					// source暂时没有数据，让出flusher线程，下次写出时再读取
+					return false;
+				}
+			}
+
+			chunk.write(channel);
+
+			if (chunk.hasRemaining()) {
+				return false;
+			}
+		}
+	}
+
+	private int fill(ByteBuf chunk) throws IOException {
+
+		int length = Math.min(chunkSize, remaining);
+
+		chunk.limit(length);
+
+		ByteBuffer memory = chunk.getMemory();
+
+		int read = 0;
+
+		for (; memory.hasRemaining();) {
+
+			int n = source.read(memory);
+
+			if (n == -1) {
+				throw new IOException("source truncated,remaining:" + (remaining - read));
+			}
+
+			if (n == 0) {
+				// 非阻塞的source，先写出已经读到的部分
+				break;
+			}
+
+			read += n;
+		}
+
+		remaining -= read;
+
+		// 重置memory的position
+		chunk.limit(read);
+
+		return read;
+	}
+
+	public void release() {
+
+		super.release();
+
+		ReleaseUtil.release(chunk);
+
+		CloseUtil.close(source);
+	}
+
+	public IOWriteFuture duplicate() {
+		throw new UnsupportedOperationException("binary stream can not be duplicated");
+	}
+
+	// source只能读取一次，不能广播
+	public boolean isDuplicable() {
+		return false;
+	}
+
+	public void wrapSSL(SSLEngine engine, SslHandler handler) throws IOException {
+		throw new IOException("binary stream can not be wrapped by ssl");
+	}
+
+	public String toString() {
+		return "[binary stream,remaining=" + remaining + "]";
+	}
+}
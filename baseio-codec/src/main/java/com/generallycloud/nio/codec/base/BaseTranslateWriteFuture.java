@@ -0,0 +1,92 @@
+package com.generallycloud.nio.codec.base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.net.ssl.SSLEngine;
+
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.common.ReleaseUtil;
+import com.generallycloud.nio.common.ssl.SslHandler;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.SocketChannel;
+import com.generallycloud.nio.protocol.IOWriteFuture;
+import com.generallycloud.nio.protocol.IOWriteFutureImpl;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 转发收到的报文，先写出新的报文头，报文体直接从接收缓冲区写出，不复制。
+ * body持有接收缓冲区的一个引用，写出完成后release
+ */
+public class BaseTranslateWriteFuture extends IOWriteFutureImpl {
+
+	private BaseContext	context;
+	private byte[]		header;
+	private ByteBuffer	headerBuffer;
+	private ByteBuf	body;
+
+	public BaseTranslateWriteFuture(BaseContext context, ReadFuture readFuture, byte[] header, ByteBuf body) {
+		super(readFuture, null);
+		this.context = context;
+		this.header = header;
+		this.headerBuffer = ByteBuffer.wrap(header);
+		this.body = body;
+	}
+
+	public boolean write(SocketChannel channel) throws IOException {
+
+		if (buf != null) {
+			return super.write(channel);
+		}
+
+		if (headerBuffer.hasRemaining()) {
+
+			channel.write(headerBuffer);
+
+			if (headerBuffer.hasRemaining()) {
+				channel.downNetworkState();
+				return false;
+			}
+		}
+
+		body.write(channel);
+
+		return !body.hasRemaining();
+	}
+
+	public void wrapSSL(SSLEngine engine, SslHandler handler) throws IOException {
+
+		int capacity = header.length + body.remaining();
+
+		ByteBuf buf = context.getHeapByteBufferPool().allocate(capacity);
+
+		if (buf == null) {
+			throw new IOException("not enough memory,length:" + capacity);
+		}
+
+		buf.put(header);
+
+		buf.put(body.array(), body.offset() + body.position(), body.remaining());
+
+		buf.flip();
+
+		this.buf = buf;
+
+		super.wrapSSL(engine, handler);
+	}
+
+	public void release() {
+
+		ReleaseUtil.release(body);
+
+		super.release();
+	}
+
+	public IOWriteFuture duplicate() {
+		return new BaseTranslateWriteFuture(context, readFuture, header, body.duplicate());
+	}
+
+	public String toString() {
+		return "[translate,header=" + header.length + ",body=" + body.remaining() + "]";
+	}
+}
@@ -1,6 +1,9 @@
 package com.generallycloud.nio.codec.base.future;
 
+import java.nio.channels.ReadableByteChannel;
+
 import com.generallycloud.nio.balance.HashedBalanceReadFuture;
+import com.generallycloud.nio.buffer.ByteBuf;
 import com.generallycloud.nio.component.BufferedOutputStream;
 import com.generallycloud.nio.component.Parameters;
 import com.generallycloud.nio.protocol.NamedReadFuture;
@@ -17,7 +20,26 @@ public interface BaseReadFuture extends HashedBalanceReadFuture,NamedReadFuture
 
 	public abstract boolean hasBinary();
 
+	/**
+	 * binary在第一次调用时从接收缓冲区复制，没有binary时返回null。
+	 * future被release之后只有之前调用过keepBinary才可以获取，否则抛出IllegalStateException
+	 */
 	public abstract byte[] getBinary();
+
+	/**
+	 * binary的视图，不复制，使用完毕后需要release
+	 */
+	public abstract ByteBuf getBinaryBuf();
+
+	/**
+	 * future交给其它线程，在业务处理结束(release)之后仍需要getBinary时调用，release时保留binary的副本
+	 */
+	public abstract void keepBinary();
+
+	/**
+	 * binary超过binaryLimit，由{@link BinaryConsumer}接收，getBinary返回null
+	 */
+	public abstract boolean isBinaryStream();
 	
 	public abstract Integer getFutureID();
 	
@@ -28,4 +50,16 @@ public interface BaseReadFuture extends HashedBalanceReadFuture,NamedReadFuture
 	public abstract void writeBinary(byte[] bytes);
 
 	public abstract void writeBinary(byte[] bytes, int offset, int length);
+
+	/**
+	 * binary由编码器从channel中按chunk读取后写出，不在内存中聚合，可以超过对方的binaryLimit，
+	 * 写出完成后关闭channel。设置后忽略其它writeBinary写入的内容
+	 * 
+	 * @param length 从channel中读取的长度
+	 */
+	public abstract void writeBinary(ReadableByteChannel channel, int length);
+
+	public abstract ReadableByteChannel getWriteBinaryChannel();
+
+	public abstract int getWriteBinaryChannelLength();
 }
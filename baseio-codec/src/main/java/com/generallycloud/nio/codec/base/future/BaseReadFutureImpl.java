@@ -2,12 +2,16 @@ package com.generallycloud.nio.codec.base.future;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 
 import com.generallycloud.nio.balance.AbstractBalanceReadFuture;
 import com.generallycloud.nio.balance.FrontContext;
 import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.codec.base.BaseCompressor;
 import com.generallycloud.nio.codec.base.BaseProtocolDecoder;
+import com.generallycloud.nio.codec.base.BaseProtocolEncoder;
+import com.generallycloud.nio.codec.base.BaseTranslateWriteFuture;
 import com.generallycloud.nio.common.MathUtil;
 import com.generallycloud.nio.common.ReleaseUtil;
 import com.generallycloud.nio.common.StringUtil;
@@ -27,18 +31,32 @@ public class BaseReadFutureImpl extends AbstractBalanceReadFuture implements Bas
 	private byte[]			binary;
 	private int				binaryLength;
 	private boolean			body_complete;
+	private boolean			binary_kept;
+	private boolean			binary_consumed;
+	private boolean			released;
 	private ByteBuf			buf;
 	private Integer			futureID;
 	private String				futureName;
 	private int				hashCode;
 	private boolean			header_complete;
+	private boolean			header_v2;
+	private int				header_v2_flags;
+	private int				header_v2_stage;
+	private int				varint_value;
+	private int				varint_shift;
 	private Parameters			parameters;
 	private int				service_name_length;
 	private String				text;
 	private int				textLength;
 	private boolean			translated;
 	private int 				binaryLimit;
+	private int				textLimit;
+	private boolean			binary_stream;
+	private boolean			binary_compressed;
+	private BinaryStreamAcceptor	streamAcceptor;
 	private BufferedOutputStream	writeBinaryBuffer;
+	private ReadableByteChannel	writeBinaryChannel;
+	private int				writeBinaryChannelLength;
 
 	// for ping & pong
 	public BaseReadFutureImpl(BaseContext context) {
@@ -56,9 +74,29 @@ public class BaseReadFutureImpl extends AbstractBalanceReadFuture implements Bas
 	}
 	
 	public BaseReadFutureImpl(IOSession session, ByteBuf buf,int binaryLimit) throws IOException {
+		this(session, buf, binaryLimit, null);
+	}
+
+	/**
+	 * @param buf 用于读取V1报文头，为null时按V2报文头解析
+	 * @param streamAcceptor 不为null时binary超过binaryLimit的报文以流的方式接收
+	 */
+	public BaseReadFutureImpl(IOSession session, ByteBuf buf, int binaryLimit, BinaryStreamAcceptor streamAcceptor)
+			throws IOException {
+		this(session, buf, BaseProtocolDecoder.DEFAULT_TEXT_LIMIT, binaryLimit, streamAcceptor);
+	}
+
+	/**
+	 * @param textLimit text的最大长度
+	 */
+	public BaseReadFutureImpl(IOSession session, ByteBuf buf, int textLimit, int binaryLimit,
+			BinaryStreamAcceptor streamAcceptor) throws IOException {
 		super(session.getContext());
 		this.buf = buf;
+		this.header_v2 = buf == null;
+		this.textLimit = textLimit;
 		this.binaryLimit = binaryLimit;
+		this.streamAcceptor = streamAcceptor;
 	}
 
 	public BaseReadFutureImpl(BaseContext context,String futureName) {
@@ -88,19 +126,22 @@ public class BaseReadFutureImpl extends AbstractBalanceReadFuture implements Bas
 
 		memory.limit(memory.position() + textLength);
 
-		text = StringUtil.decode(charset, memory);
+		text = decodeText(charset, memory);
 
 		memory.position(src_pos);
 
 		memory.limit(src_limit);
+	}
 
-		this.gainBinary(buf, offset);
+	/**
+	 * @param memory position至limit为text，返回前需要移动position至limit
+	 */
+	protected String decodeText(Charset charset, ByteBuffer memory) {
+		return StringUtil.decode(charset, memory);
 	}
 
 	private void doHeaderComplete(Session session,ByteBuf buf) throws IOException {
 
-		header_complete = true;
-
 		byte[] header_array = buf.array();
 
 		int offset = buf.offset();
@@ -119,36 +160,72 @@ public class BaseReadFutureImpl extends AbstractBalanceReadFuture implements Bas
 		
 		this.hashCode = gainHashCode(header_array, offset);
 		
+		doLengthComplete();
+	}
+
+	private void doLengthComplete() throws IOException {
+		
+		header_complete = true;
+		
+		if (textLength < 0 || binaryLength < 0) {
+			throw new IOException("illegal length,text=" + textLength + ",binary=" + binaryLength);
+		}
+
+		if (textLength > textLimit) {
+			throw new IOException("max text length " + textLimit + ",length=" + textLength);
+		}
+		
+		// 各个长度来自对方，相加时可能溢出
+		long all_length = (long) service_name_length + textLength + binaryLength;
+		
 		if (binaryLength > binaryLimit) {
 			
-			throw new IOException("max length "+binaryLimit+",length=" + binaryLength);
+			if (streamAcceptor == null || binary_compressed) {
+				throw new IOException("max length "+binaryLimit+",length=" + binaryLength);
+			}
+			
+			// binary不进入buf，由BaseStreamReadFuture接收
+			binary_stream = true;
+			
+			all_length -= binaryLength;
 		}
-		
-		int all_length = service_name_length + textLength + binaryLength;
 
-		if (buf.capacity() >= all_length) {
+		long max_length = Math.min((long) textLimit + binaryLimit + 255, Integer.MAX_VALUE);
 
-			buf.limit(all_length);
+		if (all_length > max_length) {
+			throw new IOException("max length " + max_length + ",length=" + all_length);
+		}
+
+		ByteBuf buf = this.buf;
+
+		if (buf != null && buf.capacity() >= all_length) {
+
+			buf.limit((int) all_length);
 
 		} else {
 
 			ReleaseUtil.release(buf);
 
-			this.buf = allocate(all_length);
+			this.buf = allocate((int) all_length);
+
+			if (this.buf == null) {
+				throw new IOException("not enough memory,length:" + all_length);
+			}
 		}
 	}
 
-	private void gainBinary(ByteBuf buffer, int offset) {
+	// binary在第一次使用时才从接收缓冲区复制
+	private void gainBinary() {
 
-		if (binaryLength < 1) {
+		if (binary != null || binaryLength < 1 || !body_complete || released || binary_stream) {
 			return;
 		}
 
-		byte[] array = buffer.array();
+		ByteBuf buf = this.buf;
 
 		this.binary = new byte[binaryLength];
 
-		System.arraycopy(array, offset + buffer.limit() - binaryLength, binary, 0, binaryLength);
+		System.arraycopy(buf.array(), buf.offset() + buf.limit() - binaryLength, binary, 0, binaryLength);
 	}
 	
 	private int gainBinaryLength(byte[] header, int offset) {
@@ -176,7 +253,64 @@ public class BaseReadFutureImpl extends AbstractBalanceReadFuture implements Bas
 	}
 
 	public byte[] getBinary() {
-		return binary;
+		synchronized (this) {
+
+			gainBinary();
+
+			// 接收缓冲区已经归还，不能静默返回null
+			if (binary == null && released && binaryLength > 0 && !binary_stream) {
+				throw new IllegalStateException("binary released,call keepBinary before the future is released");
+			}
+
+			return binary;
+		}
+	}
+
+	/**
+	 * 接收缓冲区中binary部分的视图，不复制，position至limit为binary，只读，
+	 * 持有接收缓冲区的一个引用，使用完毕后需要release。
+	 * 需要在业务处理期间(future被release之前)获取
+	 * 
+	 * @return 没有binary时返回null
+	 */
+	public ByteBuf getBinaryBuf() {
+		return duplicateBinaryBuf();
+	}
+
+	public void keepBinary() {
+		synchronized (this) {
+			binary_kept = true;
+		}
+	}
+
+	/**
+	 * 子类已经从接收缓冲区解析出binary的内容，即使keepBinary，release时也不再复制
+	 */
+	protected void consumeBinary() {
+		synchronized (this) {
+			binary_consumed = true;
+		}
+	}
+
+	/**
+	 * 与getBinaryBuf相同，供子类在业务处理期间直接解析binary
+	 * 
+	 * @return 没有binary或已经release时返回null
+	 */
+	protected ByteBuf duplicateBinaryBuf() {
+
+		synchronized (this) {
+
+			if (binaryLength < 1 || !body_complete || binary_stream || released) {
+				return null;
+			}
+
+			ByteBuf view = buf.duplicate();
+
+			view.position(view.limit() - binaryLength);
+
+			return view;
+		}
 	}
 
 	public int getBinaryLength() {
@@ -221,6 +355,10 @@ public class BaseReadFutureImpl extends AbstractBalanceReadFuture implements Bas
 		return binaryLength > 0;
 	}
 
+	public boolean isBinaryStream() {
+		return binary_stream;
+	}
+
 	public boolean isBroadcast() {
 		return futureID.intValue() == 0;
 	}
@@ -229,19 +367,41 @@ public class BaseReadFutureImpl extends AbstractBalanceReadFuture implements Bas
 		return FrontContext.FRONT_RECEIVE_BROADCAST.equals(getFutureName());
 	}
 
+	public String getRouterKey() {
+		return FrontContext.FRONT_ROUTER_KEY.equals(getFutureName()) ? getText() : null;
+	}
+
 	public boolean read(IOSession session,ByteBuffer buffer) throws IOException {
 
+		if (isHeartbeat) {
+			return true;
+		}
+
 		ByteBuf buf = this.buf;
 
 		if (!header_complete) {
 
-			buf.read(buffer);
+			if (header_v2) {
 
-			if (buf.hasRemaining()) {
-				return false;
+				if (!readHeaderV2(buffer)) {
+					return false;
+				}
+
+				doLengthComplete();
+
+			} else {
+
+				buf.read(buffer);
+
+				if (buf.hasRemaining()) {
+					return false;
+				}
+
+				doHeaderComplete(session,buf);
 			}
 
-			doHeaderComplete(session,buf);
+			// 报文较大时重新分配了buf
+			buf = this.buf;
 		}
 
 		if (!body_complete) {
@@ -252,14 +412,235 @@ public class BaseReadFutureImpl extends AbstractBalanceReadFuture implements Bas
 				return false;
 			}
 
+			if (binary_compressed) {
+				buf = doInflate(session, buf);
+			}
+
 			doBodyComplete(session,buf);
+
+			if (binary_stream) {
+				doStreamBegin(session);
+			}
 		}
 
 		return true;
 	}
 
-	public void release() {
+	private static final BaseCompressor	decompressor		= new BaseCompressor();
+
+	// 解压后的binary与name、text一起放入新的buf，之后与未压缩的报文相同
+	private ByteBuf doInflate(Session session, ByteBuf buf) throws IOException {
+
+		byte[] array = buf.array();
+
+		int offset = buf.offset();
+
+		int index = offset + service_name_length + textLength;
+
+		int end = offset + buf.position();
+
+		int raw_length = 0;
+
+		for (int shift = 0;; shift += 7) {
+
+			if (index == end || shift > 28) {
+				throw new IOException("illegal compressed binary length");
+			}
+
+			int b = array[index++];
+
+			raw_length |= (b & 0x7f) << shift;
+
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+
+		if (raw_length < 0 || raw_length > binaryLimit) {
+			throw new IOException("max length " + binaryLimit + ",length=" + raw_length);
+		}
+
+		int prefix_length = service_name_length + textLength;
+
+		ByteBuf inflated = allocate(prefix_length + raw_length);
+
+		if (inflated == null) {
+			throw new IOException("not enough memory,length:" + (prefix_length + raw_length));
+		}
+
+		try {
+
+			inflated.put(array, offset, prefix_length);
+
+			decompressor.decompress(array, index, end - index, inflated.array(), inflated.offset() + prefix_length,
+					raw_length);
+
+			inflated.position(prefix_length + raw_length);
+
+		} catch (RuntimeException e) {
+
+			ReleaseUtil.release(inflated);
+
+			throw new IOException(e.getMessage(), e);
+		}
+
 		ReleaseUtil.release(buf);
+
+		this.buf = inflated;
+
+		this.binaryLength = raw_length;
+
+		this.binary_compressed = false;
+
+		return inflated;
+	}
+
+	private static final int	V2_STAGE_B0		= 0;
+	private static final int	V2_STAGE_NAME		= 1;
+	private static final int	V2_STAGE_FUTURE_ID	= 2;
+	private static final int	V2_STAGE_SESSION_ID	= 3;
+	private static final int	V2_STAGE_HASH		= 4;
+	private static final int	V2_STAGE_TEXT		= 5;
+	private static final int	V2_STAGE_BINARY	= 6;
+	private static final int	V2_STAGE_COMPLETE	= 7;
+
+	// V2报文头可能跨越多次读取，逐字节解析
+	private boolean readHeaderV2(ByteBuffer buffer) throws IOException {
+
+		for (; buffer.hasRemaining();) {
+
+			int b = buffer.get() & 0xff;
+
+			switch (header_v2_stage) {
+			case V2_STAGE_B0:
+				header_v2_flags = b;
+				isBroadcast = (b & 0x20) != 0;
+				futureID = 0;
+				sessionID = 0;
+				header_v2_stage = V2_STAGE_NAME;
+				continue;
+			case V2_STAGE_NAME:
+				service_name_length = b;
+				break;
+			default:
+				varint_value |= (b & 0x7f) << varint_shift;
+
+				if ((b & 0x80) != 0) {
+
+					varint_shift += 7;
+
+					if (varint_shift > 28) {
+						throw new IOException("illegal varint");
+					}
+
+					continue;
+				}
+
+				setHeaderV2Field(header_v2_stage, varint_value);
+
+				varint_value = 0;
+
+				varint_shift = 0;
+			}
+
+			header_v2_stage = nextHeaderV2Stage(header_v2_stage);
+
+			if (header_v2_stage == V2_STAGE_COMPLETE) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void setHeaderV2Field(int stage, int value) {
+
+		switch (stage) {
+		case V2_STAGE_FUTURE_ID:
+			futureID = value;
+			break;
+		case V2_STAGE_SESSION_ID:
+			sessionID = value;
+			break;
+		case V2_STAGE_HASH:
+			hashCode = value;
+			break;
+		case V2_STAGE_TEXT:
+			textLength = value;
+			break;
+		default:
+			binaryLength = value >>> 1;
+			binary_compressed = (value & 1) != 0;
+			break;
+		}
+	}
+
+	// 跳过B0中标记为省略的字段
+	private int nextHeaderV2Stage(int stage) {
+
+		int flags = header_v2_flags;
+
+		for (stage++; stage < V2_STAGE_COMPLETE; stage++) {
+
+			switch (stage) {
+			case V2_STAGE_FUTURE_ID:
+				if ((flags & BaseProtocolDecoder.HEADER_V2_FUTURE_ID) != 0) {
+					return stage;
+				}
+				break;
+			case V2_STAGE_SESSION_ID:
+				if ((flags & BaseProtocolDecoder.HEADER_V2_SESSION_ID) != 0) {
+					return stage;
+				}
+				break;
+			case V2_STAGE_HASH:
+				if ((flags & BaseProtocolDecoder.HEADER_V2_HASH) != 0) {
+					return stage;
+				}
+				break;
+			case V2_STAGE_TEXT:
+				return stage;
+			default:
+				if ((flags & BaseProtocolDecoder.HEADER_V2_BINARY) != 0) {
+					return stage;
+				}
+				break;
+			}
+		}
+
+		return V2_STAGE_COMPLETE;
+	}
+
+	// 之后的binary由decoder从session中取出BaseStreamReadFuture继续读取
+	private void doStreamBegin(IOSession session) throws IOException {
+
+		BinaryConsumer consumer = streamAcceptor.accept(session, this);
+
+		BaseStreamReadFuture future = new BaseStreamReadFuture(session, consumer, binaryLength,
+				BaseProtocolDecoder.STREAM_CHUNK_SIZE);
+
+		session.setAttribute(BaseStreamReadFuture.SESSION_KEY_STREAM, future);
+	}
+
+	/**
+	 * 业务处理完成后由框架调用，直接归还接收缓冲区，只有调用过keepBinary的future才先复制binary
+	 */
+	public void release() {
+
+		synchronized (this) {
+
+			if (released) {
+				return;
+			}
+
+			if (binary_kept && !binary_consumed) {
+				gainBinary();
+			}
+
+			released = true;
+
+			ReleaseUtil.release(buf);
+		}
 	}
 
 	public void setFutureID(Object futureID) {
@@ -276,15 +657,36 @@ public class BaseReadFutureImpl extends AbstractBalanceReadFuture implements Bas
 
 	public IOWriteFuture translate() throws IOException {
 
+		synchronized (this) {
+
+			if (body_complete && !released && !binary_stream) {
+				return translate(buf.duplicate());
+			}
+		}
+
 		if (!translated) {
 			translated = true;
 			this.write(text);
-			this.writeBinary(binary);
+			this.writeBinary(getBinary());
 		}
 
 		return context.getProtocolEncoder().encode(context, this);
 	}
 
+	// 报文体未变化，只需重新生成报文头，报文体直接从接收缓冲区写出
+	private IOWriteFuture translate(ByteBuf body) throws IOException {
+
+		// V2报文中的text可能超过V1报文头所能表示的长度
+		if (textLength > BaseProtocolDecoder.V1_TEXT_LIMIT) {
+			ReleaseUtil.release(body);
+			throw new IOException("text too long for V1 header,length:" + textLength);
+		}
+
+		byte[] header = BaseProtocolEncoder.encodeHeader(this, service_name_length, textLength, binaryLength);
+
+		return new BaseTranslateWriteFuture(context, this, header, body);
+	}
+
 	public void writeBinary(byte b) {
 
 		if (writeBinaryBuffer == null) {
@@ -310,4 +712,17 @@ public class BaseReadFutureImpl extends AbstractBalanceReadFuture implements Bas
 		writeBinaryBuffer.write(bytes, offset, length);
 	}
 
+	public void writeBinary(ReadableByteChannel channel, int length) {
+		this.writeBinaryChannel = channel;
+		this.writeBinaryChannelLength = length;
+	}
+
+	public ReadableByteChannel getWriteBinaryChannel() {
+		return writeBinaryChannel;
+	}
+
+	public int getWriteBinaryChannelLength() {
+		return writeBinaryChannelLength;
+	}
+
 }
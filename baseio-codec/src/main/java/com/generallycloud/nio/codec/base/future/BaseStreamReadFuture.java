@@ -0,0 +1,98 @@
+package com.generallycloud.nio.codec.base.future;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.common.ReleaseUtil;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.protocol.AbstractIOReadFuture;
+
+/**
+ * 流式接收binary，每收满一个chunk交给consumer后重用该chunk，
+ * 读取完成后不交给业务处理(silent)
+ */
+public class BaseStreamReadFuture extends AbstractIOReadFuture {
+
+	// session关闭时暂存的future由框架release
+	public static final String	SESSION_KEY_STREAM	= IOSession.SESSION_KEY_PENDING_READ_FUTURE;
+
+	private ByteBuf			chunk;
+
+	private BinaryConsumer		consumer;
+
+	private int				remain;
+
+	private int				chunkSize;
+
+	private boolean			released;
+
+	BaseStreamReadFuture(IOSession session, BinaryConsumer consumer, int binaryLength, int chunkSize)
+			throws IOException {
+		super(session.getContext());
+		this.consumer = consumer;
+		this.remain = binaryLength;
+		this.isSilent = true;
+		
+		this.chunkSize = Math.min(binaryLength, chunkSize);
+
+		this.chunk = allocate(this.chunkSize);
+
+		if (chunk == null) {
+			throw new IOException("not enough memory,length:" + this.chunkSize);
+		}
+	}
+
+	// session关闭时可能在其它线程中release
+	public synchronized boolean read(IOSession session, ByteBuffer buffer) throws IOException {
+
+		if (released) {
+			throw new IOException("stream released,remain:" + remain);
+		}
+
+		ByteBuf chunk = this.chunk;
+
+		for (; buffer.hasRemaining();) {
+
+			remain -= chunk.read(buffer);
+
+			if (chunk.hasRemaining()) {
+				return false;
+			}
+
+			chunk.flip();
+
+			if (consumer != null) {
+				consumer.consume(session, chunk);
+			}
+
+			if (remain == 0) {
+
+				session.removeAttribute(SESSION_KEY_STREAM);
+
+				if (consumer != null) {
+					consumer.complete(session);
+				}
+
+				return true;
+			}
+
+			// 最后一个chunk只读取剩余的长度
+			chunk.limit(Math.min(chunkSize, remain));
+		}
+
+		return false;
+	}
+
+	public synchronized void release() {
+
+		if (released) {
+			return;
+		}
+
+		released = true;
+
+		ReleaseUtil.release(chunk);
+	}
+
+}
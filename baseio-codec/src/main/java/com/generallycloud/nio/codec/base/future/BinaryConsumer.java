@@ -0,0 +1,24 @@
+package com.generallycloud.nio.codec.base.future;
+
+import java.io.IOException;
+
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.component.Session;
+
+/**
+ * 接收流式传输的binary，在selector线程中按顺序调用。
+ * 每次只有一个chunk大小的缓冲区，consume返回之前不会继续从该连接读取，
+ * 处理较慢时由tcp窗口反压发送方，但会阻塞同一selector上的其它连接
+ */
+public interface BinaryConsumer {
+
+	/**
+	 * @param buf position至limit为本次收到的数据，只在调用期间有效，需要保留时自行复制
+	 */
+	public abstract void consume(Session session, ByteBuf buf) throws IOException;
+
+	/**
+	 * binary已全部收到，连接在传输中途断开时不会调用
+	 */
+	public abstract void complete(Session session) throws IOException;
+}
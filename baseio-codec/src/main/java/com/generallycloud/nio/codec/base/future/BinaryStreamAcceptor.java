@@ -0,0 +1,16 @@
+package com.generallycloud.nio.codec.base.future;
+
+import java.io.IOException;
+
+import com.generallycloud.nio.component.Session;
+
+public interface BinaryStreamAcceptor {
+
+	/**
+	 * binary超过binaryLimit的报文在header与text收到后，先在selector线程中调用该方法，
+	 * 再将future交给业务处理，此时future中没有binary
+	 * 
+	 * @return 接收binary的consumer，为null时丢弃binary
+	 */
+	public abstract BinaryConsumer accept(Session session, BaseReadFuture future) throws IOException;
+}
@@ -3,11 +3,17 @@ package com.generallycloud.nio.codec.http11;
 import java.io.IOException;
 
 import com.generallycloud.nio.TimeoutException;
+import com.generallycloud.nio.codec.http11.future.ClientHttpReadFuture;
 import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
 import com.generallycloud.nio.component.BaseContext;
 import com.generallycloud.nio.component.Session;
 import com.generallycloud.nio.component.concurrent.Waiter;
+import com.generallycloud.nio.connector.ConnectionPool;
 
+/**
+ * 使用一个session时请求串行执行；使用连接池(连接由HttpConnectionFactory创建)时
+ * 每个请求borrow一个连接，可以并发请求
+ */
 public class HttpClient {
 
 	private BaseContext			context;
@@ -16,30 +22,98 @@ public class HttpClient {
 
 	private HttpIOEventHandle	ioEventHandle;
 
+	private ConnectionPool<Session>	pool;
+
 	public HttpClient(Session session) {
 		this.session = session;
 		this.context = session.getContext();
 		this.ioEventHandle = (HttpIOEventHandle) context.getIOEventHandleAdaptor();
 	}
+
+	public HttpClient(ConnectionPool<Session> pool) {
+		this.pool = pool;
+	}
 	
-	public synchronized HttpReadFuture request(HttpReadFuture future,long timeout) throws IOException {
-		
+	public HttpReadFuture request(HttpReadFuture future,long timeout) throws IOException {
+
+		if (pool != null) {
+			return request(pool.borrow(), future, timeout);
+		}
+
+		synchronized (this) {
+			return request(session, ioEventHandle, future, timeout);
+		}
+	}
+
+	public HttpReadFuture request(HttpReadFuture future) throws IOException {
+
+		return request(future, 3000);
+	}
+
+	/**
+	 * @param method GET,POST...
+	 */
+	public HttpReadFuture request(String url, String method, long timeout) throws IOException {
+
+		if (pool == null) {
+			return request(new ClientHttpReadFuture(context, url, method), timeout);
+		}
+
+		Session session = pool.borrow();
+
+		HttpReadFuture future;
+
+		try {
+			future = new ClientHttpReadFuture(session.getContext(), url, method);
+		} catch (RuntimeException e) {
+			pool.release(session);
+			throw e;
+		}
+
+		return request(session, future, timeout);
+	}
+
+	// session已从连接池中borrow，无论结果如何都要归还
+	private HttpReadFuture request(Session session, HttpReadFuture future, long timeout) throws IOException {
+
+		boolean success = false;
+
+		try {
+
+			HttpIOEventHandle ioEventHandle = (HttpIOEventHandle) session.getContext().getIOEventHandleAdaptor();
+
+			HttpReadFuture res = request(session, ioEventHandle, future, timeout);
+
+			success = true;
+
+			return res;
+
+		} finally {
+
+			if (success) {
+				pool.release(session);
+			} else {
+				// 超时的响应可能之后才到达，连接不再使用
+				pool.invalidate(session);
+			}
+		}
+	}
+
+	private HttpReadFuture request(Session session, HttpIOEventHandle ioEventHandle, HttpReadFuture future,
+			long timeout) throws IOException {
+
 		Waiter<HttpReadFuture> waiter = new Waiter<HttpReadFuture>();
 
-		ioEventHandle.setWaiter(waiter);
+		ioEventHandle.setWaiter(session, waiter);
 
 		session.flush(future);
 
 		if (waiter.await(timeout)) {
+			ioEventHandle.setWaiter(session, null);
 			throw new TimeoutException("timeout");
 		}
 
 		return waiter.getPayload();
 	}
 
-	public synchronized HttpReadFuture request(HttpReadFuture future) throws IOException {
-
-		return request(future, 3000);
-	}
-
 }
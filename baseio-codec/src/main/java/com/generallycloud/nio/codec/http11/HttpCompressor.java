@@ -0,0 +1,288 @@
+package com.generallycloud.nio.codec.http11;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
+import com.generallycloud.nio.codec.http11.future.HttpStatus;
+import com.generallycloud.nio.common.StringUtil;
+
+/**
+ * HTTP响应压缩(gzip/deflate)。Deflater、CRC32以及输出缓冲区按线程复用，
+ * 编码在event loop中进行，即每个event loop持有一份，不会为每个响应创建Deflater。
+ * 线程中保留的输出缓冲区不超过MAX_LOCAL_OUTPUT，压缩后没有变小的响应按原数据发送。
+ */
+public class HttpCompressor {
+
+	public static final String			ENCODING_GZIP		= "gzip";
+
+	public static final String			ENCODING_DEFLATE	= "deflate";
+
+	// 更大的响应使用临时的输出缓冲区，不在线程中保留
+	private static final int			MAX_LOCAL_OUTPUT	= 1024 * 256;
+
+	private static final byte[]			GZIP_HEADER		= new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0,
+			0, 0, 0, 0, 0						};
+
+	private int						minSize			= 1024;
+
+	private int						level			= Deflater.DEFAULT_COMPRESSION;
+
+	private Set<String>					contentTypes		= new HashSet<String>();
+
+	private ThreadLocal<CompressorLocal>	locals			= new ThreadLocal<CompressorLocal>();
+
+	public HttpCompressor() {
+		contentTypes.add("text/plain");
+		contentTypes.add("text/html");
+		contentTypes.add("text/css");
+		contentTypes.add("text/xml");
+		contentTypes.add("application/json");
+		contentTypes.add("application/javascript");
+		contentTypes.add("application/x-javascript");
+		contentTypes.add("application/xml");
+		contentTypes.add("image/svg+xml");
+	}
+
+	/**
+	 * 根据Accept-Encoding选择编码，优先gzip，不支持时返回null
+	 */
+	public static String selectEncoding(String acceptEncoding) {
+
+		if (StringUtil.isNullOrBlank(acceptEncoding)) {
+			return null;
+		}
+
+		boolean deflate = false;
+
+		String[] array = acceptEncoding.split(",");
+
+		for (String s : array) {
+
+			String coding = s.trim();
+
+			int index = coding.indexOf(';');
+
+			if (index != -1) {
+
+				String q = coding.substring(index + 1).replace(" ", "");
+
+				coding = coding.substring(0, index).trim();
+
+				if (isZeroQuality(q)) {
+					continue;
+				}
+			}
+
+			if (ENCODING_GZIP.equalsIgnoreCase(coding) || "*".equals(coding)) {
+				return ENCODING_GZIP;
+			}
+
+			if (ENCODING_DEFLATE.equalsIgnoreCase(coding)) {
+				deflate = true;
+			}
+		}
+
+		return deflate ? ENCODING_DEFLATE : null;
+	}
+
+	private static boolean isZeroQuality(String q) {
+
+		if (!q.startsWith("q=")) {
+			return false;
+		}
+
+		try {
+			return Float.parseFloat(q.substring(2)) == 0;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return 响应需要使用的Content-Encoding，不压缩时返回null
+	 */
+	public String getContentEncoding(HttpReadFuture future, int size) {
+
+		if (future.getStatus() == HttpStatus.C206) {
+			return null;
+		}
+
+		Map<String, String> headers = future.getResponseHeaders();
+
+		if (headers.containsKey("Content-Encoding")) {
+			return null;
+		}
+
+		if (!isCompressible(headers.get("Content-Type"), size)) {
+			return null;
+		}
+
+		return selectEncoding(future.getRequestHeader("Accept-Encoding"));
+	}
+
+	public boolean isCompressible(String contentType, int size) {
+
+		if (size < minSize || contentType == null) {
+			return false;
+		}
+
+		int index = contentType.indexOf(';');
+
+		if (index != -1) {
+			contentType = contentType.substring(0, index);
+		}
+
+		return contentTypes.contains(contentType.trim().toLowerCase());
+	}
+
+	/**
+	 * 压缩结果写入当前线程的缓冲区，返回的数组在本线程下一次调用前有效，
+	 * 有效长度通过{@link #getCompressedLength()}获取
+	 * 
+	 * @return 压缩后不比原数据小时返回null，此时应按原数据发送
+	 */
+	public byte[] compress(String encoding, byte[] array, int offset, int length) {
+
+		CompressorLocal local = getLocal();
+
+		boolean gzip = ENCODING_GZIP.equals(encoding);
+
+		Deflater deflater = gzip ? local.gzipDeflater : local.deflater;
+
+		deflater.reset();
+
+		deflater.setInput(array, offset, length);
+
+		deflater.finish();
+
+		int count = 0;
+
+		// 输出达到原数据的长度时已经没有压缩的必要
+		byte[] output = local.getOutput(length);
+
+		if (gzip) {
+
+			if (length <= GZIP_HEADER.length + 8) {
+				return null;
+			}
+
+			System.arraycopy(GZIP_HEADER, 0, output, 0, GZIP_HEADER.length);
+			count = GZIP_HEADER.length;
+		}
+
+		for (; !deflater.finished();) {
+
+			if (count == length) {
+				return null;
+			}
+
+			count += deflater.deflate(output, count, length - count);
+		}
+
+		if (gzip) {
+
+			if (count + 8 >= length) {
+				return null;
+			}
+
+			CRC32 crc = local.crc;
+
+			crc.reset();
+
+			crc.update(array, offset, length);
+
+			count = writeIntLE(output, count, (int) crc.getValue());
+
+			count = writeIntLE(output, count, length);
+		}
+
+		local.length = count;
+
+		return output;
+	}
+
+	public int getCompressedLength() {
+		return getLocal().length;
+	}
+
+	private int writeIntLE(byte[] array, int offset, int value) {
+		array[offset++] = (byte) value;
+		array[offset++] = (byte) (value >> 8);
+		array[offset++] = (byte) (value >> 16);
+		array[offset++] = (byte) (value >> 24);
+		return offset;
+	}
+
+	private CompressorLocal getLocal() {
+
+		CompressorLocal local = locals.get();
+
+		if (local == null) {
+			local = new CompressorLocal(level);
+			locals.set(local);
+		}
+
+		return local;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	public Set<String> getContentTypes() {
+		return contentTypes;
+	}
+
+	public void setContentTypes(Set<String> contentTypes) {
+		this.contentTypes = contentTypes;
+	}
+
+	class CompressorLocal {
+
+		Deflater	gzipDeflater;
+
+		Deflater	deflater;
+
+		CRC32	crc		= new CRC32();
+
+		byte[]	output	= new byte[1024 * 8];
+
+		int		length;
+
+		CompressorLocal(int level) {
+			this.gzipDeflater = new Deflater(level, true);
+			this.deflater = new Deflater(level);
+		}
+
+		byte[] getOutput(int capacity) {
+
+			if (output.length >= capacity) {
+				return output;
+			}
+
+			if (capacity > MAX_LOCAL_OUTPUT) {
+				return new byte[capacity];
+			}
+
+			output = new byte[Math.min(MAX_LOCAL_OUTPUT, Math.max(capacity, output.length << 1))];
+
+			return output;
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.generallycloud.nio.codec.http11;
+
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.ClientSelectorGroup;
+import com.generallycloud.nio.connector.SocketChannelConnectionFactory;
+
+/**
+ * HttpClient连接池使用，所有连接共用一个context以及HttpIOEventHandle
+ */
+public class HttpConnectionFactory extends SocketChannelConnectionFactory {
+
+	public HttpConnectionFactory(ServerConfiguration configuration) {
+		super(configuration);
+	}
+
+	public HttpConnectionFactory(ServerConfiguration configuration, ClientSelectorGroup selectorGroup) {
+		super(configuration, selectorGroup);
+	}
+
+	protected void initializeContext(BaseContext context) {
+
+		context.setIOEventHandleAdaptor(new HttpIOEventHandle());
+
+		context.setProtocolFactory(new ClientHTTPProtocolFactory());
+	}
+}
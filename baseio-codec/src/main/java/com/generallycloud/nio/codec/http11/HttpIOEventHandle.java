@@ -1,30 +1,43 @@
 package com.generallycloud.nio.codec.http11;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
 import com.generallycloud.nio.component.IOEventHandleAdaptor;
 import com.generallycloud.nio.component.Session;
 import com.generallycloud.nio.component.concurrent.Waiter;
 import com.generallycloud.nio.protocol.ReadFuture;
 
+/**
+ * 每个session同时只有一个请求在等待响应，连接池中的session共用一个HttpIOEventHandle
+ */
 public class HttpIOEventHandle extends IOEventHandleAdaptor{
 	
-	private Waiter<HttpReadFuture> waiter;
+	private Map<Session, Waiter<HttpReadFuture>> waiters = new ConcurrentHashMap<Session, Waiter<HttpReadFuture>>();
 
 	public void accept(Session session, ReadFuture future) throws Exception {
 		
 		HttpReadFuture f = (HttpReadFuture) future;
 		
-		Waiter<HttpReadFuture> waiter = this.waiter;
+		Waiter<HttpReadFuture> waiter = waiters.remove(session);
 		
 		if (waiter != null) {
 			
-			this.waiter = null;
-			
 			waiter.setPayload(f);
 		}
 	}
 
-	public void setWaiter(Waiter<HttpReadFuture> waiter) {
-		this.waiter = waiter;
+	/**
+	 * @param waiter 为null时移除该session上的waiter(比如请求超时)
+	 */
+	public void setWaiter(Session session, Waiter<HttpReadFuture> waiter) {
+		
+		if (waiter == null) {
+			waiters.remove(session);
+			return;
+		}
+		
+		waiters.put(session, waiter);
 	}
 }
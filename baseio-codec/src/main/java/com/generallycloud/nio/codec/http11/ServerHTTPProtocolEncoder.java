@@ -1,6 +1,9 @@
 package com.generallycloud.nio.codec.http11;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -10,20 +13,62 @@ import com.generallycloud.nio.buffer.ByteBuf;
 import com.generallycloud.nio.codec.http11.future.Cookie;
 import com.generallycloud.nio.codec.http11.future.ServerHttpReadFuture;
 import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.ReleaseUtil;
 import com.generallycloud.nio.component.BufferedOutputStream;
+import com.generallycloud.nio.protocol.FileRegionWriteFuture;
 import com.generallycloud.nio.protocol.IOReadFuture;
 import com.generallycloud.nio.protocol.IOWriteFuture;
 import com.generallycloud.nio.protocol.IOWriteFutureImpl;
 import com.generallycloud.nio.protocol.ProtocolEncoder;
+import com.generallycloud.nio.protocol.SslFileRegionWriteFuture;
 
 public class ServerHTTPProtocolEncoder implements ProtocolEncoder {
 
+	private HttpCompressor	compressor;
+
+	public ServerHTTPProtocolEncoder() {
+	}
+
+	public ServerHTTPProtocolEncoder(HttpCompressor compressor) {
+		this.compressor = compressor;
+	}
+
 	public IOWriteFuture encode(BaseContext context, IOReadFuture readFuture) throws IOException {
 		
 		ServerHttpReadFuture future = (ServerHttpReadFuture) readFuture;
 
 		BufferedOutputStream o = readFuture.getWriteBuffer();
 
+		File file = future.getResponseFile();
+
+		byte[] body = o.array();
+
+		int size = o.size();
+
+		if (file == null && compressor != null) {
+
+			String encoding = compressor.getContentEncoding(future, size);
+
+			if (encoding != null) {
+
+				byte[] compressed = compressor.compress(encoding, body, 0, size);
+
+				if (compressed != null) {
+
+					body = compressed;
+
+					size = compressor.getCompressedLength();
+
+					future.setResponseHeader("Content-Encoding", encoding);
+				}
+
+				future.setResponseHeader("Vary", "Accept-Encoding");
+			}
+		}
+
+		long contentLength = file == null ? size : future.getResponseFileLength();
+
 		StringBuilder h = new StringBuilder();
 
 		h.append("HTTP/1.1 ");
@@ -31,7 +76,7 @@ public class ServerHTTPProtocolEncoder implements ProtocolEncoder {
 		h.append("\r\n");
 		h.append("Server: baseio/0.0.1\r\n");
 		h.append("Content-Length:");
-		h.append(o.size());
+		h.append(contentLength);
 		h.append("\r\n");
 		
 		Map<String,String> headers = future.getResponseHeaders();
@@ -58,14 +103,18 @@ public class ServerHTTPProtocolEncoder implements ProtocolEncoder {
 		
 		h.append("\r\n");
 		
-		int size = o.size();
+		byte[] header = h.toString().getBytes(context.getEncoding());
 		
-		ByteBuf buffer = context.getHeapByteBufferPool().allocate(h.length() + size);
+		if (file != null) {
+			return encodeFile(context, future, header);
+		}
+		
+		ByteBuf buffer = context.getHeapByteBufferPool().allocate(header.length + size);
 		
-		buffer.put(h.toString().getBytes(context.getEncoding()));
+		buffer.put(header);
 		
 		if (size != 0) {
-			buffer.put(o.toByteArray(), 0, o.size());
+			buffer.put(body, 0, size);
 		}
 		
 		buffer.flip();
@@ -75,4 +124,44 @@ public class ServerHTTPProtocolEncoder implements ProtocolEncoder {
 		return textWriteFuture;
 	}
 
+	private IOWriteFuture encodeFile(BaseContext context, ServerHttpReadFuture future, byte[] header)
+			throws IOException {
+
+		long position = future.getResponseFilePosition();
+
+		long length = future.getResponseFileLength();
+
+		FileChannel fileChannel = new RandomAccessFile(future.getResponseFile(), "r").getChannel();
+
+		ByteBuf buffer = null;
+
+		try {
+
+			buffer = context.getHeapByteBufferPool().allocate(header.length);
+
+			if (buffer == null) {
+				throw new IOException("not enough memory for header,length:" + header.length);
+			}
+
+			buffer.put(header);
+
+			buffer.flip();
+
+			if (context.isEnableSSL()) {
+				// SSL需要在用户态加密，无法使用transferTo，分段读取加密后写出
+				return new SslFileRegionWriteFuture(context, future, buffer, fileChannel, position, length);
+			}
+
+			return new FileRegionWriteFuture(future, buffer, fileChannel, position, length);
+
+		} catch (IOException e) {
+
+			ReleaseUtil.release(buffer);
+
+			CloseUtil.close(fileChannel);
+
+			throw e;
+		}
+	}
+
 }
@@ -7,6 +7,18 @@ import com.generallycloud.nio.protocol.ProtocolFactory;
 
 public class ServerHTTPProtocolFactory implements ProtocolFactory{
 
+	private HttpCompressor	compressor;
+
+	public ServerHTTPProtocolFactory() {
+	}
+
+	/**
+	 * @param compressor 响应压缩，null表示不压缩
+	 */
+	public ServerHTTPProtocolFactory(HttpCompressor compressor) {
+		this.compressor = compressor;
+	}
+
 	public ProtocolDecoder getProtocolDecoder() {
 		SSLUtil.init();
 		
@@ -14,7 +26,7 @@ public class ServerHTTPProtocolFactory implements ProtocolFactory{
 	}
 
 	public ProtocolEncoder getProtocolEncoder() {
-		return new ServerHTTPProtocolEncoder();
+		return new ServerHTTPProtocolEncoder(compressor);
 	}
 	
 	public String getProtocolID() {
@@ -0,0 +1,316 @@
+package com.generallycloud.nio.codec.http11;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.generallycloud.nio.common.StringUtil;
+
+/**
+ * permessage-deflate扩展(RFC 7692)的配置及协商。
+ * <pre>
+ * 1.java.util.zip无法指定LZ77窗口大小，本端发送始终使用15位窗口，
+ *   对端要求server_max_window_bits小于15的offer将被拒绝；
+ *   clientMaxWindowBits用于限制对端(客户端)的窗口，本端解压不受窗口大小影响
+ * 2.不保留上下文(no_context_takeover)的方向上每条消息独立压缩，此时Deflater/Inflater按线程共享，
+ *   否则每个连接持有自己的Deflater/Inflater
+ * 3.依赖Deflater.SYNC_FLUSH(JDK7+)，运行环境不支持时不协商该扩展
+ * </pre>
+ */
+public class WebSocketDeflate {
+
+	public static final String			PERMESSAGE_DEFLATE			= "permessage-deflate";
+
+	public static final String			SERVER_NO_CONTEXT_TAKEOVER	= "server_no_context_takeover";
+
+	public static final String			CLIENT_NO_CONTEXT_TAKEOVER	= "client_no_context_takeover";
+
+	public static final String			SERVER_MAX_WINDOW_BITS		= "server_max_window_bits";
+
+	public static final String			CLIENT_MAX_WINDOW_BITS		= "client_max_window_bits";
+
+	public static final int				MAX_WINDOW_BITS			= 15;
+
+	public static final int				MIN_WINDOW_BITS			= 8;
+
+	private static final boolean			AVAILABLE				= isSyncFlushAvailable();
+
+	private int						level					= Deflater.DEFAULT_COMPRESSION;
+
+	private int						minSize					= 256;
+
+	private boolean					serverNoContextTakeover		= false;
+
+	private boolean					clientNoContextTakeover		= false;
+
+	private int						clientMaxWindowBits			= MAX_WINDOW_BITS;
+
+	private ThreadLocal<Deflater>			deflaters					= new ThreadLocal<Deflater>();
+
+	private ThreadLocal<Inflater>			inflaters					= new ThreadLocal<Inflater>();
+
+	private static boolean isSyncFlushAvailable() {
+		try {
+			Deflater.class.getMethod("deflate", byte[].class, int.class, int.class, int.class);
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	public static boolean isAvailable() {
+		return AVAILABLE;
+	}
+
+	/**
+	 * 服务端，根据请求中的Sec-WebSocket-Extensions选择第一个可接受的offer
+	 * @return 协商结果，不启用压缩时返回null
+	 */
+	public WebSocketDeflateContext negotiate(String extensions) {
+
+		if (!AVAILABLE || StringUtil.isNullOrBlank(extensions)) {
+			return null;
+		}
+
+		String[] offers = extensions.split(",");
+
+		for (String offer : offers) {
+
+			String[] params = offer.split(";");
+
+			if (!PERMESSAGE_DEFLATE.equalsIgnoreCase(params[0].trim())) {
+				continue;
+			}
+
+			WebSocketDeflateContext context = acceptOffer(params);
+
+			if (context != null) {
+				return context;
+			}
+		}
+
+		return null;
+	}
+
+	private WebSocketDeflateContext acceptOffer(String[] params) {
+
+		boolean serverNoContextTakeover = this.serverNoContextTakeover;
+
+		boolean clientNoContextTakeover = this.clientNoContextTakeover;
+
+		int clientMaxWindowBits = -1;
+
+		for (int i = 1; i < params.length; i++) {
+
+			String param = params[i].trim();
+
+			String value = null;
+
+			int index = param.indexOf('=');
+
+			if (index != -1) {
+				value = unquote(param.substring(index + 1).trim());
+				param = param.substring(0, index).trim();
+			}
+
+			if (SERVER_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(param)) {
+
+				serverNoContextTakeover = true;
+
+			} else if (CLIENT_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(param)) {
+
+				clientNoContextTakeover = true;
+
+			} else if (SERVER_MAX_WINDOW_BITS.equalsIgnoreCase(param)) {
+
+				// 无法缩小本端的窗口
+				if (parseWindowBits(value) != MAX_WINDOW_BITS) {
+					return null;
+				}
+
+			} else if (CLIENT_MAX_WINDOW_BITS.equalsIgnoreCase(param)) {
+
+				if (value == null) {
+					clientMaxWindowBits = MAX_WINDOW_BITS;
+				} else {
+
+					clientMaxWindowBits = parseWindowBits(value);
+
+					if (clientMaxWindowBits == -1) {
+						return null;
+					}
+				}
+			} else {
+				return null;
+			}
+		}
+
+		StringBuilder b = new StringBuilder(PERMESSAGE_DEFLATE);
+
+		if (serverNoContextTakeover) {
+			b.append("; ").append(SERVER_NO_CONTEXT_TAKEOVER);
+		}
+
+		if (clientNoContextTakeover) {
+			b.append("; ").append(CLIENT_NO_CONTEXT_TAKEOVER);
+		}
+
+		// 客户端声明支持client_max_window_bits时才可以限制其窗口
+		if (clientMaxWindowBits != -1 && this.clientMaxWindowBits < MAX_WINDOW_BITS) {
+			b.append("; ").append(CLIENT_MAX_WINDOW_BITS).append('=');
+			b.append(Math.min(clientMaxWindowBits, this.clientMaxWindowBits));
+		}
+
+		return new WebSocketDeflateContext(this, b.toString(), serverNoContextTakeover, clientNoContextTakeover);
+	}
+
+	/**
+	 * 客户端，根据响应中的Sec-WebSocket-Extensions确定是否启用压缩
+	 * @return 协商结果，服务端未接受该扩展时返回null
+	 * @throws IOException 服务端返回了不合法或不支持的参数，握手失败
+	 */
+	public WebSocketDeflateContext accept(String extension) throws IOException {
+
+		if (!AVAILABLE || StringUtil.isNullOrBlank(extension)) {
+			return null;
+		}
+
+		String[] params = extension.split(";");
+
+		if (!PERMESSAGE_DEFLATE.equalsIgnoreCase(params[0].trim())) {
+			return null;
+		}
+
+		boolean serverNoContextTakeover = false;
+
+		boolean clientNoContextTakeover = this.clientNoContextTakeover;
+
+		for (int i = 1; i < params.length; i++) {
+
+			String param = params[i].trim();
+
+			String value = null;
+
+			int index = param.indexOf('=');
+
+			if (index != -1) {
+				value = unquote(param.substring(index + 1).trim());
+				param = param.substring(0, index).trim();
+			}
+
+			if (SERVER_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(param)) {
+				serverNoContextTakeover = true;
+			} else if (CLIENT_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(param)) {
+				clientNoContextTakeover = true;
+			} else if (CLIENT_MAX_WINDOW_BITS.equalsIgnoreCase(param)) {
+				if (parseWindowBits(value) != MAX_WINDOW_BITS) {
+					throw new IOException("unsupported extension : " + extension);
+				}
+			} else if (!SERVER_MAX_WINDOW_BITS.equalsIgnoreCase(param)) {
+				throw new IOException("illegal extension : " + extension);
+			}
+		}
+
+		return new WebSocketDeflateContext(this, extension, clientNoContextTakeover, serverNoContextTakeover);
+	}
+
+	private int parseWindowBits(String value) {
+
+		if (value == null) {
+			return -1;
+		}
+
+		try {
+
+			int bits = Integer.parseInt(value);
+
+			if (bits < MIN_WINDOW_BITS || bits > MAX_WINDOW_BITS) {
+				return -1;
+			}
+
+			return bits;
+
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private String unquote(String value) {
+
+		if (value.length() > 1 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+			return value.substring(1, value.length() - 1);
+		}
+
+		return value;
+	}
+
+	Deflater getLocalDeflater() {
+
+		Deflater deflater = deflaters.get();
+
+		if (deflater == null) {
+			deflater = new Deflater(level, true);
+			deflaters.set(deflater);
+		}
+
+		return deflater;
+	}
+
+	Inflater getLocalInflater() {
+
+		Inflater inflater = inflaters.get();
+
+		if (inflater == null) {
+			inflater = new Inflater(true);
+			inflaters.set(inflater);
+		}
+
+		return inflater;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	/**
+	 * 小于该长度的消息不压缩
+	 */
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	public boolean isServerNoContextTakeover() {
+		return serverNoContextTakeover;
+	}
+
+	public void setServerNoContextTakeover(boolean serverNoContextTakeover) {
+		this.serverNoContextTakeover = serverNoContextTakeover;
+	}
+
+	public boolean isClientNoContextTakeover() {
+		return clientNoContextTakeover;
+	}
+
+	public void setClientNoContextTakeover(boolean clientNoContextTakeover) {
+		this.clientNoContextTakeover = clientNoContextTakeover;
+	}
+
+	public int getClientMaxWindowBits() {
+		return clientMaxWindowBits;
+	}
+
+	public void setClientMaxWindowBits(int clientMaxWindowBits) {
+		if (clientMaxWindowBits < MIN_WINDOW_BITS || clientMaxWindowBits > MAX_WINDOW_BITS) {
+			throw new IllegalArgumentException("window bits:" + clientMaxWindowBits);
+		}
+		this.clientMaxWindowBits = clientMaxWindowBits;
+	}
+}
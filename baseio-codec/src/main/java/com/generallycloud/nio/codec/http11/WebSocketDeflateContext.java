@@ -0,0 +1,196 @@
+package com.generallycloud.nio.codec.http11;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.generallycloud.nio.component.BufferedOutputStream;
+import com.generallycloud.nio.protocol.ProtocolException;
+
+/**
+ * 一个连接上permessage-deflate的协商结果及压缩状态。压缩在flush时进行，
+ * 保留上下文时同一连接的消息需按顺序flush(与SSL的要求相同)。
+ * 连接关闭后持有的Deflater/Inflater随GC释放
+ */
+public class WebSocketDeflateContext {
+
+	private static final byte[]	TAIL	= new byte[] { 0, 0, (byte) 0xff, (byte) 0xff };
+
+	private WebSocketDeflate		deflate;
+
+	private String				extension;
+
+	private boolean			deflateNoContextTakeover;
+
+	private boolean			inflateNoContextTakeover;
+
+	private Deflater			deflater;
+
+	private Inflater			inflater;
+
+	private boolean			compressedMessage;
+
+	private boolean			inflating;
+
+	private byte[]				scratch;
+
+	WebSocketDeflateContext(WebSocketDeflate deflate, String extension, boolean deflateNoContextTakeover,
+			boolean inflateNoContextTakeover) {
+		this.deflate = deflate;
+		this.extension = extension;
+		this.deflateNoContextTakeover = deflateNoContextTakeover;
+		this.inflateNoContextTakeover = inflateNoContextTakeover;
+	}
+
+	/**
+	 * @return 响应中的Sec-WebSocket-Extensions
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	public boolean isCompressible(int type, int size) {
+		return size >= deflate.getMinSize()
+				&& (type == WebSocketProtocolDecoder.TYPE_TEXT || type == WebSocketProtocolDecoder.TYPE_BINARY);
+	}
+
+	/**
+	 * 压缩一条完整的消息，结果已去掉结尾的0x00 0x00 0xff 0xff
+	 */
+	public byte[] compress(byte[] array, int offset, int length) {
+
+		if (deflateNoContextTakeover) {
+
+			Deflater deflater = deflate.getLocalDeflater();
+
+			deflater.reset();
+
+			return compress(deflater, array, offset, length);
+		}
+
+		synchronized (this) {
+
+			if (deflater == null) {
+				deflater = new Deflater(deflate.getLevel(), true);
+			}
+
+			return compress(deflater, array, offset, length);
+		}
+	}
+
+	private byte[] compress(Deflater deflater, byte[] array, int offset, int length) {
+
+		deflater.setInput(array, offset, length);
+
+		byte[] output = new byte[(length >> 2) + 64];
+
+		int count = 0;
+
+		for (;;) {
+
+			count += deflater.deflate(output, count, output.length - count, Deflater.SYNC_FLUSH);
+
+			if (count < output.length) {
+				break;
+			}
+
+			output = Arrays.copyOf(output, output.length << 1);
+		}
+
+		return Arrays.copyOf(output, count - TAIL.length);
+	}
+
+	/**
+	 * 解压一个分片(或完整消息)的数据，eof为true时该消息结束
+	 * @param limit 解压后的最大长度
+	 */
+	public BufferedOutputStream decompress(byte[] array, int offset, int length, boolean eof, int limit) {
+
+		Inflater inflater;
+
+		boolean local = eof && !inflating && inflateNoContextTakeover;
+
+		if (local) {
+			// 完整的消息一次解压，可以使用线程共享的Inflater
+			inflater = deflate.getLocalInflater();
+			inflater.reset();
+		} else {
+			if (this.inflater == null) {
+				this.inflater = new Inflater(true);
+			}
+			inflater = this.inflater;
+		}
+
+		inflating = !eof;
+
+		BufferedOutputStream out = new BufferedOutputStream(Math.max(length << 1, 128));
+
+		try {
+
+			inflate(inflater, array, offset, length, out, limit);
+
+			if (eof) {
+
+				inflate(inflater, TAIL, 0, TAIL.length, out, limit);
+
+				if (inflateNoContextTakeover && !local) {
+					inflater.reset();
+				}
+			}
+
+		} catch (DataFormatException e) {
+			inflater.reset();
+			throw new ProtocolException("illegal deflate data", e);
+		}
+
+		return out;
+	}
+
+	private void inflate(Inflater inflater, byte[] array, int offset, int length, BufferedOutputStream out, int limit)
+			throws DataFormatException {
+
+		byte[] scratch = this.scratch;
+
+		if (scratch == null) {
+			scratch = this.scratch = new byte[1024 * 8];
+		}
+
+		inflater.setInput(array, offset, length);
+
+		for (;;) {
+
+			int n = inflater.inflate(scratch);
+
+			if (n == 0) {
+
+				if (inflater.finished()) {
+					// 对端以BFINAL结束了压缩流，下一条消息从新的流开始
+					inflater.reset();
+					return;
+				}
+
+				if (inflater.needsInput() || inflater.needsDictionary()) {
+					return;
+				}
+			}
+
+			if (out.size() + n > limit) {
+				throw new ProtocolException("max " + limit + " ,length:" + (out.size() + n));
+			}
+
+			out.write(scratch, 0, n);
+		}
+	}
+
+	/**
+	 * 当前(分片)消息是否压缩，由第一个分片的RSV1决定
+	 */
+	public boolean isCompressedMessage() {
+		return compressedMessage;
+	}
+
+	public void setCompressedMessage(boolean compressedMessage) {
+		this.compressedMessage = compressedMessage;
+	}
+}
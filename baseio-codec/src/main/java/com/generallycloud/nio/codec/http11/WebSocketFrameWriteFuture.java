@@ -0,0 +1,142 @@
+package com.generallycloud.nio.codec.http11;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.net.ssl.SSLEngine;
+
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.common.ssl.SslHandler;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.SocketChannel;
+import com.generallycloud.nio.protocol.IOWriteFuture;
+import com.generallycloud.nio.protocol.IOWriteFutureImpl;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 将一个大消息拆分为多个分片写出，分片直接从消息的数组中写出，不占用内存池，
+ * 写出完成前消息的write buffer不可修改。SSL连接在wrap时一次性生成所有分片
+ */
+public class WebSocketFrameWriteFuture extends IOWriteFutureImpl {
+
+	private BaseContext	context;
+	private byte[]		array;
+	private int		size;
+	private int		type;
+	private boolean	compressed;
+	private int		fragmentSize;
+	private int		offset;
+	private ByteBuffer	header;
+	private ByteBuffer	payload;
+
+	public WebSocketFrameWriteFuture(BaseContext context, ReadFuture readFuture, byte[] array, int size, int type,
+			boolean compressed, int fragmentSize) {
+		super(readFuture, null);
+		this.context = context;
+		this.array = array;
+		this.size = size;
+		this.type = type;
+		this.compressed = compressed;
+		this.fragmentSize = fragmentSize;
+	}
+
+	public boolean write(SocketChannel channel) throws IOException {
+
+		if (buf != null) {
+			return super.write(channel);
+		}
+
+		for (;;) {
+
+			if (header == null) {
+
+				if (offset == size) {
+					return true;
+				}
+
+				nextFragment();
+			}
+
+			if (header.hasRemaining()) {
+
+				channel.write(header);
+
+				if (header.hasRemaining()) {
+					channel.downNetworkState();
+					return false;
+				}
+			}
+
+			if (payload.hasRemaining()) {
+
+				int length = channel.write(payload);
+
+				if (length > 0) {
+					channel.upNetworkState();
+				} else {
+					channel.downNetworkState();
+				}
+
+				if (payload.hasRemaining()) {
+					return false;
+				}
+			}
+
+			header = null;
+		}
+	}
+
+	private void nextFragment() {
+
+		int length = Math.min(fragmentSize, size - offset);
+
+		boolean eof = offset + length == size;
+
+		boolean first = offset == 0;
+
+		int opcode = first ? type : WebSocketProtocolDecoder.TYPE_CONTINUATION;
+
+		header = ByteBuffer.wrap(WebSocketProtocolEncoder.encodeHeader(eof, first && compressed, opcode, length, false));
+
+		payload = ByteBuffer.wrap(array, offset, length);
+
+		offset += length;
+	}
+
+	public void wrapSSL(SSLEngine engine, SslHandler handler) throws IOException {
+
+		// 分片在写出时才wrap会打乱与其它future之间TLS记录的顺序，这里一次性生成
+		int fragments = Math.max(1, (size + fragmentSize - 1) / fragmentSize);
+
+		int capacity = size + fragments * 10;
+
+		ByteBuf buf = context.getHeapByteBufferPool().allocate(capacity);
+
+		if (buf == null) {
+			throw new IOException("not enough memory,length:" + capacity);
+		}
+
+		for (; offset < size;) {
+
+			nextFragment();
+
+			buf.put(header.array());
+
+			buf.put(array, payload.position(), payload.remaining());
+		}
+
+		buf.flip();
+
+		this.buf = buf;
+
+		super.wrapSSL(engine, handler);
+	}
+
+	public IOWriteFuture duplicate() {
+		return new WebSocketFrameWriteFuture(context, readFuture, array, size, type, compressed, fragmentSize);
+	}
+
+	public String toString() {
+		return "[websocket fragments,size=" + size + ",offset=" + offset + "]";
+	}
+}
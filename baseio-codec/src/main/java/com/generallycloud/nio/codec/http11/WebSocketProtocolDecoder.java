@@ -38,20 +38,88 @@ import com.generallycloud.nio.protocol.ProtocolDecoder;
  */
 public class WebSocketProtocolDecoder implements ProtocolDecoder {
 
+	public static final int	TYPE_CONTINUATION	= 0;
 	public static final int	TYPE_TEXT		= 1;
 	public static final int	TYPE_BINARY		= 2;
 	public static final int	TYPE_CLOSE		= 8;
 	public static final int	TYPE_PING		= 9;
 	public static final int	TYPE_PONG		= 10;
 
+	// 更大的消息需要通过WebSocketProtocolFactory显式配置
+	public static final int	DEFAULT_LIMIT		= 1024 * 1024;
+
+	private int					limit;
+
+	private boolean				aggregate;
+
+	private WebSocketDeflateContext	deflateContext;
+
+	public WebSocketProtocolDecoder() {
+		this(DEFAULT_LIMIT, true);
+	}
+
+	/**
+	 * @param limit 单个消息(聚合时为所有分片之和)的最大长度
+	 * @param aggregate true:分片聚合为完整消息后交给业务处理，false:每个分片到达后立即交给业务处理，
+	 *                  通过isEof判断是否为最后一个分片
+	 */
+	public WebSocketProtocolDecoder(int limit, boolean aggregate) {
+		this(limit, aggregate, null);
+	}
+
+	/**
+	 * @param deflateContext 该连接协商的permessage-deflate，解码器为该连接独有
+	 */
+	public WebSocketProtocolDecoder(int limit, boolean aggregate, WebSocketDeflateContext deflateContext) {
+		this.limit = limit;
+		this.aggregate = aggregate;
+		this.deflateContext = deflateContext;
+	}
+
 	@Override
 	public IOReadFuture decode(IOSession session, ByteBuffer buffer) throws IOException {
 
+		IOReadFuture remain = WebSocketReadFutureImpl.remainOf(session, limit, aggregate, deflateContext);
+
+		if (remain != null) {
+			return remain;
+		}
+
 		ByteBuf buf = session.getContext().getHeapByteBufferPool().allocate(2);
 
 		buf.read(buffer);
 
-		return new WebSocketReadFutureImpl(session, buf);
+		return new WebSocketReadFutureImpl(session, buf, limit, aggregate, deflateContext);
+	}
+
+	/**
+	 * 对array中的数据做mask/unmask(异或)，每次处理8个字节
+	 * @param maskIndex 数据的第一个字节对应的mask下标(0-3)，分段处理时使用
+	 */
+	public static void mask(byte[] array, int offset, int length, byte[] mask, int maskIndex) {
+
+		int i = offset;
+
+		int end = offset + length;
+
+		// 对齐到mask的起点
+		for (; i < end && (maskIndex & 3) != 0; i++, maskIndex++) {
+			array[i] ^= mask[maskIndex & 3];
+		}
+
+		long m = ((mask[0] & 0xffL) << 24) | ((mask[1] & 0xffL) << 16) | ((mask[2] & 0xffL) << 8) | (mask[3] & 0xffL);
+
+		m = (m << 32) | m;
+
+		ByteBuffer words = ByteBuffer.wrap(array);
+
+		for (; i + 8 <= end; i += 8) {
+			words.putLong(i, words.getLong(i) ^ m);
+		}
+
+		for (int j = 0; i < end; i++, j++) {
+			array[i] ^= mask[j & 3];
+		}
 	}
 
 }
@@ -1,6 +1,7 @@
 package com.generallycloud.nio.codec.http11;
 
 import java.io.IOException;
+import java.util.Random;
 
 import com.generallycloud.nio.buffer.ByteBuf;
 import com.generallycloud.nio.codec.http11.future.WebSocketReadFuture;
@@ -16,92 +17,139 @@ import com.generallycloud.nio.protocol.ProtocolEncoder;
 //A server MUST NOT mask any frames that it sends to the client.
 public class WebSocketProtocolEncoder implements ProtocolEncoder {
 
+	public static final int	DEFAULT_FRAGMENT_SIZE	= 1024 * 64;
+
+	private static final Random	RANDOM				= new Random();
+
+	private int				fragmentSize;
+
+	private WebSocketDeflateContext	deflateContext;
+
+	public WebSocketProtocolEncoder() {
+		this(DEFAULT_FRAGMENT_SIZE);
+	}
+
+	/**
+	 * @param fragmentSize 超过该长度的消息拆分为多个分片(continuation frame)写出
+	 */
+	public WebSocketProtocolEncoder(int fragmentSize) {
+		this(fragmentSize, null);
+	}
+
+	/**
+	 * @param deflateContext 该连接协商的permessage-deflate，编码器为该连接独有
+	 */
+	public WebSocketProtocolEncoder(int fragmentSize, WebSocketDeflateContext deflateContext) {
+		this.fragmentSize = fragmentSize;
+		this.deflateContext = deflateContext;
+	}
+
 	public IOWriteFuture encode(BaseContext context, IOReadFuture readFuture) throws IOException {
 		
 		WebSocketReadFuture future = (WebSocketReadFuture) readFuture;
 
 		BufferedOutputStream o = future.getWriteBuffer();
 
-		byte [] header;
-		
+		byte [] array = o.array();
+
 		int size = o.size();
+
+		int type = future.getType();
+
+		boolean compressed = deflateContext != null && deflateContext.isCompressible(type, size);
+
+		if (compressed) {
+
+			array = deflateContext.compress(array, 0, size);
+
+			size = array.length;
+		}
 		
-		byte header0 = (byte) (0x8f & (future.getType() | 0xf0));
-		
-		if (size < 126) {
-			header = new byte[2];
-			header[0] = header0;
-			header[1] = (byte) size;
-		}else if(size < ((1 << 16) -1)){
-			header = new byte[4];
-			header[0] = header0;
-			header[1] = 126;
-			header[3] = (byte)(size & 0xff);
-			header[2] = (byte)((size >> 8) & 0x80);
-		}else{
-			header = new byte[6];
-			header[0] = header0;
-			header[1] = 127;
-			MathUtil.int2Byte(header, size, 2);
+		if (size > fragmentSize) {
+			// 大消息不复制到内存池，分片直接从write buffer中写出
+			return new WebSocketFrameWriteFuture(context, readFuture, array, size, type, compressed, fragmentSize);
 		}
 		
+		byte [] header = encodeHeader(true, compressed, type, size, false);
+		
 		ByteBuf buffer = context.getHeapByteBufferPool().allocate(header.length + size);
-//		ByteBuf buffer = channel.getContext().getHeapByteBufferPool().allocate(header.length + size);
+		
+		if (buffer == null) {
+			throw new IOException("not enough memory,length:" + (header.length + size));
+		}
 		
 		buffer.put(header);
 		
-		buffer.put(o.array(),0,size);
+		buffer.put(array,0,size);
 		
 		buffer.flip();
 
 		return new IOWriteFutureImpl(readFuture, buffer);
 	}
 	
-	public IOWriteFuture encodeWithMask(BaseContext context, IOReadFuture readFuture) throws IOException {
+	public static byte [] encodeHeader(boolean eof, int type, int length, boolean mask) {
+		return encodeHeader(eof, false, type, length, mask);
+	}
+	
+	/**
+	 * @param rsv1 permessage-deflate中表示该消息已压缩，只在第一个分片中设置
+	 * @return 帧头(不含masking-key)，长度为2、4或10
+	 */
+	public static byte [] encodeHeader(boolean eof, boolean rsv1, int type, int length, boolean mask) {
 		
-		WebSocketReadFuture future = (WebSocketReadFuture) readFuture;
-
-		BufferedOutputStream o = future.getWriteBuffer();
-
 		byte [] header;
 		
-		int size = o.size();
+		byte header0 = (byte) ((eof ? 0x80 : 0) | (rsv1 ? 0x40 : 0) | (type & 0xf));
 		
-		byte header0 = (byte) (0x8f & (future.getType() | 0xf0));
+		int maskBit = mask ? 0x80 : 0;
 		
-		if (size < 126) {
+		if (length < 126) {
 			header = new byte[2];
-			header[0] = header0;
-			header[1] = (byte)(size | 0x80);
-		}else if(size < ((1 << 16) -1)){
+			header[1] = (byte) (length | maskBit);
+		}else if(length <= 0xffff){
 			header = new byte[4];
-			header[0] = header0;
-			header[1] = (byte) (126 | 0xff);
-			header[3] = (byte)(size & 0xff);
-			header[2] = (byte)((size >> 8) & 0x80);
+			header[1] = (byte) (126 | maskBit);
+			MathUtil.intTo2Byte(header, length, 2);
 		}else{
-			header = new byte[6];
-			header[0] = header0;
-			header[1] = (byte) (127 | 0x80);
-			MathUtil.int2Byte(header, size, 2);
+			header = new byte[10];
+			header[1] = (byte) (127 | maskBit);
+			MathUtil.long2Byte(header, length, 2);
 		}
 		
+		header[0] = header0;
+		
+		return header;
+	}
+	
+	public IOWriteFuture encodeWithMask(BaseContext context, IOReadFuture readFuture) throws IOException {
+		
+		WebSocketReadFuture future = (WebSocketReadFuture) readFuture;
+
+		BufferedOutputStream o = future.getWriteBuffer();
+
+		int size = o.size();
+		
+		byte [] header = encodeHeader(true, future.getType(), size, true);
+		
 		ByteBuf buffer = context.getHeapByteBufferPool().allocate(header.length + size + 4);
 		
+		if (buffer == null) {
+			throw new IOException("not enough memory,length:" + (header.length + size + 4));
+		}
+		
 		buffer.put(header);
 		
-		byte [] array = o.array();
+		byte [] array = new byte[size];
 		
-		byte [] mask = MathUtil.int2Byte(size);
+		System.arraycopy(o.array(), 0, array, 0, size);
 		
-		for (int i = 0; i < size; i++) {
-			
-			array[i] = (byte)(array[i] ^ mask[i % 4]);
-		}
+		byte [] mask = MathUtil.int2Byte(RANDOM.nextInt());
+		
+		WebSocketProtocolDecoder.mask(array, 0, size, mask, 0);
 		
 		buffer.put(mask);
 		
-		buffer.put(array,0,size);
+		buffer.put(array);
 		
 		buffer.flip();
 
@@ -6,14 +6,85 @@ import com.generallycloud.nio.protocol.ProtocolFactory;
 
 public class WebSocketProtocolFactory implements ProtocolFactory{
 
+	private int		limit		= WebSocketProtocolDecoder.DEFAULT_LIMIT;
+
+	private boolean	aggregate		= true;
+
+	private int		fragmentSize	= WebSocketProtocolEncoder.DEFAULT_FRAGMENT_SIZE;
+
+	private WebSocketDeflate	deflate		= new WebSocketDeflate();
+
+	public WebSocketProtocolFactory() {
+	}
+
+	/**
+	 * @param limit 收到的单个消息的最大长度
+	 * @param aggregate 是否将分片聚合为完整消息
+	 * @param fragmentSize 发送时超过该长度的消息拆分为多个分片
+	 */
+	public WebSocketProtocolFactory(int limit, boolean aggregate, int fragmentSize) {
+		this.limit = limit;
+		this.aggregate = aggregate;
+		this.fragmentSize = fragmentSize;
+	}
+
 	public ProtocolDecoder getProtocolDecoder() {
-		return new WebSocketProtocolDecoder();
+		return new WebSocketProtocolDecoder(limit, aggregate);
 	}
 
 	public ProtocolEncoder getProtocolEncoder() {
-		return new WebSocketProtocolEncoder();
+		return new WebSocketProtocolEncoder(fragmentSize);
+	}
+
+	/**
+	 * 协商了permessage-deflate的连接使用独立的解码器
+	 */
+	public ProtocolDecoder getProtocolDecoder(WebSocketDeflateContext deflateContext) {
+		return new WebSocketProtocolDecoder(limit, aggregate, deflateContext);
+	}
+
+	public ProtocolEncoder getProtocolEncoder(WebSocketDeflateContext deflateContext) {
+		return new WebSocketProtocolEncoder(fragmentSize, deflateContext);
+	}
+
+	/**
+	 * @return permessage-deflate的配置，为null时不协商该扩展
+	 */
+	public WebSocketDeflate getDeflate() {
+		return deflate;
+	}
+
+	public void setDeflate(WebSocketDeflate deflate) {
+		this.deflate = deflate;
 	}
 	
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @param limit 收到的单个消息的最大长度，默认为WebSocketProtocolDecoder.DEFAULT_LIMIT
+	 */
+	public void setLimit(int limit) {
+		this.limit = limit;
+	}
+
+	public boolean isAggregate() {
+		return aggregate;
+	}
+
+	public void setAggregate(boolean aggregate) {
+		this.aggregate = aggregate;
+	}
+
+	public int getFragmentSize() {
+		return fragmentSize;
+	}
+
+	public void setFragmentSize(int fragmentSize) {
+		this.fragmentSize = fragmentSize;
+	}
+
 	public String getProtocolID() {
 		return "WebSocket";
 	}
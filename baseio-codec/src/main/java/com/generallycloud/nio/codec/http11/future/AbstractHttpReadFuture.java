@@ -1,5 +1,6 @@
 package com.generallycloud.nio.codec.http11.future;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -7,6 +8,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.generallycloud.nio.codec.http11.WebSocketDeflate;
+import com.generallycloud.nio.codec.http11.WebSocketDeflateContext;
 import com.generallycloud.nio.codec.http11.WebSocketProtocolFactory;
 import com.generallycloud.nio.common.BASE64Util;
 import com.generallycloud.nio.common.ByteBufferUtil;
@@ -18,8 +21,6 @@ import com.generallycloud.nio.common.StringUtil;
 import com.generallycloud.nio.component.BaseContext;
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.protocol.AbstractIOReadFuture;
-import com.generallycloud.nio.protocol.ProtocolDecoder;
-import com.generallycloud.nio.protocol.ProtocolEncoder;
 
 //FIXME 解析BODY中的内容
 //FIXME 改进header parser
@@ -58,6 +59,9 @@ public abstract class AbstractHttpReadFuture extends AbstractIOReadFuture implem
 	protected HttpStatus			status			= HttpStatus.C200;
 	protected List<String>			headerLines		= new ArrayList<String>();
 	protected StringBuilder			currentHeaderLine	= new StringBuilder();
+	protected File					responseFile;
+	protected long				responseFilePosition;
+	protected long				responseFileLength;
 
 	public AbstractHttpReadFuture(BaseContext context) {
 		super(context);
@@ -156,7 +160,7 @@ public abstract class AbstractHttpReadFuture extends AbstractIOReadFuture implem
 		return version;
 	}
 
-	private void parse_cookies(String line, Map<String, String> cookies) {
+	protected void parse_cookies(String line, Map<String, String> cookies) {
 		StringLexer l = new StringLexer(0, line.toCharArray());
 		StringBuilder value = new StringBuilder();
 		String k = null;
@@ -341,9 +345,7 @@ public abstract class AbstractHttpReadFuture extends AbstractIOReadFuture implem
 
 		if (updateWebSocketProtocol) {
 
-			session.setProtocolDecoder(WEBSOCKET_PROTOCOL_DECODER);
-			session.setProtocolEncoder(WEBSOCKET_PROTOCOL_ENCODER);
-			session.setProtocolFactory(PROTOCOL_FACTORY);
+			setWebSocketProtocol(deflateContext);
 
 			session.setAttribute(WebSocketReadFuture.SESSION_KEY_SERVICE_NAME, getFutureName());
 		}
@@ -353,15 +355,32 @@ public abstract class AbstractHttpReadFuture extends AbstractIOReadFuture implem
 
 	protected static final WebSocketProtocolFactory	PROTOCOL_FACTORY			= new WebSocketProtocolFactory();
 
-	protected static final ProtocolDecoder			WEBSOCKET_PROTOCOL_DECODER	= PROTOCOL_FACTORY
-																			.getProtocolDecoder();
+	private boolean							updateWebSocketProtocol;
 
-	protected static final ProtocolEncoder			WEBSOCKET_PROTOCOL_ENCODER	= PROTOCOL_FACTORY
-																			.getProtocolEncoder();
+	private WebSocketDeflateContext				deflateContext;
 
-	private boolean							updateWebSocketProtocol;
+	/**
+	 * 升级为WebSocket时使用的协议，可以通过它调整分片、最大消息长度以及permessage-deflate的配置
+	 */
+	public static WebSocketProtocolFactory getWebSocketProtocolFactory() {
+		return PROTOCOL_FACTORY;
+	}
+
+	protected void setWebSocketProtocol(WebSocketDeflateContext deflateContext) {
+
+		if (deflateContext == null) {
+			// 每次升级时按PROTOCOL_FACTORY当前的配置创建
+			session.setProtocolDecoder(PROTOCOL_FACTORY.getProtocolDecoder());
+			session.setProtocolEncoder(PROTOCOL_FACTORY.getProtocolEncoder());
+		} else {
+			session.setProtocolDecoder(PROTOCOL_FACTORY.getProtocolDecoder(deflateContext));
+			session.setProtocolEncoder(PROTOCOL_FACTORY.getProtocolEncoder(deflateContext));
+		}
+
+		session.setProtocolFactory(PROTOCOL_FACTORY);
+	}
 
-	public void updateWebSocketProtocol() {
+	public void updateWebSocketProtocol() throws IOException {
 
 		String Sec_WebSocket_Key = getRequestHeader("Sec-WebSocket-Key");
 
@@ -380,6 +399,17 @@ public abstract class AbstractHttpReadFuture extends AbstractIOReadFuture implem
 			setResponseHeader("Upgrade", "WebSocket");
 			setResponseHeader("Sec-WebSocket-Accept", acceptKey);
 
+			WebSocketDeflate deflate = PROTOCOL_FACTORY.getDeflate();
+
+			if (deflate != null) {
+
+				deflateContext = deflate.negotiate(getRequestHeader("Sec-WebSocket-Extensions"));
+
+				if (deflateContext != null) {
+					setResponseHeader("Sec-WebSocket-Extensions", deflateContext.getExtension());
+				}
+			}
+
 			updateWebSocketProtocol = true;
 			return;
 		}
@@ -390,6 +420,24 @@ public abstract class AbstractHttpReadFuture extends AbstractIOReadFuture implem
 
 	}
 
+	public void setResponseFile(File file, long position, long length) {
+		this.responseFile = file;
+		this.responseFilePosition = position;
+		this.responseFileLength = length;
+	}
+
+	public File getResponseFile() {
+		return responseFile;
+	}
+
+	public long getResponseFilePosition() {
+		return responseFilePosition;
+	}
+
+	public long getResponseFileLength() {
+		return responseFileLength;
+	}
+
 	public boolean hasBody() {
 		return contentLength > 0;
 	}
@@ -1,8 +1,12 @@
 package com.generallycloud.nio.codec.http11.future;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Map;
 
+import com.generallycloud.nio.codec.http11.WebSocketDeflate;
+import com.generallycloud.nio.codec.http11.WebSocketDeflateContext;
+import com.generallycloud.nio.common.CloseUtil;
 import com.generallycloud.nio.common.StringUtil;
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.component.BaseContext;
@@ -23,10 +27,24 @@ public class ClientHttpReadFuture extends AbstractHttpReadFuture {
 		headers.put("Connection", "keep-alive");
 	}
 
-	public void updateWebSocketProtocol() {
-		session.setProtocolFactory(PROTOCOL_FACTORY);
-		session.setProtocolDecoder(WEBSOCKET_PROTOCOL_DECODER);
-		session.setProtocolEncoder(WEBSOCKET_PROTOCOL_ENCODER);
+	public void updateWebSocketProtocol() throws IOException {
+
+		WebSocketDeflateContext deflateContext = null;
+
+		WebSocketDeflate deflate = PROTOCOL_FACTORY.getDeflate();
+
+		if (deflate != null) {
+
+			try {
+				deflateContext = deflate.accept(getRequestHeader("Sec-WebSocket-Extensions"));
+			} catch (IOException e) {
+				// 握手失败，不能继续以未协商的方式收发数据
+				CloseUtil.close(session);
+				throw e;
+			}
+		}
+
+		setWebSocketProtocol(deflateContext);
 	}
 
 	protected void parseContentType(String contentType) {
@@ -1,5 +1,7 @@
 package com.generallycloud.nio.codec.http11.future;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -93,5 +95,22 @@ public abstract interface HttpReadFuture extends NamedReadFuture {
 	
 	public abstract void addCookie(Cookie cookie);
 	
-	public abstract void updateWebSocketProtocol();
+	/**
+	 * 客户端协商扩展失败时关闭连接并抛出IOException
+	 */
+	public abstract void updateWebSocketProtocol() throws IOException;
+
+	/**
+	 * 响应体为文件中的一段，由编码器通过FileChannel.transferTo写出
+	 * @param file
+	 * @param position
+	 * @param length
+	 */
+	public abstract void setResponseFile(File file, long position, long length);
+
+	public abstract File getResponseFile();
+
+	public abstract long getResponseFilePosition();
+
+	public abstract long getResponseFileLength();
 }
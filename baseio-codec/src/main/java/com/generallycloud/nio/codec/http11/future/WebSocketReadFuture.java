@@ -9,6 +9,11 @@ public interface WebSocketReadFuture extends NamedReadFuture {
 
 	public static final String	SESSION_KEY_SERVICE_NAME	= "_SESSION_KEY_SERVICE_NAME";
 
+	// 分片消息的类型以及聚合中的数据
+	public static final String	SESSION_KEY_FRAGMENT_TYPE	= "_SESSION_KEY_FRAGMENT_TYPE";
+
+	public static final String	SESSION_KEY_FRAGMENT_DATA	= "_SESSION_KEY_FRAGMENT_DATA";
+
 	public abstract boolean isEof();
 
 	public abstract int getType();
@@ -2,8 +2,10 @@ package com.generallycloud.nio.codec.http11.future;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.codec.http11.WebSocketDeflateContext;
 import com.generallycloud.nio.codec.http11.WebSocketProtocolDecoder;
 import com.generallycloud.nio.common.MathUtil;
 import com.generallycloud.nio.common.ReleaseUtil;
@@ -13,200 +15,438 @@ import com.generallycloud.nio.component.BaseContext;
 import com.generallycloud.nio.protocol.AbstractIOReadFuture;
 import com.generallycloud.nio.protocol.ProtocolException;
 
+/**
+ * 一个WebSocket帧。分片的消息(FIN=0 + continuation)在聚合模式下由最后一个分片携带完整消息，
+ * 之前的分片不交给业务处理；非聚合模式下每个分片携带自身的数据，type为消息的类型。
+ * 协商了permessage-deflate时，第一个分片RSV1置位的消息在这里解压。
+ * 负载随数据到达逐步扩容，非聚合模式下超过STREAM_CHUNK_SIZE的帧按块交给业务处理
+ */
 public class WebSocketReadFutureImpl extends AbstractIOReadFuture implements WebSocketReadFuture{
-	
+
+	private static final int	INITIAL_PAYLOAD_SIZE	= 1024 * 8;
+
+	/**
+	 * 非聚合模式下单次交给业务处理的最大长度
+	 */
+	public static final int	STREAM_CHUNK_SIZE		= 1024 * 64;
+
+	private static final String	SESSION_KEY_FRAME_REMAIN	= "_SESSION_KEY_FRAME_REMAIN";
+
 	protected int type;
 
 	private boolean eof;
-	
+
+	private boolean rsv1;
+
 	private boolean hasMask;
-	
+
 	private int length;
-	
+
 	private ByteBuf buf;
-	
+
 	private byte [] mask;
-	
+
+	private int maskIndex;
+
 	private boolean headerComplete;
-	
+
 	private boolean remain_header_complete;
-	
+
 	private boolean dataComplete;
-	
+
 	private BufferedOutputStream data;
-	
+
+	private byte [] payload;
+
+	private int payloadRead;
+
+	private int payloadLength;
+
 	private String serviceName;
-	
+
+	private int limit;
+
+	private boolean aggregate;
+
+	private WebSocketDeflateContext deflateContext;
+
 	public WebSocketReadFutureImpl(IOSession session,ByteBuf buf) {
+		this(session, buf, WebSocketProtocolDecoder.DEFAULT_LIMIT, true, null);
+	}
+
+	public WebSocketReadFutureImpl(IOSession session,ByteBuf buf,int limit,boolean aggregate,WebSocketDeflateContext deflateContext) {
 		super(session.getContext());
-		
+
+		this.deflateContext = deflateContext;
+
 		this.buf = buf;
-		
+
+		this.limit = limit;
+
+		this.aggregate = aggregate;
+
 		this.serviceName = (String) session.getAttribute(SESSION_KEY_SERVICE_NAME);
-		
+
 		if (!buf.hasRemaining()) {
 			doHeaderComplete(buf);
 		}
 	}
-	
+
+	private WebSocketReadFutureImpl(IOSession session,FrameRemain remain,int limit,boolean aggregate,WebSocketDeflateContext deflateContext) {
+		super(session.getContext());
+
+		this.deflateContext = deflateContext;
+
+		this.limit = limit;
+
+		this.aggregate = aggregate;
+
+		this.serviceName = (String) session.getAttribute(SESSION_KEY_SERVICE_NAME);
+
+		// 同一帧的剩余部分，按continuation处理
+		this.headerComplete = true;
+
+		this.remain_header_complete = true;
+
+		this.type = WebSocketProtocolDecoder.TYPE_CONTINUATION;
+
+		this.eof = remain.eof;
+
+		this.mask = remain.mask;
+
+		this.hasMask = mask != null;
+
+		this.maskIndex = remain.maskIndex;
+
+		this.length = remain.length;
+
+		doLengthComplete(session, length);
+	}
+
 	public WebSocketReadFutureImpl(BaseContext context) {
 		super(context);
 	}
-	
+
+	/**
+	 * @return 上一个future未读完的帧的剩余部分，没有时返回null
+	 */
+	public static WebSocketReadFutureImpl remainOf(IOSession session,int limit,boolean aggregate,WebSocketDeflateContext deflateContext){
+
+		FrameRemain remain = (FrameRemain) session.removeAttribute(SESSION_KEY_FRAME_REMAIN);
+
+		if (remain == null) {
+			return null;
+		}
+
+		return new WebSocketReadFutureImpl(session, remain, limit, aggregate, deflateContext);
+	}
+
 	private void doHeaderComplete(ByteBuf buffer){
-		
+
 		headerComplete = true;
-		
+
 		int offset = buffer.offset();
-		
+
 		int remain_header_size = 0;
-		
+
 		byte [] array = buffer.array();
-		
+
 		byte b = array[offset + 0];
-		
+
 		eof = ((b & 0xFF) >> 7) == 1;
-		
-		type = (b & 0xF); 
-		
-		
+
+		rsv1 = (b & 0x40) != 0;
+
+		type = (b & 0xF);
+
+
 		if (type == WebSocketProtocolDecoder.TYPE_PING) {
 			setPING();
 		}else if(type == WebSocketProtocolDecoder.TYPE_PONG){
 			setPONG();
 		}
-		
+
 		b = array[offset + 1];
-		
+
 		hasMask = ((b & 0xFF) >> 7) == 1;
-		
+
 		if (hasMask) {
-			
+
 			remain_header_size += 4;
 		}
-		
+
 		length = (b & 0x7f);
-		
+
 		if (length < 126) {
 
-			
+
 		}else if(length == 126){
-			
+
 			remain_header_size += 2;
-		
+
 		}else{
-			
-			remain_header_size += 4;
+
+			remain_header_size += 8;
 		}
-		
+
 		buffer.limit(remain_header_size);
-		
+
 	}
-	
+
 	private void doRemainHeaderComplete(IOSession session,ByteBuf buffer) throws IOException{
-		
+
 		remain_header_complete = true;
-		
+
 		byte [] array = buffer.array();
 		int offset = buffer.offset();
 		if(length < 126){
-			
-			
+
+
 		}else if (length == 126) {
-			
+
 			length = MathUtil.byte2IntFrom2Byte(array, offset);
-			
+
 		}else{
-			
-			if ((array[offset] >> 7) == -1) {
-				// 欺负java没有无符号整型?
-				throw new IOException("illegal data length ,unsigned integer");
+
+			long _length = MathUtil.byte2Long(array, offset);
+
+			if (_length < 0 || _length > limit) {
+				throw new ProtocolException("max " + limit + " ,length:" + _length);
 			}
-			
-			length = MathUtil.byte2Int(array,offset);
+
+			length = (int) _length;
+		}
+
+		if (hasMask) {
+
+			mask = new byte[4];
+
+			System.arraycopy(array, offset + buffer.limit() - 4, mask, 0, 4);
 		}
-		
-		mask = new byte[4];
-		
-		System.arraycopy(array, offset + buffer.limit() - 4, mask, 0, 4);
-		
-		doLengthComplete(session,buffer,length);
+
+		doLengthComplete(session,length);
 	}
 
 	public boolean read(IOSession session,ByteBuffer buffer) throws IOException {
-		
+
 		ByteBuf buf = this.buf;
-		
+
 		if (!headerComplete) {
-			
+
 			buf.read(buffer);
-			
+
 			if (buf.hasRemaining()) {
 				return false;
 			}
-			
+
 			doHeaderComplete(buf);
 		}
-		
+
 		if (!remain_header_complete) {
-			
+
 			buf.read(buffer);
-			
+
 			if (buf.hasRemaining()) {
 				return false;
 			}
-			
+
 			doRemainHeaderComplete(session,buf);
 		}
-		
+
 		if (!dataComplete) {
-			
-			buf.read(buffer);
-			
-			if (buf.hasRemaining()) {
-				return false;
-			}
-			
-			buf.flip();
-			
-			byte [] array = buf.getBytes();
-			
+
+			int read = Math.min(payloadLength - payloadRead, buffer.remaining());
+
+			ensureCapacity(payloadRead + read);
+
+			buffer.get(payload, payloadRead, read);
+
 			if (hasMask) {
-				
-				byte [] mask = this.mask;
-				
-				for (int i = 0; i < array.length; i++) {
-					
-					array[i] = (byte)(array[i] ^ mask[i % 4]);
-				}
+				// 随读随解，数据仍在cache中
+				WebSocketProtocolDecoder.mask(payload, payloadRead, read, mask, maskIndex + payloadRead);
 			}
-			
-			this.data = new BufferedOutputStream(array);
-			
+
+			payloadRead += read;
+
+			if (payloadRead < payloadLength) {
+				return false;
+			}
+
 			dataComplete = true;
-			
-			return true;
+
+			if (payloadLength < length) {
+				doChunkComplete(session);
+			}
+
+			doDataComplete(session);
 		}
-		
+
 		return true;
 	}
-	
-	private void doLengthComplete(IOSession session,ByteBuf buffer,int length){
-		
-		if (length > 1024 * 8) {
-			throw new ProtocolException("max 8KB ,length:" + length);
+
+	private void doLengthComplete(IOSession session,int length){
+
+		if (length > limit) {
+			throw new ProtocolException("max " + limit + " ,length:" + length);
+		}
+
+		if (type >= WebSocketProtocolDecoder.TYPE_CLOSE && (!eof || length > 125)) {
+			throw new ProtocolException("illegal control frame");
+		}
+
+		if (!aggregate && type < WebSocketProtocolDecoder.TYPE_CLOSE) {
+			this.payloadLength = Math.min(length, STREAM_CHUNK_SIZE);
+		}else{
+			this.payloadLength = length;
+		}
+
+		// 按实际收到的数据扩容，不按对端声明的长度预先申请
+		this.payload = new byte[Math.min(payloadLength, INITIAL_PAYLOAD_SIZE)];
+	}
+
+	private void ensureCapacity(int size){
+
+		if (size <= payload.length) {
+			return;
+		}
+
+		int capacity = Math.min(payloadLength, Math.max(payload.length << 1, size));
+
+		this.payload = Arrays.copyOf(payload, capacity);
+	}
+
+	/**
+	 * 只读了帧的一部分，剩余部分由下一个future继续读取
+	 */
+	private void doChunkComplete(IOSession session){
+
+		FrameRemain remain = new FrameRemain();
+
+		remain.length = length - payloadLength;
+
+		remain.eof = eof;
+
+		remain.mask = mask;
+
+		remain.maskIndex = (maskIndex + payloadLength) & 3;
+
+		session.setAttribute(SESSION_KEY_FRAME_REMAIN, remain);
+
+		this.eof = false;
+
+		this.length = payloadLength;
+	}
+
+	private void doDataComplete(IOSession session){
+
+		if (type >= WebSocketProtocolDecoder.TYPE_CLOSE) {
+
+			if (rsv1) {
+				throw new ProtocolException("illegal rsv1 of control frame");
+			}
+
+			// 控制帧可以出现在分片之间，不影响分片的状态
+			this.data = new BufferedOutputStream(payload);
+			return;
+		}
+
+		WebSocketDeflateContext deflateContext = this.deflateContext;
+
+		Integer messageType = (Integer) session.getAttribute(SESSION_KEY_FRAGMENT_TYPE);
+
+		if (type == WebSocketProtocolDecoder.TYPE_CONTINUATION) {
+
+			if (messageType == null) {
+				throw new ProtocolException("unexpected continuation frame");
+			}
+
+			if (rsv1) {
+				throw new ProtocolException("illegal rsv1 of continuation frame");
+			}
+
+			type = messageType.intValue();
+
+		} else if (messageType != null) {
+
+			throw new ProtocolException("expect continuation frame");
+
+		} else if (deflateContext != null) {
+
+			deflateContext.setCompressedMessage(rsv1);
+
+		} else if (rsv1) {
+
+			throw new ProtocolException("illegal rsv1,none extension");
+		}
+
+		boolean compressed = deflateContext != null && deflateContext.isCompressedMessage();
+
+		if (!aggregate) {
+
+			if (compressed) {
+				this.data = deflateContext.decompress(payload, 0, payload.length, eof, limit);
+				this.length = data.size();
+			}else{
+				this.data = new BufferedOutputStream(payload);
+			}
+
+			if (eof) {
+				session.removeAttribute(SESSION_KEY_FRAGMENT_TYPE);
+			}else{
+				session.setAttribute(SESSION_KEY_FRAGMENT_TYPE, type);
+			}
+
+			return;
+		}
+
+		if (eof && messageType == null) {
+
+			if (compressed) {
+				this.data = deflateContext.decompress(payload, 0, payload.length, true, limit);
+				this.length = data.size();
+			}else{
+				this.data = new BufferedOutputStream(payload);
+			}
+			return;
 		}
-		
-		if (buffer.capacity() >= length) {
-			buffer.limit(length);
+
+		BufferedOutputStream message = (BufferedOutputStream) session.getAttribute(SESSION_KEY_FRAGMENT_DATA);
+
+		if (message == null) {
+
+			message = new BufferedOutputStream(Math.max(payload.length << 1, 128));
+
+			session.setAttribute(SESSION_KEY_FRAGMENT_TYPE, type);
+
+			session.setAttribute(SESSION_KEY_FRAGMENT_DATA, message);
+		}
+
+		if (message.size() + payload.length > limit) {
+			throw new ProtocolException("max " + limit + " ,length:" + (message.size() + payload.length));
+		}
+
+		message.write(payload);
+
+		if (!eof) {
+			// 消息尚未结束，不交给业务处理
+			setSilent(true);
 			return;
 		}
-		
-		ReleaseUtil.release(buffer);
-		
-		this.buf = allocate(length);
+
+		session.removeAttribute(SESSION_KEY_FRAGMENT_TYPE);
+
+		session.removeAttribute(SESSION_KEY_FRAGMENT_DATA);
+
+		if (compressed) {
+			// 聚合的是压缩后的数据，整条消息一次解压
+			message = deflateContext.decompress(message.array(), 0, message.size(), true, limit);
+		}
+
+		this.data = message;
+
+		this.length = message.size();
 	}
-	
+
 	public String getFutureName() {
 		return serviceName;
 	}
@@ -218,11 +458,11 @@ public class WebSocketReadFutureImpl extends AbstractIOReadFuture implements Web
 	public int getType() {
 		return type;
 	}
-	
+
 	public int getLength() {
 		return length;
 	}
-	
+
 	public void release() {
 		ReleaseUtil.release(buf);
 	}
@@ -230,5 +470,16 @@ public class WebSocketReadFutureImpl extends AbstractIOReadFuture implements Web
 	public BufferedOutputStream getData() {
 		return data;
 	}
-	
+
+	private static class FrameRemain {
+
+		int		length;
+
+		boolean	eof;
+
+		byte[]	mask;
+
+		int		maskIndex;
+	}
+
 }
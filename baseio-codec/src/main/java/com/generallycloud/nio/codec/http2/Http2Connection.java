@@ -0,0 +1,904 @@
+package com.generallycloud.nio.codec.http2;
+
+import static com.generallycloud.nio.codec.http2.Http2Frame.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.codec.http2.hpack.HpackDecoder;
+import com.generallycloud.nio.codec.http2.hpack.HpackHeaderField;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.component.BufferedOutputStream;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 一个HTTP/2连接的状态，保存在session的attribute中。
+ * 帧的解析只在selector线程中进行；流、发送窗口等由业务线程(写响应)和
+ * selector线程(WINDOW_UPDATE、RST_STREAM等)共同修改，通过本对象的锁保护
+ */
+public class Http2Connection {
+
+	public static final String		SESSION_KEY			= "_HTTP2_CONNECTION";
+
+	public static final int			MAX_CONCURRENT_STREAMS	= 256;
+
+	private static final int			MAX_BODY_LENGTH		= 1024 * 1024;
+
+	private static final int			MAX_HEADER_BLOCK_LENGTH	= 1024 * 64;
+
+	// 单个write future中最多写出的DATA，剩余部分在其写完后继续
+	private static final int			MAX_WRITE_LENGTH		= 1024 * 256;
+
+	private static final Logger		logger				= LoggerFactory.getLogger(Http2Connection.class);
+
+	private IOSession				session;
+	private HpackDecoder			hpackDecoder			= new HpackDecoder(4096);
+	private Map<Integer, Http2Stream>	streams				= new HashMap<Integer, Http2Stream>();
+	private List<Http2Stream>		pendingStreams			= new ArrayList<Http2Stream>();
+	private int					lastStreamID;
+	private int					maxFrameSize			= DEFAULT_MAX_FRAME_SIZE;
+	private int					initialWindowSize		= DEFAULT_WINDOW_SIZE;
+	private int					sendWindow			= DEFAULT_WINDOW_SIZE;
+	private byte[]				scratch				= new byte[DEFAULT_MAX_FRAME_SIZE];
+
+	// 以下为读状态，只在selector线程中访问
+	private int					prefaceRead;
+	private byte[]				frameHeader			= new byte[FRAME_HEADER_LENGTH];
+	private int					frameHeaderRead;
+	private byte[]				payload				= new byte[DEFAULT_MAX_FRAME_SIZE];
+	private int					payloadLength;
+	private int					payloadRead;
+	private int					frameType;
+	private int					frameFlags;
+	private int					frameStreamID;
+	private Http2Stream				headerStream;
+
+	private Http2Connection(IOSession session) {
+		this.session = session;
+	}
+
+	public static Http2Connection getConnection(IOSession session) {
+		return (Http2Connection) session.getAttribute(SESSION_KEY);
+	}
+
+	public static Http2Connection createConnection(IOSession session) {
+
+		Http2Connection connection = new Http2Connection(session);
+
+		session.setAttribute(SESSION_KEY, connection);
+
+		return connection;
+	}
+
+	/**
+	 * 发送服务端的SETTINGS，必须是连接上的第一个帧
+	 */
+	public void writeSettings(ReadFuture owner) throws IOException {
+
+		BufferedOutputStream out = new BufferedOutputStream(FRAME_HEADER_LENGTH + 6);
+
+		writeFrameHeader(out, 6, TYPE_SETTINGS, 0, 0);
+
+		out.write(SETTINGS_MAX_CONCURRENT_STREAMS >>> 8);
+		out.write(SETTINGS_MAX_CONCURRENT_STREAMS);
+		writeInt(out, MAX_CONCURRENT_STREAMS);
+
+		writeFrames(owner, out);
+	}
+
+	/**
+	 * 不足3个字节时无法区分preface，已按HTTP/1.1读完"PRI * HTTP/2.0\r\n\r\n"，只需再读"SM\r\n\r\n"
+	 */
+	public void skipPrefaceRequestLine() {
+		this.prefaceRead = CONNECTION_PREFACE.length - PREFACE_SM_LENGTH;
+	}
+
+	/**
+	 * h2c升级：HTTP/1.1请求被视为stream 1，客户端在该流上的请求已经结束
+	 */
+	public synchronized Http2Stream upgrade(byte[] settings) throws IOException {
+
+		if (settings.length % 6 != 0) {
+			throw new IOException("illegal HTTP2-Settings");
+		}
+
+		applySettings(settings, 0, settings.length);
+
+		Http2Stream stream = new Http2Stream(1, initialWindowSize);
+
+		stream.setEndStream(true);
+
+		stream.clearRequest();
+
+		streams.put(1, stream);
+
+		lastStreamID = 1;
+
+		return stream;
+	}
+
+	/**
+	 * 解析buffer中的帧，某个流的请求完整时返回该流，buffer读完时返回null
+	 */
+	public Http2Stream read(ReadFuture owner, ByteBuffer buffer) throws IOException {
+
+		byte[] preface = CONNECTION_PREFACE;
+
+		for (; prefaceRead < preface.length;) {
+
+			if (!buffer.hasRemaining()) {
+				return null;
+			}
+
+			if (buffer.get() != preface[prefaceRead++]) {
+				throw new IOException("illegal http2 connection preface");
+			}
+		}
+
+		for (; buffer.hasRemaining();) {
+
+			if (frameHeaderRead < FRAME_HEADER_LENGTH) {
+
+				int length = Math.min(FRAME_HEADER_LENGTH - frameHeaderRead, buffer.remaining());
+
+				buffer.get(frameHeader, frameHeaderRead, length);
+
+				frameHeaderRead += length;
+
+				if (frameHeaderRead < FRAME_HEADER_LENGTH) {
+					return null;
+				}
+
+				byte[] h = frameHeader;
+
+				payloadLength = ((h[0] & 0xff) << 16) | ((h[1] & 0xff) << 8) | (h[2] & 0xff);
+				frameType = h[3] & 0xff;
+				frameFlags = h[4] & 0xff;
+				frameStreamID = readInt(h, 5) & 0x7fffffff;
+				payloadRead = 0;
+
+				if (payloadLength > DEFAULT_MAX_FRAME_SIZE) {
+					throw connectionError(owner, FRAME_SIZE_ERROR, "frame too large:" + payloadLength);
+				}
+			}
+
+			int length = Math.min(payloadLength - payloadRead, buffer.remaining());
+
+			buffer.get(payload, payloadRead, length);
+
+			payloadRead += length;
+
+			if (payloadRead < payloadLength) {
+				return null;
+			}
+
+			frameHeaderRead = 0;
+
+			Http2Stream stream = onFrame(owner);
+
+			if (stream != null) {
+				return stream;
+			}
+		}
+
+		return null;
+	}
+
+	private Http2Stream onFrame(ReadFuture owner) throws IOException {
+
+		if (headerStream != null
+				&& (frameType != TYPE_CONTINUATION || frameStreamID != headerStream.getStreamID())) {
+			throw connectionError(owner, PROTOCOL_ERROR, "expect CONTINUATION");
+		}
+
+		switch (frameType) {
+		case TYPE_DATA:
+			return onData(owner);
+		case TYPE_HEADERS:
+			return onHeaders(owner);
+		case TYPE_CONTINUATION:
+			return onContinuation(owner);
+		case TYPE_PRIORITY:
+			// 不处理优先级
+			return null;
+		case TYPE_RST_STREAM:
+			onRstStream(owner);
+			return null;
+		case TYPE_SETTINGS:
+			onSettings(owner);
+			return null;
+		case TYPE_PING:
+			onPing(owner);
+			return null;
+		case TYPE_GOAWAY:
+			throw new IOException("received GOAWAY,error code:" + (payloadLength < 8 ? -1 : readInt(payload, 4)));
+		case TYPE_WINDOW_UPDATE:
+			onWindowUpdate(owner);
+			return null;
+		case TYPE_PUSH_PROMISE:
+			throw connectionError(owner, PROTOCOL_ERROR, "client can not push");
+		default:
+			// 忽略未知类型的帧
+			return null;
+		}
+	}
+
+	private Http2Stream onData(ReadFuture owner) throws IOException {
+
+		int streamID = frameStreamID;
+
+		if (streamID == 0) {
+			throw connectionError(owner, PROTOCOL_ERROR, "DATA on stream 0");
+		}
+
+		int offset = 0;
+
+		int length = payloadLength;
+
+		if ((frameFlags & FLAG_PADDED) != 0) {
+
+			if (length == 0) {
+				throw connectionError(owner, PROTOCOL_ERROR, "illegal padding");
+			}
+
+			int padding = payload[0] & 0xff;
+
+			offset = 1;
+
+			length = length - 1 - padding;
+
+			if (length < 0) {
+				throw connectionError(owner, PROTOCOL_ERROR, "illegal padding");
+			}
+		}
+
+		Http2Stream stream = getStream(streamID);
+
+		boolean endStream = (frameFlags & FLAG_END_STREAM) != 0;
+
+		// 收到多少就归还多少窗口，流结束时只需要归还连接的窗口
+		BufferedOutputStream out = new BufferedOutputStream((FRAME_HEADER_LENGTH + 4) * 2 + 13);
+
+		if (payloadLength > 0) {
+
+			writeWindowUpdate(out, 0, payloadLength);
+
+			if (stream != null && !endStream) {
+				writeWindowUpdate(out, streamID, payloadLength);
+			}
+		}
+
+		if (stream == null || stream.isEndStream()) {
+
+			if (streamID > lastStreamID) {
+				throw connectionError(owner, PROTOCOL_ERROR, "DATA on idle stream:" + streamID);
+			}
+
+			writeRstStream(out, streamID, STREAM_CLOSED);
+
+			writeFrames(owner, out);
+
+			return null;
+		}
+
+		if (stream.getBodyLength() + length > MAX_BODY_LENGTH) {
+
+			writeRstStream(out, streamID, ENHANCE_YOUR_CALM);
+
+			writeFrames(owner, out);
+
+			removeStream(streamID);
+
+			return null;
+		}
+
+		if (out.size() > 0) {
+			writeFrames(owner, out);
+		}
+
+		stream.writeBody(payload, offset, length);
+
+		if (endStream) {
+			stream.setEndStream(true);
+			return stream;
+		}
+
+		return null;
+	}
+
+	private Http2Stream onHeaders(ReadFuture owner) throws IOException {
+
+		int streamID = frameStreamID;
+
+		if (streamID == 0 || (streamID & 1) == 0) {
+			throw connectionError(owner, PROTOCOL_ERROR, "illegal stream id:" + streamID);
+		}
+
+		int offset = 0;
+
+		int length = payloadLength;
+
+		int padding = 0;
+
+		if ((frameFlags & FLAG_PADDED) != 0) {
+
+			if (length == 0) {
+				throw connectionError(owner, PROTOCOL_ERROR, "illegal padding");
+			}
+
+			padding = payload[0] & 0xff;
+
+			offset++;
+		}
+
+		if ((frameFlags & FLAG_PRIORITY) != 0) {
+			offset += 5;
+		}
+
+		length = length - offset - padding;
+
+		if (length < 0) {
+			throw connectionError(owner, PROTOCOL_ERROR, "illegal HEADERS frame");
+		}
+
+		Http2Stream stream = getStream(streamID);
+
+		if (stream == null) {
+
+			if (streamID <= lastStreamID) {
+				throw connectionError(owner, STREAM_CLOSED, "HEADERS on closed stream:" + streamID);
+			}
+
+			lastStreamID = streamID;
+
+			stream = createStream(streamID);
+
+		} else if (stream.isEndStream()) {
+			throw connectionError(owner, STREAM_CLOSED, "HEADERS on half closed stream:" + streamID);
+		}
+
+		if ((frameFlags & FLAG_END_STREAM) != 0) {
+			stream.setEndStream(true);
+		}
+
+		stream.getHeaderBlock().reset();
+
+		stream.getHeaderBlock().write(payload, offset, length);
+
+		if ((frameFlags & FLAG_END_HEADERS) == 0) {
+			headerStream = stream;
+			return null;
+		}
+
+		return onHeaderBlock(owner, stream);
+	}
+
+	private Http2Stream onContinuation(ReadFuture owner) throws IOException {
+
+		Http2Stream stream = headerStream;
+
+		if (stream == null) {
+			throw connectionError(owner, PROTOCOL_ERROR, "unexpected CONTINUATION");
+		}
+
+		BufferedOutputStream block = stream.getHeaderBlock();
+
+		if (block.size() + payloadLength > MAX_HEADER_BLOCK_LENGTH) {
+			throw connectionError(owner, ENHANCE_YOUR_CALM, "header block too large");
+		}
+
+		block.write(payload, 0, payloadLength);
+
+		if ((frameFlags & FLAG_END_HEADERS) == 0) {
+			return null;
+		}
+
+		headerStream = null;
+
+		return onHeaderBlock(owner, stream);
+	}
+
+	private Http2Stream onHeaderBlock(ReadFuture owner, Http2Stream stream) throws IOException {
+
+		BufferedOutputStream block = stream.getHeaderBlock();
+
+		List<HpackHeaderField> headers = stream.getHeaders();
+
+		// trailers只需要解码以维护动态表
+		boolean trailers = !headers.isEmpty();
+
+		List<HpackHeaderField> target = trailers ? new ArrayList<HpackHeaderField>() : headers;
+
+		try {
+			hpackDecoder.decode(block.array(), 0, block.size(), target);
+		} catch (IOException e) {
+			throw connectionError(owner, COMPRESSION_ERROR, e.getMessage());
+		}
+
+		block.reset();
+
+		if (stream.isRefused()) {
+			writeRstStream(owner, stream.getStreamID(), REFUSED_STREAM);
+			return null;
+		}
+
+		if (!trailers && !hasRequestPseudoHeaders(headers)) {
+			writeRstStream(owner, stream.getStreamID(), PROTOCOL_ERROR);
+			removeStream(stream.getStreamID());
+			return null;
+		}
+
+		return stream.isEndStream() ? stream : null;
+	}
+
+	private boolean hasRequestPseudoHeaders(List<HpackHeaderField> headers) {
+
+		boolean method = false;
+
+		boolean path = false;
+
+		for (HpackHeaderField f : headers) {
+
+			String name = f.getName();
+
+			if (":method".equals(name)) {
+				method = true;
+			} else if (":path".equals(name)) {
+				path = true;
+			}
+		}
+
+		return method && path;
+	}
+
+	private void onRstStream(ReadFuture owner) throws IOException {
+
+		if (frameStreamID == 0 || payloadLength != 4) {
+			throw connectionError(owner, PROTOCOL_ERROR, "illegal RST_STREAM");
+		}
+
+		removeStream(frameStreamID);
+	}
+
+	private void onSettings(ReadFuture owner) throws IOException {
+
+		if (frameStreamID != 0 || payloadLength % 6 != 0) {
+			throw connectionError(owner, FRAME_SIZE_ERROR, "illegal SETTINGS");
+		}
+
+		if ((frameFlags & FLAG_ACK) != 0) {
+			return;
+		}
+
+		synchronized (this) {
+
+			try {
+				applySettings(payload, 0, payloadLength);
+			} catch (IOException e) {
+				throw connectionError(owner, FLOW_CONTROL_ERROR, e.getMessage());
+			}
+		}
+
+		BufferedOutputStream out = new BufferedOutputStream(FRAME_HEADER_LENGTH);
+
+		writeFrameHeader(out, 0, TYPE_SETTINGS, FLAG_ACK, 0);
+
+		writeFrames(owner, out);
+
+		flushPending();
+	}
+
+	private void applySettings(byte[] array, int offset, int length) throws IOException {
+
+		for (int i = offset; i < offset + length; i += 6) {
+
+			int id = ((array[i] & 0xff) << 8) | (array[i + 1] & 0xff);
+
+			int value = readInt(array, i + 2);
+
+			switch (id) {
+			case SETTINGS_INITIAL_WINDOW_SIZE:
+
+				if (value < 0) {
+					throw new IOException("illegal initial window size:" + (value & 0xffffffffL));
+				}
+
+				int delta = value - initialWindowSize;
+
+				initialWindowSize = value;
+
+				for (Http2Stream stream : streams.values()) {
+
+					long window = (long) stream.getSendWindow() + delta;
+
+					if (window > MAX_WINDOW_SIZE) {
+						throw new IOException("window overflow");
+					}
+
+					stream.setSendWindow((int) window);
+				}
+				break;
+			case SETTINGS_MAX_FRAME_SIZE:
+
+				if (value < DEFAULT_MAX_FRAME_SIZE || value > 0xffffff) {
+					throw new IOException("illegal max frame size:" + value);
+				}
+
+				maxFrameSize = value;
+				break;
+			default:
+				// 编码器不使用动态表，HEADER_TABLE_SIZE等无需处理
+				break;
+			}
+		}
+	}
+
+	private void onPing(ReadFuture owner) throws IOException {
+
+		if (frameStreamID != 0 || payloadLength != 8) {
+			throw connectionError(owner, FRAME_SIZE_ERROR, "illegal PING");
+		}
+
+		if ((frameFlags & FLAG_ACK) != 0) {
+			return;
+		}
+
+		BufferedOutputStream out = new BufferedOutputStream(FRAME_HEADER_LENGTH + 8);
+
+		writeFrameHeader(out, 8, TYPE_PING, FLAG_ACK, 0);
+
+		out.write(payload, 0, 8);
+
+		writeFrames(owner, out);
+	}
+
+	private void onWindowUpdate(ReadFuture owner) throws IOException {
+
+		if (payloadLength != 4) {
+			throw connectionError(owner, FRAME_SIZE_ERROR, "illegal WINDOW_UPDATE");
+		}
+
+		int increment = readInt(payload, 0) & 0x7fffffff;
+
+		int streamID = frameStreamID;
+
+		if (increment == 0) {
+
+			if (streamID == 0) {
+				throw connectionError(owner, PROTOCOL_ERROR, "zero window increment");
+			}
+
+			writeRstStream(owner, streamID, PROTOCOL_ERROR);
+
+			removeStream(streamID);
+
+			return;
+		}
+
+		synchronized (this) {
+
+			if (streamID == 0) {
+
+				if ((long) sendWindow + increment > MAX_WINDOW_SIZE) {
+					throw connectionError(owner, FLOW_CONTROL_ERROR, "window overflow");
+				}
+
+				sendWindow += increment;
+
+			} else {
+
+				Http2Stream stream = streams.get(streamID);
+
+				if (stream == null) {
+					return;
+				}
+
+				if ((long) stream.getSendWindow() + increment > MAX_WINDOW_SIZE) {
+					writeRstStream(owner, streamID, FLOW_CONTROL_ERROR);
+					removeStream(streamID);
+					return;
+				}
+
+				stream.setSendWindow(stream.getSendWindow() + increment);
+			}
+
+			flushPending();
+		}
+	}
+
+	private synchronized Http2Stream getStream(int streamID) {
+		return streams.get(streamID);
+	}
+
+	private synchronized Http2Stream createStream(int streamID) {
+
+		Http2Stream stream = new Http2Stream(streamID, initialWindowSize);
+
+		// 超出并发数的流仍需解码头部以维护HPACK动态表，之后拒绝
+		if (streams.size() >= MAX_CONCURRENT_STREAMS) {
+			stream.setRefused(true);
+			return stream;
+		}
+
+		streams.put(streamID, stream);
+
+		return stream;
+	}
+
+	private synchronized void removeStream(int streamID) {
+
+		Http2Stream stream = streams.remove(streamID);
+
+		if (stream != null) {
+			pendingStreams.remove(stream);
+		}
+	}
+
+	/**
+	 * 写出响应，头部按对端的max frame size拆分为HEADERS+CONTINUATION，
+	 * body在窗口允许的范围内随头部一起写出，其余部分在窗口更新后继续写
+	 */
+	public synchronized Http2FrameWriteFuture writeResponse(ReadFuture future, int streamID,
+			BufferedOutputStream headerBlock, byte[] data, int length, File file, long position, long fileLength)
+			throws IOException {
+
+		Http2Stream stream = streams.get(streamID);
+
+		long dataLength = file == null ? length : fileLength;
+
+		// 流已被对端重置时只写头部
+		boolean hasData = stream != null && dataLength > 0;
+
+		BufferedOutputStream out = new BufferedOutputStream(headerBlock.size() + FRAME_HEADER_LENGTH * 2
+				+ (hasData ? (int) Math.min(Math.min(dataLength, sendWindow), MAX_WRITE_LENGTH) + 64 : 0));
+
+		byte[] block = headerBlock.array();
+
+		int blockLength = headerBlock.size();
+
+		int offset = 0;
+
+		int type = TYPE_HEADERS;
+
+		for (;;) {
+
+			int fragment = Math.min(blockLength - offset, maxFrameSize);
+
+			boolean last = offset + fragment == blockLength;
+
+			int flags = last ? FLAG_END_HEADERS : 0;
+
+			if (type == TYPE_HEADERS && !hasData) {
+				flags |= FLAG_END_STREAM;
+			}
+
+			writeFrameHeader(out, fragment, type, flags, streamID);
+
+			out.write(block, offset, fragment);
+
+			offset += fragment;
+
+			if (last) {
+				break;
+			}
+
+			type = TYPE_CONTINUATION;
+		}
+
+		if (!hasData) {
+
+			removeStream(streamID);
+
+			Http2FrameWriteFuture f = new Http2FrameWriteFuture(future, allocate(out));
+
+			f.setResponseComplete(true);
+
+			return f;
+		}
+
+		if (file == null) {
+			stream.setResponse(future, data, length);
+		} else {
+			stream.setResponse(future, file, position, fileLength);
+		}
+
+		boolean complete = writeData(stream, out);
+
+		Http2FrameWriteFuture f = new Http2FrameWriteFuture(future, allocate(out));
+
+		if (complete) {
+			removeStream(streamID);
+			f.setResponseComplete(true);
+		} else {
+			// data可能是压缩器的线程缓冲区，剩余部分需要复制
+			stream.detachData();
+			stream.setWriting(true);
+			f.setPendingStream(this, stream);
+		}
+
+		return f;
+	}
+
+	/**
+	 * 某个流的一组DATA(或头部)已写出，继续写该流剩余的部分。
+	 * 同一个流同时只有一组DATA在写，保证帧的顺序以及内存占用
+	 */
+	synchronized void onDataSent(Http2Stream stream) {
+
+		stream.setWriting(false);
+
+		if (streams.get(stream.getStreamID()) != stream) {
+			return;
+		}
+
+		if (!pendingStreams.contains(stream)) {
+			pendingStreams.add(stream);
+		}
+
+		flushPending();
+	}
+
+	private synchronized void flushPending() {
+
+		Iterator<Http2Stream> it = pendingStreams.iterator();
+
+		for (; it.hasNext() && sendWindow > 0;) {
+
+			Http2Stream stream = it.next();
+
+			if (stream.isWriting() || stream.getSendWindow() <= 0) {
+				continue;
+			}
+
+			BufferedOutputStream out = new BufferedOutputStream((int) Math.min(
+					Math.min(stream.getRemaining(), sendWindow), MAX_WRITE_LENGTH) + 64);
+
+			Http2FrameWriteFuture f;
+
+			try {
+
+				boolean complete = writeData(stream, out);
+
+				f = new Http2FrameWriteFuture(stream.getResponseFuture(), allocate(out));
+
+				if (complete) {
+					it.remove();
+					streams.remove(stream.getStreamID());
+					f.setResponseComplete(true);
+				} else {
+					stream.setWriting(true);
+					f.setPendingStream(this, stream);
+				}
+
+			} catch (IOException e) {
+
+				logger.error(e.getMessage(), e);
+
+				it.remove();
+
+				streams.remove(stream.getStreamID());
+
+				CloseUtil.close(session);
+
+				return;
+			}
+
+			session.flush(f);
+		}
+	}
+
+	private boolean writeData(Http2Stream stream, BufferedOutputStream out) throws IOException {
+
+		FileChannel channel = stream.openFile();
+
+		try {
+
+			int streamID = stream.getStreamID();
+
+			for (; stream.getRemaining() > 0 && out.size() < MAX_WRITE_LENGTH;) {
+
+				int window = Math.min(sendWindow, stream.getSendWindow());
+
+				if (window <= 0) {
+					break;
+				}
+
+				int length = (int) Math.min(Math.min(window, maxFrameSize), stream.getRemaining());
+
+				boolean end = length == stream.getRemaining();
+
+				writeFrameHeader(out, length, TYPE_DATA, end ? FLAG_END_STREAM : 0, streamID);
+
+				stream.readData(out, length, channel, scratch);
+
+				sendWindow -= length;
+
+				stream.setSendWindow(stream.getSendWindow() - length);
+			}
+
+			return stream.getRemaining() == 0;
+
+		} finally {
+			CloseUtil.close(channel);
+		}
+	}
+
+	private void writeWindowUpdate(BufferedOutputStream out, int streamID, int increment) {
+		writeFrameHeader(out, 4, TYPE_WINDOW_UPDATE, 0, streamID);
+		writeInt(out, increment);
+	}
+
+	private void writeRstStream(BufferedOutputStream out, int streamID, int errorCode) {
+		writeFrameHeader(out, 4, TYPE_RST_STREAM, 0, streamID);
+		writeInt(out, errorCode);
+	}
+
+	private void writeRstStream(ReadFuture owner, int streamID, int errorCode) throws IOException {
+
+		BufferedOutputStream out = new BufferedOutputStream(FRAME_HEADER_LENGTH + 4);
+
+		writeRstStream(out, streamID, errorCode);
+
+		writeFrames(owner, out);
+	}
+
+	/**
+	 * 发送GOAWAY，返回的异常由调用方抛出，selector关闭连接
+	 */
+	private IOException connectionError(ReadFuture owner, int errorCode, String message) {
+
+		BufferedOutputStream out = new BufferedOutputStream(FRAME_HEADER_LENGTH + 8);
+
+		writeFrameHeader(out, 8, TYPE_GOAWAY, 0, 0);
+
+		writeInt(out, lastStreamID);
+
+		writeInt(out, errorCode);
+
+		try {
+			writeFrames(owner, out);
+		} catch (IOException e) {
+			logger.debug(e.getMessage(), e);
+		}
+
+		return new IOException("http2 connection error(" + errorCode + "):" + message);
+	}
+
+	private void writeFrames(ReadFuture owner, BufferedOutputStream out) throws IOException {
+		session.flush(new Http2FrameWriteFuture(owner, allocate(out)));
+	}
+
+	private ByteBuf allocate(BufferedOutputStream out) throws IOException {
+
+		ByteBuf buf = session.getContext().getHeapByteBufferPool().allocate(out.size());
+
+		if (buf == null) {
+			throw new IOException("not enough memory,length:" + out.size());
+		}
+
+		buf.put(out.array(), 0, out.size());
+
+		buf.flip();
+
+		return buf;
+	}
+
+	public IOSession getSession() {
+		return session;
+	}
+
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+}
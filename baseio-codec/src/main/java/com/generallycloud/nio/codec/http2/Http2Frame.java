@@ -0,0 +1,78 @@
+package com.generallycloud.nio.codec.http2;
+
+import com.generallycloud.nio.component.BufferedOutputStream;
+
+/**
+ * HTTP/2帧相关常量，帧头固定9字节：length(24) type(8) flags(8) R(1) stream(31)
+ */
+public class Http2Frame {
+
+	public static final int		FRAME_HEADER_LENGTH				= 9;
+
+	public static final int		DEFAULT_MAX_FRAME_SIZE			= 16384;
+
+	public static final int		DEFAULT_WINDOW_SIZE				= 65535;
+
+	public static final int		MAX_WINDOW_SIZE				= Integer.MAX_VALUE;
+
+	public static final int		TYPE_DATA						= 0x0;
+	public static final int		TYPE_HEADERS					= 0x1;
+	public static final int		TYPE_PRIORITY					= 0x2;
+	public static final int		TYPE_RST_STREAM				= 0x3;
+	public static final int		TYPE_SETTINGS					= 0x4;
+	public static final int		TYPE_PUSH_PROMISE				= 0x5;
+	public static final int		TYPE_PING						= 0x6;
+	public static final int		TYPE_GOAWAY					= 0x7;
+	public static final int		TYPE_WINDOW_UPDATE				= 0x8;
+	public static final int		TYPE_CONTINUATION				= 0x9;
+
+	public static final int		FLAG_END_STREAM				= 0x1;
+	public static final int		FLAG_ACK						= 0x1;
+	public static final int		FLAG_END_HEADERS				= 0x4;
+	public static final int		FLAG_PADDED					= 0x8;
+	public static final int		FLAG_PRIORITY					= 0x20;
+
+	public static final int		SETTINGS_HEADER_TABLE_SIZE		= 0x1;
+	public static final int		SETTINGS_ENABLE_PUSH			= 0x2;
+	public static final int		SETTINGS_MAX_CONCURRENT_STREAMS	= 0x3;
+	public static final int		SETTINGS_INITIAL_WINDOW_SIZE		= 0x4;
+	public static final int		SETTINGS_MAX_FRAME_SIZE			= 0x5;
+	public static final int		SETTINGS_MAX_HEADER_LIST_SIZE		= 0x6;
+
+	public static final int		NO_ERROR						= 0x0;
+	public static final int		PROTOCOL_ERROR					= 0x1;
+	public static final int		INTERNAL_ERROR					= 0x2;
+	public static final int		FLOW_CONTROL_ERROR				= 0x3;
+	public static final int		STREAM_CLOSED					= 0x5;
+	public static final int		FRAME_SIZE_ERROR				= 0x6;
+	public static final int		REFUSED_STREAM					= 0x7;
+	public static final int		CANCEL						= 0x8;
+	public static final int		COMPRESSION_ERROR				= 0x9;
+	public static final int		ENHANCE_YOUR_CALM				= 0xb;
+
+	public static final byte[]	CONNECTION_PREFACE				= "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes();
+
+	// preface中"SM\r\n\r\n"的长度，前面的部分是一个合法的HTTP/1.1请求头
+	public static final int		PREFACE_SM_LENGTH				= 6;
+
+	public static void writeFrameHeader(BufferedOutputStream out, int length, int type, int flags, int streamID) {
+		out.write(length >>> 16);
+		out.write(length >>> 8);
+		out.write(length);
+		out.write(type);
+		out.write(flags);
+		writeInt(out, streamID & 0x7fffffff);
+	}
+
+	public static void writeInt(BufferedOutputStream out, int value) {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	public static int readInt(byte[] array, int offset) {
+		return ((array[offset] & 0xff) << 24) | ((array[offset + 1] & 0xff) << 16)
+				| ((array[offset + 2] & 0xff) << 8) | (array[offset + 3] & 0xff);
+	}
+}
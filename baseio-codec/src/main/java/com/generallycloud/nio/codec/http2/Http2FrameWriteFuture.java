@@ -0,0 +1,75 @@
+package com.generallycloud.nio.codec.http2;
+
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.common.ReleaseUtil;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.protocol.IOWriteFuture;
+import com.generallycloud.nio.protocol.IOWriteFutureImpl;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 写出一组HTTP/2帧。控制帧(SETTINGS、WINDOW_UPDATE等)写完只释放内存，
+ * 响应的最后一帧写完才通知futureSent，响应未写完时由本帧写完后继续写该流剩余的DATA
+ */
+public class Http2FrameWriteFuture extends IOWriteFutureImpl {
+
+	private static final Logger	logger	= LoggerFactory.getLogger(Http2FrameWriteFuture.class);
+
+	private boolean			responseComplete;
+	private Http2Connection		connection;
+	private Http2Stream			pendingStream;
+
+	public Http2FrameWriteFuture(ReadFuture readFuture, ByteBuf buf) {
+		super(readFuture, buf);
+	}
+
+	public void setResponseComplete(boolean responseComplete) {
+		this.responseComplete = responseComplete;
+	}
+
+	public void setPendingStream(Http2Connection connection, Http2Stream stream) {
+		this.connection = connection;
+		this.pendingStream = stream;
+	}
+
+	public void onSuccess(IOSession session) {
+
+		if (responseComplete) {
+			super.onSuccess(session);
+			return;
+		}
+
+		ReleaseUtil.release(this);
+
+		if (pendingStream != null) {
+			connection.onDataSent(pendingStream);
+		}
+	}
+
+	public void onException(IOSession session, Exception e) {
+
+		if (responseComplete || pendingStream != null) {
+			super.onException(session, e);
+			return;
+		}
+
+		ReleaseUtil.release(this);
+
+		logger.debug(e.getMessage(), e);
+	}
+
+	// HEADERS依赖连接的HPACK动态表，DATA依赖流的发送窗口，不能写到其它连接
+	public IOWriteFuture duplicate() {
+		throw new UnsupportedOperationException("http2 frames can not be duplicated");
+	}
+
+	public boolean isDuplicable() {
+		return false;
+	}
+
+	public String toString() {
+		return "[http2 frames,length=" + buf.limit() + "]";
+	}
+}
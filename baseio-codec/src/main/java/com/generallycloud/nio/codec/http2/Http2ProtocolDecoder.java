@@ -0,0 +1,70 @@
+package com.generallycloud.nio.codec.http2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.generallycloud.nio.codec.http2.future.Http2ReadFutureImpl;
+import com.generallycloud.nio.codec.http2.future.Http2UpgradeReadFuture;
+import com.generallycloud.nio.common.ssl.SSLUtil;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.protocol.IOReadFuture;
+import com.generallycloud.nio.protocol.ProtocolDecoder;
+
+/**
+ * 连接建立后按以下顺序选择协议：ALPN协商出h2、以HTTP/2 connection preface开头(prior knowledge)、
+ * 否则按HTTP/1.1解析，HTTP/1.1请求可以通过Upgrade: h2c切换。
+ * 收到的preface不足3个字节时(如"PR")无法与PROPFIND等方法区分，先按HTTP/1.1读取，
+ * 读到请求行PRI * HTTP/2.0时再切换为HTTP/2(见Http2UpgradeReadFuture)
+ */
+public class Http2ProtocolDecoder implements ProtocolDecoder {
+
+	public static final String	ALPN_H2	= "h2";
+
+	public IOReadFuture decode(IOSession session, ByteBuffer buffer) throws IOException {
+
+		Http2Connection connection = Http2Connection.getConnection(session);
+
+		if (connection != null) {
+			return new Http2ReadFutureImpl(session, buffer, connection);
+		}
+
+		if (isHttp2(session, buffer)) {
+
+			connection = Http2Connection.createConnection(session);
+
+			Http2ReadFutureImpl future = new Http2ReadFutureImpl(session, buffer, connection);
+
+			connection.writeSettings(future);
+
+			return future;
+		}
+
+		return new Http2UpgradeReadFuture(session, buffer);
+	}
+
+	private boolean isHttp2(IOSession session, ByteBuffer buffer) {
+
+		if (session.isEnableSSL()) {
+			return ALPN_H2.equals(SSLUtil.getApplicationProtocol(session.getSSLEngine()));
+		}
+
+		byte[] preface = Http2Frame.CONNECTION_PREFACE;
+
+		int length = Math.min(buffer.remaining(), preface.length);
+
+		// "PRI"不是HTTP/1.1中的方法，更短时交给Http2UpgradeReadFuture
+		if (length < 3) {
+			return false;
+		}
+
+		int position = buffer.position();
+
+		for (int i = 0; i < length; i++) {
+			if (buffer.get(position + i) != preface[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
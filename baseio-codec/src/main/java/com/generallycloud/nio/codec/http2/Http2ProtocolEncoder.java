@@ -0,0 +1,128 @@
+package com.generallycloud.nio.codec.http2;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.generallycloud.nio.codec.http11.HttpCompressor;
+import com.generallycloud.nio.codec.http11.ServerHTTPProtocolEncoder;
+import com.generallycloud.nio.codec.http11.future.Cookie;
+import com.generallycloud.nio.codec.http11.future.ServerHttpReadFuture;
+import com.generallycloud.nio.codec.http2.future.Http2ReadFuture;
+import com.generallycloud.nio.codec.http2.hpack.HpackEncoder;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BufferedOutputStream;
+import com.generallycloud.nio.protocol.IOReadFuture;
+import com.generallycloud.nio.protocol.IOWriteFuture;
+import com.generallycloud.nio.protocol.ProtocolEncoder;
+
+/**
+ * HTTP/2响应编码，未切换到HTTP/2的请求交给HTTP/1.1编码
+ */
+public class Http2ProtocolEncoder implements ProtocolEncoder {
+
+	// HTTP/2中禁止出现的连接相关头部
+	private static final Set<String>	CONNECTION_HEADERS	= new HashSet<String>();
+
+	static {
+		CONNECTION_HEADERS.add("connection");
+		CONNECTION_HEADERS.add("keep-alive");
+		CONNECTION_HEADERS.add("proxy-connection");
+		CONNECTION_HEADERS.add("transfer-encoding");
+		CONNECTION_HEADERS.add("upgrade");
+		CONNECTION_HEADERS.add("content-length");
+	}
+
+	private HpackEncoder			hpackEncoder		= new HpackEncoder();
+
+	private HttpCompressor			compressor;
+
+	private ServerHTTPProtocolEncoder	http11Encoder;
+
+	public Http2ProtocolEncoder(HttpCompressor compressor) {
+		this.compressor = compressor;
+		this.http11Encoder = new ServerHTTPProtocolEncoder(compressor);
+	}
+
+	public IOWriteFuture encode(BaseContext context, IOReadFuture readFuture) throws IOException {
+
+		Http2ReadFuture f = (Http2ReadFuture) readFuture;
+
+		Http2Connection connection = f.getConnection();
+
+		if (connection == null) {
+			return http11Encoder.encode(context, readFuture);
+		}
+
+		ServerHttpReadFuture future = (ServerHttpReadFuture) readFuture;
+
+		BufferedOutputStream o = readFuture.getWriteBuffer();
+
+		File file = future.getResponseFile();
+
+		byte[] body = o.array();
+
+		int size = o.size();
+
+		if (file == null && compressor != null) {
+
+			String encoding = compressor.getContentEncoding(future, size);
+
+			if (encoding != null) {
+
+				byte[] compressed = compressor.compress(encoding, body, 0, size);
+
+				if (compressed != null) {
+
+					body = compressed;
+
+					size = compressor.getCompressedLength();
+
+					future.setResponseHeader("Content-Encoding", encoding);
+				}
+
+				future.setResponseHeader("Vary", "Accept-Encoding");
+			}
+		}
+
+		long contentLength = file == null ? size : future.getResponseFileLength();
+
+		BufferedOutputStream block = new BufferedOutputStream(256);
+
+		HpackEncoder encoder = this.hpackEncoder;
+
+		encoder.encode(":status", String.valueOf(future.getStatus().getStatus()), block);
+		encoder.encode("server", "baseio/0.0.1", block);
+		encoder.encode("content-length", String.valueOf(contentLength), block);
+
+		Map<String, String> headers = future.getResponseHeaders();
+
+		if (headers != null) {
+			for (Entry<String, String> header : headers.entrySet()) {
+
+				String name = header.getKey().toLowerCase();
+
+				if (CONNECTION_HEADERS.contains(name)) {
+					continue;
+				}
+
+				encoder.encode(name, header.getValue(), block);
+			}
+		}
+
+		List<Cookie> cookieList = future.getCookieList();
+
+		if (cookieList != null) {
+			for (Cookie c : cookieList) {
+				encoder.encode("set-cookie", c.toString(), block);
+			}
+		}
+
+		return connection.writeResponse(future, f.getStreamID(), block, body, size, file,
+				future.getResponseFilePosition(), future.getResponseFileLength());
+	}
+}
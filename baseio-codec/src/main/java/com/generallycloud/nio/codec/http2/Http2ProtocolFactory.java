@@ -0,0 +1,40 @@
+package com.generallycloud.nio.codec.http2;
+
+import com.generallycloud.nio.codec.http11.HttpCompressor;
+import com.generallycloud.nio.common.ssl.SSLUtil;
+import com.generallycloud.nio.protocol.ProtocolDecoder;
+import com.generallycloud.nio.protocol.ProtocolEncoder;
+import com.generallycloud.nio.protocol.ProtocolFactory;
+
+/**
+ * HTTP/2(ALPN h2、h2c升级或prior knowledge)，同时兼容HTTP/1.1请求。
+ * 使用TLS时需要在SslContext中配置ALPN(h2, http/1.1)
+ */
+public class Http2ProtocolFactory implements ProtocolFactory {
+
+	private HttpCompressor	compressor;
+
+	public Http2ProtocolFactory() {
+	}
+
+	/**
+	 * @param compressor 响应压缩，null表示不压缩
+	 */
+	public Http2ProtocolFactory(HttpCompressor compressor) {
+		this.compressor = compressor;
+	}
+
+	public ProtocolDecoder getProtocolDecoder() {
+		SSLUtil.init();
+
+		return new Http2ProtocolDecoder();
+	}
+
+	public ProtocolEncoder getProtocolEncoder() {
+		return new Http2ProtocolEncoder(compressor);
+	}
+
+	public String getProtocolID() {
+		return "HTTP2";
+	}
+}
@@ -0,0 +1,187 @@
+package com.generallycloud.nio.codec.http2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.generallycloud.nio.codec.http2.hpack.HpackHeaderField;
+import com.generallycloud.nio.component.BufferedOutputStream;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 一个HTTP/2流，请求部分在selector线程中组装，响应部分受连接锁保护
+ */
+public class Http2Stream {
+
+	private int					streamID;
+	private int					sendWindow;
+	private boolean				endStream;
+	private boolean				refused;
+	private BufferedOutputStream		headerBlock	= new BufferedOutputStream();
+	private List<HpackHeaderField>	headers		= new ArrayList<HpackHeaderField>();
+	private BufferedOutputStream		body;
+
+	private ReadFuture				responseFuture;
+	private byte[]				data;
+	private int					dataOffset;
+	private File					file;
+	private long					filePosition;
+	private long					remaining;
+	private boolean				writing;
+
+	public Http2Stream(int streamID, int sendWindow) {
+		this.streamID = streamID;
+		this.sendWindow = sendWindow;
+	}
+
+	public int getStreamID() {
+		return streamID;
+	}
+
+	public int getSendWindow() {
+		return sendWindow;
+	}
+
+	public void setSendWindow(int sendWindow) {
+		this.sendWindow = sendWindow;
+	}
+
+	public boolean isEndStream() {
+		return endStream;
+	}
+
+	public void setEndStream(boolean endStream) {
+		this.endStream = endStream;
+	}
+
+	public boolean isRefused() {
+		return refused;
+	}
+
+	public void setRefused(boolean refused) {
+		this.refused = refused;
+	}
+
+	public BufferedOutputStream getHeaderBlock() {
+		return headerBlock;
+	}
+
+	public List<HpackHeaderField> getHeaders() {
+		return headers;
+	}
+
+	public BufferedOutputStream getBody() {
+		return body;
+	}
+
+	public void writeBody(byte[] array, int offset, int length) {
+		if (body == null) {
+			body = new BufferedOutputStream(Math.max(length, 128));
+		}
+		body.write(array, offset, length);
+	}
+
+	public int getBodyLength() {
+		return body == null ? 0 : body.size();
+	}
+
+	/**
+	 * 请求已交给业务处理，释放请求部分的引用
+	 */
+	public void clearRequest() {
+		headerBlock = null;
+		headers = null;
+		body = null;
+	}
+
+	public void setResponse(ReadFuture future, byte[] data, int length) {
+		this.responseFuture = future;
+		this.data = data;
+		this.remaining = length;
+	}
+
+	public void setResponse(ReadFuture future, File file, long position, long length) {
+		this.responseFuture = future;
+		this.file = file;
+		this.filePosition = position;
+		this.remaining = length;
+	}
+
+	public void detachData() {
+
+		if (data == null) {
+			return;
+		}
+
+		byte[] array = new byte[(int) remaining];
+
+		System.arraycopy(data, dataOffset, array, 0, array.length);
+
+		data = array;
+
+		dataOffset = 0;
+	}
+
+	public ReadFuture getResponseFuture() {
+		return responseFuture;
+	}
+
+	public long getRemaining() {
+		return remaining;
+	}
+
+	public boolean isWriting() {
+		return writing;
+	}
+
+	public void setWriting(boolean writing) {
+		this.writing = writing;
+	}
+
+	/**
+	 * 响应为文件时打开文件，调用方负责关闭。不在流上长期持有文件句柄，
+	 * 连接断开时不需要额外清理
+	 */
+	public FileChannel openFile() throws IOException {
+		return file == null ? null : new RandomAccessFile(file, "r").getChannel();
+	}
+
+	/**
+	 * 将响应中接下来的length个字节写入out
+	 */
+	public void readData(BufferedOutputStream out, int length, FileChannel channel, byte[] scratch)
+			throws IOException {
+
+		if (channel == null) {
+			out.write(data, dataOffset, length);
+			dataOffset += length;
+			remaining -= length;
+			return;
+		}
+
+		for (int read = 0; read < length;) {
+
+			int n = channel.read(ByteBuffer.wrap(scratch, 0, Math.min(scratch.length, length - read)), filePosition);
+
+			if (n == -1) {
+				throw new IOException("file truncated:" + file);
+			}
+
+			out.write(scratch, 0, n);
+
+			filePosition += n;
+
+			read += n;
+		}
+
+		remaining -= length;
+	}
+
+	public String toString() {
+		return "[stream:" + streamID + ",window:" + sendWindow + ",remaining:" + remaining + "]";
+	}
+}
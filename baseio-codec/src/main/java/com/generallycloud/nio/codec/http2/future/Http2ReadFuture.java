@@ -0,0 +1,14 @@
+package com.generallycloud.nio.codec.http2.future;
+
+import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
+import com.generallycloud.nio.codec.http2.Http2Connection;
+
+public interface Http2ReadFuture extends HttpReadFuture {
+
+	public abstract int getStreamID();
+
+	/**
+	 * @return 所属的HTTP/2连接，null表示该请求仍按HTTP/1.1响应
+	 */
+	public abstract Http2Connection getConnection();
+}
@@ -0,0 +1,128 @@
+package com.generallycloud.nio.codec.http2.future;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.generallycloud.nio.codec.http2.Http2Connection;
+import com.generallycloud.nio.codec.http2.Http2Stream;
+import com.generallycloud.nio.codec.http2.hpack.HpackHeaderField;
+import com.generallycloud.nio.codec.http11.future.ServerHttpReadFuture;
+import com.generallycloud.nio.component.BufferedOutputStream;
+import com.generallycloud.nio.component.IOSession;
+
+/**
+ * 一个HTTP/2流上的请求。帧的解析状态保存在连接中，本对象在读到某个流的完整请求时完成，
+ * 同一次读取中剩余的帧由下一个future继续解析
+ */
+public class Http2ReadFutureImpl extends ServerHttpReadFuture implements Http2ReadFuture {
+
+	private Http2Connection	connection;
+	private int			streamID;
+
+	public Http2ReadFutureImpl(IOSession session, ByteBuffer readBuffer, Http2Connection connection) {
+		super(session, readBuffer);
+		this.connection = connection;
+	}
+
+	public boolean read(IOSession session, ByteBuffer buffer) throws IOException {
+
+		Http2Stream stream = connection.read(this, buffer);
+
+		if (stream == null) {
+			return false;
+		}
+
+		this.streamID = stream.getStreamID();
+
+		this.version = "HTTP/2.0";
+
+		setHeaders(stream.getHeaders());
+
+		setBody(stream.getBody());
+
+		stream.clearRequest();
+
+		header_complete = true;
+
+		return true;
+	}
+
+	private void setHeaders(List<HpackHeaderField> headers) {
+
+		StringBuilder cookie = null;
+
+		for (HpackHeaderField f : headers) {
+
+			String name = f.getName();
+
+			String value = f.getValue();
+
+			if (name.charAt(0) == ':') {
+
+				if (":method".equals(name)) {
+					this.method = value;
+				} else if (":path".equals(name)) {
+					setRequestURL(value);
+				} else if (":authority".equals(name)) {
+					this.host = value;
+				}
+				continue;
+			}
+
+			if ("cookie".equals(name)) {
+
+				// HTTP/2允许将cookie拆分为多个字段
+				if (cookie == null) {
+					cookie = new StringBuilder(value);
+				} else {
+					cookie.append("; ").append(value);
+				}
+				continue;
+			}
+
+			String old = getRequestHeader(name);
+
+			setRequestHeader(name, old == null ? value : old + "," + value);
+		}
+
+		if (host == null) {
+			host = getRequestHeader("Host");
+		} else {
+			setRequestHeader("Host", host);
+		}
+
+		if (cookie != null) {
+			setRequestHeader("Cookie", cookie.toString());
+			parse_cookies(cookie.toString(), cookies);
+		}
+
+		parseContentType(getRequestHeader("Content-Type"));
+	}
+
+	private void setBody(BufferedOutputStream body) {
+
+		if (body == null || body.size() == 0) {
+			body_complete = true;
+			return;
+		}
+
+		this.contentLength = body.size();
+
+		this.hasBodyContent = true;
+
+		this.bodyContent = ByteBuffer.wrap(body.toByteArray());
+
+		this.bodyContent.position(contentLength);
+
+		decodeBody();
+	}
+
+	public int getStreamID() {
+		return streamID;
+	}
+
+	public Http2Connection getConnection() {
+		return connection;
+	}
+}
@@ -0,0 +1,111 @@
+package com.generallycloud.nio.codec.http2.future;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.codec.http2.Http2Connection;
+import com.generallycloud.nio.codec.http2.Http2FrameWriteFuture;
+import com.generallycloud.nio.codec.http11.future.ServerHttpReadFuture;
+import com.generallycloud.nio.common.BASE64Util;
+import com.generallycloud.nio.common.StringUtil;
+import com.generallycloud.nio.component.IOSession;
+
+/**
+ * HTTP/1.1请求，携带Upgrade: h2c时在读完请求后立即回复101并切换为HTTP/2，
+ * 该请求作为stream 1以HTTP/2响应。
+ * 请求行为PRI * HTTP/2.0时是分多次收到的connection preface，切换为HTTP/2，该请求不交给业务处理
+ */
+public class Http2UpgradeReadFuture extends ServerHttpReadFuture implements Http2ReadFuture {
+
+	private static final byte[]	SWITCHING_PROTOCOLS	= ("HTTP/1.1 101 Switching Protocols\r\n"
+			+ "Connection: Upgrade\r\nUpgrade: h2c\r\n\r\n").getBytes();
+
+	private Http2Connection		connection;
+
+	public Http2UpgradeReadFuture(IOSession session, ByteBuffer readBuffer) {
+		super(session, readBuffer);
+	}
+
+	public boolean read(IOSession session, ByteBuffer buffer) throws IOException {
+
+		if (!super.read(session, buffer)) {
+			return false;
+		}
+
+		if ("PRI".equals(getMethod()) && "HTTP/2.0".equals(getVersion())) {
+
+			Http2Connection connection = Http2Connection.createConnection(session);
+
+			connection.skipPrefaceRequestLine();
+
+			connection.writeSettings(this);
+
+			setSilent(true);
+
+			return true;
+		}
+
+		if (!"h2c".equalsIgnoreCase(getRequestHeader("Upgrade"))) {
+			return true;
+		}
+
+		String settings = getRequestHeader("HTTP2-Settings");
+
+		if (settings == null) {
+			return true;
+		}
+
+		byte[] array = decodeSettings(settings);
+
+		ByteBuf buf = session.getContext().getHeapByteBufferPool().allocate(SWITCHING_PROTOCOLS.length);
+
+		if (buf == null) {
+			throw new IOException("not enough memory");
+		}
+
+		buf.put(SWITCHING_PROTOCOLS);
+
+		buf.flip();
+
+		session.flush(new Http2FrameWriteFuture(this, buf));
+
+		Http2Connection connection = Http2Connection.createConnection(session);
+
+		connection.writeSettings(this);
+
+		connection.upgrade(array);
+
+		this.connection = connection;
+
+		return true;
+	}
+
+	// HTTP2-Settings为base64url编码的SETTINGS帧负载，不带padding
+	private byte[] decodeSettings(String settings) throws IOException {
+
+		if (StringUtil.isNullOrBlank(settings)) {
+			return new byte[0];
+		}
+
+		StringBuilder b = new StringBuilder(settings.trim().replace('-', '+').replace('_', '/'));
+
+		for (; b.length() % 4 != 0;) {
+			b.append('=');
+		}
+
+		try {
+			return BASE64Util.base64ToByteArray(b.toString());
+		} catch (RuntimeException e) {
+			throw new IOException("illegal HTTP2-Settings:" + settings);
+		}
+	}
+
+	public int getStreamID() {
+		return 1;
+	}
+
+	public Http2Connection getConnection() {
+		return connection;
+	}
+}
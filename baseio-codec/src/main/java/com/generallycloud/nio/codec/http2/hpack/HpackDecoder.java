@@ -0,0 +1,178 @@
+package com.generallycloud.nio.codec.http2.hpack;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.generallycloud.nio.Encoding;
+import com.generallycloud.nio.component.BufferedOutputStream;
+
+/**
+ * HPACK解码(RFC 7541)，每个连接一个实例，非线程安全
+ */
+public class HpackDecoder {
+
+	private HpackDynamicTable		dynamicTable;
+
+	private int					maxTableCapacity;
+
+	private BufferedOutputStream	huffmanBuffer	= new BufferedOutputStream(64);
+
+	private byte[]				array;
+
+	private int					position;
+
+	private int					end;
+
+	public HpackDecoder(int maxTableCapacity) {
+		this.maxTableCapacity = maxTableCapacity;
+		this.dynamicTable = new HpackDynamicTable(maxTableCapacity);
+	}
+
+	public void decode(byte[] array, int offset, int length, List<HpackHeaderField> headers) throws IOException {
+
+		this.array = array;
+		this.position = offset;
+		this.end = offset + length;
+
+		try {
+
+			for (; position < end;) {
+
+				int b = array[position] & 0xff;
+
+				if ((b & 0x80) != 0) {
+
+					// indexed header field
+					headers.add(getEntry(decodeInt(7)));
+
+				} else if ((b & 0x40) != 0) {
+
+					// literal header field with incremental indexing
+					HpackHeaderField field = decodeLiteral(6);
+
+					dynamicTable.add(field);
+
+					headers.add(field);
+
+				} else if ((b & 0x20) != 0) {
+
+					// dynamic table size update
+					int capacity = decodeInt(5);
+
+					if (capacity > maxTableCapacity) {
+						throw new IOException("dynamic table size update exceeds limit:" + capacity);
+					}
+
+					dynamicTable.setCapacity(capacity);
+
+				} else {
+
+					// literal header field without indexing / never indexed
+					headers.add(decodeLiteral(4));
+				}
+			}
+
+		} finally {
+			this.array = null;
+		}
+	}
+
+	private HpackHeaderField decodeLiteral(int prefix) throws IOException {
+
+		int index = decodeInt(prefix);
+
+		String name;
+
+		if (index == 0) {
+			name = decodeString();
+		} else {
+			name = getEntry(index).getName();
+		}
+
+		return new HpackHeaderField(name, decodeString());
+	}
+
+	private HpackHeaderField getEntry(int index) throws IOException {
+
+		if (index == 0) {
+			throw new IOException("illegal hpack index 0");
+		}
+
+		if (index <= HpackStaticTable.LENGTH) {
+			return HpackStaticTable.getEntry(index);
+		}
+
+		index -= HpackStaticTable.LENGTH;
+
+		if (index > dynamicTable.length()) {
+			throw new IOException("illegal hpack index:" + (index + HpackStaticTable.LENGTH));
+		}
+
+		return dynamicTable.getEntry(index);
+	}
+
+	private int decodeInt(int prefix) throws IOException {
+
+		int mask = (1 << prefix) - 1;
+
+		int value = array[position++] & mask;
+
+		if (value < mask) {
+			return value;
+		}
+
+		for (int m = 0;; m += 7) {
+
+			if (position == end) {
+				throw new IOException("hpack integer truncated");
+			}
+
+			if (m > 21) {
+				throw new IOException("hpack integer overflow");
+			}
+
+			int b = array[position++] & 0xff;
+
+			value += (b & 0x7f) << m;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+
+	private String decodeString() throws IOException {
+
+		if (position == end) {
+			throw new IOException("hpack string truncated");
+		}
+
+		boolean huffman = (array[position] & 0x80) != 0;
+
+		int length = decodeInt(7);
+
+		if (length > end - position) {
+			throw new IOException("hpack string truncated");
+		}
+
+		int offset = position;
+
+		position += length;
+
+		if (!huffman) {
+			return new String(array, offset, length, Encoding.ISO8859_1);
+		}
+
+		BufferedOutputStream buffer = this.huffmanBuffer;
+
+		buffer.reset();
+
+		HpackHuffman.decode(array, offset, length, buffer);
+
+		return new String(buffer.array(), 0, buffer.size(), Encoding.ISO8859_1);
+	}
+
+	public HpackDynamicTable getDynamicTable() {
+		return dynamicTable;
+	}
+}
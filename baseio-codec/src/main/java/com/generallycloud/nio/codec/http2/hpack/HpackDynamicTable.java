@@ -0,0 +1,132 @@
+package com.generallycloud.nio.codec.http2.hpack;
+
+/**
+ * HPACK动态表，环形数组保存，最新的条目下标最小
+ */
+public class HpackDynamicTable {
+
+	private HpackHeaderField[]	fields;
+
+	private int				head;
+
+	private int				length;
+
+	private int				size;
+
+	private int				capacity;
+
+	public HpackDynamicTable(int capacity) {
+		this.capacity = capacity;
+		this.fields = new HpackHeaderField[Math.max(capacity / HpackHeaderField.HEADER_ENTRY_OVERHEAD, 1)];
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @param index 从1开始，1为最新加入的条目
+	 */
+	public HpackHeaderField getEntry(int index) {
+
+		if (index < 1 || index > length) {
+			throw new IndexOutOfBoundsException("dynamic table index:" + index);
+		}
+
+		int i = head - index;
+
+		if (i < 0) {
+			i += fields.length;
+		}
+
+		return fields[i];
+	}
+
+	public void add(HpackHeaderField field) {
+
+		int fieldSize = field.size();
+
+		if (fieldSize > capacity) {
+			clear();
+			return;
+		}
+
+		for (; size + fieldSize > capacity;) {
+			remove();
+		}
+
+		if (length == fields.length) {
+			grow();
+		}
+
+		fields[head++] = field;
+
+		if (head == fields.length) {
+			head = 0;
+		}
+
+		length++;
+
+		size += fieldSize;
+	}
+
+	public void setCapacity(int capacity) {
+
+		this.capacity = capacity;
+
+		for (; size > capacity;) {
+			remove();
+		}
+	}
+
+	private void remove() {
+
+		int tail = head - length;
+
+		if (tail < 0) {
+			tail += fields.length;
+		}
+
+		HpackHeaderField field = fields[tail];
+
+		fields[tail] = null;
+
+		size -= field.size();
+
+		length--;
+	}
+
+	private void clear() {
+
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = null;
+		}
+
+		head = 0;
+
+		length = 0;
+
+		size = 0;
+	}
+
+	private void grow() {
+
+		HpackHeaderField[] array = new HpackHeaderField[fields.length << 1];
+
+		for (int i = length; i > 0; i--) {
+			array[length - i] = getEntry(i);
+		}
+
+		fields = array;
+
+		head = length;
+	}
+}
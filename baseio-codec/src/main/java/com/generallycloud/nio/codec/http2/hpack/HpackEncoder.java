@@ -0,0 +1,63 @@
+package com.generallycloud.nio.codec.http2.hpack;
+
+import com.generallycloud.nio.Encoding;
+import com.generallycloud.nio.component.BufferedOutputStream;
+
+/**
+ * HPACK编码，只引用静态表，其余字段使用不索引的字面量，不修改对端的动态表，
+ * 因此编码结果与帧的发送顺序无关，多个线程可以共享同一个实例
+ */
+public class HpackEncoder {
+
+	public void encode(String name, String value, BufferedOutputStream out) {
+
+		int index = HpackStaticTable.getIndex(name, value);
+
+		if (index != -1) {
+			encodeInt(out, 0x80, 7, index);
+			return;
+		}
+
+		index = HpackStaticTable.getIndex(name);
+
+		if (index != -1) {
+			// literal header field without indexing - indexed name
+			encodeInt(out, 0x00, 4, index);
+		} else {
+			out.write(0x00);
+			encodeString(out, name);
+		}
+
+		encodeString(out, value);
+	}
+
+	private void encodeString(BufferedOutputStream out, String value) {
+
+		byte[] array = value.getBytes(Encoding.ISO8859_1);
+
+		encodeInt(out, 0x00, 7, array.length);
+
+		out.write(array);
+	}
+
+	private void encodeInt(BufferedOutputStream out, int mask, int prefix, int value) {
+
+		int max = (1 << prefix) - 1;
+
+		if (value < max) {
+			out.write(mask | value);
+			return;
+		}
+
+		out.write(mask | max);
+
+		value -= max;
+
+		for (; value >= 0x80;) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+
+		out.write(value);
+	}
+}
@@ -0,0 +1,32 @@
+package com.generallycloud.nio.codec.http2.hpack;
+
+public class HpackHeaderField {
+
+	// RFC 7541 4.1，每个条目额外计算32字节
+	public static final int	HEADER_ENTRY_OVERHEAD	= 32;
+
+	private String			name;
+
+	private String			value;
+
+	public HpackHeaderField(String name, String value) {
+		this.name = name;
+		this.value = value;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	public int size() {
+		return name.length() + value.length() + HEADER_ENTRY_OVERHEAD;
+	}
+
+	public String toString() {
+		return name + ": " + value;
+	}
+}
@@ -0,0 +1,117 @@
+package com.generallycloud.nio.codec.http2.hpack;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HPACK静态表(RFC 7541 Appendix A)，下标从1开始
+ */
+public class HpackStaticTable {
+
+	private static final HpackHeaderField[]	STATIC_TABLE	= new HpackHeaderField[] {
+			new HpackHeaderField(":authority", ""),
+			new HpackHeaderField(":method", "GET"),
+			new HpackHeaderField(":method", "POST"),
+			new HpackHeaderField(":path", "/"),
+			new HpackHeaderField(":path", "/index.html"),
+			new HpackHeaderField(":scheme", "http"),
+			new HpackHeaderField(":scheme", "https"),
+			new HpackHeaderField(":status", "200"),
+			new HpackHeaderField(":status", "204"),
+			new HpackHeaderField(":status", "206"),
+			new HpackHeaderField(":status", "304"),
+			new HpackHeaderField(":status", "400"),
+			new HpackHeaderField(":status", "404"),
+			new HpackHeaderField(":status", "500"),
+			new HpackHeaderField("accept-charset", ""),
+			new HpackHeaderField("accept-encoding", "gzip, deflate"),
+			new HpackHeaderField("accept-language", ""),
+			new HpackHeaderField("accept-ranges", ""),
+			new HpackHeaderField("accept", ""),
+			new HpackHeaderField("access-control-allow-origin", ""),
+			new HpackHeaderField("age", ""),
+			new HpackHeaderField("allow", ""),
+			new HpackHeaderField("authorization", ""),
+			new HpackHeaderField("cache-control", ""),
+			new HpackHeaderField("content-disposition", ""),
+			new HpackHeaderField("content-encoding", ""),
+			new HpackHeaderField("content-language", ""),
+			new HpackHeaderField("content-length", ""),
+			new HpackHeaderField("content-location", ""),
+			new HpackHeaderField("content-range", ""),
+			new HpackHeaderField("content-type", ""),
+			new HpackHeaderField("cookie", ""),
+			new HpackHeaderField("date", ""),
+			new HpackHeaderField("etag", ""),
+			new HpackHeaderField("expect", ""),
+			new HpackHeaderField("expires", ""),
+			new HpackHeaderField("from", ""),
+			new HpackHeaderField("host", ""),
+			new HpackHeaderField("if-match", ""),
+			new HpackHeaderField("if-modified-since", ""),
+			new HpackHeaderField("if-none-match", ""),
+			new HpackHeaderField("if-range", ""),
+			new HpackHeaderField("if-unmodified-since", ""),
+			new HpackHeaderField("last-modified", ""),
+			new HpackHeaderField("link", ""),
+			new HpackHeaderField("location", ""),
+			new HpackHeaderField("max-forwards", ""),
+			new HpackHeaderField("proxy-authenticate", ""),
+			new HpackHeaderField("proxy-authorization", ""),
+			new HpackHeaderField("range", ""),
+			new HpackHeaderField("referer", ""),
+			new HpackHeaderField("refresh", ""),
+			new HpackHeaderField("retry-after", ""),
+			new HpackHeaderField("server", ""),
+			new HpackHeaderField("set-cookie", ""),
+			new HpackHeaderField("strict-transport-security", ""),
+			new HpackHeaderField("transfer-encoding", ""),
+			new HpackHeaderField("user-agent", ""),
+			new HpackHeaderField("vary", ""),
+			new HpackHeaderField("via", ""),
+			new HpackHeaderField("www-authenticate", "") };
+
+	public static final int					LENGTH		= STATIC_TABLE.length;
+
+	private static final Map<String, Integer>	NAME_INDEX	= new HashMap<String, Integer>();
+
+	private static final Map<String, Integer>	FIELD_INDEX	= new HashMap<String, Integer>();
+
+	static {
+
+		for (int i = LENGTH; i > 0; i--) {
+
+			HpackHeaderField field = STATIC_TABLE[i - 1];
+
+			NAME_INDEX.put(field.getName(), i);
+
+			if (field.getValue().length() > 0) {
+				FIELD_INDEX.put(field.getName() + ":" + field.getValue(), i);
+			}
+		}
+	}
+
+	public static HpackHeaderField getEntry(int index) {
+		return STATIC_TABLE[index - 1];
+	}
+
+	/**
+	 * @return 名称匹配的下标，没有时返回-1
+	 */
+	public static int getIndex(String name) {
+
+		Integer index = NAME_INDEX.get(name);
+
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return 名称和值均匹配的下标，没有时返回-1
+	 */
+	public static int getIndex(String name, String value) {
+
+		Integer index = FIELD_INDEX.get(name + ":" + value);
+
+		return index == null ? -1 : index;
+	}
+}
@@ -3,19 +3,36 @@ package com.generallycloud.nio.codec.line;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import com.generallycloud.nio.codec.line.future.LineBasedReadFuture;
 import com.generallycloud.nio.codec.line.future.LineBasedReadFutureImpl;
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.protocol.IOReadFuture;
 import com.generallycloud.nio.protocol.ProtocolDecoder;
 
 /**
- * 基于换行符\n的消息分割
+ * 基于换行符\n的消息分割，分隔符以及一行的最大长度可以通过LineBasedProtocolFactory设置
  */
 public class LineBasedProtocolDecoder implements ProtocolDecoder {
 
+	private byte		lineBase;
+
+	private boolean	stripCR;
+
+	private int		limit;
+
+	public LineBasedProtocolDecoder() {
+		this(LineBasedReadFuture.LINE_BASE, false, 1024 * 1024);
+	}
+
+	public LineBasedProtocolDecoder(byte lineBase, boolean stripCR, int limit) {
+		this.lineBase = lineBase;
+		this.stripCR = stripCR;
+		this.limit = limit;
+	}
+
 	public IOReadFuture decode(IOSession session, ByteBuffer buffer) throws IOException {
 		
-		return new LineBasedReadFutureImpl(session.getContext());
+		return new LineBasedReadFutureImpl(session.getContext(), lineBase, stripCR, limit);
 	}
 
 }
@@ -2,6 +2,7 @@ package com.generallycloud.nio.codec.line;
 
 import java.io.IOException;
 
+import com.generallycloud.nio.codec.line.future.LineBasedReadFuture;
 import com.generallycloud.nio.component.BaseContext;
 import com.generallycloud.nio.protocol.IOReadFuture;
 import com.generallycloud.nio.protocol.IOWriteFuture;
@@ -9,10 +10,28 @@ import com.generallycloud.nio.protocol.ProtocolEncoderImpl;
 
 public class LineBasedProtocolEncoder extends ProtocolEncoderImpl {
 	
-	private byte lineBase = '\n';
+	private byte		lineBase;
+
+	private boolean	crlf;
+
+	public LineBasedProtocolEncoder() {
+		this(LineBasedReadFuture.LINE_BASE, false);
+	}
+
+	/**
+	 * @param crlf 是否在分隔符之前写出\r
+	 */
+	public LineBasedProtocolEncoder(byte lineBase, boolean crlf) {
+		this.lineBase = lineBase;
+		this.crlf = crlf;
+	}
 
 	public IOWriteFuture encode(BaseContext context, IOReadFuture future) throws IOException {
 		
+		if (crlf) {
+			future.write((byte) '\r');
+		}
+
 		future.write(lineBase);
 		
 		return super.encode(context, future);
@@ -1,17 +1,61 @@
 package com.generallycloud.nio.codec.line;
 
+import com.generallycloud.nio.codec.line.future.LineBasedReadFuture;
 import com.generallycloud.nio.protocol.ProtocolDecoder;
 import com.generallycloud.nio.protocol.ProtocolEncoder;
 import com.generallycloud.nio.protocol.ProtocolFactory;
 
 public class LineBasedProtocolFactory implements ProtocolFactory{
 
+	private byte		lineBase	= LineBasedReadFuture.LINE_BASE;
+
+	private boolean	crlf;
+
+	private int		limit	= 1024 * 1024;
+
+	public LineBasedProtocolFactory() {
+	}
+
+	/**
+	 * @param limit 一行的最大长度，超过时关闭连接
+	 */
+	public LineBasedProtocolFactory(int limit) {
+		this.limit = limit;
+	}
+
 	public ProtocolDecoder getProtocolDecoder() {
-		return new LineBasedProtocolDecoder();
+		return new LineBasedProtocolDecoder(lineBase, crlf, limit);
 	}
 
 	public ProtocolEncoder getProtocolEncoder() {
-		return new LineBasedProtocolEncoder();
+		return new LineBasedProtocolEncoder(lineBase, crlf);
+	}
+
+	public byte getLineBase() {
+		return lineBase;
+	}
+
+	public void setLineBase(byte lineBase) {
+		this.lineBase = lineBase;
+	}
+
+	public boolean isCrlf() {
+		return crlf;
+	}
+
+	/**
+	 * @param crlf 为true时写出\r\n，读取时去掉分隔符之前的\r，默认为false
+	 */
+	public void setCrlf(boolean crlf) {
+		this.crlf = crlf;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public void setLimit(int limit) {
+		this.limit = limit;
 	}
 
 	public String getProtocolID() {
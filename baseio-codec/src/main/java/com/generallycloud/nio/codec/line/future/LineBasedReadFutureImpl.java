@@ -4,11 +4,17 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
+import com.generallycloud.nio.common.ByteBufferUtil;
+import com.generallycloud.nio.common.StringUtil;
 import com.generallycloud.nio.component.BufferedOutputStream;
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.component.BaseContext;
 import com.generallycloud.nio.protocol.AbstractIOReadFuture;
 
+/**
+ * 整行都在本次读取的buffer中时直接从buffer解码text，不经过cache；
+ * 跨多次读取的行按段复制到cache
+ */
 public class LineBasedReadFutureImpl extends AbstractIOReadFuture implements LineBasedReadFuture {
 
 	private String				text;
@@ -17,11 +23,29 @@ public class LineBasedReadFutureImpl extends AbstractIOReadFuture implements Lin
 
 	private int				limit;
 
-	private BufferedOutputStream	cache	= new BufferedOutputStream();
+	private byte				lineBase;
+
+	private boolean			stripCR;
+
+	// 上一段以\r结尾，是否写入cache取决于下一个字节
+	private boolean			pendingCR;
+
+	private BufferedOutputStream	cache;
 
 	public LineBasedReadFutureImpl(BaseContext context) {
+		this(context, LINE_BASE, false, 1024 * 1024);
+	}
+
+	/**
+	 * @param lineBase 分隔符
+	 * @param stripCR 是否去掉分隔符之前的\r，用于\r\n分隔的报文
+	 * @param limit 一行的最大长度
+	 */
+	public LineBasedReadFutureImpl(BaseContext context, byte lineBase, boolean stripCR, int limit) {
 		super(context);
-		this.limit = 1024 * 1024;
+		this.lineBase = lineBase;
+		this.stripCR = stripCR;
+		this.limit = limit;
 	}
 
 	private void doBodyComplete() {
@@ -34,41 +58,142 @@ public class LineBasedReadFutureImpl extends AbstractIOReadFuture implements Lin
 			return true;
 		}
 
-		BufferedOutputStream cache = this.cache;
+		int position = buffer.position();
+
+		int index = ByteBufferUtil.indexOf(buffer, lineBase);
 
-		for (; buffer.hasRemaining();) {
+		if (index == -1) {
 
-			byte b = buffer.get();
+			int length = buffer.remaining();
 
-			if (b == LINE_BASE) {
-				doBodyComplete();
-				return true;
+			if (stripCR && length > 0 && buffer.get(buffer.limit() - 1) == '\r') {
+				append(buffer, position, length - 1);
+				pendingCR = true;
+			} else {
+				append(buffer, position, length);
 			}
 
-			cache.write(b);
+			buffer.position(buffer.limit());
 
-			if (cache.size() > limit) {
-				throw new IOException("max length " + limit);
-			}
+			return false;
+		}
+
+		int length = index - position;
+
+		if (length == 0) {
+			// 上一段结尾的\r之后紧跟分隔符
+			pendingCR = false;
+		} else if (stripCR && buffer.get(index - 1) == '\r') {
+			length--;
+		}
+
+		if (cache == null && !pendingCR) {
+
+			checkLimit(length);
+
+			text = decode(buffer, position, length);
+
+		} else {
+			append(buffer, position, length);
 		}
 
-		return false;
+		buffer.position(index + 1);
+
+		doBodyComplete();
+
+		return true;
+	}
+
+	private void append(ByteBuffer buffer, int position, int length) throws IOException {
+
+		if (pendingCR) {
+
+			pendingCR = false;
+
+			append0(new byte[] { '\r' }, 0, 1);
+		}
+
+		if (length == 0) {
+			return;
+		}
+
+		if (buffer.hasArray()) {
+			append0(buffer.array(), buffer.arrayOffset() + position, length);
+			return;
+		}
+
+		byte[] array = new byte[length];
+
+		ByteBuffer src = buffer.duplicate();
+
+		src.position(position);
+
+		src.get(array);
+
+		append0(array, 0, length);
+	}
+
+	private void append0(byte[] array, int offset, int length) throws IOException {
+
+		if (cache == null) {
+			cache = new BufferedOutputStream(Math.max(128, length));
+		}
+
+		checkLimit(cache.size() + length);
+
+		cache.write(array, offset, length);
+	}
+
+	private void checkLimit(int length) throws IOException {
+		if (length > limit) {
+			throw new IOException("max length " + limit);
+		}
+	}
+
+	private String decode(ByteBuffer buffer, int position, int length) {
+
+		Charset charset = context.getEncoding();
+
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + position, length, charset);
+		}
+
+		ByteBuffer src = buffer.duplicate();
+
+		src.position(position);
+
+		src.limit(position + length);
+
+		return StringUtil.decode(charset, src);
 	}
 
 	public String getText() {
 		return getText(context.getEncoding());
 	}
 
+	/**
+	 * 整行在一次读取中完成时text已按context的编码解码
+	 */
 	public String getText(Charset encoding) {
 
 		if (text == null) {
-			text = cache.toString(encoding);
+			text = getOutputStream().toString(encoding);
 		}
 
 		return text;
 	}
 
 	public BufferedOutputStream getOutputStream() {
+
+		if (cache == null) {
+
+			if (text == null) {
+				cache = new BufferedOutputStream();
+			} else {
+				cache = new BufferedOutputStream(text.getBytes(context.getEncoding()));
+			}
+		}
+
 		return cache;
 	}
 
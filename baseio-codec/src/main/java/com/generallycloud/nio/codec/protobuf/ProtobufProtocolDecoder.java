@@ -1,34 +1,24 @@
 package com.generallycloud.nio.codec.protobuf;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 
 import com.generallycloud.nio.buffer.ByteBuf;
 import com.generallycloud.nio.codec.base.BaseProtocolDecoder;
+import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
 import com.generallycloud.nio.codec.protobuf.future.ProtobufReadFutureImpl;
 import com.generallycloud.nio.component.IOSession;
-import com.generallycloud.nio.protocol.IOReadFuture;
-import com.generallycloud.nio.protocol.ProtocolDecoder;
 
-public class ProtobufProtocolDecoder implements ProtocolDecoder {
+/**
+ * 报文格式与BaseProtocolDecoder相同，binary为protobuf序列化后的数据，text为parser name
+ */
+public class ProtobufProtocolDecoder extends BaseProtocolDecoder {
 
-	public IOReadFuture decode(IOSession session, ByteBuffer buffer) throws IOException {
-		
-		ByteBuf buf = session.getContext().getHeapByteBufferPool().allocate(BaseProtocolDecoder.PROTOCOL_HADER);
-
-		buf.read(buffer);
-
-		byte _type = buffer.get(0);
-
-		int type = (_type & 0xff) >> 6;
-
-		if (type == BaseProtocolDecoder.PROTOCOL_PING) {
-			return new ProtobufReadFutureImpl(session.getContext()).setPING();
-		} else if (type == BaseProtocolDecoder.PROTOCOL_PONG) {
-			return new ProtobufReadFutureImpl(session.getContext()).setPONG();
-		}
+	protected BaseReadFutureImpl newReadFuture(IOSession session) {
+		return new ProtobufReadFutureImpl(session.getContext());
+	}
 
-		return new ProtobufReadFutureImpl(session, buf);
+	protected BaseReadFutureImpl newReadFuture(IOSession session, ByteBuf buf) throws IOException {
+		return new ProtobufReadFutureImpl(session, buf, getTextLimit(), getBinaryLimit(), getStreamAcceptor());
 	}
 
 }
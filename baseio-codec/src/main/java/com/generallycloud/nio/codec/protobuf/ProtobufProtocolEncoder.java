@@ -1,7 +1,112 @@
 package com.generallycloud.nio.codec.protobuf;
 
+import java.io.IOException;
+
+import com.generallycloud.nio.buffer.ByteBuf;
 import com.generallycloud.nio.codec.base.BaseProtocolEncoder;
+import com.generallycloud.nio.codec.protobuf.future.ProtobufReadFuture;
+import com.generallycloud.nio.common.ReleaseUtil;
+import com.generallycloud.nio.common.StringUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BufferedOutputStream;
+import com.generallycloud.nio.protocol.IOReadFuture;
+import com.generallycloud.nio.protocol.IOWriteFuture;
+import com.generallycloud.nio.protocol.IOWriteFutureImpl;
+import com.generallycloud.nio.protocol.ProtocolException;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
 
+/**
+ * protobuf按getSerializedSize()的长度直接序列化到报文的缓冲区，不经过toByteArray
+ */
 public class ProtobufProtocolEncoder extends BaseProtocolEncoder {
 
+	public ProtobufProtocolEncoder() {
+	}
+
+	public ProtobufProtocolEncoder(boolean negotiateV2, boolean headerV2) {
+		super(negotiateV2, headerV2);
+	}
+
+	public IOWriteFuture encode(BaseContext context, IOReadFuture readFuture) throws IOException {
+
+		if (readFuture.isHeartbeat() || !(readFuture instanceof ProtobufReadFuture)) {
+			return super.encode(context, readFuture);
+		}
+
+		ProtobufReadFuture f = (ProtobufReadFuture) readFuture;
+
+		MessageLite message = f.getWriteMessage();
+
+		if (message == null) {
+			return super.encode(context, readFuture);
+		}
+
+		String future_name = f.getFutureName();
+		BufferedOutputStream textOPS = f.getWriteBuffer();
+
+		if (StringUtil.isNullOrBlank(future_name)) {
+			throw new ProtocolException("future name is empty");
+		}
+
+		byte[] future_name_array = future_name.getBytes(context.getEncoding());
+
+		int service_name_length = future_name_array.length;
+		int text_length = textOPS.size();
+		int binary_length = message.getSerializedSize();
+
+		if (service_name_length > 255) {
+			throw new IllegalArgumentException("service name too long ," + future_name);
+		}
+
+		byte[] header = header(f, service_name_length, text_length, binary_length);
+
+		int all_length = header.length + service_name_length + text_length + binary_length;
+
+		ByteBuf buffer = context.getHeapByteBufferPool().allocate(all_length);
+
+		if (buffer == null) {
+			throw new IOException("not enough memory,length:" + all_length);
+		}
+
+		buffer.put(header);
+		buffer.put(future_name_array);
+
+		if (text_length > 0) {
+			buffer.put(textOPS.array(), 0, text_length);
+		}
+
+		if (binary_length > 0) {
+
+			int position = buffer.position();
+
+			CodedOutputStream output = CodedOutputStream.newInstance(buffer.array(), buffer.offset() + position,
+					binary_length);
+
+			try {
+
+				message.writeTo(output);
+
+				output.checkNoSpaceLeft();
+
+			} catch (IOException e) {
+				ReleaseUtil.release(buffer);
+				throw e;
+			} catch (RuntimeException e) {
+				ReleaseUtil.release(buffer);
+				throw e;
+			}
+
+			buffer.position(position + binary_length);
+		}
+
+		buffer.flip();
+
+		return new IOWriteFutureImpl(readFuture, buffer);
+	}
+
+	public BaseProtocolEncoder newHeaderV2Encoder() {
+		return new ProtobufProtocolEncoder(true, true);
+	}
+
 }
@@ -11,7 +11,7 @@ public class ProtobufProtocolFactory implements ProtocolFactory {
 	}
 
 	public ProtocolEncoder getProtocolEncoder() {
-		return new ProtobufProtocolEncoder();
+		return new ProtobufProtocolEncoder(true, false);
 	}
 
 	public String getProtocolID() {
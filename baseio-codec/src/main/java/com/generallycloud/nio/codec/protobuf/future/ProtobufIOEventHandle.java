@@ -3,27 +3,68 @@ package com.generallycloud.nio.codec.protobuf.future;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.generallycloud.nio.Encoding;
 import com.generallycloud.nio.component.IOEventHandleAdaptor;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
 
+/**
+ * 除了按名称查找Parser外，另外维护一个以名称的UTF-8字节为key的表，
+ * 解码时直接用收到的字节查找，不需要每个报文都把名称解码成String
+ */
 public abstract class ProtobufIOEventHandle extends IOEventHandleAdaptor {
 
 	private Map<String, Parser<? extends MessageLite>>	parses	= new HashMap<String, Parser<? extends MessageLite>>();
 
+	// 写时复制，读取时不加锁
+	private volatile ParserEntry[]					entries	= new ParserEntry[16];
+
 	public void regist(String name, Parser<? extends MessageLite> parser) {
-		parses.put(name, parser);
+
+		synchronized (parses) {
+
+			parses.put(name, parser);
+
+			rebuildEntries();
+		}
 	}
 
 	public void regist(MessageLite messageLite) {
+		regist(messageLite.getClass().getName(), messageLite.getParserForType());
+	}
+
+	private void rebuildEntries() {
+
+		int capacity = 16;
+
+		while (capacity < parses.size() * 2) {
+			capacity <<= 1;
+		}
+
+		ParserEntry[] entries = new ParserEntry[capacity];
+
+		for (Map.Entry<String, Parser<? extends MessageLite>> e : parses.entrySet()) {
 
-		parses.put(messageLite.getClass().getName(), messageLite.getParserForType());
+			byte[] name = e.getKey().getBytes(Encoding.UTF8);
+
+			int hash = hash(name, 0, name.length);
+
+			int index = hash & (capacity - 1);
+
+			entries[index] = new ParserEntry(name, e.getKey(), e.getValue(), hash, entries[index]);
+		}
+
+		this.entries = entries;
 	}
 
 	public Parser<? extends MessageLite> getParser(String name) throws InvalidProtocolBufferException {
 
-		Parser<? extends MessageLite> parser = parses.get(name);
+		Parser<? extends MessageLite> parser;
+
+		synchronized (parses) {
+			parser = parses.get(name);
+		}
 
 		if (parser == null) {
 			throw new InvalidProtocolBufferException("did not found parse by name " + name);
@@ -32,4 +73,73 @@ public abstract class ProtobufIOEventHandle extends IOEventHandleAdaptor {
 		return parser;
 	}
 
+	/**
+	 * @return 名称的UTF-8编码与array中的字节相同的Parser，没有时返回null
+	 */
+	ParserEntry getParserEntry(byte[] array, int offset, int length) {
+
+		ParserEntry[] entries = this.entries;
+
+		int hash = hash(array, offset, length);
+
+		ParserEntry e = entries[hash & (entries.length - 1)];
+
+		for (; e != null; e = e.next) {
+
+			if (e.hash == hash && e.equals(array, offset, length)) {
+				return e;
+			}
+		}
+
+		return null;
+	}
+
+	private static int hash(byte[] array, int offset, int length) {
+
+		int hash = 1;
+
+		for (int i = offset, end = offset + length; i < end; i++) {
+			hash = 31 * hash + array[i];
+		}
+
+		return hash ^ (hash >>> 16);
+	}
+
+	static class ParserEntry {
+
+		final byte[]						name;
+
+		final String						nameString;
+
+		final Parser<? extends MessageLite>	parser;
+
+		final int							hash;
+
+		final ParserEntry					next;
+
+		ParserEntry(byte[] name, String nameString, Parser<? extends MessageLite> parser, int hash,
+				ParserEntry next) {
+			this.name = name;
+			this.nameString = nameString;
+			this.parser = parser;
+			this.hash = hash;
+			this.next = next;
+		}
+
+		boolean equals(byte[] array, int offset, int length) {
+
+			if (name.length != length) {
+				return false;
+			}
+
+			for (int i = 0; i < length; i++) {
+				if (name[i] != array[offset + i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+
 }
@@ -1,10 +1,10 @@
 package com.generallycloud.nio.codec.protobuf.future;
 
-import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 
-public interface ProtobufReadFuture extends ReadFuture {
+public interface ProtobufReadFuture extends BaseReadFuture {
 
 	public abstract void writeProtobuf(String parserName, MessageLite messageLite) throws InvalidProtocolBufferException;
 	
@@ -13,4 +13,9 @@ public interface ProtobufReadFuture extends ReadFuture {
 	public abstract MessageLite getMessage() throws InvalidProtocolBufferException;
 	
 	public abstract String getParserName();
+
+	/**
+	 * @return writeProtobuf写入的消息，编码时直接序列化到报文的缓冲区
+	 */
+	public abstract MessageLite getWriteMessage();
 }
@@ -1,20 +1,37 @@
 package com.generallycloud.nio.codec.protobuf.future;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
+import com.generallycloud.nio.Encoding;
 import com.generallycloud.nio.buffer.ByteBuf;
 import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.codec.base.future.BinaryStreamAcceptor;
+import com.generallycloud.nio.codec.protobuf.future.ProtobufIOEventHandle.ParserEntry;
+import com.generallycloud.nio.common.ReleaseUtil;
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.component.BaseContext;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
 
+/**
+ * 收到的protobuf直接从接收缓冲区解析，不复制binary，解析之后release时也不再保留binary的副本，
+ * 应通过getMessage获取内容；
+ * 写出的protobuf在编码时直接序列化到报文的缓冲区，见ProtobufProtocolEncoder
+ */
 public class ProtobufReadFutureImpl extends BaseReadFutureImpl implements ProtobufReadFuture {
 
+	private static final byte[]	EMPTY_ARRAY	= new byte[0];
+
 	private MessageLite		message;
 
+	private MessageLite		writeMessage;
+
+	private ParserEntry		parserEntry;
+
 	private boolean		writed;
 
 	// for ping & pong
@@ -34,20 +51,102 @@ public class ProtobufReadFutureImpl extends BaseReadFutureImpl implements Protob
 		super(session, buf);
 	}
 
+	public ProtobufReadFutureImpl(IOSession session, ByteBuf buf, int binaryLimit,
+			BinaryStreamAcceptor streamAcceptor) throws IOException {
+		super(session, buf, binaryLimit, streamAcceptor);
+	}
+
+	public ProtobufReadFutureImpl(IOSession session, ByteBuf buf, int textLimit, int binaryLimit,
+			BinaryStreamAcceptor streamAcceptor) throws IOException {
+		super(session, buf, textLimit, binaryLimit, streamAcceptor);
+	}
+
+	// 用收到的字节查找Parser，命中时不需要解码parser name
+	protected String decodeText(Charset charset, ByteBuffer memory) {
+
+		if (!memory.hasArray() || !Encoding.UTF8.equals(charset)) {
+			return super.decodeText(charset, memory);
+		}
+
+		ProtobufIOEventHandle handle = getEventHandle();
+
+		if (handle == null) {
+			return super.decodeText(charset, memory);
+		}
+
+		ParserEntry entry = handle.getParserEntry(memory.array(), memory.arrayOffset() + memory.position(),
+				memory.remaining());
+
+		if (entry == null) {
+			return super.decodeText(charset, memory);
+		}
+
+		this.parserEntry = entry;
+
+		memory.position(memory.limit());
+
+		return entry.nameString;
+	}
+
+	private ProtobufIOEventHandle getEventHandle() {
+
+		Object handle = context.getIOEventHandleAdaptor();
+
+		if (handle instanceof ProtobufIOEventHandle) {
+			return (ProtobufIOEventHandle) handle;
+		}
+
+		return null;
+	}
+
 	public MessageLite getMessage() throws InvalidProtocolBufferException {
 
 		if (message == null) {
 
-			ProtobufIOEventHandle handle = (ProtobufIOEventHandle) context.getIOEventHandleAdaptor();
+			Parser<? extends MessageLite> parser;
 
-			Parser<? extends MessageLite> parser = handle.getParser(getParserName());
+			if (parserEntry != null) {
+				parser = parserEntry.parser;
+			} else {
+				ProtobufIOEventHandle handle = (ProtobufIOEventHandle) context.getIOEventHandleAdaptor();
+				parser = handle.getParser(getParserName());
+			}
 
-			message = parser.parseFrom(getBinary());
+			message = parse(parser);
 		}
 
 		return message;
 	}
-	
+
+	private MessageLite parse(Parser<? extends MessageLite> parser) throws InvalidProtocolBufferException {
+
+		ByteBuf view = duplicateBinaryBuf();
+
+		if (view == null || !view.hasArray()) {
+
+			ReleaseUtil.release(view);
+
+			byte[] binary = getBinary();
+
+			return parser.parseFrom(binary == null ? EMPTY_ARRAY : binary);
+		}
+
+		try {
+
+			CodedInputStream input = CodedInputStream.newInstance(view.array(), view.offset() + view.position(),
+					view.remaining());
+
+			MessageLite message = parser.parseFrom(input);
+
+			consumeBinary();
+
+			return message;
+
+		} finally {
+			ReleaseUtil.release(view);
+		}
+	}
+
 	public void writeProtobuf(MessageLite messageLite) throws InvalidProtocolBufferException {
 		writeProtobuf(messageLite.getClass().getName(), messageLite);
 	}
@@ -60,10 +159,13 @@ public class ProtobufReadFutureImpl extends BaseReadFutureImpl implements Protob
 
 		super.write(parserName.getBytes(context.getEncoding()));
 
-		//FIXME 判断array是否过大
-		byte [] array = messageLite.toByteArray();
-		
-		super.writeBinary(array,0,array.length);
+		this.writeMessage = messageLite;
+
+		this.writed = true;
+	}
+
+	public MessageLite getWriteMessage() {
+		return writeMessage;
 	}
 
 	public void write(byte[] bytes, int offset, int length) {
@@ -10,8 +10,21 @@ import com.generallycloud.nio.protocol.ProtocolDecoder;
 
 public class RedisProtocolDecoder implements ProtocolDecoder{
 
+	private int	maxElements;
+
+	public RedisProtocolDecoder() {
+		this(RedisReadFutureImpl.DEFAULT_MAX_ELEMENTS);
+	}
+
+	/**
+	 * @param maxElements 一个响应中数组元素的总数上限
+	 */
+	public RedisProtocolDecoder(int maxElements) {
+		this.maxElements = maxElements;
+	}
+
 	public IOReadFuture decode(IOSession session, ByteBuffer buffer) throws IOException {
-		return new RedisReadFutureImpl(session.getContext());
+		return new RedisReadFutureImpl(session.getContext(), maxElements);
 	}
-	
+
 }
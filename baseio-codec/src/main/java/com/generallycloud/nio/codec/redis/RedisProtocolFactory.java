@@ -1,13 +1,26 @@
 package com.generallycloud.nio.codec.redis;
 
+import com.generallycloud.nio.codec.redis.future.RedisReadFutureImpl;
 import com.generallycloud.nio.protocol.ProtocolDecoder;
 import com.generallycloud.nio.protocol.ProtocolEncoder;
 import com.generallycloud.nio.protocol.ProtocolFactory;
 
 public class RedisProtocolFactory implements ProtocolFactory {
 
+	private int	maxElements	= RedisReadFutureImpl.DEFAULT_MAX_ELEMENTS;
+
+	public RedisProtocolFactory() {
+	}
+
+	/**
+	 * @param maxElements 一个响应中数组元素的总数上限，LRANGE等返回大量元素时需要调大
+	 */
+	public RedisProtocolFactory(int maxElements) {
+		this.maxElements = maxElements;
+	}
+
 	public ProtocolDecoder getProtocolDecoder() {
-		return new RedisProtocolDecoder();
+		return new RedisProtocolDecoder(maxElements);
 	}
 
 	public ProtocolEncoder getProtocolEncoder() {
@@ -1,31 +1,80 @@
 package com.generallycloud.nio.codec.redis.future;
 
+import com.generallycloud.nio.Encoding;
 import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BufferedOutputStream;
 import com.generallycloud.nio.protocol.AbstractIOReadFuture;
 
 public abstract class AbstractRedisReadFuture extends AbstractIOReadFuture implements RedisReadFuture{
 
+	// *N\r\n，常用的参数个数预先编码
+	private static final byte[][]	ARRAY_HEADERS	= new byte[32][];
+
+	static {
+		for (int i = 0; i < ARRAY_HEADERS.length; i++) {
+			ARRAY_HEADERS[i] = ("*" + i + "\r\n").getBytes(Encoding.UTF8);
+		}
+	}
+
 	protected AbstractRedisReadFuture(BaseContext context) {
 		super(context);
 	}
 
 	public void writeCommand(byte[] command, byte[]... args) {
 
+		writeArrayHeader(args.length + 1);
+
+		writeBulkString(command);
+
+		for (byte[] arg : args) {
+			writeBulkString(arg);
+		}
+	}
+
+	public void writeCommand(RedisCommand command, byte[]... args) {
+
+		writeArrayHeader(args.length + 1);
+
+		this.write(command.encoded);
+
+		for (byte[] arg : args) {
+			writeBulkString(arg);
+		}
+	}
+
+	private void writeArrayHeader(int size) {
+
+		if (size < ARRAY_HEADERS.length) {
+			this.write(ARRAY_HEADERS[size]);
+			return;
+		}
+
 		this.write(RedisReadFuture.BYTE_ARRAYS);
-		this.write(String.valueOf(args.length + 1));
+		writeLength(size);
 		this.write(RedisReadFuture.CRLF_BYTES);
+	}
+
+	private void writeBulkString(byte[] value) {
 		this.write(RedisReadFuture.BYTE_BULK_STRINGS);
-		this.write(String.valueOf(command.length));
+		writeLength(value.length);
 		this.write(RedisReadFuture.CRLF_BYTES);
-		this.write(command);
+		this.write(value);
 		this.write(RedisReadFuture.CRLF_BYTES);
+	}
 
-		for (byte[] arg : args) {
-			this.write(RedisReadFuture.BYTE_BULK_STRINGS);
-			this.write(String.valueOf(arg.length));
-			this.write(RedisReadFuture.CRLF_BYTES);
-			this.write(arg);
-			this.write(RedisReadFuture.CRLF_BYTES);
+	// 按十进制逐位写出，不生成String
+	private void writeLength(int value) {
+
+		BufferedOutputStream out = this.writeBuffer;
+
+		int divisor = 1;
+
+		for (; value / divisor >= 10;) {
+			divisor *= 10;
+		}
+
+		for (; divisor > 0; divisor /= 10) {
+			out.write('0' + (value / divisor) % 10);
 		}
 	}
 	
@@ -1,19 +1,42 @@
 package com.generallycloud.nio.codec.redis.future;
 
+import java.io.IOException;
+
 import com.generallycloud.nio.codec.redis.future.RedisReadFuture.RedisCommand;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
 import com.generallycloud.nio.component.BeatFutureFactory;
 import com.generallycloud.nio.component.Session;
 import com.generallycloud.nio.protocol.ReadFuture;
 
 public class RedisBeatFutureFactory implements BeatFutureFactory{
 
+	private Logger	logger	= LoggerFactory.getLogger(RedisBeatFutureFactory.class);
+
 	public ReadFuture createPINGPacket(Session session) {
 		
+		Object attachment = session.getAttachment();
+		
+		if (attachment instanceof RedisClient) {
+			
+			// PONG按顺序对应一个RedisWaiter，必须经由RedisClient发送，
+			// 否则后续命令的响应会错位
+			try {
+				((RedisClient) attachment).pingAsync();
+			} catch (IOException e) {
+				CloseUtil.close(session);
+				logger.error(e.getMessage(), e);
+			}
+			
+			return null;
+		}
+		
 		RedisCmdFuture f = new RedisCmdFuture(session.getContext());
 		
 		f.setPING();
 		
-		f.writeCommand(RedisCommand.PING.raw);
+		f.writeCommand(RedisCommand.PING);
 		
 		return f;
 	}
@@ -24,7 +47,7 @@ public class RedisBeatFutureFactory implements BeatFutureFactory{
 		
 		f.setPONG();
 		
-		f.writeCommand(RedisCommand.PONG.raw);
+		f.writeCommand(RedisCommand.PONG);
 		
 		return f;
 	}
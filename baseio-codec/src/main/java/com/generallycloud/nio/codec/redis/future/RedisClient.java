@@ -1,23 +1,36 @@
 package com.generallycloud.nio.codec.redis.future;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.locks.ReentrantLock;
 
-import com.generallycloud.nio.TimeoutException;
 import com.generallycloud.nio.codec.redis.future.RedisReadFuture.RedisCommand;
+import com.generallycloud.nio.common.CloseUtil;
 import com.generallycloud.nio.component.BaseContext;
 import com.generallycloud.nio.component.Session;
-import com.generallycloud.nio.component.concurrent.Waiter;
+import com.generallycloud.nio.component.concurrent.ListQueue;
+import com.generallycloud.nio.component.concurrent.ListQueueLink;
 
 //FIXME check null
+/**
+ * 一个连接上可以同时有多个命令未返回，redis按命令的顺序响应，
+ * 发送时按顺序排队RedisWaiter，收到响应时依次唤醒。
+ * 带类型的方法在收到error时抛出IOException，execute返回原始的RedisNode。
+ * 连接关闭时未返回的命令抛出IOException，需要在context中添加RedisSEListener
+ */
 public class RedisClient {
 
-	private BaseContext			context;
+	private BaseContext				context;
 
-	private Session			session;
+	private Session				session;
 
-	private RedisIOEventHandle	ioEventHandle;
+	private long					timeout;
 
-	private long				timeout;
+	private ListQueue<RedisWaiter>	waiters	= new ListQueueLink<RedisWaiter>();
+
+	private ReentrantLock			lock		= new ReentrantLock();
+
+	private boolean				closed;
 
 	public RedisClient(Session session) {
 		this(session, 3000);
@@ -27,42 +40,154 @@ public class RedisClient {
 		this.timeout = timeout;
 		this.session = session;
 		this.context = session.getContext();
-		this.ioEventHandle = (RedisIOEventHandle) context.getIOEventHandleAdaptor();
+		this.session.setAttachment(this);
 	}
 
-	private synchronized RedisNode sendCommand(byte[] command, byte[]... args) throws IOException {
+	private RedisWaiter sendCommandAsync(RedisCommand command, byte[]... args) throws IOException {
 
 		RedisReadFuture future = new RedisCmdFuture(context);
 
 		future.writeCommand(command, args);
 
-		Waiter<RedisNode> waiter = new Waiter<RedisNode>();
+		return flush(future, 1)[0];
+	}
+
+	/**
+	 * 入队与写出需要保证相同的顺序。写出失败时已入队的waiter无法再与响应对应，
+	 * 关闭连接并唤醒所有未返回的命令
+	 */
+	RedisWaiter[] flush(RedisReadFuture future, int commands) throws IOException {
+
+		RedisWaiter[] array = new RedisWaiter[commands];
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			if (closed) {
+				throw new IOException("session closed");
+			}
 
-		ioEventHandle.setWaiter(waiter);
+			for (int i = 0; i < commands; i++) {
 
-		session.flush(future);
+				RedisWaiter waiter = new RedisWaiter();
 
-		if (waiter.await(timeout)) {
-			throw new TimeoutException("timeout");
+				waiters.offer(waiter);
+
+				array[i] = waiter;
+			}
+
+			try {
+				session.flush(future);
+			} catch (IOException e) {
+				closed = true;
+				CloseUtil.close(session);
+				failWaiters(e);
+				throw e;
+			}
+
+		} finally {
+			lock.unlock();
 		}
 
-		return waiter.getPayload();
+		return array;
+	}
+
+	/**
+	 * 连接关闭，由RedisSEListener调用
+	 */
+	void onClosed() {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			closed = true;
+
+			failWaiters(new IOException("session closed"));
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void failWaiters(IOException cause) {
+
+		for (;;) {
+
+			RedisWaiter waiter = waiters.poll();
+
+			if (waiter == null) {
+				return;
+			}
+
+			waiter.fail(cause);
+		}
+	}
+
+	void onResponse(RedisNode node) {
+
+		RedisWaiter waiter = waiters.poll();
+
+		if (waiter != null) {
+			waiter.setPayload(node);
+		}
 	}
 
 	private RedisNode sendCommand(RedisCommand command, byte[]... args) throws IOException {
-		return sendCommand(command.raw, args);
+
+		RedisNode node = sendCommandAsync(command, args).get(timeout);
+
+		if (node.getType() == RedisReadFuture.TYPE_ERRORS) {
+			throw new IOException(String.valueOf(node.getValue()));
+		}
+
+		return node;
+	}
+
+	/**
+	 * 执行任意命令，不检查error
+	 */
+	public RedisNode execute(byte[] command, byte[]... args) throws IOException {
+		return executeAsync(command, args).get(timeout);
+	}
+
+	public RedisWaiter executeAsync(byte[] command, byte[]... args) throws IOException {
+
+		RedisReadFuture future = new RedisCmdFuture(context);
+
+		future.writeCommand(command, args);
+
+		return flush(future, 1)[0];
+	}
+
+	public RedisNode execute(RedisCommand command, byte[]... args) throws IOException {
+		return sendCommandAsync(command, args).get(timeout);
+	}
+
+	public RedisWaiter setAsync(String key, String value) throws IOException {
+		return sendCommandAsync(RedisCommand.SET, bytes(key), bytes(value));
+	}
+
+	public RedisWaiter getAsync(String key) throws IOException {
+		return sendCommandAsync(RedisCommand.GET, bytes(key));
+	}
+
+	public RedisWaiter pingAsync() throws IOException {
+		return sendCommandAsync(RedisCommand.PING);
 	}
 
 	public String set(String key, String value) throws IOException {
-		byte[] _key = key.getBytes(context.getEncoding());
-		byte[] _value = value.getBytes(context.getEncoding());
-		RedisNode node = sendCommand(RedisCommand.SET, _key, _value);
+		RedisNode node = sendCommand(RedisCommand.SET, bytes(key), bytes(value));
 		return (String) node.getValue();
 	}
 
 	public String get(String key) throws IOException {
-		byte[] _key = key.getBytes(context.getEncoding());
-		RedisNode node = sendCommand(RedisCommand.GET, _key);
+		RedisNode node = sendCommand(RedisCommand.GET, bytes(key));
 		return (String) node.getValue();
 	}
 
@@ -71,4 +196,168 @@ public class RedisClient {
 		return (String) node.getValue();
 	}
 
+	/**
+	 * @return 与keys的顺序一致，不存在的key为null
+	 */
+	public String[] mget(String... keys) throws IOException {
+
+		RedisNode node = sendCommand(RedisCommand.MGET, bytes(keys));
+
+		RedisNode[] children = node.getChildren();
+
+		String[] values = new String[children.length];
+
+		for (int i = 0; i < children.length; i++) {
+			values[i] = (String) children[i].getValue();
+		}
+
+		return values;
+	}
+
+	/**
+	 * @param keyValues key1,value1,key2,value2...
+	 */
+	public String mset(String... keyValues) throws IOException {
+
+		if ((keyValues.length & 1) != 0) {
+			throw new IllegalArgumentException("key without value");
+		}
+
+		RedisNode node = sendCommand(RedisCommand.MSET, bytes(keyValues));
+
+		return (String) node.getValue();
+	}
+
+	public long incr(String key) throws IOException {
+		return longValue(sendCommand(RedisCommand.INCR, bytes(key)));
+	}
+
+	public long incrBy(String key, long increment) throws IOException {
+		return longValue(sendCommand(RedisCommand.INCRBY, bytes(key), bytes(increment)));
+	}
+
+	public long decr(String key) throws IOException {
+		return longValue(sendCommand(RedisCommand.DECR, bytes(key)));
+	}
+
+	public long decrBy(String key, long decrement) throws IOException {
+		return longValue(sendCommand(RedisCommand.DECRBY, bytes(key), bytes(decrement)));
+	}
+
+	/**
+	 * @return key不存在时返回false
+	 */
+	public boolean expire(String key, int seconds) throws IOException {
+		return longValue(sendCommand(RedisCommand.EXPIRE, bytes(key), bytes(seconds))) == 1;
+	}
+
+	/**
+	 * @return 删除的key的个数
+	 */
+	public long del(String... keys) throws IOException {
+		return longValue(sendCommand(RedisCommand.DEL, bytes(keys)));
+	}
+
+	public String hget(String key, String field) throws IOException {
+		RedisNode node = sendCommand(RedisCommand.HGET, bytes(key), bytes(field));
+		return (String) node.getValue();
+	}
+
+	/**
+	 * @return 新建field时返回1，覆盖时返回0
+	 */
+	public long hset(String key, String field, String value) throws IOException {
+		return longValue(sendCommand(RedisCommand.HSET, bytes(key), bytes(field), bytes(value)));
+	}
+
+	/**
+	 * @return push之后list的长度
+	 */
+	public long lpush(String key, String... values) throws IOException {
+
+		byte[][] args = new byte[values.length + 1][];
+
+		args[0] = bytes(key);
+
+		for (int i = 0; i < values.length; i++) {
+			args[i + 1] = bytes(values[i]);
+		}
+
+		return longValue(sendCommand(RedisCommand.LPUSH, args));
+	}
+
+	public String rpop(String key) throws IOException {
+		RedisNode node = sendCommand(RedisCommand.RPOP, bytes(key));
+		return (String) node.getValue();
+	}
+
+	/**
+	 * @return 脚本的返回值，结构取决于脚本
+	 */
+	public RedisNode evalsha(String sha1, String[] keys, String... args) throws IOException {
+
+		byte[][] array = new byte[keys.length + args.length + 2][];
+
+		array[0] = bytes(sha1);
+
+		array[1] = bytes(keys.length);
+
+		for (int i = 0; i < keys.length; i++) {
+			array[i + 2] = bytes(keys[i]);
+		}
+
+		for (int i = 0; i < args.length; i++) {
+			array[keys.length + 2 + i] = bytes(args[i]);
+		}
+
+		return sendCommand(RedisCommand.EVALSHA, array);
+	}
+
+	private long longValue(RedisNode node) throws IOException {
+
+		Object value = node.getValue();
+
+		if (value instanceof Long) {
+			return ((Long) value).longValue();
+		}
+
+		throw new IOException("not an integer reply:" + value);
+	}
+
+	private byte[] bytes(String value) {
+		return value.getBytes(context.getEncoding());
+	}
+
+	private byte[] bytes(long value) {
+		return String.valueOf(value).getBytes(context.getEncoding());
+	}
+
+	private byte[][] bytes(String[] values) {
+
+		Charset charset = context.getEncoding();
+
+		byte[][] array = new byte[values.length][];
+
+		for (int i = 0; i < values.length; i++) {
+			array[i] = values[i].getBytes(charset);
+		}
+
+		return array;
+	}
+
+	/**
+	 * 批量发送，命令在{@link RedisPipeline#flush()}时一次写出
+	 */
+	public RedisPipeline pipeline() {
+		return new RedisPipeline(this, context);
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	public boolean isOpened() {
+		return session.isOpened();
+	}
+
 }
@@ -0,0 +1,601 @@
+package com.generallycloud.nio.codec.redis.future;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.generallycloud.nio.AbstractLifeCycle;
+import com.generallycloud.nio.TimeoutException;
+import com.generallycloud.nio.codec.redis.RedisProtocolFactory;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.component.AbstractLooper;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.component.SessionActiveSEListener;
+import com.generallycloud.nio.component.concurrent.EventLoopThread;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+
+/**
+ * RedisClient连接池，borrow之后需要release。
+ * <ul>
+ * <li>最少保持minSize个连接，最多maxSize个，超过minSize且空闲超过maxIdleTime的连接被回收</li>
+ * <li>空闲超过heartbeatInterval的连接在borrow时先PING校验</li>
+ * <li>后台线程每heartbeatInterval向空闲连接发送PING，上一次PING未响应的连接被关闭，
+ * 关闭的连接在后台补足，不阻塞borrow的线程</li>
+ * </ul>
+ */
+public class RedisClientPool extends AbstractLifeCycle {
+
+	private ServerConfiguration					configuration;
+
+	private int								minSize			= 1;
+
+	private int								maxSize			= 8;
+
+	private long								maxIdleTime		= 60 * 1000;
+
+	private long								heartbeatInterval	= 10 * 1000;
+
+	private long								borrowTimeout		= 3000;
+
+	private long								timeout			= 3000;
+
+	private int								size;
+
+	private LinkedList<PooledClient>				idle				= new LinkedList<PooledClient>();
+
+	private Map<RedisClient, PooledClient>			clients			= new HashMap<RedisClient, PooledClient>();
+
+	private ReentrantLock						lock				= new ReentrantLock();
+
+	private Condition							released			= lock.newCondition();
+
+	private EventLoopThread						monitorThread;
+
+	private Logger							logger			= LoggerFactory.getLogger(RedisClientPool.class);
+
+	/**
+	 * @param configuration 所有连接共用的配置，SERVER_SESSION_IDLE_TIME为连接层心跳的间隔
+	 */
+	public RedisClientPool(ServerConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	protected void doStart() throws Exception {
+
+		if (minSize > maxSize) {
+			throw new IllegalArgumentException("minSize > maxSize");
+		}
+
+		fill();
+
+		monitorThread = new EventLoopThread(new PoolMonitor(), "redis-pool-monitor");
+
+		monitorThread.start();
+	}
+
+	protected void doStop() throws Exception {
+
+		monitorThread.stop();
+
+		List<PooledClient> list;
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			list = new ArrayList<PooledClient>(clients.values());
+
+			clients.clear();
+
+			idle.clear();
+
+			size = 0;
+
+			released.signalAll();
+
+		} finally {
+			lock.unlock();
+		}
+
+		for (PooledClient c : list) {
+			c.close();
+		}
+	}
+
+	public RedisClient borrow() throws IOException {
+
+		long deadline = System.currentTimeMillis() + borrowTimeout;
+
+		for (;;) {
+
+			PooledClient c = take(deadline);
+
+			if (c == null) {
+				// 已预留了一个位置，新建连接
+				return create(true).client;
+			}
+
+			if (validate(c)) {
+				return c.client;
+			}
+
+			destroy(c);
+		}
+	}
+
+	/**
+	 * @return 一个空闲的连接，或者null表示可以新建连接
+	 */
+	private PooledClient take(long deadline) throws IOException {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			for (;;) {
+
+				if (!isRunning()) {
+					throw new IOException("pool stopped");
+				}
+
+				PooledClient c = idle.pollFirst();
+
+				if (c != null) {
+					c.borrowed = true;
+					return c;
+				}
+
+				if (size < maxSize) {
+					size++;
+					return null;
+				}
+
+				long wait = deadline - System.currentTimeMillis();
+
+				if (wait <= 0) {
+					throw new TimeoutException("borrow timeout, max size:" + maxSize);
+				}
+
+				try {
+					released.await(wait, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					throw new IOException(e.getMessage(), e);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean validate(PooledClient c) {
+
+		if (!c.client.isOpened()) {
+			return false;
+		}
+
+		try {
+
+			RedisWaiter ping = c.ping;
+
+			if (ping != null && !ping.isDone()) {
+				// 心跳已发出，等待其响应即可
+				ping.get(timeout);
+				return true;
+			}
+
+			if (System.currentTimeMillis() - c.lastUsedTime < heartbeatInterval) {
+				return true;
+			}
+
+			c.client.ping();
+
+			return true;
+
+		} catch (IOException e) {
+			logger.info("redis client validate failed:{}", e.getMessage());
+			return false;
+		}
+	}
+
+	public void release(RedisClient client) {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		PooledClient c;
+
+		try {
+
+			c = clients.get(client);
+
+			if (c == null || !c.borrowed) {
+				return;
+			}
+
+			c.borrowed = false;
+
+			if (client.isOpened()) {
+
+				c.lastUsedTime = System.currentTimeMillis();
+
+				idle.addFirst(c);
+
+				released.signal();
+
+				return;
+			}
+
+		} finally {
+			lock.unlock();
+		}
+
+		destroy(c);
+	}
+
+	/**
+	 * 调用方确认连接不可用(比如超时)时调用，代替release
+	 */
+	public void invalidate(RedisClient client) {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		PooledClient c;
+
+		try {
+
+			c = clients.get(client);
+
+		} finally {
+			lock.unlock();
+		}
+
+		if (c != null) {
+			destroy(c);
+		}
+	}
+
+	/**
+	 * @param reserved 是否已在size中预留了位置
+	 */
+	private PooledClient create(boolean reserved) throws IOException {
+
+		SocketChannelConnector connector = new SocketChannelConnector();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(new RedisIOEventHandle());
+
+		context.setProtocolFactory(new RedisProtocolFactory());
+
+		context.setBeatFutureFactory(new RedisBeatFutureFactory());
+
+		context.addSessionEventListener(new SessionActiveSEListener());
+
+		context.addSessionEventListener(new RedisSEListener());
+
+		connector.setContext(context);
+
+		PooledClient c;
+
+		try {
+
+			Session session = connector.connect();
+
+			c = new PooledClient(connector, new RedisClient(session, timeout));
+
+		} catch (IOException e) {
+
+			CloseUtil.close(connector);
+
+			if (reserved) {
+				cancelReserve();
+			}
+
+			throw e;
+		}
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			if (!isRunning() && !isStarting()) {
+				// 创建期间连接池已关闭
+				c.close();
+				throw new IOException("pool stopped");
+			}
+
+			if (!reserved) {
+				size++;
+			}
+
+			c.borrowed = reserved;
+
+			clients.put(c.client, c);
+
+			if (!reserved) {
+				idle.addFirst(c);
+				released.signal();
+			}
+
+		} finally {
+			lock.unlock();
+		}
+
+		return c;
+	}
+
+	private void cancelReserve() {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			size--;
+
+			released.signal();
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void destroy(PooledClient c) {
+
+		if (c == null) {
+			return;
+		}
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			if (clients.remove(c.client) == null) {
+				return;
+			}
+
+			idle.remove(c);
+
+			size--;
+
+			released.signal();
+
+		} finally {
+			lock.unlock();
+		}
+
+		c.close();
+	}
+
+	/**
+	 * 补足到minSize，在后台线程中执行
+	 */
+	private void fill() {
+
+		for (;;) {
+
+			ReentrantLock lock = this.lock;
+
+			lock.lock();
+
+			try {
+
+				if (size >= minSize) {
+					return;
+				}
+
+			} finally {
+				lock.unlock();
+			}
+
+			try {
+				create(false);
+			} catch (IOException e) {
+				logger.error("create redis client failed:" + e.getMessage(), e);
+				return;
+			}
+		}
+	}
+
+	private void heartbeat() {
+
+		List<PooledClient> dead = new ArrayList<PooledClient>();
+
+		List<PooledClient> alive = new ArrayList<PooledClient>();
+
+		long now = System.currentTimeMillis();
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			Iterator<PooledClient> it = idle.iterator();
+
+			int remain = size;
+
+			for (; it.hasNext();) {
+
+				PooledClient c = it.next();
+
+				if (!c.client.isOpened() || c.isDead()) {
+
+					it.remove();
+
+					dead.add(c);
+
+				} else if (remain > minSize && now - c.lastUsedTime > maxIdleTime) {
+
+					it.remove();
+
+					dead.add(c);
+
+					remain--;
+
+				} else {
+					alive.add(c);
+				}
+			}
+
+		} finally {
+			lock.unlock();
+		}
+
+		for (PooledClient c : dead) {
+			destroy(c);
+		}
+
+		for (PooledClient c : alive) {
+			c.ping();
+		}
+
+		fill();
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getIdleSize() {
+		return idle.size();
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public long getMaxIdleTime() {
+		return maxIdleTime;
+	}
+
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	public long getHeartbeatInterval() {
+		return heartbeatInterval;
+	}
+
+	public void setHeartbeatInterval(long heartbeatInterval) {
+		this.heartbeatInterval = heartbeatInterval;
+	}
+
+	public long getBorrowTimeout() {
+		return borrowTimeout;
+	}
+
+	public void setBorrowTimeout(long borrowTimeout) {
+		this.borrowTimeout = borrowTimeout;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * @param timeout 每个RedisClient等待响应的超时时间
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	class PoolMonitor extends AbstractLooper {
+
+		private volatile boolean	stopped;
+
+		public void loop() {
+
+			if (stopped) {
+				return;
+			}
+
+			sleep(heartbeatInterval);
+
+			if (stopped || !isRunning()) {
+				return;
+			}
+
+			heartbeat();
+		}
+
+		public void stop() {
+			stopped = true;
+			super.stop();
+		}
+	}
+
+	static class PooledClient {
+
+		private SocketChannelConnector	connector;
+
+		private RedisClient			client;
+
+		private volatile RedisWaiter	ping;
+
+		private boolean			borrowed;
+
+		private long				lastUsedTime	= System.currentTimeMillis();
+
+		PooledClient(SocketChannelConnector connector, RedisClient client) {
+			this.connector = connector;
+			this.client = client;
+		}
+
+		/**
+		 * 上一次心跳未在一个周期内响应
+		 */
+		boolean isDead() {
+			return ping != null && !ping.isDone();
+		}
+
+		void ping() {
+			try {
+				ping = client.pingAsync();
+			} catch (IOException e) {
+				CloseUtil.close(connector);
+			}
+		}
+
+		void close() {
+			CloseUtil.close(connector);
+		}
+	}
+
+}
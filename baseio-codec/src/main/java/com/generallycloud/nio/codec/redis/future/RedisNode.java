@@ -1,11 +1,15 @@
 package com.generallycloud.nio.codec.redis.future;
 
+import com.generallycloud.nio.Encoding;
+
 public class RedisNode {
 
 	private char		type;
 
 	private Object		value;
 
+	private byte[]		bytes;
+
 	private RedisNode	parent;
 
 	private RedisNode[]	children;
@@ -19,10 +23,28 @@ public class RedisNode {
 		this.parent = parent;
 	}
 
+	/**
+	 * simple string、error以及bulk string在第一次调用时按UTF-8转为String，
+	 * integer为Long
+	 */
 	public Object getValue() {
+		if (value == null && bytes != null) {
+			value = new String(bytes, Encoding.UTF8);
+		}
 		return value;
 	}
 
+	/**
+	 * simple string、error以及bulk string的原始数据，null bulk string返回null
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public void setBytes(byte[] bytes) {
+		this.bytes = bytes;
+	}
+
 	public void setValue(Object value) {
 		this.value = value;
 	}
@@ -96,8 +118,14 @@ public class RedisNode {
 	
 	public String toString() {
 		
+		Object value = getValue();
+		
 		if (value == null) {
 			
+			if (children == null) {
+				return null;
+			}
+			
 			StringBuilder b = new StringBuilder();
 			
 			for (int i = 0; i < children.length; i++) {
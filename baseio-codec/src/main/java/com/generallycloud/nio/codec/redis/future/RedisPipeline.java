@@ -0,0 +1,85 @@
+package com.generallycloud.nio.codec.redis.future;
+
+import java.io.IOException;
+
+import com.generallycloud.nio.codec.redis.future.RedisReadFuture.RedisCommand;
+import com.generallycloud.nio.component.BaseContext;
+
+/**
+ * 将多个命令写入同一个future，flush时一次写出，结果按命令的顺序返回。
+ * 非线程安全，flush后不可再使用
+ */
+public class RedisPipeline {
+
+	private RedisClient		client;
+
+	private BaseContext		context;
+
+	private RedisReadFuture	future;
+
+	private int			commands;
+
+	RedisPipeline(RedisClient client, BaseContext context) {
+		this.client = client;
+		this.context = context;
+		this.future = new RedisCmdFuture(context);
+	}
+
+	public RedisPipeline command(RedisCommand command, byte[]... args) {
+
+		future.writeCommand(command, args);
+
+		commands++;
+
+		return this;
+	}
+
+	public RedisPipeline set(String key, String value) {
+		byte[] _key = key.getBytes(context.getEncoding());
+		byte[] _value = value.getBytes(context.getEncoding());
+		return command(RedisCommand.SET, _key, _value);
+	}
+
+	public RedisPipeline get(String key) {
+		byte[] _key = key.getBytes(context.getEncoding());
+		return command(RedisCommand.GET, _key);
+	}
+
+	public RedisPipeline ping() {
+		return command(RedisCommand.PING);
+	}
+
+	public int size() {
+		return commands;
+	}
+
+	/**
+	 * @return 每个命令的结果，与命令的顺序一致
+	 */
+	public RedisWaiter[] flush() throws IOException {
+
+		if (commands == 0) {
+			return new RedisWaiter[0];
+		}
+
+		return client.flush(future, commands);
+	}
+
+	/**
+	 * 写出并等待所有结果
+	 */
+	public RedisNode[] sync() throws IOException {
+
+		RedisWaiter[] waiters = flush();
+
+		RedisNode[] nodes = new RedisNode[waiters.length];
+
+		long timeout = client.getTimeout();
+
+		for (int i = 0; i < waiters.length; i++) {
+			nodes[i] = waiters[i].get(timeout);
+		}
+
+		return nodes;
+	}
+}
@@ -30,11 +30,17 @@ public interface RedisReadFuture extends ReadFuture {
 
 		public final byte[]	raw;
 
+		// $len\r\nCMD\r\n
+		public final byte[]	encoded;
+
 		RedisCommand() {
 			raw = this.name().getBytes(Encoding.UTF8);
+			encoded = ("$" + raw.length + "\r\n" + name() + "\r\n").getBytes(Encoding.UTF8);
 		}
 	}
 	
 	public abstract void writeCommand(byte[] command, byte[]... args) ;
 
+	public abstract void writeCommand(RedisCommand command, byte[]... args) ;
+
 }
@@ -2,15 +2,31 @@ package com.generallycloud.nio.codec.redis.future;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import com.generallycloud.nio.component.IOSession;
 import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.protocol.ProtocolException;
 
 //FIXME 完善心跳
-//FIXME limit
+/**
+ * RESP2解析，逐字节的状态机，数据可以在任意位置被拆分到多次读取中。
+ * 长度及整数逐位累加，bulk string保存为byte[]，在RedisNode.getValue时才转为String
+ */
 public class RedisReadFutureImpl extends AbstractRedisReadFuture implements RedisReadFuture {
 
-	private StringBuilder	currentLine	= new StringBuilder();
+	public static final int	MAX_BULK_LENGTH	= 1024 * 1024 * 512;
+
+	// 数组元素按声明的个数预先创建，需要限制一个响应中元素的总数
+	public static final int	DEFAULT_MAX_ELEMENTS	= 1024 * 1024;
+
+	private static final int	STATE_TYPE		= 0;
+	private static final int	STATE_NUMBER		= 1;
+	private static final int	STATE_TEXT		= 2;
+	private static final int	STATE_LF			= 3;
+	private static final int	STATE_BULK		= 4;
+	private static final int	STATE_BULK_CR		= 5;
+	private static final int	STATE_BULK_LF		= 6;
 
 	private RedisNode		rootNode		= new RedisNode();
 
@@ -18,12 +34,38 @@ public class RedisReadFutureImpl extends AbstractRedisReadFuture implements Redi
 
 	private boolean		complete		= false;
 
+	private int			state		= STATE_TYPE;
+
+	private char			type;
+
+	private long			number;
+
+	private boolean		negative;
+
+	private boolean		digits;
+
+	private byte[]			text;
+
+	private int			textLength;
+
+	private byte[]			bulk;
+
+	private int			bulkRead;
+
+	private int			maxElements;
+
+	private long			elements;
+
 	public RedisReadFutureImpl(BaseContext context) {
+		this(context, DEFAULT_MAX_ELEMENTS);
+	}
+
+	/**
+	 * @param maxElements 一个响应中(含嵌套)数组元素的总数上限，超过时抛出ProtocolException
+	 */
+	public RedisReadFutureImpl(BaseContext context, int maxElements) {
 		super(context);
-//		this.currentLine 	= new StringBuilder();
-//		this.rootNode		= new RedisNode(0);
-//		this.currentNode	= rootNode;
-//		this.complete		= false;
+		this.maxElements = maxElements;
 	}
 
 	public boolean read(IOSession session, ByteBuffer buffer) throws IOException {
@@ -34,139 +76,259 @@ public class RedisReadFutureImpl extends AbstractRedisReadFuture implements Redi
 
 		for (; buffer.hasRemaining();) {
 
-			byte b = buffer.get();
+			switch (state) {
+			case STATE_TYPE:
 
-			if (b == '\n') {
-
-				String line = currentLine.toString();
-				currentLine.setLength(0);
-
-				switch (line.charAt(0)) {
-				case TYPE_ARRAYS:
-					
-					int size = Integer.parseInt(line.substring(1));
-					
-					currentNode.createChildren(size);
-					
-					currentNode.setType(TYPE_ARRAYS);
-					
-					currentNode = currentNode.getChildren()[0];
-					
-					break;
-				case TYPE_BULK_STRINGS:
-
-					currentNode.setType(TYPE_BULK_STRINGS);
-					
-					int length = Integer.parseInt(line.substring(1));
-
-					if (length == -1) {
-
-						RedisNode n = currentNode.deepNext();
-
-						if (n == null) {
-							
-							doComplete();
-							
-							return true;
-						}
-
-						currentNode = n;
-					}
-					
-					break;
-				case TYPE_ERRORS:
-					
-					currentNode.setType(TYPE_ERRORS);
-					
-					currentNode.setValue(line.substring(1));
-					
-					doComplete();
-					
-					return true;
-				case TYPE_INTEGERS:
+				readType(buffer.get());
 
-					int intValue = Integer.parseInt(line.substring(1));
+				break;
+			case STATE_NUMBER:
 
-					currentNode.setValue(intValue);
-					
-					currentNode.setType(TYPE_INTEGERS);
+				readNumber(buffer.get());
 
-					RedisNode n3 = currentNode.deepNext();
+				break;
+			case STATE_TEXT:
 
-					if (n3 == null) {
-						
-						doComplete();
-						
-						return true;
-					}
+				readText(buffer);
 
-					currentNode = n3;
+				break;
+			case STATE_LF:
 
-					break;
-				case TYPE_SIMPLE_STRINGS:
-					
-					currentNode.setType(TYPE_SIMPLE_STRINGS);
+				if (buffer.get() != '\n') {
+					throw new ProtocolException("expect LF");
+				}
 
-					String strValue = line.substring(1);
+				if (doLineComplete()) {
+					return true;
+				}
 
-					currentNode.setValue(strValue);
+				break;
+			case STATE_BULK:
 
-					RedisNode n4 = currentNode.deepNext();
+				int length = Math.min(bulk.length - bulkRead, buffer.remaining());
 
-					if (n4 == null) {
-						
-						doComplete();
-						
-						return true;
-					}
+				buffer.get(bulk, bulkRead, length);
 
-					currentNode = n4;
+				bulkRead += length;
 
-					break;
-				default:
+				if (bulkRead == bulk.length) {
+					state = STATE_BULK_CR;
+				}
 
-					currentNode.setValue(line);
+				break;
+			case STATE_BULK_CR:
 
-					RedisNode n5 = currentNode.deepNext();
+				if (buffer.get() != '\r') {
+					throw new ProtocolException("expect CR");
+				}
+
+				state = STATE_BULK_LF;
+
+				break;
+			case STATE_BULK_LF:
 
-					if (n5 == null) {
-						
-						doComplete();
-						
-						return true;
-					}
+				if (buffer.get() != '\n') {
+					throw new ProtocolException("expect LF");
+				}
+
+				currentNode.setBytes(bulk);
 
-					currentNode = n5;
+				bulk = null;
 
-					break;
+				if (doValueComplete()) {
+					return true;
 				}
 
-			} else if (b == '\r') {
-				continue;
+				break;
+			}
+		}
+
+		return false;
+	}
+
+	private void readType(byte b) {
+
+		switch (b) {
+		case BYTE_SIMPLE_STRINGS:
+		case BYTE_ERRORS:
+			textLength = 0;
+			state = STATE_TEXT;
+			break;
+		case BYTE_INTEGERS:
+		case BYTE_BULK_STRINGS:
+		case BYTE_ARRAYS:
+			number = 0;
+			negative = false;
+			digits = false;
+			state = STATE_NUMBER;
+			break;
+		default:
+			throw new ProtocolException("illegal type:" + (char) b);
+		}
+
+		type = (char) b;
+
+		currentNode.setType(type);
+	}
+
+	private void readNumber(byte b) {
+
+		if (b >= '0' && b <= '9') {
+
+			number = number * 10 + (b - '0');
+
+			if (number < 0) {
+				throw new ProtocolException("number overflow");
+			}
+
+			digits = true;
+
+		} else if (b == '\r' && digits) {
+
+			if (negative) {
+				number = -number;
+			}
+
+			state = STATE_LF;
+
+		} else if (b == '-' && !digits && !negative) {
+
+			negative = true;
+
+		} else {
+			throw new ProtocolException("illegal number char:" + (char) b);
+		}
+	}
+
+	private void readText(ByteBuffer buffer) {
+
+		if (!buffer.hasArray()) {
+
+			byte b = buffer.get();
+
+			if (b == '\r') {
+				state = STATE_LF;
 			} else {
-				currentLine.append((char) b);
+				appendText(new byte[] { b }, 0, 1);
 			}
+			return;
+		}
+
+		byte[] array = buffer.array();
+
+		int offset = buffer.arrayOffset();
+
+		int start = buffer.position();
+
+		int end = buffer.limit();
+
+		int i = start;
+
+		for (; i < end && array[offset + i] != '\r'; i++) {
 		}
 
-		return complete;
+		appendText(array, offset + start, i - start);
+
+		if (i < end) {
+			// 跳过\r
+			i++;
+			state = STATE_LF;
+		}
+
+		buffer.position(i);
+	}
+
+	private void appendText(byte[] array, int offset, int length) {
+
+		if (text == null) {
+			text = new byte[Math.max(32, length)];
+		} else if (textLength + length > text.length) {
+			text = Arrays.copyOf(text, Math.max(text.length << 1, textLength + length));
+		}
+
+		System.arraycopy(array, offset, text, textLength, length);
+
+		textLength += length;
+	}
+
+	private boolean doLineComplete() {
+
+		RedisNode node = this.currentNode;
+
+		switch (type) {
+		case TYPE_SIMPLE_STRINGS:
+		case TYPE_ERRORS:
+
+			node.setBytes(Arrays.copyOf(text, textLength));
+
+			return doValueComplete();
+		case TYPE_INTEGERS:
+
+			node.setValue(Long.valueOf(number));
+
+			return doValueComplete();
+		case TYPE_BULK_STRINGS:
+
+			if (number < 0) {
+				// null bulk string
+				return doValueComplete();
+			}
+
+			if (number > MAX_BULK_LENGTH) {
+				throw new ProtocolException("max " + MAX_BULK_LENGTH + " ,length:" + number);
+			}
+
+			bulk = new byte[(int) number];
+
+			bulkRead = 0;
+
+			state = number == 0 ? STATE_BULK_CR : STATE_BULK;
+
+			return false;
+		default:
+
+			if (number < 0) {
+				// null array
+				return doValueComplete();
+			}
+
+			elements += number;
+
+			if (elements > maxElements) {
+				throw new ProtocolException("max elements " + maxElements + " ,size:" + elements);
+			}
+
+			node.createChildren((int) number);
+
+			if (number == 0) {
+				return doValueComplete();
+			}
+
+			currentNode = node.getChildren()[0];
+
+			state = STATE_TYPE;
+
+			return false;
+		}
 	}
-	
-	private void doComplete(){
-		
-		complete = true;
-		
-		//FIXME redis的心跳有些特殊
-//		if (rootNode.getType() == TYPE_SIMPLE_STRINGS) {
-//			
-//			Object value = rootNode.getValue();
-//			
-//			if (CMD_PING.equals(value)) {
-//				setPING();
-//			}else if(CMD_PONG.equals(value)){
-//				setPONG();
-//			}
-//		}
-		
+
+	/**
+	 * @return 整个响应是否已完成
+	 */
+	private boolean doValueComplete() {
+
+		RedisNode next = currentNode.deepNext();
+
+		if (next == null) {
+			complete = true;
+			return true;
+		}
+
+		currentNode = next;
+
+		state = STATE_TYPE;
+
+		return false;
 	}
 
 	public void release() {
@@ -0,0 +1,19 @@
+package com.generallycloud.nio.codec.redis.future;
+
+import com.generallycloud.nio.component.SEListenerAdapter;
+import com.generallycloud.nio.component.Session;
+
+/**
+ * 连接关闭时唤醒RedisClient上所有未返回的命令
+ */
+public class RedisSEListener extends SEListenerAdapter {
+
+	public void sessionClosed(Session session) {
+
+		Object attachment = session.getAttachment();
+
+		if (attachment instanceof RedisClient) {
+			((RedisClient) attachment).onClosed();
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.generallycloud.nio.codec.redis.future;
+
+import java.io.IOException;
+
+import com.generallycloud.nio.Linkable;
+import com.generallycloud.nio.TimeoutException;
+import com.generallycloud.nio.component.concurrent.Waiter;
+
+/**
+ * 一个已发送命令的结果，按发送顺序排队，由RedisIOEventHandle按响应的顺序唤醒
+ */
+public class RedisWaiter extends Waiter<RedisNode> implements Linkable<RedisWaiter> {
+
+	private RedisWaiter	next;
+
+	private volatile boolean	done;
+
+	private IOException		cause;
+
+	/**
+	 * 等待结果，超时抛出TimeoutException，连接关闭或命令未能写出时抛出IOException
+	 */
+	public RedisNode get(long timeout) throws IOException {
+
+		if (await(timeout)) {
+			throw new TimeoutException("timeout");
+		}
+
+		if (cause != null) {
+			throw new IOException(cause.getMessage(), cause);
+		}
+
+		return getPayload();
+	}
+
+	public void setPayload(RedisNode node) {
+		super.setPayload(node);
+		this.done = true;
+	}
+
+	/**
+	 * 不会再收到响应，唤醒等待的线程
+	 */
+	void fail(IOException cause) {
+		this.cause = cause;
+		setPayload(null);
+	}
+
+	/**
+	 * 是否已收到响应，不阻塞
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	public RedisWaiter getNext() {
+		return next;
+	}
+
+	public void setNext(RedisWaiter next) {
+		this.next = next;
+	}
+}
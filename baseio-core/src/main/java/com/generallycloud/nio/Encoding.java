@@ -8,4 +8,6 @@ public class Encoding {
 	
 	public static Charset GBK = Charset.forName("GBK");
 	
+	public static Charset ISO8859_1 = Charset.forName("ISO-8859-1");
+	
 }
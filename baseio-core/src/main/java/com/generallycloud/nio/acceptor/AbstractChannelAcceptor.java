@@ -88,6 +88,12 @@ public abstract class AbstractChannelAcceptor extends AbstractChannelService imp
 					return;
 				}
 
+				if (!writeFuture.isDuplicable()) {
+					ReleaseUtil.release(writeFuture);
+					logger.error("can not broadcast " + writeFuture);
+					return;
+				}
+
 				Iterator<Session> ss = sessions.values().iterator();
 				
 				for (; ss.hasNext();) {
@@ -109,7 +109,7 @@ public class MemoryBlockV2 implements ByteBuf {
 
 	public void get(byte[] dst, int offset, int length) {
 		this.memory.get(dst, offset, length);
-		this.position += (length - offset);
+		this.position += length;
 	}
 
 	public int getEnd() {
@@ -174,7 +174,7 @@ public class MemoryBlockV2 implements ByteBuf {
 
 	public void put(byte[] src, int offset, int length) {
 		this.memory.put(src, offset, length);
-		this.position += (length - offset);
+		this.position += length;
 	}
 
 	public int read(SocketChannel channel) throws IOException {
@@ -108,7 +108,7 @@ public class MemoryBlockV3 implements ByteBuf {
 
 	public void get(byte[] dst, int offset, int length) {
 		this.memory.get(dst, offset, length);
-		this.position += (length - offset);
+		this.position += length;
 	}
 
 	public int getInt() {
@@ -166,7 +166,7 @@ public class MemoryBlockV3 implements ByteBuf {
 
 	public void put(byte[] src, int offset, int length) {
 		this.memory.put(src, offset, length);
-		this.position += (length - offset);
+		this.position += length;
 	}
 
 	public int read(SocketChannel channel) throws IOException {
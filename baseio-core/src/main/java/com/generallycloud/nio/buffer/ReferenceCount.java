@@ -1,18 +1,21 @@
 package com.generallycloud.nio.buffer;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+// duplicate出来的ByteBuf共用一个，可能在不同的线程中release
 class ReferenceCount {
 
-	protected int	referenceCount = 1;
+	protected AtomicInteger	referenceCount	= new AtomicInteger(1);
 
 	protected int increament() {
-		return ++referenceCount;
+		return referenceCount.incrementAndGet();
 	}
 
 	protected int deincreament() {
-		return --referenceCount;
+		return referenceCount.decrementAndGet();
 	}
 
 	protected int getReferenceCount() {
-		return referenceCount;
+		return referenceCount.get();
 	}
 }
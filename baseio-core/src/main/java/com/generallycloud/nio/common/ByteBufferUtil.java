@@ -1,6 +1,7 @@
 package com.generallycloud.nio.common;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public class ByteBufferUtil {
 
@@ -32,4 +33,63 @@ public class ByteBufferUtil {
 		}
 	}
 
+	/**
+	 * 在position至limit之间查找b，不改变buffer的position
+	 * 
+	 * @return b的绝对位置，没有找到时返回-1
+	 */
+	public static int indexOf(ByteBuffer buffer, byte b) {
+
+		int position = buffer.position();
+
+		int limit = buffer.limit();
+
+		if (buffer.hasArray()) {
+
+			byte[] array = buffer.array();
+
+			int offset = buffer.arrayOffset();
+
+			for (int i = position + offset, end = limit + offset; i < end; i++) {
+				if (array[i] == b) {
+					return i - offset;
+				}
+			}
+
+			return -1;
+		}
+
+		// direct buffer逐字节get较慢，每次比较8个字节
+		long pattern = (b & 0xffL) * 0x0101010101010101L;
+
+		boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+
+		int i = position;
+
+		for (int end = limit - 7; i < end; i += 8) {
+
+			long word = buffer.getLong(i) ^ pattern;
+
+			// 相等的字节对应的最高位为1，其它字节为0
+			long found = ~(((word & 0x7f7f7f7f7f7f7f7fL) + 0x7f7f7f7f7f7f7f7fL) | word | 0x7f7f7f7f7f7f7f7fL);
+
+			if (found != 0) {
+
+				if (bigEndian) {
+					return i + (Long.numberOfLeadingZeros(found) >>> 3);
+				}
+
+				return i + (Long.numberOfTrailingZeros(found) >>> 3);
+			}
+		}
+
+		for (; i < limit; i++) {
+			if (buffer.get(i) == b) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
 }
@@ -17,6 +17,10 @@ public class ConsoleLogger implements Logger{
 		return loggerClass;
 	}
 
+	public boolean isDebugEnabled() {
+		return DebugUtil.isEnableDebugLog();
+	}
+
 	public void info(String message) {
 		DebugUtil.info(className,message);
 	}
@@ -2,8 +2,12 @@ package com.generallycloud.nio.common;
 
 public class DebugUtil {
 
+	// 打印debug(Throwable)的异常栈
 	private static boolean	enableDebug	= true;
 
+	// 输出debug级别的日志，与异常栈分开，默认关闭
+	private static boolean	enableDebugLog	= false;
+
 	protected static void debug(Throwable e) {
 		if (enableDebug) {
 			e.printStackTrace();
@@ -32,8 +36,20 @@ public class DebugUtil {
 		enableDebug = enable;
 	}
 
+	public static boolean isEnableDebug() {
+		return enableDebug;
+	}
+
+	public static void setEnableDebugLog(boolean enable) {
+		enableDebugLog = enable;
+	}
+
+	public static boolean isEnableDebugLog() {
+		return enableDebugLog;
+	}
+
 	protected static void debug(String className, String message) {
-		if (enableDebug) {
+		if (enableDebugLog) {
 			System.out.println(className + "===" + message);
 		}
 	}
@@ -58,21 +74,21 @@ public class DebugUtil {
 	}
 
 	protected static void debug(String className, String message, Object param) {
-		if (enableDebug) {
+		if (enableDebugLog) {
 			info(className, message, param);
 		}
 
 	}
 
 	protected static void debug(String className, String message, Object param, Object param1) {
-		if (enableDebug) {
+		if (enableDebugLog) {
 			info(className, message, param, param1);
 		}
 
 	}
 
 	protected static void debug(String className, String message, Object[] param) {
-		if (enableDebug) {
+		if (enableDebugLog) {
 			info(className, message, param);
 		}
 	}
@@ -26,4 +26,6 @@ public interface Logger {
 	
 	public abstract Class getLoggerClass();
 	
+	public abstract boolean isDebugEnabled();
+	
 }
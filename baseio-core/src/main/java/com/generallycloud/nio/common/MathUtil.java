@@ -109,6 +109,43 @@ public class MathUtil {
 		bytes[0] = (byte) ((value >> 8*3));
 	}
 	
+	/**
+	 * value按无符号处理，每个字节7位，低位在前，最多5个字节
+	 */
+	public static int varintSize(int value) {
+		
+		if ((value & (0xffffffff << 7)) == 0) {
+			return 1;
+		}
+		if ((value & (0xffffffff << 14)) == 0) {
+			return 2;
+		}
+		if ((value & (0xffffffff << 21)) == 0) {
+			return 3;
+		}
+		if ((value & (0xffffffff << 28)) == 0) {
+			return 4;
+		}
+		return 5;
+	}
+	
+	/**
+	 * @return 写入之后的offset
+	 */
+	public static int int2Varint(byte[] bytes, int value, int offset) {
+		
+		for (; (value & ~0x7f) != 0;) {
+			
+			bytes[offset++] = (byte) ((value & 0x7f) | 0x80);
+			
+			value >>>= 7;
+		}
+		
+		bytes[offset++] = (byte) value;
+		
+		return offset;
+	}
+	
 	public static void intTo2Byte(byte[] bytes, int value, int offset) {
 		
 		checkLength(bytes, 2, offset);
@@ -17,6 +17,10 @@ public class SLF4JLogger implements Logger{
 		return loggerClass;
 	}
 
+	public boolean isDebugEnabled() {
+		return logger.isDebugEnabled();
+	}
+
 	public void info(String message) {
 		logger.info(message);
 	}
@@ -1,9 +1,12 @@
 package com.generallycloud.nio.common.ssl;
 
+import java.lang.reflect.Method;
 import java.util.LinkedHashSet;
+import java.util.List;
 
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
 
 import com.generallycloud.nio.common.ssl.JdkApplicationProtocolNegotiator.ProtocolSelectionListener;
 import com.generallycloud.nio.common.ssl.JdkApplicationProtocolNegotiator.ProtocolSelector;
@@ -11,6 +14,21 @@ import com.generallycloud.nio.common.ssl.JdkApplicationProtocolNegotiator.Protoc
 final class JdkAlpnSslEngine extends JdkSslEngine {
 	private static boolean	available;
 
+	// JDK 8u252+/9+ 自带的ALPN接口，不存在时为null
+	private static Method	SET_APPLICATION_PROTOCOLS;
+
+	private static Method	GET_APPLICATION_PROTOCOL;
+
+	static {
+		try {
+			SET_APPLICATION_PROTOCOLS = SSLParameters.class.getMethod("setApplicationProtocols", String[].class);
+			GET_APPLICATION_PROTOCOL = SSLEngine.class.getMethod("getApplicationProtocol");
+		} catch (Exception ignore) {
+			SET_APPLICATION_PROTOCOLS = null;
+			GET_APPLICATION_PROTOCOL = null;
+		}
+	}
+
 	static boolean isAvailable() {
 		updateAvailability();
 		return available;
@@ -21,6 +39,11 @@ final class JdkAlpnSslEngine extends JdkSslEngine {
 			return;
 		}
 
+		if (SET_APPLICATION_PROTOCOLS != null) {
+			available = true;
+			return;
+		}
+
 		try {
 			// Always use bootstrap class loader.
 			Class.forName("sun.security.ssl.ALPNExtension", true, null);
@@ -33,6 +56,8 @@ final class JdkAlpnSslEngine extends JdkSslEngine {
 	JdkAlpnSslEngine(SSLEngine engine, final JdkApplicationProtocolNegotiator applicationNegotiator, boolean server) {
 		super(engine);
 
+		setApplicationProtocols(engine, applicationNegotiator.protocols());
+
 		if (server) {
 			final ProtocolSelector protocolSelector = applicationNegotiator.protocolSelectorFactory().newSelector(
 					this, new LinkedHashSet<String>(applicationNegotiator.protocols()));
@@ -88,6 +113,47 @@ final class JdkAlpnSslEngine extends JdkSslEngine {
 		}
 	}
 
+	private static void setApplicationProtocols(SSLEngine engine, List<String> protocols) {
+
+		if (SET_APPLICATION_PROTOCOLS == null) {
+			return;
+		}
+
+		try {
+
+			SSLParameters parameters = engine.getSSLParameters();
+
+			SET_APPLICATION_PROTOCOLS.invoke(parameters, (Object) protocols.toArray(new String[protocols.size()]));
+
+			engine.setSSLParameters(parameters);
+
+		} catch (Exception e) {
+			throw new IllegalStateException("failed to set application protocols", e);
+		}
+	}
+
+	/**
+	 * @return 握手完成后协商出的协议，未协商时返回null
+	 */
+	public String getApplicationProtocol() {
+
+		String protocol = getSession().getApplicationProtocol();
+
+		if (protocol != null || GET_APPLICATION_PROTOCOL == null) {
+			return protocol;
+		}
+
+		try {
+
+			protocol = (String) GET_APPLICATION_PROTOCOL.invoke(getWrappedEngine());
+
+		} catch (Exception e) {
+			return null;
+		}
+
+		return protocol == null || protocol.length() == 0 ? null : protocol;
+	}
+
 	@Override
 	public void closeInbound() throws SSLException {
 //		ALPN.remove(getWrappedEngine());
@@ -42,6 +42,18 @@ public class SSLUtil {
 		}
 	}
 
+	/**
+	 * @return ALPN协商出的协议，未启用或未协商时返回null
+	 */
+	public static String getApplicationProtocol(SSLEngine engine) {
+
+		if (engine instanceof JdkAlpnSslEngine) {
+			return ((JdkAlpnSslEngine) engine).getApplicationProtocol();
+		}
+
+		return null;
+	}
+
 	public static SSLEngine getSslEngine() {
 		return sslContext.newEngine();
 	}
@@ -43,7 +43,10 @@ public class SslHandler {
 			out = allocate(102400);
 		} else {
 
-			out = allocate(buf.limit() * 100);
+			// 每个SSL记录最多16K明文，SSLEngine要求输出至少能放下一个完整的记录
+			int records = buf.remaining() / (1024 * 16) + 1;
+
+			out = allocate(records * engine.getSession().getPacketBufferSize());
 		}
 
 		try {
@@ -58,6 +58,13 @@ public interface BaseContext extends Attributes, LifeCycle {
 
 	public abstract void setSessionFactory(SessionFactory sessionFactory);
 
+	public abstract SharedSessionManager getSharedSessionManager();
+
+	/**
+	 * 需要在context启动之前设置，并且sharedSessionManager已经启动，为null时使用自己的session管理线程
+	 */
+	public abstract void setSharedSessionManager(SharedSessionManager sharedSessionManager);
+
 	public abstract void setDatagramPacketAcceptor(DatagramPacketAcceptor datagramPacketAcceptor);
 
 	public abstract SessionEventListenerWrapper getSessionEventListenerStub();
@@ -39,11 +39,14 @@ public class BaseContextImpl extends AbstractLifeCycle implements BaseContext {
 	private ChannelService				datagramChannelService;
 	private ProtocolFactory				protocolFactory;
 	private EventLoopThread				sessionFactoryThread;
+	private SharedSessionManager			sharedSessionManager;
 	private long						sessionIdleTime;
 	private BeatFutureFactory			beatFutureFactory;
 	private int						sessionAttachmentSize;
 	private long						startupTime	= System.currentTimeMillis();
 	private EventLoopGroup				eventLoopGroup;
+	// 外部传入并且已经启动的EventLoopGroup由外部负责停止
+	private boolean					stopEventLoopGroup;
 	private ByteBufferPool				heapByteBufferPool;
 	private ProtocolEncoder				protocolEncoder;
 	private SslContext					sslContext;
@@ -187,21 +190,41 @@ public class BaseContextImpl extends AbstractLifeCycle implements BaseContext {
 
 		// this.directByteBufferPool.start();
 
-		this.sessionFactoryThread = new EventLoopThread(sessionFactory, "session-manager");
+		if (sharedSessionManager != null) {
 
-		this.sessionFactoryThread.start();
+			this.sharedSessionManager.register(sessionFactory);
 
-		this.eventLoopGroup.start();
+		} else {
+
+			this.sessionFactoryThread = new EventLoopThread(sessionFactory, "session-manager");
+
+			this.sessionFactoryThread.start();
+		}
+
+		if (!eventLoopGroup.isRunning()) {
+
+			this.eventLoopGroup.start();
+
+			this.stopEventLoopGroup = true;
+		}
 	}
 
 	protected void doStop() throws Exception {
 		
-		LifeCycleUtil.stop(eventLoopGroup);
+		if (stopEventLoopGroup) {
+			LifeCycleUtil.stop(eventLoopGroup);
+		}
 
 		LifeCycleUtil.stop(ioEventHandleAdaptor);
 
+		if (sharedSessionManager != null) {
+			sharedSessionManager.remove(sessionFactory);
+		}
+
 		LifeCycleUtil.stop(sessionFactoryThread);
 
+		this.sessionFactoryThread = null;
+
 		LifeCycleUtil.stop(heapByteBufferPool);
 
 		// LifeCycleUtil.stop(directByteBufferPool);
@@ -247,6 +270,14 @@ public class BaseContextImpl extends AbstractLifeCycle implements BaseContext {
 		this.sessionFactory = sessionFactory;
 	}
 
+	public SharedSessionManager getSharedSessionManager() {
+		return sharedSessionManager;
+	}
+
+	public void setSharedSessionManager(SharedSessionManager sharedSessionManager) {
+		this.sharedSessionManager = sharedSessionManager;
+	}
+
 	public ChannelService getTCPService() {
 		return socketChannelService;
 	}
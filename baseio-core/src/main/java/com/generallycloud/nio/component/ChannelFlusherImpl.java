@@ -19,11 +19,18 @@ public class ChannelFlusherImpl implements ChannelFlusher {
 	private ReentrantList<ChannelFlusherEvent>	events		= new ReentrantList<ChannelFlusherEvent>();
 
 	private BaseContext						context		= null;
+
+	private String							name;
 	
 	public ChannelFlusherImpl(BaseContext context) {
 		this.context = context;
 	}
 
+	// 多个context共用时使用
+	public ChannelFlusherImpl(String name) {
+		this.name = name;
+	}
+
 	public void loop() {
 
 		List<ChannelFlusherEvent> events = this.events.getSnapshot();
@@ -115,6 +122,10 @@ public class ChannelFlusherImpl implements ChannelFlusher {
 
 	public String toString() {
 
+		if (name != null) {
+			return name;
+		}
+
 		ChannelService service = context.getSocketChannelService();
 
 		return service.getServiceDescription() + "(writer)";
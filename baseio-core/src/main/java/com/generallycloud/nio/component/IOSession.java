@@ -3,12 +3,18 @@ package com.generallycloud.nio.component;
 import javax.net.ssl.SSLEngine;
 
 import com.generallycloud.nio.common.ssl.SslHandler;
+import com.generallycloud.nio.component.concurrent.Waiter;
 import com.generallycloud.nio.protocol.IOWriteFuture;
 import com.generallycloud.nio.protocol.ProtocolDecoder;
 import com.generallycloud.nio.protocol.ProtocolEncoder;
 import com.generallycloud.nio.protocol.ProtocolFactory;
 
 public interface IOSession extends Session{
+
+	/**
+	 * decoder暂存的未读完的future(比如流式接收的binary)，session关闭时由框架release
+	 */
+	public static final String	SESSION_KEY_PENDING_READ_FUTURE	= "_SESSION_KEY_PENDING_READ_FUTURE";
 	
 	public abstract boolean isEnableSSL();
 	
@@ -33,5 +39,12 @@ public interface IOSession extends Session{
 	public abstract void setProtocolEncoder(ProtocolEncoder protocolEncoder) ;
 	
 	public abstract void setProtocolFactory(ProtocolFactory protocolFactory) ;
+
+	/**
+	 * 收到下一个PONG时以该session为payload回调并清除，null表示取消等待
+	 */
+	public abstract void setPONGWaiter(Waiter<Session> waiter);
+
+	public abstract Waiter<Session> getPONGWaiter();
 	
 }
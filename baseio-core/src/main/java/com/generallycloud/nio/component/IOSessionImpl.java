@@ -15,6 +15,7 @@ import com.generallycloud.nio.common.ReleaseUtil;
 import com.generallycloud.nio.common.ssl.SslHandler;
 import com.generallycloud.nio.component.IOEventHandle.IOEventState;
 import com.generallycloud.nio.component.concurrent.EventLoop;
+import com.generallycloud.nio.component.concurrent.Waiter;
 import com.generallycloud.nio.protocol.IOReadFuture;
 import com.generallycloud.nio.protocol.IOWriteFuture;
 import com.generallycloud.nio.protocol.ProtocolDecoder;
@@ -37,6 +38,7 @@ public class IOSessionImpl implements UnsafeSession {
 	private long					lastAccess;
 	private SSLEngine				sslEngine;
 	private HashMap<Object, Object>	attributes	= new HashMap<Object, Object>();
+	private volatile Waiter<Session>	pongWaiter;
 
 	public IOSessionImpl(SocketChannel channel, Integer sessionID) {
 		this.context = channel.getContext();
@@ -93,6 +95,9 @@ public class IOSessionImpl implements UnsafeSession {
 
 			physicalClose(channel);
 		}
+
+		// 连接已关闭，不会再有数据交给decoder
+		ReleaseUtil.release((IOReadFuture) removeAttribute(SESSION_KEY_PENDING_READ_FUTURE));
 		
 		fireClosed();
 	}
@@ -174,11 +179,8 @@ public class IOSessionImpl implements UnsafeSession {
 	public void flush(IOWriteFuture future) {
 
 		try {
-			
-			if (isEnableSSL()) {
-				future.wrapSSL(sslEngine, context.getSslContext().getSslHandler());
-			}
 
+			// SSL在写出线程中按队列顺序加密，见NioSocketChannel.flush()
 			channel.offer(future);
 
 		} catch (Exception e) {
@@ -309,6 +311,14 @@ public class IOSessionImpl implements UnsafeSession {
 	public long getLastAccessTime() {
 		return lastAccess;
 	}
+
+	public void setPONGWaiter(Waiter<Session> waiter) {
+		this.pongWaiter = waiter;
+	}
+
+	public Waiter<Session> getPONGWaiter() {
+		return pongWaiter;
+	}
 	
 	public boolean isOpened() {
 		return channel.isOpened();
@@ -5,6 +5,7 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
@@ -65,11 +66,19 @@ public class NioSocketChannel extends AbstractChannel implements com.generallycl
 	public boolean flush() throws IOException {
 
 		if (writeFuture == null) {
-			writeFuture = writeFutures.poll();
-		}
 
-		if (writeFuture == null) {
-			return true;
+			IOWriteFuture future = writeFutures.poll();
+
+			if (future == null) {
+				return true;
+			}
+
+			writeFuture = future;
+
+			if (session.isEnableSSL()) {
+				// 在写出线程中按队列顺序加密，分段加密的文件也不会和其它报文乱序
+				future.wrapSSL(session.getSSLEngine(), getContext().getSslContext().getSslHandler());
+			}
 		}
 
 		if (!writeFuture.write(this)) {
@@ -176,17 +185,32 @@ public class NioSocketChannel extends AbstractChannel implements com.generallycl
 		
 		ListQueue<IOWriteFuture> writeFutures = this.writeFutures;
 		
+		UnsentWriteFutureAcceptor acceptor = getUnsentWriteFutureAcceptor();
+		
 		IOWriteFuture f = writeFutures.poll();
 		
 		for(; f != null;){
 			
-			ReleaseUtil.release(f);
+			if (acceptor == null || !acceptor.acceptUnsent(session, f)) {
+				ReleaseUtil.release(f);
+			}
 			
 			f = writeFutures.poll();
 		}
 		
 	}
 	
+	private UnsentWriteFutureAcceptor getUnsentWriteFutureAcceptor() {
+
+		ChannelService service = getContext().getSocketChannelService();
+
+		if (service instanceof UnsentWriteFutureAcceptor) {
+			return (UnsentWriteFutureAcceptor) service;
+		}
+
+		return null;
+	}
+	
 	public void physicalClose() throws IOException {
 		
 		this.opened = false;
@@ -302,4 +326,8 @@ public class NioSocketChannel extends AbstractChannel implements com.generallycl
 	public int write(ByteBuffer buffer) throws IOException {
 		return channel.write(buffer);
 	}
+
+	public long transferFrom(FileChannel src, long position, long count) throws IOException {
+		return src.transferTo(position, count, channel);
+	}
 }
@@ -35,13 +35,41 @@ public class SessionFactory extends AbstractLooper {
 		SessionMEvent event = this.events.poll(16);
 
 		if (event != null) {
-			try {
-				event.fire(context, sessions.getSnapshot());
-			} catch (Throwable e) {
-				logger.error(e.getMessage(),e);
+			fireEvent(event);
+		}
+
+		idle();
+	}
+
+	/**
+	 * 由共用的session管理线程调用，不阻塞，处理完当前所有的事件
+	 */
+	protected void manage() {
+
+		for (;;) {
+
+			SessionMEvent event = this.events.poll();
+
+			if (event == null) {
+				break;
 			}
+
+			fireEvent(event);
 		}
 
+		idle();
+	}
+
+	private void fireEvent(SessionMEvent event) {
+		try {
+			event.fire(context, sessions.getSnapshot());
+		} catch (Throwable e) {
+			logger.error(e.getMessage(),e);
+		}
+	}
+
+	private void idle() {
+
 		long current_time = System.currentTimeMillis();
 
 		if (next_idle_time > current_time) {
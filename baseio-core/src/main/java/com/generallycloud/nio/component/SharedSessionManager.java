@@ -0,0 +1,72 @@
+package com.generallycloud.nio.component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.generallycloud.nio.AbstractLifeCycle;
+import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.component.concurrent.EventLoopThread;
+
+/**
+ * 多个context共用的session管理线程，context通过
+ * {@link BaseContext#setSharedSessionManager(SharedSessionManager)}使用，
+ * 此时context不再启动自己的session管理线程，context停止时不会停止该线程
+ */
+public class SharedSessionManager extends AbstractLifeCycle {
+
+	private List<SessionFactory>	sessionFactories	= new CopyOnWriteArrayList<SessionFactory>();
+
+	private EventLoopThread		managerThread;
+
+	private String			threadName;
+
+	public SharedSessionManager(String threadName) {
+		this.threadName = threadName;
+	}
+
+	protected void doStart() throws Exception {
+
+		this.managerThread = new EventLoopThread(new SharedSessionManagerLooper(), threadName);
+
+		this.managerThread.start();
+	}
+
+	protected void doStop() throws Exception {
+
+		LifeCycleUtil.stop(managerThread);
+
+		sessionFactories.clear();
+	}
+
+	protected void register(SessionFactory sessionFactory) {
+		sessionFactories.add(sessionFactory);
+	}
+
+	protected void remove(SessionFactory sessionFactory) {
+		sessionFactories.remove(sessionFactory);
+	}
+
+	public int getManagedFactorySize() {
+		return sessionFactories.size();
+	}
+
+	class SharedSessionManagerLooper extends AbstractLooper {
+
+		private Logger	logger	= LoggerFactory.getLogger(SharedSessionManagerLooper.class);
+
+		public void loop() {
+
+			for (SessionFactory sessionFactory : sessionFactories) {
+				try {
+					sessionFactory.manage();
+				} catch (Throwable e) {
+					logger.error(e.getMessage(), e);
+				}
+			}
+
+			sleep(16);
+		}
+	}
+}
@@ -2,6 +2,7 @@ package com.generallycloud.nio.component;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import com.generallycloud.nio.protocol.IOReadFuture;
 import com.generallycloud.nio.protocol.IOWriteFuture;
@@ -37,6 +38,8 @@ public interface SocketChannel extends DuplexChannel {
 
 	public abstract int write(ByteBuffer buffer) throws IOException;
 
+	public abstract long transferFrom(FileChannel src, long position, long count) throws IOException;
+
 	public abstract void offer(IOWriteFuture future);
 
 	public abstract boolean isBlocking();
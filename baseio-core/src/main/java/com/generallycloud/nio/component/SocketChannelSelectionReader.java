@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 
+import com.generallycloud.nio.Releasable;
 import com.generallycloud.nio.buffer.ByteBuf;
 import com.generallycloud.nio.common.CloseUtil;
 import com.generallycloud.nio.common.Logger;
@@ -11,6 +12,7 @@ import com.generallycloud.nio.common.LoggerFactory;
 import com.generallycloud.nio.common.ReleaseUtil;
 import com.generallycloud.nio.component.IOEventHandle.IOEventState;
 import com.generallycloud.nio.component.concurrent.EventLoop;
+import com.generallycloud.nio.component.concurrent.Waiter;
 import com.generallycloud.nio.protocol.IOReadFuture;
 import com.generallycloud.nio.protocol.ProtocolDecoder;
 import com.generallycloud.nio.protocol.ReadFuture;
@@ -21,11 +23,12 @@ public class SocketChannelSelectionReader implements SelectionAcceptor {
 
 	private Logger		logger	= LoggerFactory.getLogger(SocketChannelSelectionReader.class);
 
-	private BaseContext	context;
-
 	public SocketChannelSelectionReader(BaseContext context) {
-		this.context = context;
-		int readBuffer = context.getServerConfiguration().getSERVER_READ_BUFFER();
+		this(context.getServerConfiguration().getSERVER_READ_BUFFER());
+	}
+
+	// 不绑定BaseContext，可以读取不同context的channel
+	public SocketChannelSelectionReader(int readBuffer) {
 		// this.buffer = ByteBuffer.allocateDirect(readBuffer);
 		this.buffer = ByteBuffer.allocate(readBuffer);// FIXME 使用direct
 	}
@@ -58,6 +61,8 @@ public class SocketChannelSelectionReader implements SelectionAcceptor {
 
 		session.active();
 
+		BaseContext context = channel.getContext();
+
 		if (context.isEnableSSL()) {
 			
 			for (;;) {
@@ -152,8 +157,6 @@ public class SocketChannelSelectionReader implements SelectionAcceptor {
 					return;
 				}
 
-				ReleaseUtil.release(future);
-
 			} catch (Throwable e) {
 
 				ReleaseUtil.release(future);
@@ -173,44 +176,82 @@ public class SocketChannelSelectionReader implements SelectionAcceptor {
 		}
 	}
 
-	private void accept(final Session session, final IOReadFuture future) throws Exception {
+	/**
+	 * future在业务处理完成后才release，处理期间可以直接使用其接收缓冲区
+	 */
+	private void accept(final IOSession session, final IOReadFuture future) throws Exception {
 
 		if (future.isSilent()) {
+			ReleaseUtil.release(future);
 			return;
 		}
 
 		if (future.isHeartbeat()) {
 
-			acceptHeartBeat(session, future);
+			try {
+				acceptHeartBeat(session, future);
+			} finally {
+				ReleaseUtil.release(future);
+			}
 
 			return;
 		}
 
 		EventLoop eventLoop = session.getEventLoop();
 
-		eventLoop.dispatch(new Runnable() {
+		try {
+			dispatch(eventLoop, session, future);
+		} catch (RuntimeException e) {
+			ReleaseUtil.release(future);
+			throw e;
+		}
+	}
 
-			public void run() {
+	private void dispatch(EventLoop eventLoop, Session session, IOReadFuture future) {
+		eventLoop.dispatch(new AcceptJob(session, future));
+	}
 
-				BaseContext context = session.getContext();
+	/**
+	 * EventLoop停止时未执行的任务被release，释放future持有的内存
+	 */
+	class AcceptJob implements Runnable, Releasable {
 
-				IOEventHandle eventHandle = context.getIOEventHandleAdaptor();
+		private Session		session;
 
-				try {
+		private IOReadFuture	future;
 
-					eventHandle.accept(session, future);
+		AcceptJob(Session session, IOReadFuture future) {
+			this.session = session;
+			this.future = future;
+		}
+
+		public void run() {
 
-				} catch (Exception e) {
+			BaseContext context = session.getContext();
 
-					logger.error(e.getMessage(), e);
+			IOEventHandle eventHandle = context.getIOEventHandleAdaptor();
 
-					eventHandle.exceptionCaught(session, future, e, IOEventState.HANDLE);
-				}
+			try {
+
+				eventHandle.accept(session, future);
+
+			} catch (Exception e) {
+
+				logger.error(e.getMessage(), e);
+
+				eventHandle.exceptionCaught(session, future, e, IOEventState.HANDLE);
+			} finally {
+
+				ReleaseUtil.release(future);
 			}
-		});
+		}
+
+		public void release() {
+			ReleaseUtil.release(future);
+		}
 	}
 
-	private void acceptHeartBeat(final Session session, final IOReadFuture future) {
+	private void acceptHeartBeat(final IOSession session, final IOReadFuture future) {
 
 		if (future.isPING()) {
 
@@ -240,8 +281,18 @@ public class SocketChannelSelectionReader implements SelectionAcceptor {
 				logger.error(e.getMessage(), e);
 				return;
 			}
-		} else {
+		} else if (future.isPONG()) {
+
 			logger.info("收到心跳回报!来自：{}", session);
+
+			Waiter<Session> waiter = session.getPONGWaiter();
+
+			if (waiter != null) {
+
+				session.setPONGWaiter(null);
+
+				waiter.setPayload(session);
+			}
 		}
 
 	}
@@ -15,8 +15,12 @@ public abstract class SocketChannelSelectorLoop extends AbstractSelectorLoop {
 	protected SocketChannelSelectionAlpha	_alpha_acceptor;
 
 	public SocketChannelSelectorLoop(BaseContext context) {
+		this(new SocketChannelSelectionReader(context));
+	}
+
+	protected SocketChannelSelectorLoop(SelectionAcceptor readAcceptor) {
 		this._write_acceptor = new SocketChannelSelectionWriter();
-		this._read_acceptor = new SocketChannelSelectionReader(context);
+		this._read_acceptor = readAcceptor;
 	}
 	
 	public void accept(SelectionKey selectionKey) throws IOException {
@@ -0,0 +1,12 @@
+package com.generallycloud.nio.component;
+
+import com.generallycloud.nio.protocol.IOWriteFuture;
+
+/**
+ * ChannelService实现该接口时，channel关闭时还未开始写出的IOWriteFuture交给它处理，
+ * 返回false的IOWriteFuture被release。正在写出的IOWriteFuture总是被release
+ */
+public interface UnsentWriteFutureAcceptor {
+
+	public abstract boolean acceptUnsent(Session session, IOWriteFuture future);
+}
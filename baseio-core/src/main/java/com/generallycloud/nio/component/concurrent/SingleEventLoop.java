@@ -6,9 +6,11 @@ import java.util.concurrent.TimeUnit;
 
 import com.generallycloud.nio.AbstractLifeCycle;
 import com.generallycloud.nio.Looper;
+import com.generallycloud.nio.Releasable;
 import com.generallycloud.nio.common.LifeCycleUtil;
 import com.generallycloud.nio.common.Logger;
 import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.common.ReleaseUtil;
 import com.generallycloud.nio.common.ThreadUtil;
 
 public class SingleEventLoop extends AbstractLifeCycle implements EventLoop {
@@ -44,9 +46,13 @@ public class SingleEventLoop extends AbstractLifeCycle implements EventLoop {
 	
 //	AtomicInteger integer = new AtomicInteger();
 
+	/**
+	 * 停止时等待队列中的任务执行完，线程已经退出时剩余的任务不会再执行，
+	 * 其中实现了Releasable的任务(持有内存的read future、广播等)直接release
+	 */
 	class SingleEventLoopWorker implements Looper {
 
-		private boolean	stoped	= false;
+		private volatile boolean	stoped	= false;
 
 		protected SingleEventLoopWorker(int queueSize) {
 			this.jobs = new ArrayBlockingQueue<Runnable>(queueSize);
@@ -61,6 +67,11 @@ public class SingleEventLoop extends AbstractLifeCycle implements EventLoop {
 			if (stoped || !jobs.offer(job)) {
 				throw new RejectedExecutionException();
 			}
+
+			// 与stop并发，任务可能在清理之后才入队
+			if (stoped && jobs.remove(job)) {
+				throw new RejectedExecutionException();
+			}
 		}
 
 		public void loop() {
@@ -83,9 +94,25 @@ public class SingleEventLoop extends AbstractLifeCycle implements EventLoop {
 
 			stoped = true;
 
-			for (; jobs.size() > 0;) {
+			Thread monitor = thread.getMonitor();
+
+			// 在本线程中stop时队列不会再被消费
+			for (; jobs.size() > 0 && monitor != null && monitor.isAlive() && monitor != Thread.currentThread();) {
 				ThreadUtil.sleep(8);
 			}
+
+			for (;;) {
+
+				Runnable job = jobs.poll();
+
+				if (job == null) {
+					return;
+				}
+
+				if (job instanceof Releasable) {
+					ReleaseUtil.release((Releasable) job);
+				}
+			}
 		}
 	}
 
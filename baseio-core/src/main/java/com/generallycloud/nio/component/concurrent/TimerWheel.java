@@ -0,0 +1,345 @@
+package com.generallycloud.nio.component.concurrent;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.common.ThreadUtil;
+
+/**
+ * 时间轮，一个线程处理所有的超时任务，适合大量很快被取消的超时(比如请求的超时)。
+ * <ul>
+ * <li>schedule以及cancel只是入队，由时间轮的线程加入或移出格子</li>
+ * <li>精度为tickDuration，任务在时间轮的线程中执行，不可阻塞</li>
+ * <li>线程在第一次schedule时启动，为daemon线程</li>
+ * </ul>
+ */
+public class TimerWheel implements Runnable {
+
+	private static final int		STATE_INIT		= 0;
+	private static final int		STATE_SCHEDULED	= 1;
+	private static final int		STATE_CANCELLED	= 2;
+	private static final int		STATE_EXPIRED		= 3;
+
+	private long					tickDuration;
+
+	private Bucket[]				wheel;
+
+	private int					mask;
+
+	private long					startTime;
+
+	private long					tick;
+
+	private volatile boolean		started;
+
+	private volatile boolean		stopped;
+
+	private String				threadName;
+
+	private ConcurrentLinkedQueue<Timeout>	pending			= new ConcurrentLinkedQueue<Timeout>();
+
+	private ConcurrentLinkedQueue<Timeout>	cancelled			= new ConcurrentLinkedQueue<Timeout>();
+
+	private Logger				logger			= LoggerFactory.getLogger(TimerWheel.class);
+
+	/**
+	 * @param tickDuration 每一格的时间(毫秒)
+	 * @param wheelSize 格子数，向上取2的次方
+	 */
+	public TimerWheel(long tickDuration, int wheelSize, String threadName) {
+
+		if (tickDuration < 1 || wheelSize < 1) {
+			throw new IllegalArgumentException("tickDuration:" + tickDuration + ",wheelSize:" + wheelSize);
+		}
+
+		int size = 1;
+
+		while (size < wheelSize) {
+			size <<= 1;
+		}
+
+		this.wheel = new Bucket[size];
+
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new Bucket();
+		}
+
+		this.mask = size - 1;
+		this.tickDuration = tickDuration;
+		this.threadName = threadName;
+	}
+
+	/**
+	 * @param delay 毫秒
+	 */
+	public Timeout schedule(Runnable task, long delay) {
+
+		if (!started) {
+			start();
+		}
+
+		Timeout timeout = new Timeout(this, task, System.currentTimeMillis() + Math.max(0, delay));
+
+		pending.offer(timeout);
+
+		return timeout;
+	}
+
+	private synchronized void start() {
+
+		if (started) {
+			return;
+		}
+
+		startTime = System.currentTimeMillis();
+
+		Thread thread = new Thread(this, threadName);
+
+		thread.setDaemon(true);
+
+		thread.start();
+
+		started = true;
+	}
+
+	public void stop() {
+		stopped = true;
+	}
+
+	public void run() {
+
+		for (; !stopped;) {
+
+			long deadline = startTime + (tick + 1) * tickDuration;
+
+			long sleep = deadline - System.currentTimeMillis();
+
+			if (sleep > 0) {
+				ThreadUtil.sleep(sleep);
+				continue;
+			}
+
+			removeCancelled();
+
+			transferPending();
+
+			Bucket bucket = wheel[(int) (tick & mask)];
+
+			bucket.expire(deadline);
+
+			tick++;
+		}
+	}
+
+	private void transferPending() {
+
+		// 一次最多转移一部分，避免一直有新任务时无法推进
+		for (int i = 0; i < 100000; i++) {
+
+			Timeout timeout = pending.poll();
+
+			if (timeout == null) {
+				return;
+			}
+
+			// 与cancel竞争，已经取消的不再加入格子
+			if (!timeout.compareAndSetState(STATE_INIT, STATE_SCHEDULED)) {
+				continue;
+			}
+
+			long ticks = (timeout.deadline - startTime) / tickDuration;
+
+			ticks = Math.max(ticks, tick);
+
+			timeout.rounds = (ticks - tick) / wheel.length;
+
+			wheel[(int) (ticks & mask)].add(timeout);
+		}
+	}
+
+	private void removeCancelled() {
+
+		for (;;) {
+
+			Timeout timeout = cancelled.poll();
+
+			if (timeout == null) {
+				return;
+			}
+
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	private void runTask(Timeout timeout) {
+
+		try {
+			timeout.task.run();
+		} catch (Throwable e) {
+			logger.error(e.getMessage(), e);
+		}
+	}
+
+	public long getTickDuration() {
+		return tickDuration;
+	}
+
+	public String toString() {
+		return threadName;
+	}
+
+	public static class Timeout {
+
+		private static final AtomicIntegerFieldUpdater<Timeout>	STATE_UPDATER	= AtomicIntegerFieldUpdater
+				.newUpdater(Timeout.class, "state");
+
+		private TimerWheel		timer;
+
+		private Runnable		task;
+
+		private long			deadline;
+
+		private long			rounds;
+
+		private volatile int	state;
+
+		private Bucket		bucket;
+
+		private Timeout		prev;
+
+		private Timeout		next;
+
+		Timeout(TimerWheel timer, Runnable task, long deadline) {
+			this.timer = timer;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * 已经执行或已经取消时不做任何事
+		 */
+		public void cancel() {
+
+			for (;;) {
+
+				int state = this.state;
+
+				if (state == STATE_CANCELLED || state == STATE_EXPIRED) {
+					return;
+				}
+
+				if (!compareAndSetState(state, STATE_CANCELLED)) {
+					// 时间轮的线程同时改变了状态，重新判断
+					continue;
+				}
+
+				if (state == STATE_SCHEDULED) {
+					timer.cancelled.offer(this);
+				}
+
+				return;
+			}
+		}
+
+		boolean compareAndSetState(int expect, int update) {
+			return STATE_UPDATER.compareAndSet(this, expect, update);
+		}
+
+		public boolean isCancelled() {
+			return state == STATE_CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return state == STATE_EXPIRED;
+		}
+
+		public long getDeadline() {
+			return deadline;
+		}
+	}
+
+	// 只在时间轮的线程中访问
+	class Bucket {
+
+		private Timeout	head;
+
+		private Timeout	tail;
+
+		void add(Timeout timeout) {
+
+			timeout.bucket = this;
+
+			if (head == null) {
+				head = tail = timeout;
+				return;
+			}
+
+			tail.next = timeout;
+			timeout.prev = tail;
+			tail = timeout;
+		}
+
+		void remove(Timeout timeout) {
+
+			Timeout prev = timeout.prev;
+			Timeout next = timeout.next;
+
+			if (prev == null) {
+				head = next;
+			} else {
+				prev.next = next;
+			}
+
+			if (next == null) {
+				tail = prev;
+			} else {
+				next.prev = prev;
+			}
+
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+
+		void expire(long deadline) {
+
+			Timeout timeout = head;
+
+			for (; timeout != null;) {
+
+				Timeout next = timeout.next;
+
+				if (timeout.state == STATE_CANCELLED) {
+
+					remove(timeout);
+
+				} else if (timeout.rounds <= 0) {
+
+					remove(timeout);
+
+					if (timeout.deadline <= deadline) {
+
+						// 与cancel竞争，取消成功的不再执行
+						if (timeout.compareAndSetState(STATE_SCHEDULED, STATE_EXPIRED)) {
+							runTask(timeout);
+						}
+
+					} else {
+						// 不应该出现，保险起见放回下一圈
+						timeout.rounds = 0;
+						wheel[(int) ((tick + 1) & mask)].add(timeout);
+					}
+				} else {
+					timeout.rounds--;
+				}
+
+				timeout = next;
+			}
+		}
+	}
+
+}
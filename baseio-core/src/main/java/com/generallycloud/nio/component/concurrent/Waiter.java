@@ -88,6 +88,22 @@ public class Waiter<T> {
 		return t;
 	}
 
+	/**
+	 * @return 是否已经setPayload，不等待
+	 */
+	public boolean isCallbacked() {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+			return callbacked;
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	public boolean isTimeouted() {
 		return timeouted;
 	}
@@ -23,6 +23,8 @@ public abstract class AbstractChannelConnector extends AbstractChannelService im
 	protected InetSocketAddress	serverAddress;
 	protected Session			session;
 	protected long			timeout		= 3000;
+	// context由该connector启动时，关闭时停止context
+	private boolean			stopContext;
 	
 	private Logger 			logger 		= LoggerFactory.getLogger(AbstractChannelConnector.class);
 
@@ -62,7 +64,9 @@ public abstract class AbstractChannelConnector extends AbstractChannelService im
 
 			active = false;
 
-			LifeCycleUtil.stop(context);
+			if (stopContext) {
+				LifeCycleUtil.stop(context);
+			}
 
 			lock.unlock();
 		}
@@ -86,6 +90,9 @@ public abstract class AbstractChannelConnector extends AbstractChannelService im
 				throw new IllegalArgumentException("null nio context");
 			}
 
+			// 多个connector共用已经启动的context(比如连接池)时，由启动它的一方停止
+			stopContext = !context.isRunning();
+
 			LifeCycleUtil.start(context);
 
 			ServerConfiguration configuration = context.getServerConfiguration();
@@ -0,0 +1,246 @@
+package com.generallycloud.nio.connector;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.generallycloud.nio.AbstractLifeCycle;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.ChannelFlusher;
+import com.generallycloud.nio.component.ChannelFlusherImpl;
+import com.generallycloud.nio.component.ChannelService;
+import com.generallycloud.nio.component.SocketChannelSelectionAlpha;
+import com.generallycloud.nio.component.SocketChannelSelectionReader;
+import com.generallycloud.nio.component.SharedSessionManager;
+import com.generallycloud.nio.component.SocketChannelSelectorLoop;
+import com.generallycloud.nio.component.concurrent.EventLoopGroup;
+import com.generallycloud.nio.component.concurrent.EventLoopThread;
+import com.generallycloud.nio.component.concurrent.FixedAtomicInteger;
+import com.generallycloud.nio.component.concurrent.SingleEventLoopGroup;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+
+/**
+ * 多个SocketChannelConnector共用的selector、IO事件线程以及session管理线程，连接按顺序分配到各个selector。
+ * <ul>
+ * <li>connector通过{@link SocketChannelConnector#setSelectorGroup(ClientSelectorGroup)}使用</li>
+ * <li>connector的BaseContext使用{@link #getEventLoopGroup()}创建时共用IO事件线程，
+ * context停止时不会停止该EventLoopGroup</li>
+ * <li>connector启动context时，context没有设置SharedSessionManager的使用{@link #getSessionManager()}</li>
+ * <li>关闭connector只关闭其连接，该group需要单独停止</li>
+ * </ul>
+ */
+public class ClientSelectorGroup extends AbstractLifeCycle {
+
+	private ServerConfiguration	configuration;
+
+	private int				selectorSize;
+
+	private SharedSelectorLoop[]	selectorLoops;
+
+	private EventLoopThread[]	selectorLoopThreads;
+
+	private EventLoopThread[]	channelFlushThreads;
+
+	private EventLoopGroup		eventLoopGroup;
+
+	private SharedSessionManager	sessionManager;
+
+	private FixedAtomicInteger	selectorIndex;
+
+	private Logger			logger	= LoggerFactory.getLogger(ClientSelectorGroup.class);
+
+	/**
+	 * @param configuration SERVER_READ_BUFFER为selector的读取缓冲区，SERVER_CORE_SIZE以及
+	 *            SERVER_CHANNEL_QUEUE_SIZE为共用的IO事件线程
+	 * @param selectorSize selector的个数
+	 */
+	public ClientSelectorGroup(ServerConfiguration configuration, int selectorSize) {
+
+		if (selectorSize < 1) {
+			throw new IllegalArgumentException("selectorSize:" + selectorSize);
+		}
+
+		this.configuration = configuration;
+		this.selectorSize = selectorSize;
+		this.eventLoopGroup = new SingleEventLoopGroup("client-IOEvent", configuration.getSERVER_CHANNEL_QUEUE_SIZE(),
+				configuration.getSERVER_CORE_SIZE());
+		this.sessionManager = new SharedSessionManager("client-session-manager");
+	}
+
+	protected void doStart() throws Exception {
+
+		selectorLoops = new SharedSelectorLoop[selectorSize];
+		selectorLoopThreads = new EventLoopThread[selectorSize];
+		channelFlushThreads = new EventLoopThread[selectorSize];
+		selectorIndex = new FixedAtomicInteger(0, selectorSize - 1);
+
+		eventLoopGroup.start();
+
+		sessionManager.start();
+
+		int readBuffer = configuration.getSERVER_READ_BUFFER();
+
+		for (int i = 0; i < selectorSize; i++) {
+
+			String name = "client-selector-" + i;
+
+			ChannelFlusher channelFlusher = new ChannelFlusherImpl(name + "(writer)");
+
+			SharedSelectorLoop selectorLoop = new SharedSelectorLoop(readBuffer, channelFlusher);
+
+			selectorLoops[i] = selectorLoop;
+
+			channelFlushThreads[i] = new EventLoopThread(channelFlusher, channelFlusher.toString());
+
+			selectorLoopThreads[i] = new EventLoopThread(selectorLoop, name);
+
+			channelFlushThreads[i].start();
+
+			selectorLoopThreads[i].start();
+		}
+	}
+
+	protected void doStop() throws Exception {
+
+		for (int i = 0; i < selectorSize; i++) {
+
+			LifeCycleUtil.stop(selectorLoopThreads[i]);
+
+			LifeCycleUtil.stop(channelFlushThreads[i]);
+		}
+
+		LifeCycleUtil.stop(eventLoopGroup);
+
+		LifeCycleUtil.stop(sessionManager);
+	}
+
+	/**
+	 * 在下一个selector中注册OP_CONNECT，连接完成后由connector处理，
+	 * 多个connector可以共用一个context
+	 */
+	void register(BaseContext context, SocketChannelConnector connector, SocketChannel channel) throws IOException {
+
+		if (!isRunning()) {
+			throw new IOException("client selector group not running");
+		}
+
+		selectorLoops[selectorIndex.getAndIncrement()].register(context, connector, channel);
+	}
+
+	public EventLoopGroup getEventLoopGroup() {
+		return eventLoopGroup;
+	}
+
+	public SharedSessionManager getSessionManager() {
+		return sessionManager;
+	}
+
+	public int getSelectorSize() {
+		return selectorSize;
+	}
+
+	class SharedSelectorLoop extends SocketChannelSelectorLoop {
+
+		private ChannelFlusher			channelFlusher;
+
+		private ConcurrentLinkedQueue<Registration>	registrations	= new ConcurrentLinkedQueue<Registration>();
+
+		SharedSelectorLoop(int readBuffer, ChannelFlusher channelFlusher) throws IOException {
+
+			super(new SocketChannelSelectionReader(readBuffer));
+
+			this.channelFlusher = channelFlusher;
+
+			this.selector = Selector.open();
+
+			this._alpha_acceptor = new SharedSelectionConnector();
+		}
+
+		public void loop() {
+
+			for (;;) {
+
+				Registration r = registrations.poll();
+
+				if (r == null) {
+					break;
+				}
+
+				try {
+					r.channel.register(selector, SelectionKey.OP_CONNECT, r.selectionConnector);
+				} catch (IOException e) {
+					logger.error(e.getMessage(), e);
+					CloseUtil.close(r.channel);
+				}
+			}
+
+			super.loop();
+		}
+
+		public void register(BaseContext context, SelectableChannel channel) throws IOException {
+
+			ChannelService service = context.getSocketChannelService();
+
+			if (!(service instanceof SocketChannelConnector)) {
+				throw new IOException("not a socket channel connector:" + service);
+			}
+
+			register(context, (SocketChannelConnector) service, channel);
+		}
+
+		// 注册必须在selector的线程中进行，否则会被select阻塞
+		void register(BaseContext context, SocketChannelConnector connector, SelectableChannel channel) {
+
+			SocketChannelSelectionConnector selectionConnector = new SocketChannelSelectionConnector(context,
+					connector);
+
+			selectionConnector.setSelector(selector);
+
+			selectionConnector.setChannelFlusher(channelFlusher);
+
+			registrations.offer(new Registration(channel, selectionConnector));
+
+			selector.wakeup();
+		}
+	}
+
+	// OP_CONNECT时key的attachment为对应connector的SocketChannelSelectionConnector
+	class SharedSelectionConnector implements SocketChannelSelectionAlpha {
+
+		public void accept(SelectionKey selectionKey) throws Exception {
+
+			Object attachment = selectionKey.attachment();
+
+			if (attachment instanceof SocketChannelSelectionConnector) {
+				((SocketChannelSelectionConnector) attachment).accept(selectionKey);
+			}
+		}
+
+		public ChannelFlusher getChannelFlusher() {
+			return null;
+		}
+
+		public void setChannelFlusher(ChannelFlusher channelFlusher) {
+		}
+	}
+
+	static class Registration {
+
+		SelectableChannel					channel;
+
+		SocketChannelSelectionConnector	selectionConnector;
+
+		Registration(SelectableChannel channel, SocketChannelSelectionConnector selectionConnector) {
+			this.channel = channel;
+			this.selectionConnector = selectionConnector;
+		}
+	}
+
+}
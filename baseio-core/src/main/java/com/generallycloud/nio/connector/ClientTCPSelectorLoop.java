@@ -4,8 +4,12 @@ import java.io.IOException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import com.generallycloud.nio.common.CloseUtil;
 import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
 import com.generallycloud.nio.component.ChannelFlusher;
 import com.generallycloud.nio.component.ChannelFlusherImpl;
 import com.generallycloud.nio.component.BaseContext;
@@ -18,6 +22,10 @@ public class ClientTCPSelectorLoop extends SocketChannelSelectorLoop {
 
 	private EventLoopThread	channelFlushThread	= null;
 
+	private ConcurrentLinkedQueue<SelectableChannel>	reconnects	= new ConcurrentLinkedQueue<SelectableChannel>();
+
+	private Logger		logger			= LoggerFactory.getLogger(ClientTCPSelectorLoop.class);
+
 	public ClientTCPSelectorLoop(BaseContext context, SocketChannelConnector connector) {
 
 		super(context);
@@ -44,6 +52,35 @@ public class ClientTCPSelectorLoop extends SocketChannelSelectorLoop {
 		channel.register(selector, SelectionKey.OP_CONNECT);
 	}
 
+	// 重连时复用selector以及flusher，注册在selector的线程中进行
+	void reconnect(SelectableChannel channel) {
+
+		reconnects.offer(channel);
+
+		selector.wakeup();
+	}
+
+	public void loop() {
+
+		for (;;) {
+
+			SelectableChannel channel = reconnects.poll();
+
+			if (channel == null) {
+				break;
+			}
+
+			try {
+				channel.register(selector, SelectionKey.OP_CONNECT);
+			} catch (IOException e) {
+				logger.error(e.getMessage(), e);
+				CloseUtil.close(channel);
+			}
+		}
+
+		super.loop();
+	}
+
 	public void stop() {
 
 		super.stop();
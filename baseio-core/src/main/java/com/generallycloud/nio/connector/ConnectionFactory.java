@@ -0,0 +1,15 @@
+package com.generallycloud.nio.connector;
+
+import java.io.IOException;
+
+import com.generallycloud.nio.component.Session;
+
+/**
+ * 为ConnectionPool创建以及关闭连接
+ */
+public interface ConnectionFactory<S extends Session> {
+
+	public abstract S connect() throws IOException;
+
+	public abstract void close(S session);
+}
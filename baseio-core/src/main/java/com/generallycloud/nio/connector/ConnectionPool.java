@@ -0,0 +1,638 @@
+package com.generallycloud.nio.connector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.generallycloud.nio.AbstractLifeCycle;
+import com.generallycloud.nio.LifeCycle;
+import com.generallycloud.nio.TimeoutException;
+import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.component.AbstractLooper;
+import com.generallycloud.nio.component.BeatFutureFactory;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.component.concurrent.EventLoopThread;
+import com.generallycloud.nio.component.concurrent.Waiter;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 客户端连接池，borrow之后需要release，连接不可用时调用invalidate。
+ * <ul>
+ * <li>最多maxTotal个连接，后台线程保持至少minIdle个空闲连接，
+ * 超过minIdle且空闲超过maxIdleTime的连接被关闭</li>
+ * <li>没有可用连接时按borrow的顺序排队，归还的连接直接交给最早等待的线程</li>
+ * <li>空闲超过validateAfterIdle的连接在borrow时先发送PING(BeatFutureFactory)，
+ * validateTimeout内收到PONG即认为可用，协议没有心跳时只检查是否打开</li>
+ * <li>factory是LifeCycle时随连接池启动以及停止</li>
+ * </ul>
+ */
+public class ConnectionPool<S extends Session> extends AbstractLifeCycle {
+
+	private ConnectionFactory<S>		factory;
+
+	private int					minIdle			= 0;
+
+	private int					maxTotal			= 8;
+
+	private long					borrowTimeout		= 3000;
+
+	private long					maxIdleTime		= 60 * 1000;
+
+	private long					evictInterval		= 10 * 1000;
+
+	private long					validateAfterIdle	= 1000;
+
+	private long					validateTimeout	= 1000;
+
+	// 包括正在创建的连接
+	private int					size;
+
+	private LinkedList<Entry<S>>		idle				= new LinkedList<Entry<S>>();
+
+	private Map<S, Entry<S>>			entries			= new HashMap<S, Entry<S>>();
+
+	private LinkedList<Waiter<Entry<S>>>	waiters			= new LinkedList<Waiter<Entry<S>>>();
+
+	private ReentrantLock				lock				= new ReentrantLock();
+
+	private EventLoopThread				monitorThread;
+
+	private Logger					logger			= LoggerFactory.getLogger(ConnectionPool.class);
+
+	public ConnectionPool(ConnectionFactory<S> factory) {
+		this.factory = factory;
+	}
+
+	protected void doStart() throws Exception {
+
+		if (minIdle > maxTotal) {
+			throw new IllegalArgumentException("minIdle > maxTotal");
+		}
+
+		if (factory instanceof LifeCycle) {
+			LifeCycleUtil.start((LifeCycle) factory);
+		}
+
+		fill();
+
+		monitorThread = new EventLoopThread(new PoolMonitor(), "connection-pool-monitor");
+
+		monitorThread.start();
+	}
+
+	protected void doStop() throws Exception {
+
+		monitorThread.stop();
+
+		List<Entry<S>> list;
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			list = new ArrayList<Entry<S>>(entries.values());
+
+			entries.clear();
+
+			idle.clear();
+
+			size = 0;
+
+			// 唤醒等待的线程，它们会发现连接池已关闭
+			for (Waiter<Entry<S>> waiter : waiters) {
+				waiter.setPayload(null);
+			}
+
+			waiters.clear();
+
+		} finally {
+			lock.unlock();
+		}
+
+		for (Entry<S> e : list) {
+			factory.close(e.session);
+		}
+
+		if (factory instanceof LifeCycle) {
+			LifeCycleUtil.stop((LifeCycle) factory);
+		}
+	}
+
+	public S borrow() throws IOException {
+
+		long deadline = System.currentTimeMillis() + borrowTimeout;
+
+		for (;;) {
+
+			Entry<S> e = take(deadline);
+
+			if (e == null) {
+				// 已预留了一个位置，新建连接
+				return create(true).session;
+			}
+
+			if (validate(e)) {
+				return e.session;
+			}
+
+			destroy(e);
+		}
+	}
+
+	/**
+	 * @return 一个空闲的连接，或者null表示可以新建连接
+	 */
+	private Entry<S> take(long deadline) throws IOException {
+
+		Waiter<Entry<S>> waiter;
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			if (!isRunning()) {
+				throw new IOException("pool stopped");
+			}
+
+			Entry<S> e = idle.pollFirst();
+
+			if (e != null) {
+				e.borrowed = true;
+				return e;
+			}
+
+			if (size < maxTotal) {
+				size++;
+				return null;
+			}
+
+			waiter = new Waiter<Entry<S>>();
+
+			waiters.addLast(waiter);
+
+		} finally {
+			lock.unlock();
+		}
+
+		for (;;) {
+
+			long wait = deadline - System.currentTimeMillis();
+
+			if (wait <= 0 || !waiter.await(wait)) {
+				break;
+			}
+		}
+
+		lock.lock();
+
+		try {
+
+			if (waiters.remove(waiter)) {
+				throw new TimeoutException("borrow timeout, max total:" + maxTotal);
+			}
+
+			if (!isRunning()) {
+				throw new IOException("pool stopped");
+			}
+
+			// 已被移出队列，payload在移出时设置
+			return waiter.getPayload();
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean validate(Entry<S> e) {
+
+		S session = e.session;
+
+		if (!session.isOpened()) {
+			return false;
+		}
+
+		if (System.currentTimeMillis() - e.lastUsedTime < validateAfterIdle) {
+			return true;
+		}
+
+		BeatFutureFactory beatFutureFactory = session.getContext().getBeatFutureFactory();
+
+		if (beatFutureFactory == null || !(session instanceof IOSession)) {
+			return true;
+		}
+
+		ReadFuture future = beatFutureFactory.createPINGPacket(session);
+
+		if (future == null) {
+			return true;
+		}
+
+		IOSession ioSession = (IOSession) session;
+
+		Waiter<Session> waiter = new Waiter<Session>();
+
+		// 收到PONG时由selector的线程回调
+		ioSession.setPONGWaiter(waiter);
+
+		try {
+			session.flush(future);
+		} catch (IOException ex) {
+			ioSession.setPONGWaiter(null);
+			logger.info("connection validate failed:{}", ex.getMessage());
+			return false;
+		}
+
+		if (waiter.await(validateTimeout)) {
+			ioSession.setPONGWaiter(null);
+			logger.info("connection validate timeout:{}", session);
+			return false;
+		}
+
+		return session.isOpened();
+	}
+
+	public void release(S session) {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		Entry<S> e;
+
+		try {
+
+			e = entries.get(session);
+
+			if (e == null || !e.borrowed) {
+				return;
+			}
+
+			if (session.isOpened()) {
+
+				e.lastUsedTime = System.currentTimeMillis();
+
+				offer(e);
+
+				return;
+			}
+
+		} finally {
+			lock.unlock();
+		}
+
+		destroy(e);
+	}
+
+	/**
+	 * 调用方确认连接不可用(比如超时)时调用，代替release
+	 */
+	public void invalidate(S session) {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		Entry<S> e;
+
+		try {
+
+			e = entries.get(session);
+
+		} finally {
+			lock.unlock();
+		}
+
+		if (e != null) {
+			destroy(e);
+		}
+	}
+
+	// 需要持有lock，有线程在等待时直接交给最早等待的线程
+	private void offer(Entry<S> e) {
+
+		Waiter<Entry<S>> waiter = waiters.pollFirst();
+
+		if (waiter != null) {
+
+			e.borrowed = true;
+
+			waiter.setPayload(e);
+
+			return;
+		}
+
+		e.borrowed = false;
+
+		idle.addFirst(e);
+	}
+
+	// 需要持有lock，有线程在等待时把空出的位置交给它，由它新建连接
+	private void freeSlot() {
+
+		Waiter<Entry<S>> waiter = waiters.pollFirst();
+
+		if (waiter != null) {
+
+			waiter.setPayload(null);
+
+			return;
+		}
+
+		size--;
+	}
+
+	/**
+	 * 调用之前已经预留了位置
+	 */
+	private Entry<S> create(boolean borrow) throws IOException {
+
+		S session;
+
+		try {
+
+			session = factory.connect();
+
+		} catch (IOException e) {
+
+			cancelReserve();
+
+			throw e;
+
+		} catch (RuntimeException e) {
+
+			cancelReserve();
+
+			throw e;
+		}
+
+		Entry<S> e = new Entry<S>(session);
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			if (!isRunning() && !isStarting()) {
+				// 创建期间连接池已关闭
+				factory.close(session);
+				throw new IOException("pool stopped");
+			}
+
+			entries.put(session, e);
+
+			if (borrow) {
+				e.borrowed = true;
+			} else {
+				offer(e);
+			}
+
+		} finally {
+			lock.unlock();
+		}
+
+		return e;
+	}
+
+	private void cancelReserve() {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			freeSlot();
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void destroy(Entry<S> e) {
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			if (entries.remove(e.session) == null) {
+				return;
+			}
+
+			idle.remove(e);
+
+			freeSlot();
+
+		} finally {
+			lock.unlock();
+		}
+
+		factory.close(e.session);
+	}
+
+	/**
+	 * 补足到minIdle个空闲连接，在后台线程中执行
+	 */
+	private void fill() {
+
+		for (;;) {
+
+			ReentrantLock lock = this.lock;
+
+			lock.lock();
+
+			try {
+
+				if (idle.size() >= minIdle || size >= maxTotal || !waiters.isEmpty()) {
+					return;
+				}
+
+				size++;
+
+			} finally {
+				lock.unlock();
+			}
+
+			try {
+				create(false);
+			} catch (IOException e) {
+				logger.error("create connection failed:" + e.getMessage(), e);
+				return;
+			}
+		}
+	}
+
+	private void evict() {
+
+		List<Entry<S>> list = new ArrayList<Entry<S>>();
+
+		long now = System.currentTimeMillis();
+
+		ReentrantLock lock = this.lock;
+
+		lock.lock();
+
+		try {
+
+			Iterator<Entry<S>> it = idle.descendingIterator();
+
+			int remain = idle.size();
+
+			// 从最久未使用的开始
+			for (; it.hasNext();) {
+
+				Entry<S> e = it.next();
+
+				if (!e.session.isOpened()) {
+
+					it.remove();
+
+					list.add(e);
+
+					remain--;
+
+				} else if (remain > minIdle && now - e.lastUsedTime > maxIdleTime) {
+
+					it.remove();
+
+					list.add(e);
+
+					remain--;
+				}
+			}
+
+		} finally {
+			lock.unlock();
+		}
+
+		for (Entry<S> e : list) {
+			destroy(e);
+		}
+
+		fill();
+	}
+
+	/**
+	 * @return 所有连接的个数，包括正在创建的
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	public int getIdleSize() {
+		return idle.size();
+	}
+
+	public int getWaiterSize() {
+		return waiters.size();
+	}
+
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+	}
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	public void setMaxTotal(int maxTotal) {
+		this.maxTotal = maxTotal;
+	}
+
+	public long getBorrowTimeout() {
+		return borrowTimeout;
+	}
+
+	public void setBorrowTimeout(long borrowTimeout) {
+		this.borrowTimeout = borrowTimeout;
+	}
+
+	public long getMaxIdleTime() {
+		return maxIdleTime;
+	}
+
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	public long getEvictInterval() {
+		return evictInterval;
+	}
+
+	public void setEvictInterval(long evictInterval) {
+		this.evictInterval = evictInterval;
+	}
+
+	public long getValidateAfterIdle() {
+		return validateAfterIdle;
+	}
+
+	public void setValidateAfterIdle(long validateAfterIdle) {
+		this.validateAfterIdle = validateAfterIdle;
+	}
+
+	public long getValidateTimeout() {
+		return validateTimeout;
+	}
+
+	public void setValidateTimeout(long validateTimeout) {
+		this.validateTimeout = validateTimeout;
+	}
+
+	class PoolMonitor extends AbstractLooper {
+
+		private volatile boolean	stopped;
+
+		public void loop() {
+
+			if (stopped) {
+				return;
+			}
+
+			sleep(evictInterval);
+
+			if (stopped || !isRunning()) {
+				return;
+			}
+
+			evict();
+		}
+
+		public void stop() {
+			stopped = true;
+			super.stop();
+		}
+	}
+
+	static class Entry<S> {
+
+		private S			session;
+
+		private boolean	borrowed;
+
+		private long		lastUsedTime	= System.currentTimeMillis();
+
+		Entry(S session) {
+			this.session = session;
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.generallycloud.nio.connector;
+
+/**
+ * 连接断开后自动重连，重连复用原来的BaseContext以及selector。
+ * <ul>
+ * <li>第n次重试的间隔为min(maxDelay, initialDelay * multiplier^n)，
+ * 实际取该值的一半到该值之间的随机数，避免多个连接同时重连</li>
+ * <li>maxRetries小于0时一直重试，超过次数后关闭connector</li>
+ * <li>重连后的连接保持不到stableTime又断开时，继续增加间隔，而不是从initialDelay开始</li>
+ * <li>replayWrites为true时，断开时还未写出的报文在重连后重新写出，
+ * 报文按原连接编码，协议依赖连接状态(比如SSL)时不要开启</li>
+ * </ul>
+ */
+public class ReconnectPolicy {
+
+	private long		initialDelay	= 100;
+
+	private long		maxDelay		= 30 * 1000;
+
+	private double	multiplier	= 2;
+
+	private int		maxRetries	= -1;
+
+	private long		stableTime	= 5000;
+
+	private boolean	replayWrites	= false;
+
+	private int		maxReplaySize	= 1024;
+
+	/**
+	 * @param attempt 从0开始
+	 * @return 下一次重试之前等待的时间(毫秒)
+	 */
+	public long nextDelay(int attempt) {
+
+		double delay = initialDelay * Math.pow(multiplier, attempt);
+
+		long max = (long) Math.min(delay, maxDelay);
+
+		long half = max >> 1;
+
+		return half + (long) (Math.random() * (max - half));
+	}
+
+	/**
+	 * @param attempt 已经失败的次数
+	 */
+	public boolean canRetry(int attempt) {
+		return maxRetries < 0 || attempt < maxRetries;
+	}
+
+	public long getInitialDelay() {
+		return initialDelay;
+	}
+
+	public void setInitialDelay(long initialDelay) {
+		this.initialDelay = initialDelay;
+	}
+
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	public void setMaxDelay(long maxDelay) {
+		this.maxDelay = maxDelay;
+	}
+
+	public double getMultiplier() {
+		return multiplier;
+	}
+
+	public void setMultiplier(double multiplier) {
+		this.multiplier = multiplier;
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public long getStableTime() {
+		return stableTime;
+	}
+
+	public void setStableTime(long stableTime) {
+		this.stableTime = stableTime;
+	}
+
+	public boolean isReplayWrites() {
+		return replayWrites;
+	}
+
+	public void setReplayWrites(boolean replayWrites) {
+		this.replayWrites = replayWrites;
+	}
+
+	public int getMaxReplaySize() {
+		return maxReplaySize;
+	}
+
+	/**
+	 * @param maxReplaySize 最多保留的未写出报文个数，超过的被丢弃
+	 */
+	public void setMaxReplaySize(int maxReplaySize) {
+		this.maxReplaySize = maxReplaySize;
+	}
+}
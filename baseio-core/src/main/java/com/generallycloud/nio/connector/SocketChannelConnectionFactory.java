@@ -0,0 +1,125 @@
+package com.generallycloud.nio.connector;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.generallycloud.nio.AbstractLifeCycle;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+
+/**
+ * 所有连接共用一个BaseContext(内存池，IO事件线程以及session管理线程)，每个连接使用一个SocketChannelConnector。
+ * 设置了selectorGroup时所有连接共用其selector，context使用其IO事件线程以及session管理线程。
+ * 由ConnectionPool启动以及停止
+ */
+public abstract class SocketChannelConnectionFactory extends AbstractLifeCycle implements ConnectionFactory<Session> {
+
+	private ServerConfiguration					configuration;
+
+	private ClientSelectorGroup					selectorGroup;
+
+	private BaseContext							context;
+
+	private Map<Session, SocketChannelConnector>	connectors	= new ConcurrentHashMap<Session, SocketChannelConnector>();
+
+	public SocketChannelConnectionFactory(ServerConfiguration configuration) {
+		this(configuration, null);
+	}
+
+	public SocketChannelConnectionFactory(ServerConfiguration configuration, ClientSelectorGroup selectorGroup) {
+		this.configuration = configuration;
+		this.selectorGroup = selectorGroup;
+	}
+
+	/**
+	 * 设置IOEventHandleAdaptor，ProtocolFactory，BeatFutureFactory等，所有连接共用该context
+	 */
+	protected abstract void initializeContext(BaseContext context);
+
+	protected void doStart() throws Exception {
+
+		BaseContext context;
+
+		if (selectorGroup == null) {
+			context = new BaseContextImpl(configuration);
+		} else {
+			context = new BaseContextImpl(configuration, selectorGroup.getEventLoopGroup());
+			context.setSharedSessionManager(selectorGroup.getSessionManager());
+		}
+
+		initializeContext(context);
+
+		context.start();
+
+		this.context = context;
+	}
+
+	protected void doStop() throws Exception {
+
+		for (SocketChannelConnector connector : connectors.values()) {
+			CloseUtil.close(connector);
+		}
+
+		connectors.clear();
+
+		LifeCycleUtil.stop(context);
+	}
+
+	public Session connect() throws IOException {
+
+		if (!isRunning()) {
+			throw new IOException("connection factory not running");
+		}
+
+		SocketChannelConnector connector = new SocketChannelConnector();
+
+		connector.setSelectorGroup(selectorGroup);
+
+		connector.setContext(context);
+
+		Session session;
+
+		try {
+
+			session = connector.connect();
+
+		} catch (IOException e) {
+
+			CloseUtil.close(connector);
+
+			throw e;
+		}
+
+		connectors.put(session, connector);
+
+		return session;
+	}
+
+	public void close(Session session) {
+
+		SocketChannelConnector connector = connectors.remove(session);
+
+		if (connector != null) {
+			CloseUtil.close(connector);
+		} else {
+			CloseUtil.close(session);
+		}
+	}
+
+	public BaseContext getContext() {
+		return context;
+	}
+
+	public ServerConfiguration getServerConfiguration() {
+		return configuration;
+	}
+
+	public ClientSelectorGroup getSelectorGroup() {
+		return selectorGroup;
+	}
+}
@@ -3,46 +3,148 @@ package com.generallycloud.nio.connector;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.generallycloud.nio.TimeoutException;
 import com.generallycloud.nio.common.CloseUtil;
 import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.common.LoggerUtil;
 import com.generallycloud.nio.common.MessageFormatter;
+import com.generallycloud.nio.common.ReleaseUtil;
+import com.generallycloud.nio.common.ThreadUtil;
 import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.component.SEListenerAdapter;
 import com.generallycloud.nio.component.Session;
-import com.generallycloud.nio.component.SocketChannelSelectorLoop;
+import com.generallycloud.nio.component.UnsentWriteFutureAcceptor;
 import com.generallycloud.nio.component.concurrent.EventLoopThread;
+import com.generallycloud.nio.component.concurrent.TimerWheel;
 import com.generallycloud.nio.component.concurrent.Waiter;
 import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.protocol.IOWriteFuture;
 
-//FIXME 重连的时候不需要重新加载BaseContext
-public class SocketChannelConnector extends AbstractChannelConnector {
+public class SocketChannelConnector extends AbstractChannelConnector implements UnsentWriteFutureAcceptor {
 
-	private SocketChannelSelectorLoop	selectorLoop;
+	private static final TimerWheel	RECONNECT_TIMER	= new TimerWheel(10, 512, "reconnect-timer");
+
+	private ClientTCPSelectorLoop	selectorLoop;
 	private EventLoopThread	selectorLoopThread;
-	private Waiter<Object>	waiter	= new Waiter<Object>();
+	private ClientSelectorGroup	selectorGroup;
+	private volatile SocketChannel	channel;
+	private Waiter<Object>	waiter;
+	private ReconnectPolicy	reconnectPolicy;
+	private boolean		reconnectListening;
+	private volatile boolean	reconnecting;
+	private volatile boolean	closed;
+	private volatile int	backoffAttempt;
+	private AtomicBoolean	reconnectScheduled	= new AtomicBoolean();
+	private ConcurrentLinkedQueue<IOWriteFuture>	unsentWriteFutures	= new ConcurrentLinkedQueue<IOWriteFuture>();
+	private AtomicInteger	unsentSize		= new AtomicInteger();
+	private AtomicLong		reconnectAttempts	= new AtomicLong();
+	private AtomicLong		reconnectSuccesses	= new AtomicLong();
+	private AtomicLong		reconnectFailures	= new AtomicLong();
+	private Logger		logger			= LoggerFactory.getLogger(SocketChannelConnector.class);
+
+	public Session connect() throws IOException {
+
+		BaseContext context = this.context;
+
+		if (selectorGroup != null && context != null && !context.isRunning()
+				&& context.getSharedSessionManager() == null) {
+			// 共用selectorGroup的session管理线程
+			context.setSharedSessionManager(selectorGroup.getSessionManager());
+		}
+
+		return super.connect();
+	}
 
 	protected void connect(BaseContext context, InetSocketAddress socketAddress) throws IOException {
 
+		closed = false;
+
+		reconnectScheduled.set(false);
+
+		if (reconnectPolicy != null && !reconnectListening) {
+
+			context.addSessionEventListener(new ReconnectSEListener());
+
+			reconnectListening = true;
+		}
+
+		doConnect(context, socketAddress, false);
+	}
+
+	private void doConnect(BaseContext context, InetSocketAddress socketAddress, boolean reconnect)
+			throws IOException {
+
 		SocketChannel channel = SocketChannel.open();
 
 		channel.configureBlocking(false);
 
-		this.selectorLoop = new ClientTCPSelectorLoop(context, this);
+		this.channel = channel;
+
+		if (reconnect && closed) {
+			// 重连时不持有activeLock，connector可能已经关闭
+			CloseUtil.close(channel);
+			throw new IOException("connector closed");
+		}
+
+		this.reconnecting = reconnect;
+
+		this.waiter = new Waiter<Object>();
+
+		Waiter<Object> waiter = this.waiter;
+
+		if (selectorGroup != null) {
 
-		this.selectorLoop.register(context, channel);
+			channel.connect(socketAddress);
 
-		channel.connect(socketAddress);
+			selectorGroup.register(context, this, channel);
 
-		this.selectorLoopThread = new EventLoopThread(selectorLoop, getServiceDescription() + "(selector)");
+		} else if (reconnect) {
 
-		this.selectorLoopThread.start();
+			ClientTCPSelectorLoop selectorLoop = this.selectorLoop;
+
+			if (selectorLoop == null) {
+				CloseUtil.close(channel);
+				throw new IOException("connector closed");
+			}
+
+			channel.connect(socketAddress);
+
+			selectorLoop.reconnect(channel);
+
+		} else {
+
+			this.selectorLoop = new ClientTCPSelectorLoop(context, this);
+
+			this.selectorLoop.register(context, channel);
+
+			channel.connect(socketAddress);
+
+			this.selectorLoopThread = new EventLoopThread(selectorLoop, getServiceDescription() + "(selector)");
+
+			this.selectorLoopThread.start();
+		}
 
 		if (waiter.await(getTimeout())) {
 
-			active = true;
-			
-			CloseUtil.close(this);
+			if (reconnect) {
+
+				CloseUtil.close(channel);
+
+			} else {
+
+				active = true;
+
+				CloseUtil.close(this);
+			}
 
 			throw new TimeoutException("connect to "+this.getServiceDescription()+" time out");
 		}
@@ -59,20 +161,205 @@ public class SocketChannelConnector extends AbstractChannelConnector {
 		}
 	}
 
-	protected void finishConnect(Session session, IOException exception) {
+	protected void finishConnect(SocketChannel channel, Session session, IOException exception) {
+
+		Waiter<Object> waiter = this.waiter;
+
+		if (channel != this.channel || (reconnecting && waiter.isTimeouted())) {
+			// 之前超时的重连，不再使用
+			CloseUtil.close(session);
+			return;
+		}
 
 		if (exception == null) {
 
 			this.session = session;
 
-			this.waiter.setPayload(null);
+			waiter.setPayload(null);
 
 			if (waiter.isTimeouted()) {
 				CloseUtil.close(this);
 			}
 		} else {
 
-			this.waiter.setPayload(exception);
+			waiter.setPayload(exception);
+		}
+	}
+
+	private void scheduleReconnect(final int attempt) {
+
+		if (!reconnectScheduled.compareAndSet(false, true)) {
+			return;
+		}
+
+		if (!reconnectPolicy.canRetry(attempt)) {
+
+			logger.info("give up reconnecting to {}", getServiceDescription());
+
+			ThreadUtil.execute(new Runnable() {
+
+				public void run() {
+					CloseUtil.close(SocketChannelConnector.this);
+				}
+			});
+
+			return;
+		}
+
+		long delay = reconnectPolicy.nextDelay(attempt);
+
+		logger.info("reconnect to {} after {}ms", getServiceDescription(), delay);
+
+		RECONNECT_TIMER.schedule(new Runnable() {
+
+			public void run() {
+				// 连接是阻塞的，不在时间轮的线程中执行
+				ThreadUtil.execute(new Runnable() {
+
+					public void run() {
+						reconnect(attempt);
+					}
+				});
+			}
+		}, delay);
+	}
+
+	private void reconnect(int attempt) {
+
+		ReentrantLock lock = this.activeLock;
+
+		lock.lock();
+
+		try {
+
+			if (closed || !active || isConnected()) {
+				reconnectScheduled.set(false);
+				return;
+			}
+
+			reconnectAttempts.incrementAndGet();
+
+		} finally {
+			lock.unlock();
+		}
+
+		// 连接最长阻塞timeout，不持有activeLock，期间可以close
+		IOException exception = null;
+
+		try {
+			doConnect(context, serverAddress, true);
+		} catch (IOException e) {
+			exception = e;
+		}
+
+		lock.lock();
+
+		try {
+
+			reconnectScheduled.set(false);
+
+			if (exception != null) {
+
+				reconnectFailures.incrementAndGet();
+
+				logger.info("reconnect to {} failed:{}", getServiceDescription(), exception.getMessage());
+
+				if (!closed) {
+					scheduleReconnect(attempt + 1);
+				}
+
+				return;
+			}
+
+			IOSession session = (IOSession) this.session;
+
+			if (closed) {
+				// 连接的过程中connector被关闭
+				CloseUtil.close(session);
+				return;
+			}
+
+			backoffAttempt = attempt + 1;
+
+			if (!session.isOpened()) {
+				// 连接上之后立即被关闭，closed事件可能早于this.session被赋值
+				scheduleReconnect(attempt + 1);
+				return;
+			}
+
+			LoggerUtil.prettyNIOServerLog(logger, "已重新连接到远程服务器 @{}", getServiceDescription());
+
+			session.fireOpend();
+
+			replay(session);
+
+			countWhenStable(session);
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// 连接保持了stableTime才算重连成功
+	private void countWhenStable(final Session session) {
+
+		RECONNECT_TIMER.schedule(new Runnable() {
+
+			public void run() {
+				if (session == SocketChannelConnector.this.session && session.isOpened()) {
+					reconnectSuccesses.incrementAndGet();
+				}
+			}
+		}, reconnectPolicy.getStableTime());
+	}
+
+	private void replay(IOSession session) {
+
+		for (;;) {
+
+			IOWriteFuture future = unsentWriteFutures.poll();
+
+			if (future == null) {
+				return;
+			}
+
+			unsentSize.decrementAndGet();
+
+			session.flush(future);
+		}
+	}
+
+	public boolean acceptUnsent(Session session, IOWriteFuture future) {
+
+		ReconnectPolicy policy = this.reconnectPolicy;
+
+		if (closed || policy == null || !policy.isReplayWrites() || context.isEnableSSL()) {
+			return false;
+		}
+
+		if (unsentSize.incrementAndGet() > policy.getMaxReplaySize()) {
+			unsentSize.decrementAndGet();
+			return false;
+		}
+
+		unsentWriteFutures.offer(future);
+
+		return true;
+	}
+
+	private void releaseUnsent() {
+
+		for (;;) {
+
+			IOWriteFuture future = unsentWriteFutures.poll();
+
+			if (future == null) {
+				return;
+			}
+
+			unsentSize.decrementAndGet();
+
+			ReleaseUtil.release(future);
 		}
 	}
 
@@ -87,20 +374,91 @@ public class SocketChannelConnector extends AbstractChannelConnector {
 	protected int getSERVER_PORT(ServerConfiguration configuration) {
 		return configuration.getSERVER_TCP_PORT();
 	}
-	
+
 	protected void setChannelService(BaseContext context) {
 		context.setSocketChannelService(this);
 	}
 
 	protected void doClose() {
 
+		closed = true;
+
 		LifeCycleUtil.stop(selectorLoopThread);
 
 		CloseUtil.close(session);
+
+		// 共用selector时连接可能还未完成，关闭channel以取消注册
+		CloseUtil.close(channel);
+
+		releaseUnsent();
+
+		selectorLoop = null;
+
+		selectorLoopThread = null;
+	}
+
+	public ClientSelectorGroup getSelectorGroup() {
+		return selectorGroup;
+	}
+
+	/**
+	 * 使用共用的selector，需要在connect之前设置，并且selectorGroup已经启动。
+	 * close时不会停止selectorGroup
+	 */
+	public void setSelectorGroup(ClientSelectorGroup selectorGroup) {
+		this.selectorGroup = selectorGroup;
+	}
+
+	public ReconnectPolicy getReconnectPolicy() {
+		return reconnectPolicy;
+	}
+
+	/**
+	 * 需要在connect之前设置，为null时断开后不重连
+	 */
+	public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+		this.reconnectPolicy = reconnectPolicy;
+	}
+
+	/**
+	 * 开始重连的次数，包括失败的
+	 */
+	public long getReconnectAttempts() {
+		return reconnectAttempts.get();
+	}
+
+	/**
+	 * 重连后连接保持了stableTime的次数，连接上又很快被关闭的不计算在内
+	 */
+	public long getReconnectSuccesses() {
+		return reconnectSuccesses.get();
+	}
+
+	public long getReconnectFailures() {
+		return reconnectFailures.get();
 	}
 
 	public String getServiceDescription() {
 		return "TCP:" + serverAddress.toString();
 	}
 
+	class ReconnectSEListener extends SEListenerAdapter {
+
+		public void sessionClosed(Session session) {
+
+			ReconnectPolicy policy = reconnectPolicy;
+
+			if (closed || session != SocketChannelConnector.this.session || policy == null) {
+				return;
+			}
+
+			// 连接没有保持稳定时认为服务端仍不可用
+			if (System.currentTimeMillis() - session.getCreationTime() >= policy.getStableTime()) {
+				backoffAttempt = 0;
+			}
+
+			scheduleReconnect(backoffAttempt);
+		}
+	}
+
 }
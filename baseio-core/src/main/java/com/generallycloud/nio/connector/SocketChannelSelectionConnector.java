@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 
+import com.generallycloud.nio.common.CloseUtil;
 import com.generallycloud.nio.component.AbstractTCPSelectionAlpha;
 import com.generallycloud.nio.component.BaseContext;
 import com.generallycloud.nio.component.SocketChannel;
@@ -33,12 +34,13 @@ public class SocketChannelSelectionConnector extends AbstractTCPSelectionAlpha {
 		finishConnect(selectionKey, channel);
 	}
 
-	private void finishConnect(SelectionKey selectionKey, java.nio.channels.SocketChannel channel) {
+	private void finishConnect(SelectionKey selectionKey, final java.nio.channels.SocketChannel channel) {
 
 		try {
 
 			channel.finishConnect();
 
+			// 共用selector时会替换掉attachment(SocketChannelSelectionConnector)
 			channel.register(selector, SelectionKey.OP_READ);
 
 			final SocketChannel socketChannel = attachSocketChannel(context, getChannelFlusher(), selectionKey);
@@ -46,28 +48,40 @@ public class SocketChannelSelectionConnector extends AbstractTCPSelectionAlpha {
 			socketChannel.getSession().getEventLoop().dispatch(new Runnable() {
 
 				public void run() {
-					connector.finishConnect(socketChannel.getSession(), null);
+					connector.finishConnect(channel, socketChannel.getSession(), null);
 				}
 			});
 		} catch (final IOException e) {
 
+			cancel(selectionKey, channel);
+
 			context.getEventLoopGroup().getNext().dispatch(new Runnable() {
 
 				public void run() {
-					connector.finishConnect(null, e);
+					connector.finishConnect(channel, null, e);
 				}
 			});
 		} catch (final Exception e) {
 
+			cancel(selectionKey, channel);
+
 			context.getEventLoopGroup().getNext().dispatch(new Runnable() {
 
 				public void run() {
-					connector.finishConnect(null, new IOException(e.getMessage(), e));
+					connector.finishConnect(channel, null, new IOException(e.getMessage(), e));
 				}
 			});
 		}
 	}
 
+	// 连接失败时不再监听，共用的selector不会因为该连接停止
+	private void cancel(SelectionKey selectionKey, java.nio.channels.SocketChannel channel) {
+
+		selectionKey.cancel();
+
+		CloseUtil.close(channel);
+	}
+
 	protected void setSelector(Selector selector) {
 		this.selector = selector;
 	}
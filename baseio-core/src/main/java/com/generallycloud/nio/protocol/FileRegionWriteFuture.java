@@ -0,0 +1,93 @@
+package com.generallycloud.nio.protocol;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import javax.net.ssl.SSLEngine;
+
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.ssl.SslHandler;
+import com.generallycloud.nio.component.SocketChannel;
+
+/**
+ * 先写出buf中的协议头，再通过FileChannel.transferTo(sendfile)写出文件中的一段，
+ * 文件内容不经过用户态内存。不支持SSL，SSL连接使用SslFileRegionWriteFuture。
+ */
+public class FileRegionWriteFuture extends IOWriteFutureImpl {
+
+	private FileChannel	fileChannel;
+	private long		position;
+	private long		remaining;
+
+	public FileRegionWriteFuture(ReadFuture readFuture, ByteBuf buf, FileChannel fileChannel, long position,
+			long count) {
+		super(readFuture, buf);
+		this.fileChannel = fileChannel;
+		this.position = position;
+		this.remaining = count;
+	}
+
+	public boolean write(SocketChannel channel) throws IOException {
+
+		ByteBuf buffer = this.buf;
+
+		if (buffer.hasRemaining()) {
+
+			buffer.write(channel);
+
+			if (buffer.hasRemaining()) {
+				return false;
+			}
+		}
+
+		if (remaining == 0) {
+			return true;
+		}
+
+		long length = channel.transferFrom(fileChannel, position, remaining);
+
+		if (length > 0) {
+
+			position += length;
+
+			remaining -= length;
+
+			channel.upNetworkState();
+
+		} else {
+
+			// 文件被截断后transferTo始终返回0
+			if (position >= fileChannel.size()) {
+				throw new IOException("file truncated,remaining:" + remaining);
+			}
+
+			channel.downNetworkState();
+		}
+
+		return remaining == 0;
+	}
+
+	public void release() {
+
+		super.release();
+
+		CloseUtil.close(fileChannel);
+	}
+
+	public IOWriteFuture duplicate() {
+		throw new UnsupportedOperationException("file region can not be duplicated");
+	}
+
+	public boolean isDuplicable() {
+		return false;
+	}
+
+	public void wrapSSL(SSLEngine engine, SslHandler handler) throws IOException {
+		throw new IOException("file region can not be wrapped by ssl");
+	}
+
+	public String toString() {
+		return "[file region,position=" + position + ",remaining=" + remaining + "]";
+	}
+}
@@ -14,8 +14,16 @@ public interface IOWriteFuture extends WriteFuture, Linkable<IOWriteFuture> {
 
 	public abstract boolean write(SocketChannel channel) throws IOException;
 
+	/**
+	 * 共用内存复制一份，用于广播，调用前需检查isDuplicable()
+	 */
 	public IOWriteFuture duplicate();
 
+	/**
+	 * 文件、HTTP/2帧等与连接状态相关的报文不能duplicate
+	 */
+	public boolean isDuplicable();
+
 	public abstract void onException(IOSession session, Exception e);
 
 	public abstract void onSuccess(IOSession session);
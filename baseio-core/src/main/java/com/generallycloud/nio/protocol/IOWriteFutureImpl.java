@@ -87,6 +87,10 @@ public class IOWriteFutureImpl extends FutureImpl implements IOWriteFuture {
 		return new IOWriteFutureImpl(readFuture, buf.duplicate());
 	}
 
+	public boolean isDuplicable() {
+		return true;
+	}
+
 	public IOWriteFuture getNext() {
 		return next;
 	}
@@ -99,18 +103,16 @@ public class IOWriteFutureImpl extends FutureImpl implements IOWriteFuture {
 
 		ByteBuf old = this.buf;
 
-		try {
-			
-			ByteBuf _buf = handler.wrap(engine, buf);
-			
-			if (_buf == null) {
-				throw new IOException("closed ssl");
-			}
-			
-			this.buf = _buf;
-		} finally {
-			ReleaseUtil.release(old);
+		ByteBuf _buf = handler.wrap(engine, old);
+
+		if (_buf == null) {
+			throw new IOException("closed ssl");
 		}
+
+		this.buf = _buf;
+
+		// 失败时old仍由release()释放
+		ReleaseUtil.release(old);
 	}
 
 }
@@ -0,0 +1,156 @@
+package com.generallycloud.nio.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.net.ssl.SSLEngine;
+
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.ReleaseUtil;
+import com.generallycloud.nio.common.ssl.SslHandler;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.SocketChannel;
+
+/**
+ * SSL连接上的文件，先写出加密后的协议头，再每次从文件中读取chunkSize字节，
+ * 加密写出后再读下一段，占用的内存与文件大小无关。
+ * wrapSSL以及之后的加密都在写出线程中按队列顺序进行(见NioSocketChannel.flush())
+ */
+public class SslFileRegionWriteFuture extends IOWriteFutureImpl {
+
+	public static final int	DEFAULT_CHUNK_SIZE	= 1024 * 64;
+
+	private BaseContext		context;
+	private FileChannel		fileChannel;
+	private long			position;
+	private long			remaining;
+	private int			chunkSize;
+	private SSLEngine		engine;
+	private SslHandler		handler;
+
+	public SslFileRegionWriteFuture(BaseContext context, ReadFuture readFuture, ByteBuf buf,
+			FileChannel fileChannel, long position, long count) {
+		this(context, readFuture, buf, fileChannel, position, count, DEFAULT_CHUNK_SIZE);
+	}
+
+	public SslFileRegionWriteFuture(BaseContext context, ReadFuture readFuture, ByteBuf buf,
+			FileChannel fileChannel, long position, long count, int chunkSize) {
+		super(readFuture, buf);
+		this.context = context;
+		this.fileChannel = fileChannel;
+		this.position = position;
+		this.remaining = count;
+		this.chunkSize = chunkSize;
+	}
+
+	public void wrapSSL(SSLEngine engine, SslHandler handler) throws IOException {
+
+		this.engine = engine;
+
+		this.handler = handler;
+
+		super.wrapSSL(engine, handler);
+	}
+
+	public boolean write(SocketChannel channel) throws IOException {
+
+		for (;;) {
+
+			ByteBuf buffer = this.buf;
+
+			if (buffer.hasRemaining()) {
+
+				buffer.write(channel);
+
+				if (buffer.hasRemaining()) {
+					return false;
+				}
+			}
+
+			if (remaining == 0) {
+				return true;
+			}
+
+			if (engine == null) {
+				throw new IOException("file region not wrapped by ssl");
+			}
+
+			nextChunk();
+		}
+	}
+
+	private void nextChunk() throws IOException {
+
+		int length = (int) Math.min(remaining, chunkSize);
+
+		ByteBuf chunk = context.getHeapByteBufferPool().allocate(length);
+
+		if (chunk == null) {
+			throw new IOException("not enough memory for file chunk,length:" + length);
+		}
+
+		try {
+
+			// 申请到的内存可能大于length，不能读到文件段之外
+			chunk.limit(length);
+
+			ByteBuffer memory = chunk.getMemory();
+
+			int read = 0;
+
+			for (; read < length;) {
+
+				int n = fileChannel.read(memory, position + read);
+
+				if (n == -1) {
+					throw new IOException("file truncated,remaining:" + (remaining - read));
+				}
+
+				read += n;
+			}
+
+			chunk.position(length);
+
+			chunk.flip();
+
+			ByteBuf wrapped = handler.wrap(engine, chunk);
+
+			if (wrapped == null) {
+				throw new IOException("closed ssl");
+			}
+
+			ReleaseUtil.release(this.buf);
+
+			this.buf = wrapped;
+
+			position += length;
+
+			remaining -= length;
+
+		} finally {
+
+			ReleaseUtil.release(chunk);
+		}
+	}
+
+	public void release() {
+
+		super.release();
+
+		CloseUtil.close(fileChannel);
+	}
+
+	public IOWriteFuture duplicate() {
+		throw new UnsupportedOperationException("file region can not be duplicated");
+	}
+
+	public boolean isDuplicable() {
+		return false;
+	}
+
+	public String toString() {
+		return "[ssl file region,position=" + position + ",remaining=" + remaining + "]";
+	}
+}
@@ -15,6 +15,11 @@ public class ConnectorCloseSEListener extends SEListenerAdapter {
 
 	public void sessionClosed(Session session) {
 
+		if (connector.getReconnectPolicy() != null) {
+			// 由connector重连
+			return;
+		}
+
 		session.getEventLoop().dispatch(new Runnable() {
 			public void run() {
 				CloseUtil.close(connector);
@@ -3,9 +3,12 @@ package com.generallycloud.nio.extend;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.alibaba.fastjson.JSONObject;
+import com.generallycloud.nio.DisconnectException;
 import com.generallycloud.nio.Encoding;
 import com.generallycloud.nio.TimeoutException;
 import com.generallycloud.nio.codec.base.future.BaseReadFuture;
@@ -13,12 +16,14 @@ import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
 import com.generallycloud.nio.common.BeanUtil;
 import com.generallycloud.nio.common.ClassUtil;
 import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
 import com.generallycloud.nio.common.MD5Token;
 import com.generallycloud.nio.common.StringUtil;
 import com.generallycloud.nio.component.BaseContext;
 import com.generallycloud.nio.component.OnReadFuture;
 import com.generallycloud.nio.component.Session;
-import com.generallycloud.nio.component.WaiterOnReadFuture;
+import com.generallycloud.nio.component.concurrent.TimerWheel;
 import com.generallycloud.nio.extend.plugin.authority.SYSTEMAuthorityServlet;
 import com.generallycloud.nio.extend.security.Authority;
 import com.generallycloud.nio.protocol.NamedReadFuture;
@@ -26,12 +31,19 @@ import com.generallycloud.nio.protocol.ReadFuture;
 
 public class FixedIOSession implements FixedSession {
 
+	// 所有连接的请求共用一个时间轮处理超时
+	private static final TimerWheel				REQUEST_TIMER	= new TimerWheel(10, 512, "request-timer");
+
 	private Authority						authority;
 	private BaseContext						context;
-	private Map<String, OnReadFutureWrapper>	listeners	= new HashMap<String, OnReadFutureWrapper>();
+	private Map<String, OnReadFutureWrapper>	listeners	= new ConcurrentHashMap<String, OnReadFutureWrapper>();
 	private AtomicBoolean					logined	= new AtomicBoolean(false);
+	private AtomicInteger					futureIDs	= new AtomicInteger();
+	// 已发出未响应的请求，按futureID对应
+	private Map<Integer, RequestFuture>		requests	= new ConcurrentHashMap<Integer, RequestFuture>();
 	private Session						session;
-	// FIXME timeout
+	private Logger							logger	= LoggerFactory.getLogger(FixedIOSession.class);
+	// 每个请求的超时时间，超时只结束该请求，不关闭连接
 	private long							timeout	= 50000;
 
 	public void setTimeout(long timeout) {
@@ -50,6 +62,22 @@ public class FixedIOSession implements FixedSession {
 
 		NamedReadFuture f = (NamedReadFuture) future;
 
+		if (f instanceof BaseReadFuture) {
+
+			Integer futureID = ((BaseReadFuture) f).getFutureID();
+
+			RequestFuture request = futureID.intValue() == 0 ? null : requests.remove(futureID);
+
+			if (request != null) {
+				try {
+					request.setPayload((BaseReadFuture) f);
+				} catch (Exception e) {
+					logger.error(e.getMessage(), e);
+				}
+				return;
+			}
+		}
+
 		OnReadFutureWrapper onReadFuture = listeners.get(f.getFutureName());
 
 		if (onReadFuture != null) {
@@ -154,66 +182,109 @@ public class FixedIOSession implements FixedSession {
 
 	public BaseReadFuture request(String serviceName, String content, byte[] binary) throws IOException {
 
+		RequestFuture future = requestAsync(serviceName, content, binary);
+
+		// 超时由时间轮结束请求，这里多等一格以免先于时间轮超时
+		return future.get(timeout + REQUEST_TIMER.getTickDuration() * 2);
+	}
+
+	public RequestFuture requestAsync(String serviceName, String content) throws IOException {
+		return requestAsync(serviceName, content, null);
+	}
+
+	/**
+	 * 请求带有递增的futureID，响应按futureID对应，同一service的并发请求不会收到彼此的响应
+	 */
+	public RequestFuture requestAsync(String serviceName, String content, byte[] binary) throws IOException {
+
 		if (StringUtil.isNullOrBlank(serviceName)) {
 			throw new IOException("empty service name");
 		}
 
-		BaseReadFuture readFuture = new BaseReadFutureImpl(session.getContext(),serviceName);
-		
+		Integer futureID = nextFutureID();
+
+		BaseReadFuture readFuture = new BaseReadFutureImpl(session.getContext(), futureID, serviceName);
+
 		readFuture.setIOEventHandle(context.getIOEventHandleAdaptor());
-		
+
 		readFuture.write(content);
 
 		if (binary != null) {
 			readFuture.writeBinary(binary);
 		}
 
-		WaiterOnReadFuture onReadFuture = new WaiterOnReadFuture();
+		Session session = this.session;
 
-		waiterListen(serviceName, onReadFuture);
+		final RequestFuture future = new RequestFuture(session, futureID);
 
-		session.flush(readFuture);
+		requests.put(futureID, future);
 
-		// FIXME 连接丢失时叫醒我
-		if (onReadFuture.await(timeout)) {
+		future.setTimeout(REQUEST_TIMER.schedule(new Runnable() {
 
-			CloseUtil.close(session);
+			public void run() {
+				fail(future, new TimeoutException("timeout"));
+			}
+		}, timeout));
 
-			throw new TimeoutException("timeout");
+		try {
+
+			session.flush(readFuture);
+
+		} catch (IOException e) {
+
+			fail(future, e);
+
+			throw e;
 		}
 
-		return (BaseReadFuture) onReadFuture.getReadFuture();
-	}
+		if (!session.isOpened()) {
+			// 连接在入队之后关闭，sessionClosed可能已经执行
+			fail(future, new DisconnectException("disconnected"));
+		}
 
-	public void setAuthority(Authority authority) {
-		this.authority = authority;
+		return future;
 	}
 
-	public void update(Session session) {
-		this.session = session;
-		this.context = session.getContext();
+	private void fail(RequestFuture future, IOException e) {
+
+		if (requests.remove(future.getFutureID()) != null) {
+			future.setException(e);
+		}
 	}
 
-	private void waiterListen(String serviceName, WaiterOnReadFuture onReadFuture) throws IOException {
+	/**
+	 * 连接断开时结束该连接上所有未响应的请求
+	 */
+	public void sessionClosed(Session session) {
 
-		if (StringUtil.isNullOrBlank(serviceName)) {
-			throw new IOException("empty service name");
-		}
+		for (RequestFuture future : requests.values()) {
 
-		if (onReadFuture == null) {
-			throw new IOException("empty onReadFuture");
+			if (future.getSession() == session) {
+				fail(future, new DisconnectException("disconnected"));
+			}
 		}
+	}
 
-		OnReadFutureWrapper wrapper = listeners.get(serviceName);
+	// 0表示没有futureID
+	private Integer nextFutureID() {
 
-		if (wrapper == null) {
+		for (;;) {
 
-			wrapper = new OnReadFutureWrapper();
+			int futureID = futureIDs.incrementAndGet();
 
-			listeners.put(serviceName, wrapper);
+			if (futureID != 0) {
+				return futureID;
+			}
 		}
+	}
 
-		wrapper.listen(onReadFuture);
+	public void setAuthority(Authority authority) {
+		this.authority = authority;
+	}
+
+	public void update(Session session) {
+		this.session = session;
+		this.context = session.getContext();
 	}
 
 	public void write(String serviceName, String content) throws IOException {
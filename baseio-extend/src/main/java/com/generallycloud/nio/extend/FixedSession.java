@@ -17,6 +17,10 @@ public interface FixedSession extends ReadFutureAcceptor {
 
 	public abstract BaseReadFuture request(String serviceName, String content, byte[] binary) throws IOException;
 
+	public abstract RequestFuture requestAsync(String serviceName, String content) throws IOException;
+
+	public abstract RequestFuture requestAsync(String serviceName, String content, byte[] binary) throws IOException;
+
 	public abstract void write(String serviceName, String content) throws IOException;
 
 	public abstract void write(String serviceName, String content, byte[] binary) throws IOException;
@@ -29,6 +33,8 @@ public interface FixedSession extends ReadFutureAcceptor {
 
 	public abstract void update(Session session);
 
+	public abstract void sessionClosed(Session session);
+
 	public abstract RESMessage login4RES(String username, String password);
 
 	public abstract boolean login(String username, String password);
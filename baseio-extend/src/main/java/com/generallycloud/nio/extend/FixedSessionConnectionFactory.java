@@ -0,0 +1,108 @@
+package com.generallycloud.nio.extend;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseBeatFutureFactory;
+import com.generallycloud.nio.common.Logger;
+import com.generallycloud.nio.common.LoggerFactory;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.SEListenerAdapter;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.ClientSelectorGroup;
+import com.generallycloud.nio.connector.SocketChannelConnectionFactory;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * base协议的连接池使用，从连接池borrow的session通过{@link #getFixedSession(Session)}发送请求，
+ * 所有连接共用一个context，每个连接有自己的FixedSession
+ */
+public class FixedSessionConnectionFactory extends SocketChannelConnectionFactory {
+
+	private PooledIOEventHandle	eventHandle;
+
+	public FixedSessionConnectionFactory(ServerConfiguration configuration) {
+		super(configuration);
+	}
+
+	public FixedSessionConnectionFactory(ServerConfiguration configuration, ClientSelectorGroup selectorGroup) {
+		super(configuration, selectorGroup);
+	}
+
+	protected void initializeContext(BaseContext context) {
+
+		final PooledIOEventHandle eventHandle = new PooledIOEventHandle();
+
+		context.setIOEventHandleAdaptor(eventHandle);
+
+		context.setProtocolFactory(new BaseProtocolFactory());
+
+		context.setBeatFutureFactory(new BaseBeatFutureFactory());
+
+		context.addSessionEventListener(new SEListenerAdapter() {
+
+			public void sessionOpened(Session session) {
+
+				FixedSession fixedSession = new FixedIOSession();
+
+				fixedSession.update(session);
+
+				eventHandle.fixedSessions.put(session, fixedSession);
+			}
+
+			public void sessionClosed(Session session) {
+
+				FixedSession fixedSession = eventHandle.fixedSessions.get(session);
+
+				if (fixedSession != null) {
+					fixedSession.sessionClosed(session);
+				}
+			}
+		});
+
+		this.eventHandle = eventHandle;
+	}
+
+	public void close(Session session) {
+
+		super.close(session);
+
+		// 断开时不移除，已borrow的线程仍可以拿到FixedSession(请求以DisconnectException结束)
+		eventHandle.fixedSessions.remove(session);
+	}
+
+	public static FixedSession getFixedSession(Session session) {
+		return ((PooledIOEventHandle) session.getContext().getIOEventHandleAdaptor()).fixedSessions.get(session);
+	}
+
+	// 按session找到对应的FixedSession处理响应
+	static class PooledIOEventHandle extends IOEventHandleAdaptor {
+
+		private Map<Session, FixedSession>	fixedSessions	= new ConcurrentHashMap<Session, FixedSession>();
+
+		private Logger					logger		= LoggerFactory.getLogger(PooledIOEventHandle.class);
+
+		public void accept(Session session, ReadFuture future) {
+
+			FixedSession fixedSession = fixedSessions.get(session);
+
+			if (fixedSession == null) {
+				return;
+			}
+
+			try {
+
+				fixedSession.accept(session, future);
+
+			} catch (Exception e) {
+
+				logger.error(e.getMessage(), e);
+
+				exceptionCaught(session, future, e, IOEventState.HANDLE);
+			}
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.generallycloud.nio.extend;
 
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
 import com.generallycloud.nio.component.OnReadFuture;
 import com.generallycloud.nio.component.Session;
 import com.generallycloud.nio.component.WaiterOnReadFuture;
@@ -19,6 +20,11 @@ public class OnReadFutureWrapper implements OnReadFuture{
 		
 		if (waiter != null) {
 			
+			if (future instanceof BaseReadFuture) {
+				// 等待的线程在IO线程release之后才读取binary
+				((BaseReadFuture) future).keepBinary();
+			}
+			
 			waiter.onResponse(session, future);
 			
 			return;
@@ -0,0 +1,13 @@
+package com.generallycloud.nio.extend;
+
+import java.io.IOException;
+
+import com.generallycloud.nio.component.Session;
+
+/**
+ * RequestFuture的listener同时实现该接口时，请求超时或连接断开时被回调
+ */
+public interface OnRequestFailure {
+
+	public abstract void onFailure(Session session, IOException e);
+}
@@ -0,0 +1,175 @@
+package com.generallycloud.nio.extend;
+
+import java.io.IOException;
+
+import com.generallycloud.nio.TimeoutException;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.component.OnReadFuture;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.component.concurrent.TimerWheel.Timeout;
+import com.generallycloud.nio.component.concurrent.Waiter;
+
+/**
+ * FixedIOSession.requestAsync返回的结果，按futureID与响应对应。
+ * 可以阻塞等待，也可以设置OnReadFuture在收到响应时回调(在IO线程中执行，不可阻塞)，
+ * 超时或连接断开时以异常结束，listener实现了OnRequestFailure时回调onFailure
+ */
+public class RequestFuture extends Waiter<BaseReadFuture> {
+
+	private Integer			futureID;
+
+	private Session			session;
+
+	private OnReadFuture		listener;
+
+	private BaseReadFuture		response;
+
+	private IOException			exception;
+
+	private Timeout			timeout;
+
+	private volatile boolean	done;
+
+	public RequestFuture(Session session, Integer futureID) {
+		this.session = session;
+		this.futureID = futureID;
+	}
+
+	/**
+	 * 等待结果，超时抛出TimeoutException，请求失败时抛出对应的异常
+	 */
+	public BaseReadFuture get(long timeout) throws IOException {
+
+		if (await(timeout)) {
+			throw new TimeoutException("timeout");
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+
+		return getPayload();
+	}
+
+	public void setPayload(BaseReadFuture future) {
+
+		OnReadFuture listener;
+
+		synchronized (this) {
+
+			if (done) {
+				return;
+			}
+
+			done = true;
+
+			response = future;
+
+			listener = this.listener;
+		}
+
+		cancelTimeout();
+
+		// 等待的线程在IO线程release之后才读取binary
+		future.keepBinary();
+
+		super.setPayload(future);
+
+		if (listener != null) {
+			listener.onResponse(session, future);
+		}
+	}
+
+	/**
+	 * 以异常结束，已经结束时不做任何事
+	 */
+	public void setException(IOException exception) {
+
+		OnReadFuture listener;
+
+		synchronized (this) {
+
+			if (done) {
+				return;
+			}
+
+			done = true;
+
+			this.exception = exception;
+
+			listener = this.listener;
+		}
+
+		cancelTimeout();
+
+		super.setPayload(null);
+
+		if (listener instanceof OnRequestFailure) {
+			((OnRequestFailure) listener).onFailure(session, exception);
+		}
+	}
+
+	private void cancelTimeout() {
+
+		Timeout timeout = this.timeout;
+
+		if (timeout != null) {
+			timeout.cancel();
+		}
+	}
+
+	/**
+	 * 已经结束时立即在当前线程回调
+	 */
+	public void setListener(OnReadFuture listener) {
+
+		boolean done;
+
+		synchronized (this) {
+			this.listener = listener;
+			done = this.done;
+		}
+
+		if (!done) {
+			return;
+		}
+
+		if (exception == null) {
+			listener.onResponse(session, response);
+		} else if (listener instanceof OnRequestFailure) {
+			((OnRequestFailure) listener).onFailure(session, exception);
+		}
+	}
+
+	void setTimeout(Timeout timeout) {
+
+		this.timeout = timeout;
+
+		if (done) {
+			timeout.cancel();
+		}
+	}
+
+	/**
+	 * 是否已收到响应或已失败，不阻塞
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * @return 请求失败的原因，未结束或成功时为null
+	 */
+	public IOException getException() {
+		return exception;
+	}
+
+	public Integer getFutureID() {
+		return futureID;
+	}
+
+	public Session getSession() {
+		return session;
+	}
+
+}
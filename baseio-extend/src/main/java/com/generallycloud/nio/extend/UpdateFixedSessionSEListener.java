@@ -16,7 +16,7 @@ public class UpdateFixedSessionSEListener extends SEListenerAdapter {
 	}
 	
 	public void sessionClosed(Session session) {
-		
+		fixedSession.sessionClosed(session);
 	}
 
 	
@@ -2,11 +2,20 @@ package com.generallycloud.nio.extend.service;
 
 import java.io.File;
 import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
 import com.generallycloud.nio.Encoding;
+import com.generallycloud.nio.codec.http11.HttpCompressor;
 import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
+import com.generallycloud.nio.codec.http11.future.HttpStatus;
 import com.generallycloud.nio.common.FileUtil;
 import com.generallycloud.nio.common.HtmlUtil;
 import com.generallycloud.nio.common.Logger;
@@ -19,174 +28,423 @@ import com.generallycloud.nio.extend.DynamicClassLoader;
 import com.generallycloud.nio.extend.configuration.Configuration;
 import com.generallycloud.nio.protocol.NamedReadFuture;
 
+/**
+ * 静态文件服务，文件在第一次被请求时才去查找，小文件缓存在LRU中(按字节数限制总大小)，
+ * 大文件通过FileChannel.transferTo直接写出，支持ETag/If-Modified-Since(304)以及单段Range请求，
+ * 客户端接受gzip时优先返回同目录下预压缩的.gz文件
+ */
 public class FutureAcceptorHttpFilter extends FutureAcceptorServiceFilter {
 
 	public FutureAcceptorHttpFilter(DynamicClassLoader classLoader) {
 		super(classLoader);
 	}
 
-	private Logger					logger		= LoggerFactory.getLogger(FutureAcceptorHttpFilter.class);
+	private Logger							logger				= LoggerFactory.getLogger(FutureAcceptorHttpFilter.class);
 
-	private Map<String, HttpEntity>	html_cache	= new HashMap<String, HttpEntity>();
+	private Map<String, String>				mapping				= new HashMap<String, String>();
+
+	private HttpEntityCache					html_cache;
+
+	private long							cacheCapacity			= 1024 * 1024 * 64;
+
+	private int							cacheFileSizeLimit		= 1024 * 64;
+
+	private File							rootFile;
+
+	private String							rootPath;
+
+	private String							rootPrefix;
+
+	private static final ThreadLocal<SimpleDateFormat>	HTTP_DATE_FORMAT	= new HttpDateFormatLocal();
 
 	protected void accept404(Session session, NamedReadFuture future, String serviceName) throws IOException {
 
-		String _service_name = serviceName;
-		
-//		if ("/".equals(_service_name)) {
-//			_service_name = "/index.html";
-//		}
-		
-		HttpEntity entity = html_cache.get(_service_name);
+		HttpEntity entity = getHttpEntity(serviceName);
 
 		if (entity == null) {
-			entity = html_cache.get("/404.html");
+			entity = getHttpEntity("/404.html");
 			if (entity == null) {
 				super.accept404(session, future, serviceName);
 				return;
 			}
 		}
-		
-		File file = entity.file;
-		
-		if(file != null && file.lastModified() > entity.lastModify){
-			
-			synchronized (entity) {
-				entity.array = FileUtil.readFileToByteArray(file);
-				entity.lastModify = file.lastModified();
-			}
-		}
 
 		HttpReadFuture f = (HttpReadFuture) future;
 
 		f.setResponseHeader("Content-Type", entity.contentType);
 
-		f.write(entity.array);
+		if (entity.file == null) {
+
+			f.write(entity.array);
+
+			session.flush(f);
+
+			return;
+		}
+
+		String range = f.getRequestHeader("Range");
+
+		if (entity.gzip != null) {
+
+			f.setResponseHeader("Vary", "Accept-Encoding");
+
+			if (StringUtil.isNullOrBlank(range)
+					&& HttpCompressor.ENCODING_GZIP.equals(HttpCompressor.selectEncoding(f
+							.getRequestHeader("Accept-Encoding")))) {
+
+				entity = entity.gzip;
+
+				f.setResponseHeader("Content-Encoding", HttpCompressor.ENCODING_GZIP);
+			}
+		}
+
+		f.setResponseHeader("Last-Modified", entity.lastModifyText);
+		f.setResponseHeader("ETag", entity.etag);
+		f.setResponseHeader("Accept-Ranges", "bytes");
+
+		if (isNotModified(f, entity)) {
+
+			f.setStatus(HttpStatus.C304);
+
+			session.flush(f);
+
+			return;
+		}
+
+		long length = entity.length;
+
+		long start = 0;
+
+		long end = length - 1;
+
+		if (!StringUtil.isNullOrBlank(range)) {
+
+			long[] r = parseRange(range, length);
+
+			if (r == null) {
+
+				f.setStatus(HttpStatus.C416);
+
+				f.setResponseHeader("Content-Range", "bytes */" + length);
+
+				session.flush(f);
+
+				return;
+			}
+
+			if (r != NO_RANGE) {
+
+				start = r[0];
+
+				end = r[1];
+
+				f.setStatus(HttpStatus.C206);
+
+				f.setResponseHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+			}
+		}
+
+		long count = end - start + 1;
+
+		if (entity.array != null) {
+
+			f.write(entity.array, (int) start, (int) count);
+
+		} else {
+
+			f.setResponseFile(entity.file, start, count);
+		}
 
 		session.flush(f);
 	}
 
-	public void initialize(ApplicationContext context, Configuration config) throws Exception {
-		
-		String rootPath = context.getAppLocalAddress();
+	private boolean isNotModified(HttpReadFuture future, HttpEntity entity) {
 
-		File rootFile = new File(rootPath);
-		
-		Map<String, String> mapping = new HashMap<String, String>();
+		String ifNoneMatch = future.getRequestHeader("If-None-Match");
 
-		mapping.put("htm", HttpReadFuture.CONTENT_TYPE_TEXT_HTML);
-		mapping.put("html", HttpReadFuture.CONTENT_TYPE_TEXT_HTML);
-		mapping.put("js", HttpReadFuture.CONTENT_APPLICATION_JAVASCRIPT);
-		mapping.put("css", HttpReadFuture.CONTENT_TYPE_TEXT_CSS);
-		mapping.put("png", HttpReadFuture.CONTENT_TYPE_IMAGE_PNG);
-		mapping.put("jpg", HttpReadFuture.CONTENT_TYPE_IMAGE_JPEG);
-		mapping.put("jpeg", HttpReadFuture.CONTENT_TYPE_IMAGE_JPEG);
-		mapping.put("gif", HttpReadFuture.CONTENT_TYPE_IMAGE_GIF);
-		mapping.put("txt", HttpReadFuture.CONTENT_TYPE_TEXT_PLAIN);
-		mapping.put("ico", HttpReadFuture.CONTENT_TYPE_IMAGE_ICON);
+		if (!StringUtil.isNullOrBlank(ifNoneMatch)) {
+
+			return "*".equals(ifNoneMatch) || ifNoneMatch.indexOf(entity.etag) != -1;
+		}
 
-		scanFolder(rootFile, rootPath,mapping);
+		String ifModifiedSince = future.getRequestHeader("If-Modified-Since");
 
-		super.initialize(context, config);
+		if (StringUtil.isNullOrBlank(ifModifiedSince)) {
+			return false;
+		}
+
+		try {
+
+			Date since = HTTP_DATE_FORMAT.get().parse(ifModifiedSince);
+
+			return entity.lastModify / 1000 <= since.getTime() / 1000;
+
+		} catch (ParseException e) {
+			return false;
+		}
 	}
 
-	private void scanFolder(File file, String root,Map<String, String> mapping) throws IOException {
+	private static final long[]	NO_RANGE	= new long[0];
+
+	/**
+	 * @return NO_RANGE 忽略Range返回整个文件(包括格式错误的Range，如bytes=5-3)，null 无法满足的Range
+	 */
+	private long[] parseRange(String range, long length) {
+
+		if (!range.startsWith("bytes=") || range.indexOf(',') != -1) {
+			return NO_RANGE;
+		}
 
-		if (file.exists()) {
-			if (file.isFile()) {
+		String spec = range.substring(6).trim();
 
-				String contentType = getContentType(file.getName(), mapping);
+		int index = spec.indexOf('-');
 
-				byte[] bytes = FileUtil.readFileToByteArray(file);
+		if (index == -1) {
+			return NO_RANGE;
+		}
 
-				String fileName = file.getCanonicalPath();
+		String first = spec.substring(0, index).trim();
 
-				fileName = fileName.replace("\\", "/");
+		String last = spec.substring(index + 1).trim();
 
-				String staticName = fileName.substring(root.length() - 1, fileName.length());
-				
-				staticName = getHttpPath(file, root);
+		long start;
 
-				HttpEntity entity = new HttpEntity();
+		long end;
 
-				entity.array = bytes;
-				entity.contentType = contentType;
-				entity.file = file;
-				entity.lastModify = file.lastModified();
+		try {
 
-				html_cache.put(staticName, entity);
+			if (first.length() == 0) {
 
-				LoggerUtil.prettyNIOServerLog(logger, "mapping static :{}@{}", staticName, fileName);
-			} else if (file.isDirectory()) {
-				
-				File[] fs = file.listFiles();
-				
-				StringBuilder b = new StringBuilder(HtmlUtil.HTML_HEADER);
-				
-				b.append("		<div style=\"margin-left:20px;\">\n");
-				b.append("			Index of "+getHttpPath(file, root)+"\n");
-				b.append("		</div>\n");
-				b.append("		<hr>\n");
-				
-				File rootFile = new File(root);
-				
-				if (!rootFile.equals(file)) {
-					b.append("		<p>\n");
-					b.append("			<a href=\""+getHttpPath(file.getParentFile(), root)+"\">&lt;dir&gt;..</a>\n");
-					b.append("		</p>\n");
+				if (last.length() == 0) {
+					return NO_RANGE;
 				}
-				
-				StringBuilder db = new StringBuilder();
-				StringBuilder fb = new StringBuilder();
-				
-				for (File f : fs) {
-					
-					scanFolder(f, root,mapping);
-					
-					if (f.isDirectory()) {
-						db.append("		<p>\n");
-						db.append("			<a href=\""+getHttpPath(f, root)+"\">&lt;dir&gt;"+f.getName()+"</a>\n");
-						db.append("		</p>\n");
-					}else{
-						fb.append("		<p>\n");
-						fb.append("			<a href=\""+getHttpPath(f, root)+"\">"+f.getName()+"</a>\n");
-						fb.append("		<p>\n");
+
+				long suffix = Long.parseLong(last);
+
+				if (suffix < 0) {
+					return NO_RANGE;
+				}
+
+				if (suffix == 0) {
+					return null;
+				}
+
+				start = Math.max(0, length - suffix);
+
+				end = length - 1;
+
+			} else {
+
+				start = Long.parseLong(first);
+
+				if (last.length() == 0) {
+
+					end = length - 1;
+
+				} else {
+
+					end = Long.parseLong(last);
+
+					// last-byte-pos小于first-byte-pos时Range无效，按RFC 7233忽略
+					if (end < start) {
+						return NO_RANGE;
 					}
+
+					end = Math.min(end, length - 1);
 				}
-				
-				b.append(db);
-				b.append(fb);
-				
-				b.append("		<hr>\n");
-				b.append(HtmlUtil.HTML_BOTTOM);
-				
-				HttpEntity entity = new HttpEntity();
-				
-				entity.array = b.toString().getBytes(Encoding.UTF8);
-				entity.contentType = HttpReadFuture.CONTENT_TYPE_TEXT_HTML;
-				
-				String staticName = getHttpPath(file, root);
-				
-				if ("".equals(staticName)) {
-					staticName = "/";
+			}
+
+		} catch (NumberFormatException e) {
+			return NO_RANGE;
+		}
+
+		if (start < 0) {
+			return NO_RANGE;
+		}
+
+		if (start >= length) {
+			return null;
+		}
+
+		return new long[] { start, end };
+	}
+
+	private HttpEntity getHttpEntity(String staticName) throws IOException {
+
+		if (StringUtil.isNullOrBlank(staticName)) {
+			return null;
+		}
+
+		HttpEntityCache cache = this.html_cache;
+
+		HttpEntity entity;
+
+		synchronized (cache) {
+			entity = cache.get(staticName);
+		}
+
+		if (entity != null) {
+
+			if (entity.isValid()) {
+				return entity;
+			}
+
+			// 文件已被删除或修改，不再占用缓存
+			synchronized (cache) {
+				if (cache.get(staticName) == entity) {
+					cache.remove(staticName);
 				}
-				html_cache.put(staticName, entity);
 			}
 		}
+
+		File file = new File(rootFile, staticName);
+
+		String fileName = file.getCanonicalPath();
+
+		// rootPath不带分隔符，/srv/app2不能匹配/srv/app
+		if (!(fileName.equals(rootPath) || fileName.startsWith(rootPrefix)) || !file.exists()) {
+			return null;
+		}
+
+		if (file.isDirectory()) {
+			entity = createDirectoryEntity(file);
+		} else {
+			entity = createFileEntity(file);
+		}
+
+		if (entity.array != null) {
+			synchronized (cache) {
+				cache.put(staticName, entity);
+			}
+			LoggerUtil.prettyNIOServerLog(logger, "mapping static :{}@{}", staticName, fileName);
+		}
+
+		return entity;
+	}
+
+	private HttpEntity createFileEntity(File file) throws IOException {
+
+		HttpEntity entity = createFileEntity(file, getContentType(file.getName(), mapping));
+
+		File gzipFile = new File(file.getPath() + ".gz");
+
+		entity.gzipFile = gzipFile;
+
+		entity.gzipLastModify = gzipFile.lastModified();
+
+		if (gzipFile.isFile() && gzipFile.lastModified() >= entity.lastModify) {
+			entity.gzip = createFileEntity(gzipFile, entity.contentType);
+		}
+
+		return entity;
 	}
-	
-	private String getHttpPath(File file,String root) throws IOException{
-		
+
+	private HttpEntity createFileEntity(File file, String contentType) throws IOException {
+
+		HttpEntity entity = new HttpEntity();
+
+		entity.file = file;
+		entity.contentType = contentType;
+		entity.lastModify = file.lastModified();
+		entity.length = file.length();
+		entity.etag = "\"" + Long.toHexString(entity.length) + "-" + Long.toHexString(entity.lastModify) + "\"";
+		entity.lastModifyText = HTTP_DATE_FORMAT.get().format(new Date(entity.lastModify));
+
+		if (entity.length <= cacheFileSizeLimit) {
+			entity.array = FileUtil.readFileToByteArray(file);
+		}
+
+		return entity;
+	}
+
+	private HttpEntity createDirectoryEntity(File file) throws IOException {
+
+		File[] fs = file.listFiles();
+
+		StringBuilder b = new StringBuilder(HtmlUtil.HTML_HEADER);
+
+		b.append("		<div style=\"margin-left:20px;\">\n");
+		b.append("			Index of " + getHttpPath(file) + "\n");
+		b.append("		</div>\n");
+		b.append("		<hr>\n");
+
+		if (!rootFile.equals(file.getCanonicalFile())) {
+			b.append("		<p>\n");
+			b.append("			<a href=\"" + getHttpPath(file.getParentFile()) + "\">&lt;dir&gt;..</a>\n");
+			b.append("		</p>\n");
+		}
+
+		StringBuilder db = new StringBuilder();
+		StringBuilder fb = new StringBuilder();
+
+		if (fs != null) {
+
+			for (File f : fs) {
+
+				if (f.isDirectory()) {
+					db.append("		<p>\n");
+					db.append("			<a href=\"" + getHttpPath(f) + "\">&lt;dir&gt;" + f.getName() + "</a>\n");
+					db.append("		</p>\n");
+				} else {
+					fb.append("		<p>\n");
+					fb.append("			<a href=\"" + getHttpPath(f) + "\">" + f.getName() + "</a>\n");
+					fb.append("		<p>\n");
+				}
+			}
+		}
+
+		b.append(db);
+		b.append(fb);
+
+		b.append("		<hr>\n");
+		b.append(HtmlUtil.HTML_BOTTOM);
+
+		HttpEntity entity = new HttpEntity();
+
+		entity.array = b.toString().getBytes(Encoding.UTF8);
+		entity.contentType = HttpReadFuture.CONTENT_TYPE_TEXT_HTML;
+		entity.directory = file;
+		entity.lastModify = file.lastModified();
+
+		return entity;
+	}
+
+	public void initialize(ApplicationContext context, Configuration config) throws Exception {
+
+		this.rootFile = new File(context.getAppLocalAddress()).getCanonicalFile();
+
+		this.rootPath = rootFile.getCanonicalPath();
+
+		this.rootPrefix = rootPath.endsWith(File.separator) ? rootPath : rootPath + File.separator;
+
+		this.html_cache = new HttpEntityCache(cacheCapacity);
+
+		mapping.put("htm", HttpReadFuture.CONTENT_TYPE_TEXT_HTML);
+		mapping.put("html", HttpReadFuture.CONTENT_TYPE_TEXT_HTML);
+		mapping.put("js", HttpReadFuture.CONTENT_APPLICATION_JAVASCRIPT);
+		mapping.put("css", HttpReadFuture.CONTENT_TYPE_TEXT_CSS);
+		mapping.put("png", HttpReadFuture.CONTENT_TYPE_IMAGE_PNG);
+		mapping.put("jpg", HttpReadFuture.CONTENT_TYPE_IMAGE_JPEG);
+		mapping.put("jpeg", HttpReadFuture.CONTENT_TYPE_IMAGE_JPEG);
+		mapping.put("gif", HttpReadFuture.CONTENT_TYPE_IMAGE_GIF);
+		mapping.put("txt", HttpReadFuture.CONTENT_TYPE_TEXT_PLAIN);
+		mapping.put("ico", HttpReadFuture.CONTENT_TYPE_IMAGE_ICON);
+
+		super.initialize(context, config);
+	}
+
+	private String getHttpPath(File file) throws IOException {
+
 		String fileName = file.getCanonicalPath();
 
 		fileName = fileName.replace("\\", "/");
 
-		String staticName = fileName.substring(root.length() - 1, fileName.length());
-		
+		String staticName = fileName.substring(rootPath.length(), fileName.length());
+
 		if (StringUtil.isNullOrBlank(staticName)) {
 			staticName = "/";
 		}
-		
+
 		return staticName;
 	}
 
@@ -209,14 +467,143 @@ public class FutureAcceptorHttpFilter extends FutureAcceptorServiceFilter {
 		return contentType;
 	}
 
+	public long getCacheCapacity() {
+		return cacheCapacity;
+	}
+
+	/**
+	 * 缓存的总字节数，需在initialize之前设置
+	 */
+	public void setCacheCapacity(long cacheCapacity) {
+		this.cacheCapacity = cacheCapacity;
+	}
+
+	public int getCacheFileSizeLimit() {
+		return cacheFileSizeLimit;
+	}
+
+	/**
+	 * 不大于该值的文件会被缓存，更大的文件通过transferTo写出
+	 */
+	public void setCacheFileSizeLimit(int cacheFileSizeLimit) {
+		this.cacheFileSizeLimit = cacheFileSizeLimit;
+	}
+
 	private class HttpEntity {
 
 		byte[]	array;
 
 		String	contentType;
-		
-		File file;
-		
-		long lastModify;
+
+		File		file;
+
+		File		directory;
+
+		long		lastModify;
+
+		long		length;
+
+		String	etag;
+
+		String	lastModifyText;
+
+		/**
+		 * 预压缩的同名.gz文件
+		 */
+		HttpEntity	gzip;
+
+		/**
+		 * 同名.gz文件的路径以及创建entity时的lastModified(不存在时为0)，
+		 * 之后新增、删除或修改.gz文件都会使entity失效
+		 */
+		File		gzipFile;
+
+		long		gzipLastModify;
+
+		boolean isValid() {
+
+			if (file != null) {
+				return file.lastModified() == lastModify && file.length() == length
+						&& (gzipFile == null || gzipFile.lastModified() == gzipLastModify)
+						&& (gzip == null || gzip.isValid());
+			}
+
+			return directory.lastModified() == lastModify;
+		}
+
+		int weight() {
+
+			int weight = array.length;
+
+			if (gzip != null && gzip.array != null) {
+				weight += gzip.array.length;
+			}
+
+			return weight;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private class HttpEntityCache extends LinkedHashMap<String, HttpEntity> {
+
+		private long	capacity;
+
+		private long	size;
+
+		HttpEntityCache(long capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		public HttpEntity put(String key, HttpEntity value) {
+
+			HttpEntity old = super.put(key, value);
+
+			if (old != null) {
+				size -= old.weight();
+			}
+
+			size += value.weight();
+
+			Iterator<HttpEntity> it = values().iterator();
+
+			for (; size > capacity && it.hasNext();) {
+
+				HttpEntity eldest = it.next();
+
+				if (eldest == value) {
+					continue;
+				}
+
+				size -= eldest.weight();
+
+				it.remove();
+			}
+
+			return old;
+		}
+
+		public HttpEntity remove(Object key) {
+
+			HttpEntity old = super.remove(key);
+
+			if (old != null) {
+				size -= old.weight();
+			}
+
+			return old;
+		}
+	}
+
+	static class HttpDateFormatLocal extends ThreadLocal<SimpleDateFormat> {
+
+		protected SimpleDateFormat initialValue() {
+
+			SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+
+			format.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+			return format;
+		}
 	}
 }
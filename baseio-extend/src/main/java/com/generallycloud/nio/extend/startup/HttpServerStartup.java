@@ -1,6 +1,7 @@
 package com.generallycloud.nio.extend.startup;
 
 import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.http11.HttpCompressor;
 import com.generallycloud.nio.codec.http11.ServerHTTPProtocolFactory;
 import com.generallycloud.nio.codec.http11.future.WebSocketBeatFutureFactory;
 import com.generallycloud.nio.common.LifeCycleUtil;
@@ -61,7 +62,7 @@ public class HttpServerStartup {
 			
 //			context.addSessionEventListener(new SessionActiveSEListener());
 			
-			context.setProtocolFactory(new ServerHTTPProtocolFactory());
+			context.setProtocolFactory(new ServerHTTPProtocolFactory(new HttpCompressor()));
 			
 			context.setSslContext(sslContext);
 			
@@ -0,0 +1,193 @@
+package com.generallycloud.test.nio.base;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.nio.Releasable;
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.component.concurrent.SingleEventLoop;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.IOConnectorUtil;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * 业务处理结束后未取用的binary不再复制，之后getBinary抛出IllegalStateException，
+ * keepBinary之后仍然可以getBinary；
+ * EventLoop停止时未执行的任务被release
+ */
+public class TestBinaryRelease {
+
+	private static final int	PORT	= 18310;
+
+	public static void main(String[] args) throws Exception {
+
+		testBinary();
+
+		testStoppedEventLoop();
+
+		TestAssert.printResult();
+	}
+
+	static void testBinary() throws Exception {
+
+		final BlockingQueue<BaseReadFuture> received = new ArrayBlockingQueue<BaseReadFuture>(4);
+
+		IOEventHandleAdaptor serverHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				if ("keep".equals(f.getText())) {
+					f.keepBinary();
+				}
+
+				// 交给其它线程，在release之后读取
+				received.offer(f);
+			}
+		};
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		context.setProtocolFactory(new BaseProtocolFactory());
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		ServerConfiguration clientConfiguration = new ServerConfiguration();
+
+		clientConfiguration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelConnector connector = IOConnectorUtil.getTCPConnector(new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+			}
+		}, clientConfiguration);
+
+		connector.getContext().setProtocolFactory(new BaseProtocolFactory());
+
+		try {
+
+			Session session = connector.connect();
+
+			byte[] binary = new byte[1024];
+
+			Arrays.fill(binary, (byte) 7);
+
+			BaseReadFutureImpl f = new BaseReadFutureImpl(session.getContext(), 1, "test");
+
+			f.write("drop");
+
+			f.writeBinary(binary);
+
+			session.flush(f);
+
+			BaseReadFuture drop = received.poll(3000, TimeUnit.MILLISECONDS);
+
+			f = new BaseReadFutureImpl(session.getContext(), 2, "test");
+
+			f.write("keep");
+
+			f.writeBinary(binary);
+
+			session.flush(f);
+
+			BaseReadFuture keep = received.poll(3000, TimeUnit.MILLISECONDS);
+
+			// 等待IO线程release
+			ThreadUtil.sleep(200);
+
+			boolean dropped = false;
+
+			try {
+				drop.getBinary();
+			} catch (IllegalStateException e) {
+				dropped = true;
+			}
+
+			assertTrue("unused binary not copied", dropped && drop.getBinaryLength() == binary.length);
+
+			assertTrue("kept binary", keep != null && Arrays.equals(binary, keep.getBinary()));
+
+		} finally {
+
+			CloseUtil.close(connector);
+
+			acceptor.unbind();
+		}
+	}
+
+	static void testStoppedEventLoop() throws Exception {
+
+		final AtomicInteger ran = new AtomicInteger();
+
+		final AtomicInteger released = new AtomicInteger();
+
+		// 未启动的EventLoop，队列中的任务不会被执行
+		SingleEventLoop eventLoop = new SingleEventLoop("test-stopped-loop", 16);
+
+		for (int i = 0; i < 3; i++) {
+			eventLoop.dispatch(new ReleasableJob(ran, released));
+		}
+
+		eventLoop.stop();
+
+		assertTrue("queued jobs released", ran.get() == 0 && released.get() == 3);
+
+		boolean rejected = false;
+
+		try {
+			eventLoop.dispatch(new ReleasableJob(ran, released));
+		} catch (RejectedExecutionException e) {
+			rejected = true;
+		}
+
+		assertTrue("dispatch after stop rejected", rejected);
+	}
+
+	static class ReleasableJob implements Runnable, Releasable {
+
+		private AtomicInteger	ran;
+
+		private AtomicInteger	released;
+
+		ReleasableJob(AtomicInteger ran, AtomicInteger released) {
+			this.ran = ran;
+			this.released = released;
+		}
+
+		public void run() {
+			ran.incrementAndGet();
+		}
+
+		public void release() {
+			released.incrementAndGet();
+		}
+	}
+}
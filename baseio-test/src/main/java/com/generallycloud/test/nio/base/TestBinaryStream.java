@@ -0,0 +1,185 @@
+package com.generallycloud.test.nio.base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.codec.base.future.BinaryConsumer;
+import com.generallycloud.nio.codec.base.future.BinaryStreamAcceptor;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.IOConnectorUtil;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 发送1G的binary，两端都只占用一个chunk的内存，可以使用-Xmx128m运行
+ */
+public class TestBinaryStream {
+
+	private static final int	PORT		= 18300;
+
+	private static final int	LENGTH	= 1024 * 1024 * 1024;
+
+	public static void main(String[] args) throws Exception {
+
+		BinaryStreamAcceptor streamAcceptor = new BinaryStreamAcceptor() {
+
+			public BinaryConsumer accept(Session session, final BaseReadFuture future) throws IOException {
+
+				return new BinaryConsumer() {
+
+					private long	received;
+
+					private long	errors;
+
+					public void consume(Session session, ByteBuf buf) throws IOException {
+
+						byte[] array = buf.array();
+
+						int offset = buf.offset() + buf.position();
+
+						int length = buf.remaining();
+
+						for (int i = 0; i < length; i++) {
+							if (array[offset + i] != (byte) ((received + i) * 31)) {
+								errors++;
+							}
+						}
+
+						received += length;
+					}
+
+					public void complete(Session session) throws IOException {
+
+						BaseReadFutureImpl f = new BaseReadFutureImpl(session.getContext(), future.getFutureID(),
+								future.getFutureName());
+
+						f.write("received:" + received + ",errors:" + errors);
+
+						session.flush(f);
+					}
+				};
+			}
+		};
+
+		IOEventHandleAdaptor serverHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				System.out.println("server accept:" + f.getText() + ",stream:" + f.isBinaryStream() + ",length:"
+						+ f.getBinaryLength());
+			}
+		};
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		context.setProtocolFactory(new BaseProtocolFactory(1024 * 1024, streamAcceptor));
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		IOEventHandleAdaptor clientHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				System.out.println("client accept:" + ((BaseReadFuture) future).getText());
+
+				latch.countDown();
+			}
+		};
+
+		ServerConfiguration clientConfiguration = new ServerConfiguration();
+
+		clientConfiguration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelConnector connector = IOConnectorUtil.getTCPConnector(clientHandle, clientConfiguration);
+
+		connector.getContext().setProtocolFactory(new BaseProtocolFactory());
+
+		Session session = connector.connect();
+
+		BaseReadFutureImpl future = new BaseReadFutureImpl(session.getContext(), 1, "upload");
+
+		future.write("synthetic");
+
+		future.writeBinary(new SyntheticChannel(LENGTH), LENGTH);
+
+		long startTime = System.currentTimeMillis();
+
+		session.flush(future);
+
+		latch.await(120, TimeUnit.SECONDS);
+
+		long cost = System.currentTimeMillis() - startTime;
+
+		Runtime runtime = Runtime.getRuntime();
+
+		System.out.println("cost:" + cost + "ms," + (LENGTH / 1024 / 1024 * 1000L / Math.max(cost, 1)) + "MB/s,max heap:"
+				+ runtime.maxMemory() / 1024 / 1024 + "MB,used:" + (runtime.totalMemory() - runtime.freeMemory())
+				/ 1024 / 1024 + "MB");
+
+		CloseUtil.close(connector);
+
+		CloseUtil.unbind(acceptor);
+	}
+
+	static class SyntheticChannel implements ReadableByteChannel {
+
+		private long	position;
+
+		private long	length;
+
+		SyntheticChannel(long length) {
+			this.length = length;
+		}
+
+		public int read(ByteBuffer dst) throws IOException {
+
+			if (position == length) {
+				return -1;
+			}
+
+			int n = (int) Math.min(dst.remaining(), length - position);
+
+			for (int i = 0; i < n; i++) {
+				dst.put((byte) ((position + i) * 31));
+			}
+
+			position += n;
+
+			return n;
+		}
+
+		public boolean isOpen() {
+			return position < length;
+		}
+
+		public void close() throws IOException {
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package com.generallycloud.test.nio.base;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.buffer.ByteBuf;
+import com.generallycloud.nio.buffer.ReleasedException;
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.codec.base.future.BinaryConsumer;
+import com.generallycloud.nio.codec.base.future.BinaryStreamAcceptor;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.ReleaseUtil;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.IOConnectorUtil;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * source暂时读不到数据时写出端让出线程，数据到达后继续写出；
+ * 接收端流式接收的过程中连接关闭，接收用的chunk归还到内存池
+ */
+public class TestBinaryStreamClose {
+
+	private static final int				PORT		= 18313;
+
+	private static final int				LENGTH	= 1024 * 1024 * 4;
+
+	private static volatile ByteBuf			chunk;
+
+	private static BlockingQueue<String>	results	= new ArrayBlockingQueue<String>(4);
+
+	public static void main(String[] args) throws Exception {
+
+		BinaryStreamAcceptor streamAcceptor = new BinaryStreamAcceptor() {
+
+			public BinaryConsumer accept(Session session, final BaseReadFuture future) throws IOException {
+
+				return new BinaryConsumer() {
+
+					private long	received;
+
+					private long	errors;
+
+					public void consume(Session session, ByteBuf buf) throws IOException {
+
+						chunk = buf;
+
+						byte[] array = buf.array();
+
+						int offset = buf.offset() + buf.position();
+
+						int length = buf.remaining();
+
+						for (int i = 0; i < length; i++) {
+							if (array[offset + i] != (byte) ((received + i) * 31)) {
+								errors++;
+							}
+						}
+
+						received += length;
+					}
+
+					public void complete(Session session) throws IOException {
+						results.offer("received:" + received + ",errors:" + errors);
+					}
+				};
+			}
+		};
+
+		IOEventHandleAdaptor serverHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+			}
+		};
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		context.setProtocolFactory(new BaseProtocolFactory(1024 * 64, streamAcceptor));
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		ServerConfiguration clientConfiguration = new ServerConfiguration();
+
+		clientConfiguration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelConnector connector = IOConnectorUtil.getTCPConnector(new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+			}
+		}, clientConfiguration);
+
+		connector.getContext().setProtocolFactory(new BaseProtocolFactory());
+
+		try {
+
+			Session session = connector.connect();
+
+			// 每隔一次读取返回0
+			BaseReadFutureImpl future = new BaseReadFutureImpl(session.getContext(), 1, "upload");
+
+			future.writeBinary(new IntermittentChannel(LENGTH, LENGTH), LENGTH);
+
+			session.flush(future);
+
+			String result = results.poll(30, TimeUnit.SECONDS);
+
+			assertTrue("intermittent source completed", ("received:" + LENGTH + ",errors:0").equals(result));
+
+			// 写出一半之后source不再有数据，接收端停在流的中间
+			future = new BaseReadFutureImpl(session.getContext(), 2, "upload");
+
+			future.writeBinary(new IntermittentChannel(LENGTH, LENGTH / 2), LENGTH);
+
+			chunk = null;
+
+			session.flush(future);
+
+			ThreadUtil.sleep(1000);
+
+			ByteBuf parked = chunk;
+
+			assertTrue("stream in progress", parked != null && results.isEmpty());
+
+			// 先断开连接，connector关闭时会等待未写完的数据
+			CloseUtil.close(session);
+
+			// 等待服务端的session关闭
+			ThreadUtil.sleep(500);
+
+			assertTrue("chunk released on close", isReleased(parked));
+
+		} finally {
+
+			CloseUtil.close(connector);
+
+			CloseUtil.unbind(acceptor);
+		}
+
+		TestAssert.printResult();
+	}
+
+	private static boolean isReleased(ByteBuf buf) {
+
+		if (buf == null) {
+			return false;
+		}
+
+		try {
+			ReleaseUtil.release(buf.duplicate());
+			return false;
+		} catch (ReleasedException e) {
+			return true;
+		}
+	}
+
+	// 类似非阻塞的管道，没有数据时read返回0
+	static class IntermittentChannel implements ReadableByteChannel {
+
+		private long		position;
+
+		private long		length;
+
+		private long		available;
+
+		private boolean	empty;
+
+		IntermittentChannel(long length, long available) {
+			this.length = length;
+			this.available = available;
+		}
+
+		public int read(ByteBuffer dst) throws IOException {
+
+			if (position == length) {
+				return -1;
+			}
+
+			empty = !empty;
+
+			if (empty || position == available) {
+				return 0;
+			}
+
+			int n = (int) Math.min(dst.remaining(), available - position);
+
+			for (int i = 0; i < n; i++) {
+				dst.put((byte) ((position + i) * 31));
+			}
+
+			position += n;
+
+			return n;
+		}
+
+		public boolean isOpen() {
+			return position < length;
+		}
+
+		public void close() throws IOException {
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package com.generallycloud.test.nio.base;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.nio.Encoding;
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.base.BaseCompressor;
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.IOConnectorUtil;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 两端都开启压缩，服务端原样返回binary，校验解压后的内容
+ */
+public class TestCompress {
+
+	private static final int	PORT	= 18300;
+
+	public static void main(String[] args) throws Exception {
+
+		IOEventHandleAdaptor serverHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				BaseReadFutureImpl res = new BaseReadFutureImpl(session.getContext(), f.getFutureID(),
+						f.getFutureName());
+
+				res.write(f.getText());
+
+				res.writeBinary(f.getBinary());
+
+				session.flush(res);
+			}
+		};
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		configuration.setSERVER_MEMORY_POOL_CAPACITY(64 * 1024);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		BaseProtocolFactory serverFactory = new BaseProtocolFactory();
+
+		serverFactory.setCompressor(new BaseCompressor());
+
+		context.setProtocolFactory(serverFactory);
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; builder.length() < 64 * 1024; i++) {
+			builder.append("{\"id\":").append(i).append(",\"name\":\"user").append(i % 97)
+					.append("\",\"online\":").append(i % 3 == 0).append("},");
+		}
+
+		final byte[] json = builder.toString().getBytes(Encoding.UTF8);
+
+		final byte[] small = "{\"id\":1}".getBytes(Encoding.UTF8);
+
+		final int time = 200;
+
+		final CountDownLatch latch = new CountDownLatch(time);
+
+		final AtomicInteger errors = new AtomicInteger();
+
+		IOEventHandleAdaptor clientHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				byte[] expect = (f.getFutureID() & 1) == 0 ? json : small;
+
+				if (!Arrays.equals(expect, f.getBinary())) {
+					errors.incrementAndGet();
+				}
+
+				latch.countDown();
+			}
+		};
+
+		ServerConfiguration clientConfiguration = new ServerConfiguration();
+
+		clientConfiguration.setSERVER_TCP_PORT(PORT);
+
+		clientConfiguration.setSERVER_MEMORY_POOL_CAPACITY(64 * 1024);
+
+		SocketChannelConnector connector = IOConnectorUtil.getTCPConnector(clientHandle, clientConfiguration);
+
+		BaseProtocolFactory clientFactory = new BaseProtocolFactory();
+
+		BaseCompressor compressor = new BaseCompressor();
+
+		clientFactory.setCompressor(compressor);
+
+		connector.getContext().setProtocolFactory(clientFactory);
+
+		try {
+
+			Session session = connector.connect();
+
+			long startTime = System.currentTimeMillis();
+
+			for (int i = 1; i <= time; i++) {
+
+				BaseReadFutureImpl future = new BaseReadFutureImpl(session.getContext(), i, "json");
+
+				future.write("t" + i);
+
+				future.writeBinary((i & 1) == 0 ? json : small);
+
+				session.flush(future);
+			}
+
+			boolean complete = latch.await(30, TimeUnit.SECONDS);
+
+			compressor.compress(json, 0, json.length);
+
+			System.out.println("complete:" + complete + ",errors:" + errors.get() + ",cost:"
+					+ (System.currentTimeMillis() - startTime) + ",json:" + json.length + ",compressed:"
+					+ compressor.getCompressedLength());
+
+		} finally {
+
+			CloseUtil.close(connector);
+
+			CloseUtil.unbind(acceptor);
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.generallycloud.test.nio.base;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseBeatFutureFactory;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.SEListenerAdapter;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.ClientSelectorGroup;
+import com.generallycloud.nio.connector.ConnectionPool;
+import com.generallycloud.nio.extend.FixedSessionConnectionFactory;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * 多个线程通过连接池发送请求，服务端收到的连接数不超过maxTotal，所有连接共用一个context
+ */
+public class TestConnectionPool {
+
+	private static final int	PORT	= 18303;
+
+	public static void main(String[] args) throws Exception {
+
+		IOEventHandleAdaptor serverHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				BaseReadFutureImpl res = new BaseReadFutureImpl(session.getContext(), f.getFutureID(),
+						f.getFutureName());
+
+				res.write(f.getText());
+
+				session.flush(res);
+			}
+		};
+
+		final AtomicInteger opened = new AtomicInteger();
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		context.setProtocolFactory(new BaseProtocolFactory());
+
+		context.setBeatFutureFactory(new BaseBeatFutureFactory());
+
+		context.addSessionEventListener(new SEListenerAdapter() {
+
+			public void sessionOpened(Session session) {
+				opened.incrementAndGet();
+			}
+		});
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		ServerConfiguration clientConfiguration = new ServerConfiguration();
+
+		clientConfiguration.setSERVER_TCP_PORT(PORT);
+
+		clientConfiguration.setSERVER_CORE_SIZE(2);
+
+		ClientSelectorGroup group = new ClientSelectorGroup(clientConfiguration, 1);
+
+		group.start();
+
+		final ConnectionPool<Session> pool = new ConnectionPool<Session>(new FixedSessionConnectionFactory(
+				clientConfiguration, group));
+
+		pool.setMinIdle(1);
+		pool.setMaxTotal(4);
+		pool.setValidateAfterIdle(500);
+
+		pool.start();
+
+		int threads = 16;
+
+		// 空闲的flusher每16ms检查一次，一次请求大约需要两个间隔
+		final int time = 64;
+
+		final CountDownLatch latch = new CountDownLatch(threads);
+
+		final AtomicInteger errors = new AtomicInteger();
+
+		final AtomicInteger maxSize = new AtomicInteger();
+
+		final Set<BaseContext> contexts = Collections.synchronizedSet(Collections
+				.newSetFromMap(new IdentityHashMap<BaseContext, Boolean>()));
+
+		long startTime = System.currentTimeMillis();
+
+		try {
+
+			for (int i = 0; i < threads; i++) {
+
+				new Thread(new Runnable() {
+
+					public void run() {
+
+						for (int j = 0; j < time; j++) {
+
+							try {
+
+								Session session = pool.borrow();
+
+								contexts.add(session.getContext());
+
+								try {
+
+									String content = String.valueOf(j);
+
+									BaseReadFuture f = FixedSessionConnectionFactory.getFixedSession(session)
+											.request("echo", content);
+
+									if (!content.equals(f.getText())) {
+										errors.incrementAndGet();
+									}
+
+								} finally {
+									pool.release(session);
+								}
+
+								if (pool.getSize() > maxSize.get()) {
+									maxSize.set(pool.getSize());
+								}
+
+							} catch (Exception e) {
+								errors.incrementAndGet();
+								e.printStackTrace();
+							}
+						}
+
+						latch.countDown();
+					}
+				}).start();
+			}
+
+			latch.await();
+
+			System.out.println("requests:" + threads * time + ",errors:" + errors.get() + ",max size:"
+					+ maxSize.get() + ",server opened:" + opened.get() + ",cost:"
+					+ (System.currentTimeMillis() - startTime));
+
+			assertTrue("no errors", errors.get() == 0);
+
+			assertTrue("max total", maxSize.get() <= 4 && opened.get() <= 4);
+
+			assertTrue("shared context", contexts.size() == 1);
+
+			// 空闲超过validateAfterIdle，borrow时先PING
+			ThreadUtil.sleep(1000);
+
+			Session session = pool.borrow();
+
+			String text = FixedSessionConnectionFactory.getFixedSession(session).request("echo", "ping checked")
+					.getText();
+
+			pool.release(session);
+
+			assertTrue("after idle", "ping checked".equals(text) && opened.get() <= 4);
+
+		} finally {
+
+			LifeCycleUtil.stop(pool);
+
+			LifeCycleUtil.stop(group);
+
+			CloseUtil.unbind(acceptor);
+		}
+
+		TestAssert.printResult();
+	}
+}
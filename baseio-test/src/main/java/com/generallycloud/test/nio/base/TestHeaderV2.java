@@ -0,0 +1,196 @@
+package com.generallycloud.test.nio.base;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.base.BaseProtocolDecoder;
+import com.generallycloud.nio.codec.base.BaseProtocolEncoder;
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseBeatFutureFactory;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.IOConnectorUtil;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 服务端同时连接支持V2与只使用V1的客户端，校验回显以及协商后的报文长度，
+ * V2报文头中超过限制的长度关闭连接，超过65535的text不能使用V1报文头
+ */
+public class TestHeaderV2 {
+
+	private static final int	PORT		= 18300;
+
+	private static final String	MESSAGE	= "hello, are you there? 40 bytes chat msg";
+
+	public static void main(String[] args) throws Exception {
+
+		IOEventHandleAdaptor serverHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				BaseReadFutureImpl res = new BaseReadFutureImpl(session.getContext(), f.getFutureID(),
+						f.getFutureName());
+
+				res.write(f.getText());
+
+				session.flush(res);
+			}
+		};
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		context.setProtocolFactory(new BaseProtocolFactory());
+
+		context.setBeatFutureFactory(new BaseBeatFutureFactory());
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		try {
+
+			test(true);
+
+			test(false);
+
+			testOversize();
+
+		} finally {
+
+			CloseUtil.unbind(acceptor);
+		}
+	}
+
+	private static void testOversize() throws Exception {
+
+		Socket socket = new Socket("localhost", PORT);
+
+		socket.setSoTimeout(10000);
+
+		boolean closed;
+
+		try {
+
+			OutputStream out = socket.getOutputStream();
+
+			int b0 = (BaseProtocolDecoder.PROTOCOL_PACKET << 6) | BaseProtocolDecoder.HEADER_V2
+					| BaseProtocolDecoder.HEADER_V2_BINARY;
+
+			// text length与binary length相加超过int
+			out.write(new byte[] { (byte) b0, 4, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07,
+					(byte) 0xfe, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07 });
+
+			out.flush();
+
+			closed = socket.getInputStream().read() == -1;
+
+		} catch (IOException e) {
+			closed = true;
+		} finally {
+			socket.close();
+		}
+
+		BaseReadFutureImpl future = new BaseReadFutureImpl(null, 1, "chat");
+
+		boolean rejected;
+
+		try {
+
+			BaseProtocolEncoder.encodeHeader(future, 4, BaseProtocolDecoder.V1_TEXT_LIMIT + 1, 0);
+
+			rejected = false;
+
+		} catch (IllegalArgumentException e) {
+			rejected = true;
+		}
+
+		System.out.println("oversize length closed:" + closed + ",V1 long text rejected:" + rejected);
+	}
+
+	private static void test(boolean headerV2) throws Exception {
+
+		int time = 100;
+
+		final CountDownLatch latch = new CountDownLatch(time);
+
+		IOEventHandleAdaptor clientHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				if (MESSAGE.equals(f.getText()) && f.getFutureID() > 0) {
+					latch.countDown();
+				}
+			}
+		};
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelConnector connector = IOConnectorUtil.getTCPConnector(clientHandle, configuration);
+
+		BaseProtocolFactory factory = new BaseProtocolFactory();
+
+		factory.setHeaderV2(headerV2);
+
+		connector.getContext().setProtocolFactory(factory);
+
+		try {
+
+			IOSession session = (IOSession) connector.connect();
+
+			session.flush(new BaseBeatFutureFactory().createPINGPacket(session));
+
+			for (int i = 0; i < time; i++) {
+
+				BaseReadFutureImpl future = new BaseReadFutureImpl(session.getContext(), i + 1, "chat");
+
+				future.write(MESSAGE);
+
+				session.flush(future);
+			}
+
+			boolean complete = latch.await(10, TimeUnit.SECONDS);
+
+			BaseProtocolEncoder encoder = (BaseProtocolEncoder) session.getProtocolEncoder();
+
+			BaseReadFutureImpl future = new BaseReadFutureImpl(session.getContext(), 1, "chat");
+
+			int text_length = MESSAGE.length();
+
+			byte[] header = encoder.isHeaderV2() ? BaseProtocolEncoder.encodeHeaderV2(future, 4, text_length, 0)
+					: BaseProtocolEncoder.encodeHeader(future, 4, text_length, 0);
+
+			System.out.println("headerV2:" + headerV2 + ",complete:" + complete + ",encoder v2:"
+					+ encoder.isHeaderV2() + ",frame length:" + (header.length + 4 + text_length));
+
+		} finally {
+
+			CloseUtil.close(connector);
+		}
+	}
+}
@@ -0,0 +1,283 @@
+package com.generallycloud.test.nio.base;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.SEListenerAdapter;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.ReconnectPolicy;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.FixedSession;
+import com.generallycloud.nio.extend.IOConnectorUtil;
+import com.generallycloud.nio.extend.SimpleIOEventHandle;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * 服务端关闭连接并拒绝一段时间，或者停止监听(连接被拒绝)，客户端使用原来的BaseContext按退避的间隔重连，
+ * 连接保持了stableTime才算重连成功
+ */
+public class TestReconnect {
+
+	private static final int		PORT			= 18302;
+
+	private static final int		REFUSED_PORT	= 18312;
+
+	private static volatile boolean	down;
+
+	public static void main(String[] args) throws Exception {
+
+		SocketChannelAcceptor acceptor = bind();
+
+		SimpleIOEventHandle eventHandle = new SimpleIOEventHandle();
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelConnector connector = IOConnectorUtil.getTCPConnector(eventHandle, configuration);
+
+		connector.getContext().setProtocolFactory(new BaseProtocolFactory());
+
+		ReconnectPolicy policy = new ReconnectPolicy();
+
+		policy.setInitialDelay(100);
+
+		policy.setMaxDelay(800);
+
+		policy.setStableTime(500);
+
+		connector.setReconnectPolicy(policy);
+
+		try {
+
+			connector.connect();
+
+			FixedSession session = eventHandle.getFixedSession();
+
+			BaseContext context = connector.getContext();
+
+			Object pool = context.getHeapByteBufferPool();
+
+			assertTrue("echo before", "hello".equals(session.request("echo", "hello").getText()));
+
+			down = true;
+
+			try {
+				session.request("close", null);
+			} catch (IOException e) {
+				System.out.println("closed by server:" + e.getMessage());
+			}
+
+			// 服务端拒绝期间连接上就被关闭，重连的间隔逐渐增加
+			ThreadUtil.sleep(3000);
+
+			long attempts = connector.getReconnectAttempts();
+
+			System.out.println("while down,attempts:" + attempts);
+
+			assertTrue("backoff while closed by server", attempts > 1 && attempts < 20);
+
+			assertTrue("closed at once not counted", connector.getReconnectSuccesses() == 0);
+
+			down = false;
+
+			waitConnected(connector);
+
+			assertTrue("echo after accept-then-close", "hello again".equals(session.request("echo", "hello again").getText()));
+
+			assertTrue("same context and pool", context == connector.getContext() && pool == context.getHeapByteBufferPool());
+
+			ThreadUtil.sleep(policy.getStableTime() + 200);
+
+			assertTrue("stable reconnect counted", connector.getReconnectSuccesses() == 1);
+
+			System.out.println("attempts:" + connector.getReconnectAttempts() + ",successes:"
+					+ connector.getReconnectSuccesses() + ",failures:" + connector.getReconnectFailures());
+
+		} finally {
+
+			CloseUtil.close(connector);
+
+			CloseUtil.unbind(acceptor);
+		}
+
+		testRefused();
+
+		TestAssert.printResult();
+	}
+
+	// 服务端停止监听，重连时连接被拒绝，重新监听后恢复
+	private static void testRefused() throws Exception {
+
+		ServerSocket server = listen();
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(REFUSED_PORT);
+
+		SocketChannelConnector connector = IOConnectorUtil.getTCPConnector(new SimpleIOEventHandle(), configuration);
+
+		connector.getContext().setProtocolFactory(new BaseProtocolFactory());
+
+		ReconnectPolicy policy = new ReconnectPolicy();
+
+		policy.setInitialDelay(100);
+
+		policy.setMaxDelay(400);
+
+		policy.setStableTime(500);
+
+		connector.setReconnectPolicy(policy);
+
+		Socket accepted = null;
+
+		try {
+
+			connector.connect();
+
+			accepted = server.accept();
+
+			close(server);
+
+			close(accepted);
+
+			ThreadUtil.sleep(2000);
+
+			long failures = connector.getReconnectFailures();
+
+			System.out.println("while refused,attempts:" + connector.getReconnectAttempts() + ",failures:" + failures);
+
+			assertTrue("refused counted as failure", failures > 1 && connector.getReconnectSuccesses() == 0
+					&& !connector.isConnected());
+
+			server = listen();
+
+			accepted = server.accept();
+
+			waitConnected(connector);
+
+			assertTrue("reconnected after refused", connector.isConnected());
+
+			ThreadUtil.sleep(policy.getStableTime() + 200);
+
+			assertTrue("refused then stable counted", connector.getReconnectSuccesses() == 1);
+
+			long start = System.currentTimeMillis();
+
+			CloseUtil.close(connector);
+
+			assertTrue("close not blocked", System.currentTimeMillis() - start < policy.getStableTime());
+
+		} finally {
+
+			CloseUtil.close(connector);
+
+			close(accepted);
+
+			close(server);
+		}
+	}
+
+	// ServerSocket、Socket在1.6中没有实现Closeable
+	private static void close(ServerSocket server) {
+		try {
+			if (server != null) {
+				server.close();
+			}
+		} catch (IOException e) {
+		}
+	}
+
+	private static void close(Socket socket) {
+		try {
+			if (socket != null) {
+				socket.close();
+			}
+		} catch (IOException e) {
+		}
+	}
+
+	private static ServerSocket listen() throws IOException {
+
+		ServerSocket server = new ServerSocket();
+
+		server.setReuseAddress(true);
+
+		server.setSoTimeout(5000);
+
+		server.bind(new InetSocketAddress(REFUSED_PORT));
+
+		return server;
+	}
+
+	private static void waitConnected(SocketChannelConnector connector) {
+		for (int i = 0; i < 50 && !connector.isConnected(); i++) {
+			ThreadUtil.sleep(100);
+		}
+	}
+
+	private static SocketChannelAcceptor bind() throws Exception {
+
+		IOEventHandleAdaptor serverHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				if ("close".equals(f.getFutureName())) {
+					CloseUtil.close(session);
+					return;
+				}
+
+				BaseReadFutureImpl res = new BaseReadFutureImpl(session.getContext(), f.getFutureID(),
+						f.getFutureName());
+
+				res.write(f.getText());
+
+				session.flush(res);
+			}
+		};
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		context.setProtocolFactory(new BaseProtocolFactory());
+
+		context.addSessionEventListener(new SEListenerAdapter() {
+
+			public void sessionOpened(Session session) {
+				if (down) {
+					CloseUtil.close(session);
+				}
+			}
+		});
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		return acceptor;
+	}
+}
@@ -0,0 +1,141 @@
+package com.generallycloud.test.nio.base;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.OnReadFuture;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.FixedSession;
+import com.generallycloud.nio.extend.IOConnectorUtil;
+import com.generallycloud.nio.extend.RequestFuture;
+import com.generallycloud.nio.extend.SimpleIOEventHandle;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 服务端以随机的延迟乱序响应，同一service的并发请求校验每个响应都回到对应的请求
+ */
+public class TestRequestAsync {
+
+	private static final int	PORT	= 18300;
+
+	public static void main(String[] args) throws Exception {
+
+		final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+
+		IOEventHandleAdaptor serverHandle = new IOEventHandleAdaptor() {
+
+			public void accept(final Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				final BaseReadFutureImpl res = new BaseReadFutureImpl(session.getContext(), f.getFutureID(),
+						f.getFutureName());
+
+				res.write(f.getText());
+
+				executor.schedule(new Runnable() {
+
+					public void run() {
+						try {
+							session.flush(res);
+						} catch (Exception e) {
+							e.printStackTrace();
+						}
+					}
+				}, (long) (Math.random() * 20), TimeUnit.MILLISECONDS);
+			}
+		};
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		configuration.setSERVER_MEMORY_POOL_CAPACITY(64 * 1024);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		context.setProtocolFactory(new BaseProtocolFactory());
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		SimpleIOEventHandle eventHandle = new SimpleIOEventHandle();
+
+		ServerConfiguration clientConfiguration = new ServerConfiguration();
+
+		clientConfiguration.setSERVER_TCP_PORT(PORT);
+
+		clientConfiguration.setSERVER_MEMORY_POOL_CAPACITY(64 * 1024);
+
+		SocketChannelConnector connector = IOConnectorUtil.getTCPConnector(eventHandle, clientConfiguration);
+
+		connector.getContext().setProtocolFactory(new BaseProtocolFactory());
+
+		try {
+
+			connector.connect();
+
+			FixedSession session = eventHandle.getFixedSession();
+
+			int time = 10000;
+
+			final CountDownLatch latch = new CountDownLatch(time);
+
+			final AtomicInteger errors = new AtomicInteger();
+
+			long startTime = System.currentTimeMillis();
+
+			for (int i = 0; i < time; i++) {
+
+				final String content = String.valueOf(i);
+
+				RequestFuture future = session.requestAsync("echo", content);
+
+				future.setListener(new OnReadFuture() {
+
+					public void onResponse(Session session, ReadFuture future) {
+
+						if (!content.equals(((BaseReadFuture) future).getText())) {
+							errors.incrementAndGet();
+						}
+
+						latch.countDown();
+					}
+				});
+			}
+
+			boolean complete = latch.await(30, TimeUnit.SECONDS);
+
+			BaseReadFuture future = session.request("echo", "sync");
+
+			System.out.println("complete:" + complete + ",errors:" + errors.get() + ",sync:" + future.getText()
+					+ ",cost:" + (System.currentTimeMillis() - startTime));
+
+		} finally {
+
+			CloseUtil.close(connector);
+
+			CloseUtil.unbind(acceptor);
+
+			executor.shutdown();
+		}
+	}
+}
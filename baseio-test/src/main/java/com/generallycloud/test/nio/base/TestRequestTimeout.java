@@ -0,0 +1,134 @@
+package com.generallycloud.test.nio.base;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.generallycloud.nio.DisconnectException;
+import com.generallycloud.nio.TimeoutException;
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.FixedSession;
+import com.generallycloud.nio.extend.IOConnectorUtil;
+import com.generallycloud.nio.extend.RequestFuture;
+import com.generallycloud.nio.extend.SimpleIOEventHandle;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 单个请求超时不影响连接上的其它请求，连接断开时未响应的请求立即失败
+ */
+public class TestRequestTimeout {
+
+	private static final int	PORT	= 18300;
+
+	public static void main(String[] args) throws Exception {
+
+		IOEventHandleAdaptor serverHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				if ("slow".equals(f.getFutureName())) {
+					// 不响应
+					return;
+				}
+
+				if ("close".equals(f.getFutureName())) {
+					CloseUtil.close(session);
+					return;
+				}
+
+				f.write(f.getText());
+
+				session.flush(f);
+			}
+		};
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		context.setProtocolFactory(new BaseProtocolFactory());
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		SimpleIOEventHandle eventHandle = new SimpleIOEventHandle();
+
+		ServerConfiguration clientConfiguration = new ServerConfiguration();
+
+		clientConfiguration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelConnector connector = IOConnectorUtil.getTCPConnector(eventHandle, clientConfiguration);
+
+		connector.getContext().setProtocolFactory(new BaseProtocolFactory());
+
+		try {
+
+			connector.connect();
+
+			FixedSession session = eventHandle.getFixedSession();
+
+			session.setTimeout(500);
+
+			long startTime = System.currentTimeMillis();
+
+			try {
+				session.request("slow", "1");
+				System.out.println("FAIL: expect timeout");
+			} catch (TimeoutException e) {
+				System.out.println("timeout after:" + (System.currentTimeMillis() - startTime));
+			}
+
+			System.out.println("after timeout:" + session.request("echo", "still alive").getText());
+
+			session.setTimeout(50000);
+
+			List<RequestFuture> futures = new ArrayList<RequestFuture>();
+
+			for (int i = 0; i < 100; i++) {
+				futures.add(session.requestAsync("slow", String.valueOf(i)));
+			}
+
+			startTime = System.currentTimeMillis();
+
+			session.write("close", "");
+
+			int disconnected = 0;
+
+			for (RequestFuture future : futures) {
+				try {
+					future.get(10000);
+				} catch (DisconnectException e) {
+					disconnected++;
+				} catch (IOException e) {
+					System.out.println("FAIL:" + e);
+				}
+			}
+
+			System.out.println("disconnected:" + disconnected + ",after:" + (System.currentTimeMillis() - startTime));
+
+		} finally {
+
+			CloseUtil.close(connector);
+
+			CloseUtil.unbind(acceptor);
+		}
+	}
+}
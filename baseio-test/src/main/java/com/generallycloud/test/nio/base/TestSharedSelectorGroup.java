@@ -0,0 +1,156 @@
+package com.generallycloud.test.nio.base;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.ClientSelectorGroup;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.FixedSession;
+import com.generallycloud.nio.extend.SimpleIOEventHandle;
+import com.generallycloud.nio.extend.UpdateFixedSessionSEListener;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * 多个connector共用ClientSelectorGroup(包括session管理线程)，线程数不随connector增加，关闭其中一个不影响其它
+ */
+public class TestSharedSelectorGroup {
+
+	private static final int	PORT	= 18301;
+
+	public static void main(String[] args) throws Exception {
+
+		IOEventHandleAdaptor serverHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				BaseReadFutureImpl res = new BaseReadFutureImpl(session.getContext(), f.getFutureID(),
+						f.getFutureName());
+
+				res.write(f.getText());
+
+				session.flush(res);
+			}
+		};
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		context.setProtocolFactory(new BaseProtocolFactory());
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		ServerConfiguration clientConfiguration = new ServerConfiguration();
+
+		clientConfiguration.setSERVER_TCP_PORT(PORT);
+
+		clientConfiguration.setSERVER_CORE_SIZE(2);
+
+		int threads = Thread.activeCount();
+
+		ClientSelectorGroup group = new ClientSelectorGroup(clientConfiguration, 2);
+
+		group.start();
+
+		int groupThreads = Thread.activeCount() - threads;
+
+		int size = 32;
+
+		SocketChannelConnector[] connectors = new SocketChannelConnector[size];
+
+		SimpleIOEventHandle[] eventHandles = new SimpleIOEventHandle[size];
+
+		try {
+
+			for (int i = 0; i < size; i++) {
+
+				SimpleIOEventHandle eventHandle = new SimpleIOEventHandle();
+
+				BaseContext clientContext = new BaseContextImpl(clientConfiguration, group.getEventLoopGroup());
+
+				clientContext.setIOEventHandleAdaptor(eventHandle);
+
+				clientContext.setProtocolFactory(new BaseProtocolFactory());
+
+				clientContext.addSessionEventListener(new UpdateFixedSessionSEListener(eventHandle.getFixedSession()));
+
+				SocketChannelConnector connector = new SocketChannelConnector();
+
+				connector.setSelectorGroup(group);
+
+				connector.setContext(clientContext);
+
+				connector.connect();
+
+				connectors[i] = connector;
+
+				eventHandles[i] = eventHandle;
+			}
+
+			int connectorThreads = Thread.activeCount() - threads - groupThreads;
+
+			System.out.println("connectors:" + size + ",group threads:" + groupThreads + ",connector threads:"
+					+ connectorThreads);
+
+			assertTrue("no thread per connector", connectorThreads < size);
+
+			assertTrue("session factories shared", group.getSessionManager().getManagedFactorySize() == size);
+
+			CloseUtil.close(connectors[0]);
+
+			int errors = 0;
+
+			for (int i = 1; i < size; i++) {
+
+				FixedSession session = eventHandles[i].getFixedSession();
+
+				String content = "hello" + i;
+
+				if (!content.equals(session.request("echo", content).getText())) {
+					errors++;
+				}
+			}
+
+			assertTrue("others alive after close one", errors == 0 && !connectors[0].isConnected());
+
+			// 等待关闭的connector停止其context
+			ThreadUtil.sleep(100);
+
+			assertTrue("closed context removed", group.getSessionManager().getManagedFactorySize() == size - 1);
+
+		} finally {
+
+			for (int i = 0; i < size; i++) {
+				CloseUtil.close(connectors[i]);
+			}
+
+			LifeCycleUtil.stop(group);
+
+			CloseUtil.unbind(acceptor);
+		}
+
+		TestAssert.printResult();
+	}
+}
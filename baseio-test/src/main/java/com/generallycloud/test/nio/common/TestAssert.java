@@ -0,0 +1,24 @@
+package com.generallycloud.test.nio.common;
+
+/**
+ * main方法形式的测试使用，每项检查打印一行，最后由printResult打印PASS或失败的个数
+ */
+public class TestAssert {
+
+	private static int	errors;
+
+	public static void assertTrue(String name, boolean ok) {
+		System.out.println((ok ? "ok    " : "error ") + name);
+		if (!ok) {
+			errors++;
+		}
+	}
+
+	public static int getErrors() {
+		return errors;
+	}
+
+	public static void printResult() {
+		System.out.println(errors == 0 ? "PASS" : "FAIL " + errors);
+	}
+}
@@ -0,0 +1,169 @@
+package com.generallycloud.test.nio.front;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.nio.balance.BroadcastSubscribers;
+import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.component.concurrent.EventLoop;
+import com.generallycloud.nio.component.concurrent.SingleEventLoop;
+import com.generallycloud.nio.protocol.IOWriteFuture;
+
+/**
+ * 20万个假的订阅连接分布在4个EventLoop上，统计一次广播全部写出的时间，
+ * 并检查共用的报文最后被释放
+ */
+public class TestBroadcastSubscribers {
+
+	public static void main(String[] args) throws Exception {
+
+		int size = 200000;
+
+		EventLoop[] eventLoops = new EventLoop[4];
+
+		for (int i = 0; i < eventLoops.length; i++) {
+			eventLoops[i] = new SingleEventLoop("IOEvent-" + i, 1024 * 8);
+			eventLoops[i].start();
+		}
+
+		final AtomicInteger flushed = new AtomicInteger();
+
+		BroadcastSubscribers subscribers = new BroadcastSubscribers();
+
+		FakeSession[] sessions = new FakeSession[size];
+
+		for (int i = 0; i < size; i++) {
+			sessions[i] = new FakeSession(eventLoops[i % eventLoops.length], flushed);
+			subscribers.subscribe(sessions[i].session);
+		}
+
+		// 断开的连接不再接收
+		for (int i = 0; i < 1000; i++) {
+			subscribers.unsubscribe(sessions[i].session);
+		}
+
+		int expect = size - 1000;
+
+		System.out.println("subscribers:" + subscribers.size());
+
+		for (int time = 0; time < 5; time++) {
+
+			flushed.set(0);
+
+			AtomicInteger references = new AtomicInteger(1);
+
+			long startTime = System.currentTimeMillis();
+
+			subscribers.broadcast(writeFuture(references));
+
+			for (; flushed.get() < expect;) {
+				ThreadUtil.sleep(1);
+			}
+
+			long cost = System.currentTimeMillis() - startTime;
+
+			// 最后一个任务的release在最后一个flush之后
+			ThreadUtil.sleep(50);
+
+			System.out.println("broadcast " + flushed.get() + " cost:" + cost + "ms,references:"
+					+ references.get());
+		}
+
+		// 不能duplicate的报文(binary stream等)不广播，直接释放
+		flushed.set(0);
+
+		AtomicInteger references = new AtomicInteger(1);
+
+		subscribers.broadcast(writeFuture(references, false));
+
+		ThreadUtil.sleep(50);
+
+		System.out.println("unduplicable flushed:" + flushed.get() + ",references:" + references.get());
+
+		for (EventLoop eventLoop : eventLoops) {
+			LifeCycleUtil.stop(eventLoop);
+		}
+	}
+
+	static IOWriteFuture writeFuture(AtomicInteger references) {
+		return writeFuture(references, true);
+	}
+
+	// 只记录引用个数的报文
+	static IOWriteFuture writeFuture(final AtomicInteger references, final boolean duplicable) {
+
+		return (IOWriteFuture) Proxy.newProxyInstance(IOWriteFuture.class.getClassLoader(),
+				new Class<?>[] { IOWriteFuture.class }, new InvocationHandler() {
+
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+						String name = method.getName();
+
+						if ("duplicate".equals(name)) {
+							references.incrementAndGet();
+							return writeFuture(references);
+						}
+
+						if ("release".equals(name)) {
+							references.decrementAndGet();
+						}
+
+						if ("isDuplicable".equals(name)) {
+							return duplicable;
+						}
+
+						return null;
+					}
+				});
+	}
+
+	static class FakeSession implements InvocationHandler {
+
+		IOSession			session;
+
+		EventLoop			eventLoop;
+
+		AtomicInteger		flushed;
+
+		FakeSession(EventLoop eventLoop, AtomicInteger flushed) {
+			this.eventLoop = eventLoop;
+			this.flushed = flushed;
+			this.session = (IOSession) Proxy.newProxyInstance(IOSession.class.getClassLoader(),
+					new Class<?>[] { IOSession.class }, this);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String m = method.getName();
+
+			if ("flush".equals(m)) {
+				// 当作已经写出
+				((IOWriteFuture) args[0]).release();
+				flushed.incrementAndGet();
+				return null;
+			}
+
+			if ("getEventLoop".equals(m)) {
+				return eventLoop;
+			}
+
+			if ("isClosed".equals(m)) {
+				return false;
+			}
+
+			if ("hashCode".equals(m)) {
+				return System.identityHashCode(proxy);
+			}
+
+			if ("equals".equals(m)) {
+				return proxy == args[0];
+			}
+
+			return null;
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package com.generallycloud.test.nio.front;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.generallycloud.nio.balance.BackendHealth;
+import com.generallycloud.nio.balance.BalanceReadFuture;
+import com.generallycloud.nio.balance.FrontHealthChecker;
+import com.generallycloud.nio.balance.router.AbstractFrontRouter;
+import com.generallycloud.nio.component.BeatFutureFactory;
+import com.generallycloud.nio.component.IOSession;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.component.concurrent.Waiter;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * 用假的负载节点连接测试健康检查，时间由check(now)的参数控制
+ */
+public class TestFrontHealthChecker {
+
+	public static void main(String[] args) throws Exception {
+
+		RecordRouter router = new RecordRouter();
+
+		FrontHealthChecker checker = new FrontHealthChecker();
+
+		checker.setProbeInterval(1000);
+		checker.setProbeTimeout(500);
+		checker.setRequestTimeout(2000);
+		checker.setMaxFailures(3);
+		checker.setBaseEjectionTime(5000);
+		checker.setMaxEjectionTime(20000);
+		checker.setMaxEjectionPercent(50);
+
+		checker.initialize(router, new FakeBeatFutureFactory());
+
+		FakeSession a = new FakeSession("a");
+		FakeSession b = new FakeSession("b");
+		FakeSession c = new FakeSession("c");
+		FakeSession d = new FakeSession("d");
+
+		for (FakeSession s : new FakeSession[] { a, b, c, d }) {
+			router.addRouterSession(s.session);
+			checker.addRouterSession(s.session);
+		}
+
+		long now = System.currentTimeMillis();
+
+		// a的请求没有回复，b的请求收到回复
+		for (int i = 0; i < 3; i++) {
+			checker.requestSent(a.session, request(1, i));
+			checker.requestSent(b.session, request(1, i));
+			checker.responseReceived(b.session, request(1, i));
+		}
+
+		// b的一个请求没有回复，但之后仍在回复其它请求
+		checker.requestSent(b.session, request(3, 1));
+		checker.requestSent(b.session, request(3, 2));
+		checker.responseReceived(b.session, request(3, 2));
+
+		checker.check(now + 2500);
+
+		assertState("a ejected by timeouts", checker, a, BackendHealth.EJECTED);
+		assertState("b healthy", checker, b, BackendHealth.HEALTHY);
+		assertTrue("b slow request not a failure", checker.getBackendHealth(b.session).getFailures() == 0
+				&& checker.getBackendHealth(b.session).getPendingSize() == 0);
+		assertTrue("a removed from router", !router.sessions.contains(a.session));
+
+		// c不回复PING，但仍有其它报文
+		c.alive = false;
+
+		checker.check(now + 3000);
+		checker.check(now + 3600);
+		checker.check(now + 4600);
+		checker.check(now + 5200);
+		checker.check(now + 6200);
+		checker.check(now + 6800);
+
+		assertState("c ejected by probes", checker, c, BackendHealth.EJECTED);
+		assertTrue("c removed from router", !router.sessions.contains(c.session));
+
+		// 已摘除一半，d的请求超时也不再摘除
+		for (int i = 0; i < 3; i++) {
+			checker.requestSent(d.session, request(1, i));
+		}
+
+		checker.check(now + 6900);
+
+		assertState("d kept by max ejection percent", checker, d, BackendHealth.HEALTHY);
+		assertTrue("d still in router", router.sessions.contains(d.session));
+
+		checker.requestSent(d.session, request(1, 3));
+		checker.responseReceived(d.session, request(1, 3));
+
+		// a摘除5秒后half-open，再失败一次立即摘除，时间翻倍
+		a.alive = false;
+
+		checker.check(now + 7600);
+		assertState("a half-open", checker, a, BackendHealth.HALF_OPEN);
+		assertTrue("a readmitted", router.sessions.contains(a.session));
+		assertTrue("a available for trial", checker.isAvailable(a.session));
+
+		checker.requestSent(a.session, request(2, 1));
+
+		assertTrue("a trial share used", !checker.isAvailable(a.session));
+
+		checker.check(now + 9700);
+
+		BackendHealth ha = checker.getBackendHealth(a.session);
+
+		assertState("a ejected again", checker, a, BackendHealth.EJECTED);
+		assertTrue("a backoff doubled", ha.getEjectedUntil() - (now + 9700) == 10000);
+
+		// 第二次摘除结束，收到回复后恢复
+		a.alive = true;
+
+		checker.check(now + 9700 + 10000);
+		assertState("a half-open again", checker, a, BackendHealth.HALF_OPEN);
+
+		checker.requestSent(a.session, request(2, 2));
+		checker.responseReceived(a.session, request(2, 2));
+
+		assertState("a recovered", checker, a, BackendHealth.HEALTHY);
+		assertTrue("a full share after recovery", checker.isAvailable(a.session));
+		assertTrue("a ejections reset", ha.getEjections() == 0);
+
+		// 断开的节点不会被重新加入
+		checker.removeRouterSession(c.session);
+		router.removeRouterSession(c.session);
+
+		checker.check(now + 60000);
+
+		assertTrue("closed c not readmitted", !router.sessions.contains(c.session));
+
+		TestAssert.printResult();
+	}
+
+	static void assertState(String name, FrontHealthChecker checker, FakeSession s, int state) {
+		BackendHealth health = checker.getBackendHealth(s.session);
+		assertTrue(name + " " + health, health.getState() == state);
+	}
+
+	static BalanceReadFuture request(final int sessionID, final int futureID) {
+
+		return (BalanceReadFuture) Proxy.newProxyInstance(BalanceReadFuture.class.getClassLoader(),
+				new Class<?>[] { BalanceReadFuture.class }, new InvocationHandler() {
+
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+						String name = method.getName();
+
+						if ("getSessionID".equals(name)) {
+							return sessionID;
+						}
+
+						if ("getFutureID".equals(name)) {
+							return futureID;
+						}
+
+						return null;
+					}
+				});
+	}
+
+	static class FakeSession implements InvocationHandler {
+
+		String			name;
+
+		IOSession			session;
+
+		volatile boolean	alive		= true;
+
+		long				lastAccessTime;
+
+		Waiter<Session>	pongWaiter;
+
+		FakeSession(String name) {
+			this.name = name;
+			this.session = (IOSession) Proxy.newProxyInstance(IOSession.class.getClassLoader(),
+					new Class<?>[] { IOSession.class }, this);
+		}
+
+		@SuppressWarnings("unchecked")
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String m = method.getName();
+
+			if ("flush".equals(m)) {
+
+				// 有报文往来，但只有活着的节点回复PONG
+				lastAccessTime++;
+
+				if (alive && pongWaiter != null) {
+					Waiter<Session> waiter = pongWaiter;
+					pongWaiter = null;
+					waiter.setPayload(session);
+				}
+				return null;
+			}
+
+			if ("setPONGWaiter".equals(m)) {
+				pongWaiter = (Waiter<Session>) args[0];
+				return null;
+			}
+
+			if ("getPONGWaiter".equals(m)) {
+				return pongWaiter;
+			}
+
+			if ("getLastAccessTime".equals(m)) {
+				return lastAccessTime;
+			}
+
+			if ("getSessionID".equals(m)) {
+				return 0;
+			}
+
+			if ("isOpened".equals(m)) {
+				return true;
+			}
+
+			if ("hashCode".equals(m)) {
+				return System.identityHashCode(proxy);
+			}
+
+			if ("equals".equals(m)) {
+				return proxy == args[0];
+			}
+
+			if ("toString".equals(m)) {
+				return name;
+			}
+
+			return null;
+		}
+	}
+
+	static class FakeBeatFutureFactory implements BeatFutureFactory {
+
+		public ReadFuture createPINGPacket(Session session) {
+			return request(0, 0);
+		}
+
+		public ReadFuture createPONGPacket(Session session) {
+			return request(0, 0);
+		}
+	}
+
+	static class RecordRouter extends AbstractFrontRouter {
+
+		Set<IOSession>	sessions	= new HashSet<IOSession>();
+
+		public void addRouterSession(IOSession session) {
+			sessions.add(session);
+		}
+
+		public void removeRouterSession(IOSession session) {
+			sessions.remove(session);
+		}
+
+		public IOSession getRouterSession(IOSession session) {
+			return null;
+		}
+
+		public IOSession getRouterSession(IOSession session, ReadFuture future) {
+			return null;
+		}
+	}
+}
@@ -25,7 +25,7 @@ public class TestFrontMain {
 		
 		f.setFrontServerConfiguration(fc);
 		f.setFrontReverseServerConfiguration(frc);
-//		f.setFrontRouter(new HashedFrontRouter(10240));
+//		f.setFrontRouter(new HashedFrontRouter(160));
 		f.setFrontRouter(new SimpleNextRouter());
 		
 		f.startup();
@@ -0,0 +1,170 @@
+package com.generallycloud.test.nio.front;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.nio.balance.FrontContext;
+import com.generallycloud.nio.balance.FrontServerBootStrap;
+import com.generallycloud.nio.balance.router.LeastLoadedFrontRouter;
+import com.generallycloud.nio.balance.router.RouterLoad;
+import com.generallycloud.nio.codec.base.BaseProtocolFactory;
+import com.generallycloud.nio.codec.base.future.BaseReadFuture;
+import com.generallycloud.nio.codec.base.future.BaseReadFutureImpl;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.IOConnectorUtil;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 4个负载节点，其中一个停顿2秒(模拟GC)，统计停顿期间被卡住的请求
+ */
+public class TestLeastLoadedRouter {
+
+	public static void main(String[] args) throws Exception {
+
+		LeastLoadedFrontRouter router = new LeastLoadedFrontRouter();
+
+		FrontServerBootStrap f = new FrontServerBootStrap();
+
+		ServerConfiguration fc = new ServerConfiguration();
+		fc.setSERVER_TCP_PORT(8600);
+
+		ServerConfiguration frc = new ServerConfiguration();
+		frc.setSERVER_TCP_PORT(8800);
+
+		f.setFrontProtocolFactory(new BaseProtocolFactory());
+		f.setFrontReverseProtocolFactory(new BaseProtocolFactory());
+		f.setFrontServerConfiguration(fc);
+		f.setFrontReverseServerConfiguration(frc);
+		f.setFrontRouter(router);
+
+		f.startup();
+
+		final AtomicInteger pause = new AtomicInteger();
+
+		final AtomicInteger[] handled = new AtomicInteger[4];
+
+		SocketChannelConnector[] backends = new SocketChannelConnector[4];
+
+		for (int i = 0; i < backends.length; i++) {
+
+			final int index = i;
+
+			handled[i] = new AtomicInteger();
+
+			IOEventHandleAdaptor eventHandle = new IOEventHandleAdaptor() {
+
+				public void accept(Session session, ReadFuture future) throws Exception {
+
+					BaseReadFuture f = (BaseReadFuture) future;
+
+					if (FrontContext.FRONT_CHANNEL_LOST.equals(f.getFutureName())) {
+						return;
+					}
+
+					if (index == 0 && pause.compareAndSet(1, 2)) {
+						ThreadUtil.sleep(2000);
+					}
+
+					handled[index].incrementAndGet();
+
+					future.write(f.getText());
+
+					session.flush(future);
+				}
+			};
+
+			ServerConfiguration configuration = new ServerConfiguration();
+
+			configuration.setSERVER_TCP_PORT(8800);
+
+			backends[i] = IOConnectorUtil.getTCPConnector(eventHandle, configuration);
+
+			backends[i].getContext().setProtocolFactory(new BaseProtocolFactory());
+
+			backends[i].connect();
+		}
+
+		final Map<Integer, Long> sendTimes = new ConcurrentHashMap<Integer, Long>();
+
+		final AtomicInteger received = new AtomicInteger();
+
+		final AtomicInteger stalled = new AtomicInteger();
+
+		IOEventHandleAdaptor clientHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				BaseReadFuture f = (BaseReadFuture) future;
+
+				Long sendTime = sendTimes.remove(f.getFutureID());
+
+				if (sendTime == null) {
+					return;
+				}
+
+				if (System.currentTimeMillis() - sendTime > 500) {
+					stalled.incrementAndGet();
+				}
+
+				received.incrementAndGet();
+			}
+		};
+
+		ServerConfiguration cc = new ServerConfiguration();
+
+		cc.setSERVER_TCP_PORT(8600);
+
+		SocketChannelConnector client = IOConnectorUtil.getTCPConnector(clientHandle, cc);
+
+		client.getContext().setProtocolFactory(new BaseProtocolFactory());
+
+		Session session = client.connect();
+
+		int time = 3000;
+
+		for (int i = 1; i <= time; i++) {
+
+			if (i == 500) {
+				pause.set(1);
+			}
+
+			BaseReadFutureImpl future = new BaseReadFutureImpl(session.getContext(), i, "test");
+
+			future.write("hello" + i);
+
+			sendTimes.put(i, System.currentTimeMillis());
+
+			session.flush(future);
+
+			ThreadUtil.sleep(1);
+		}
+
+		for (int i = 0; i < 50 && received.get() < time; i++) {
+			ThreadUtil.sleep(100);
+		}
+
+		System.out.println("__________________received:" + received.get() + ",stalled:" + stalled.get());
+
+		for (int i = 0; i < handled.length; i++) {
+			System.out.println("__________________backend" + i + " handled:" + handled[i].get());
+		}
+
+		System.out.println("__________________" + f.getFrontContext().getFrontCounters());
+
+		for (RouterLoad load : router.getRouterLoads()) {
+			System.out.println("__________________" + load);
+		}
+
+		CloseUtil.close(client);
+
+		for (SocketChannelConnector c : backends) {
+			CloseUtil.close(c);
+		}
+	}
+}
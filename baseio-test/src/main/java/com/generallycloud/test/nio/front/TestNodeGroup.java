@@ -0,0 +1,101 @@
+package com.generallycloud.test.nio.front;
+
+import com.generallycloud.nio.balance.router.Machine;
+import com.generallycloud.nio.balance.router.NodeGroup;
+
+/**
+ * N个节点时增加一个节点，大约1/(N+1)的key改变位置，并且都移动到新节点上；
+ * 再删除该节点，所有key回到原来的位置；
+ * 节点重连后(新的Machine使用相同的key)替换原来的节点，所有key的位置不变
+ */
+public class TestNodeGroup {
+
+	public static void main(String[] args) {
+
+		int size = 10;
+
+		int keys = 1000000;
+
+		NodeGroup group = new NodeGroup(160);
+
+		for (int i = 0; i < size; i++) {
+			group.addMachine(new Machine("10.0.0." + i + ":8600", null, 0));
+		}
+
+		Machine[] before = new Machine[keys];
+
+		int[] counts = new int[size];
+
+		for (int i = 0; i < keys; i++) {
+			before[i] = group.getMachine(i);
+			counts[Integer.parseInt(before[i].getKey().split("\\.|:")[3])]++;
+		}
+
+		int min = Integer.MAX_VALUE, max = 0;
+
+		for (int c : counts) {
+			min = Math.min(min, c);
+			max = Math.max(max, c);
+		}
+
+		Machine added = new Machine("10.0.0." + size + ":8600", null, 0);
+
+		group.addMachine(added);
+
+		int moved = 0, wrong = 0;
+
+		for (int i = 0; i < keys; i++) {
+
+			Machine m = group.getMachine(i);
+
+			if (m != before[i]) {
+
+				moved++;
+
+				if (m != added) {
+					wrong++;
+				}
+			}
+		}
+
+		group.removeMachine(added);
+
+		int restored = 0;
+
+		for (int i = 0; i < keys; i++) {
+			if (group.getMachine(i) == before[i]) {
+				restored++;
+			}
+		}
+
+		Machine first = before[0];
+
+		Machine reconnected = new Machine(first.getKey(), null, 0);
+
+		group.replaceMachine(first, reconnected);
+
+		int stable = 0;
+
+		for (int i = 0; i < keys; i++) {
+
+			Machine m = group.getMachine(i);
+
+			if (m == before[i] || (before[i] == first && m == reconnected)) {
+				stable++;
+			}
+		}
+
+		double ratio = (double) moved / keys;
+
+		double expect = 1d / (size + 1);
+
+		System.out.println("load min:" + min + ",max:" + max + ",avg:" + keys / size);
+
+		System.out.println("moved:" + ratio + ",expect:" + expect + ",not to new node:" + wrong + ",restored:"
+				+ (restored == keys) + ",stable after reconnect:" + (stable == keys));
+
+		boolean ok = Math.abs(ratio - expect) < expect * 0.3 && wrong == 0 && restored == keys && stable == keys;
+
+		System.out.println(ok ? "PASS" : "FAIL");
+	}
+}
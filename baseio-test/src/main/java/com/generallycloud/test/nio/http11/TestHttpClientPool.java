@@ -0,0 +1,143 @@
+package com.generallycloud.test.nio.http11;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.http11.HttpClient;
+import com.generallycloud.nio.codec.http11.HttpConnectionFactory;
+import com.generallycloud.nio.codec.http11.ServerHTTPProtocolFactory;
+import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.SEListenerAdapter;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.ConnectionPool;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * HttpClient使用连接池并发请求，服务端收到的连接数不超过maxTotal，共用一个context时响应不会交给其它连接的请求
+ */
+public class TestHttpClientPool {
+
+	private static final int	PORT	= 18304;
+
+	public static void main(String[] args) throws Exception {
+
+		IOEventHandleAdaptor serverHandle = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				HttpReadFuture f = (HttpReadFuture) future;
+
+				f.write(f.getRequestURI());
+
+				session.flush(f);
+			}
+		};
+
+		final AtomicInteger opened = new AtomicInteger();
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		context.setProtocolFactory(new ServerHTTPProtocolFactory());
+
+		context.addSessionEventListener(new SEListenerAdapter() {
+
+			public void sessionOpened(Session session) {
+				opened.incrementAndGet();
+			}
+		});
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		ServerConfiguration clientConfiguration = new ServerConfiguration();
+
+		clientConfiguration.setSERVER_TCP_PORT(PORT);
+
+		ConnectionPool<Session> pool = new ConnectionPool<Session>(new HttpConnectionFactory(clientConfiguration));
+
+		pool.setMaxTotal(4);
+
+		pool.start();
+
+		final HttpClient client = new HttpClient(pool);
+
+		int threads = 8;
+
+		final int time = 250;
+
+		final CountDownLatch latch = new CountDownLatch(threads);
+
+		final AtomicInteger errors = new AtomicInteger();
+
+		long startTime = System.currentTimeMillis();
+
+		try {
+
+			for (int i = 0; i < threads; i++) {
+
+				new Thread(new Runnable() {
+
+					public void run() {
+
+						for (int j = 0; j < time; j++) {
+
+							String uri = "/test" + j;
+
+							try {
+
+								HttpReadFuture res = client.request(uri, "GET", 3000);
+
+								if (!uri.equals(new String(res.getBodyContent()))) {
+									errors.incrementAndGet();
+								}
+
+							} catch (Exception e) {
+								errors.incrementAndGet();
+								e.printStackTrace();
+							}
+						}
+
+						latch.countDown();
+					}
+				}).start();
+			}
+
+			latch.await();
+
+			System.out.println("requests:" + threads * time + ",errors:" + errors.get() + ",pool size:"
+					+ pool.getSize() + ",server opened:" + opened.get() + ",cost:"
+					+ (System.currentTimeMillis() - startTime));
+
+			assertTrue("no errors", errors.get() == 0);
+
+			assertTrue("max total", opened.get() <= 4);
+
+		} finally {
+
+			LifeCycleUtil.stop(pool);
+
+			CloseUtil.unbind(acceptor);
+		}
+
+		TestAssert.printResult();
+	}
+}
@@ -0,0 +1,104 @@
+package com.generallycloud.test.nio.http11;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.generallycloud.nio.codec.http11.HttpCompressor;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * 可以压缩的数据gzip/deflate后能够还原，压缩后没有变小的数据(比如随机数据)返回null，
+ * 超过线程缓冲区上限的数据同样可以压缩
+ */
+public class TestHttpCompressor {
+
+	public static void main(String[] args) throws Exception {
+
+		HttpCompressor compressor = new HttpCompressor();
+
+		byte[] text = newText(1024 * 16);
+
+		assertTrue("gzip round trip", roundTrip(compressor, HttpCompressor.ENCODING_GZIP, text));
+
+		assertTrue("deflate round trip", roundTrip(compressor, HttpCompressor.ENCODING_DEFLATE, text));
+
+		byte[] random = new byte[1024 * 16];
+
+		new Random(1).nextBytes(random);
+
+		assertTrue("random not compressed",
+				compressor.compress(HttpCompressor.ENCODING_GZIP, random, 0, random.length) == null
+						&& compressor.compress(HttpCompressor.ENCODING_DEFLATE, random, 0, random.length) == null);
+
+		byte[] tiny = "ab".getBytes();
+
+		assertTrue("tiny not compressed", compressor.compress(HttpCompressor.ENCODING_GZIP, tiny, 0, tiny.length) == null);
+
+		byte[] large = newText(1024 * 1024 * 2);
+
+		assertTrue("large round trip", roundTrip(compressor, HttpCompressor.ENCODING_GZIP, large));
+
+		// 大的响应之后线程缓冲区仍然可用
+		assertTrue("small after large", roundTrip(compressor, HttpCompressor.ENCODING_GZIP, text));
+
+		TestAssert.printResult();
+	}
+
+	private static byte[] newText(int length) {
+
+		byte[] array = new byte[length];
+
+		byte[] line = "<li>hello baseio,compressible text line</li>\n".getBytes();
+
+		for (int i = 0; i < length; i++) {
+			array[i] = line[i % line.length];
+		}
+
+		return array;
+	}
+
+	private static boolean roundTrip(HttpCompressor compressor, String encoding, byte[] data) throws IOException {
+
+		byte[] output = compressor.compress(encoding, data, 0, data.length);
+
+		if (output == null) {
+			return false;
+		}
+
+		int length = compressor.getCompressedLength();
+
+		if (length >= data.length) {
+			return false;
+		}
+
+		InputStream in = new ByteArrayInputStream(output, 0, length);
+
+		if (HttpCompressor.ENCODING_GZIP.equals(encoding)) {
+			in = new GZIPInputStream(in);
+		} else {
+			in = new InflaterInputStream(in);
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+
+		byte[] buf = new byte[8192];
+
+		int n;
+
+		for (; (n = in.read(buf)) != -1;) {
+			out.write(buf, 0, n);
+		}
+
+		in.close();
+
+		return Arrays.equals(data, out.toByteArray());
+	}
+}
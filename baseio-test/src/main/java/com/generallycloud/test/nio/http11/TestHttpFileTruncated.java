@@ -0,0 +1,116 @@
+package com.generallycloud.test.nio.http11;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.http11.ServerHTTPProtocolFactory;
+import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
+import com.generallycloud.nio.common.FileUtil;
+import com.generallycloud.nio.common.SharedBundle;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.extend.IOAcceptorUtil;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * 通过transferTo写出文件的过程中文件被截断，服务端关闭连接而不是一直挂起
+ */
+public class TestHttpFileTruncated {
+
+	public static void main(String[] args) throws Exception {
+
+		SharedBundle.instance().loadAllProperties("http");
+
+		final File file = File.createTempFile("http-file-truncated", ".bin");
+
+		FileUtil.write(file, new byte[1024 * 1024 * 16]);
+
+		IOEventHandleAdaptor eventHandleAdaptor = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				HttpReadFuture f = (HttpReadFuture) future;
+
+				f.setResponseFile(file, 0, file.length());
+
+				session.flush(f);
+			}
+		};
+
+		SocketChannelAcceptor acceptor = IOAcceptorUtil.getTCPAcceptor(eventHandleAdaptor);
+
+		acceptor.getContext().setProtocolFactory(new ServerHTTPProtocolFactory());
+
+		acceptor.bind();
+
+		int port = acceptor.getContext().getServerConfiguration().getSERVER_TCP_PORT();
+
+		Socket socket = new Socket();
+
+		// 接收缓冲区较小，服务端无法一次写完
+		socket.setReceiveBufferSize(1024 * 8);
+
+		socket.connect(new InetSocketAddress("localhost", port));
+
+		socket.setSoTimeout(10000);
+
+		try {
+
+			OutputStream out = socket.getOutputStream();
+
+			out.write("GET /file HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+
+			out.flush();
+
+			InputStream in = socket.getInputStream();
+
+			byte[] buf = new byte[8192];
+
+			long read = in.read(buf);
+
+			ThreadUtil.sleep(200);
+
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+			raf.setLength(0);
+
+			raf.close();
+
+			boolean closed;
+
+			try {
+
+				int n;
+
+				for (; (n = in.read(buf)) != -1;) {
+					read += n;
+				}
+
+				closed = true;
+
+			} catch (SocketTimeoutException e) {
+				closed = false;
+			} catch (IOException e) {
+				closed = true;
+			}
+
+			System.out.println("read " + read + ",closed:" + closed);
+
+		} finally {
+
+			socket.close();
+
+			acceptor.unbind();
+
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package com.generallycloud.test.nio.http11;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
+import com.generallycloud.nio.codec.http11.future.HttpStatus;
+import com.generallycloud.nio.common.FileUtil;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.extend.ApplicationContext;
+import com.generallycloud.nio.extend.configuration.ApplicationConfiguration;
+import com.generallycloud.nio.extend.configuration.ServicesConfiguration;
+import com.generallycloud.nio.extend.service.FutureAcceptorHttpFilter;
+import com.generallycloud.nio.extend.service.FutureAcceptorService;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * 不启动服务，用假的Session和HttpReadFuture直接调用静态文件服务，
+ * 检查目录穿越、Range、304以及预压缩的.gz文件
+ */
+public class TestHttpStaticFile {
+
+	public static void main(String[] args) throws Exception {
+
+		File base = new File(System.getProperty("java.io.tmpdir"), "test-http-static-" + System.nanoTime());
+
+		File app = new File(base, "app");
+
+		File app2 = new File(base, "app2");
+
+		app.mkdirs();
+
+		app2.mkdirs();
+
+		FileUtil.write(new File(app, "a.txt"), new byte[100]);
+
+		FileUtil.write(new File(app, "big.bin"), new byte[100 * 1024]);
+
+		FileUtil.write(new File(app2, "x.txt"), "secret".getBytes());
+
+		StaticFilter filter = new StaticFilter();
+
+		filter.initialize(new StaticContext(app.getCanonicalPath()), null);
+
+		// 目录穿越，app2和app有相同的前缀
+		Response r = filter.get("/../app2/x.txt", null, null);
+
+		assertTrue("sibling dir not served", r.file == null && r.length == -1 && r.notFound);
+
+		r = filter.get("/a.txt", null, null);
+
+		assertTrue("full file", r.status == null && r.length == 100);
+
+		String etag = r.headers.get("ETag");
+
+		String lastModified = r.headers.get("Last-Modified");
+
+		r = filter.get("/a.txt", "Range", "bytes=10-19");
+
+		assertTrue("range 206", r.status == HttpStatus.C206 && r.length == 10
+				&& "bytes 10-19/100".equals(r.headers.get("Content-Range")));
+
+		r = filter.get("/a.txt", "Range", "bytes=90-");
+
+		assertTrue("open range", r.status == HttpStatus.C206 && r.length == 10);
+
+		r = filter.get("/a.txt", "Range", "bytes=5-3");
+
+		assertTrue("invalid range ignored", r.status == null && r.length == 100);
+
+		r = filter.get("/a.txt", "Range", "bytes=abc");
+
+		assertTrue("malformed range ignored", r.status == null && r.length == 100);
+
+		r = filter.get("/a.txt", "Range", "bytes=200-300");
+
+		assertTrue("unsatisfiable range 416", r.status == HttpStatus.C416
+				&& "bytes */100".equals(r.headers.get("Content-Range")));
+
+		r = filter.get("/big.bin", "Range", "bytes=-100");
+
+		assertTrue("suffix range of big file", r.status == HttpStatus.C206 && r.file != null
+				&& r.position == 100 * 1024 - 100 && r.length == 100);
+
+		r = filter.get("/a.txt", "If-None-Match", etag);
+
+		assertTrue("etag 304", r.status == HttpStatus.C304 && r.length == -1);
+
+		r = filter.get("/a.txt", "If-Modified-Since", lastModified);
+
+		assertTrue("if-modified-since 304", r.status == HttpStatus.C304 && r.length == -1);
+
+		r = filter.get("/a.txt", "If-None-Match", "\"other\"");
+
+		assertTrue("etag changed 200", r.status == null && r.length == 100);
+
+		// 缓存之后新增、删除预压缩的.gz文件
+		File c = new File(app, "c.txt");
+
+		File cgz = new File(app, "c.txt.gz");
+
+		FileUtil.write(c, new byte[100]);
+
+		r = filter.get("/c.txt", "Accept-Encoding", "gzip");
+
+		assertTrue("no gz sibling", r.headers.get("Content-Encoding") == null && r.length == 100);
+
+		FileUtil.write(cgz, new byte[20]);
+
+		cgz.setLastModified(c.lastModified() + 1000);
+
+		r = filter.get("/c.txt", "Accept-Encoding", "gzip");
+
+		assertTrue("gz sibling added", "gzip".equals(r.headers.get("Content-Encoding")) && r.length == 20);
+
+		cgz.delete();
+
+		r = filter.get("/c.txt", "Accept-Encoding", "gzip");
+
+		assertTrue("gz sibling removed", r.headers.get("Content-Encoding") == null && r.length == 100);
+
+		// 缓存之后修改、删除文件
+		FileUtil.write(c, new byte[50]);
+
+		c.setLastModified(c.lastModified() + 2000);
+
+		r = filter.get("/c.txt", null, null);
+
+		assertTrue("cached file changed", r.length == 50);
+
+		c.delete();
+
+		r = filter.get("/c.txt", null, null);
+
+		assertTrue("cached file deleted", r.notFound);
+
+		TestAssert.printResult();
+	}
+
+	static class StaticFilter extends FutureAcceptorHttpFilter {
+
+		StaticFilter() {
+			super(null);
+		}
+
+		Response get(String path, String headerName, String headerValue) throws IOException {
+
+			Response response = new Response();
+
+			if (headerName != null) {
+				response.requestHeaders.put(headerName, headerValue);
+			}
+
+			accept404(response.session(), response.future(), path);
+
+			return response;
+		}
+	}
+
+	static class Response implements InvocationHandler {
+
+		Map<String, String>	requestHeaders	= new HashMap<String, String>();
+
+		Map<String, String>	headers		= new HashMap<String, String>();
+
+		HttpStatus		status;
+
+		File				file;
+
+		long				position;
+
+		long				length		= -1;
+
+		boolean			notFound;
+
+		Session session() {
+			return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+					new Class<?>[] { Session.class }, this);
+		}
+
+		HttpReadFuture future() {
+			return (HttpReadFuture) Proxy.newProxyInstance(HttpReadFuture.class.getClassLoader(),
+					new Class<?>[] { HttpReadFuture.class }, this);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String m = method.getName();
+
+			if ("getRequestHeader".equals(m)) {
+				return requestHeaders.get(args[0]);
+			}
+
+			if ("setResponseHeader".equals(m)) {
+				headers.put((String) args[0], (String) args[1]);
+				return null;
+			}
+
+			if ("setStatus".equals(m)) {
+				status = (HttpStatus) args[0];
+				return null;
+			}
+
+			if ("setResponseFile".equals(m)) {
+				file = (File) args[0];
+				position = (Long) args[1];
+				length = (Long) args[2];
+				return null;
+			}
+
+			if ("write".equals(m)) {
+
+				if (args[0] instanceof String) {
+					// FutureAcceptorServiceFilter的404
+					notFound = true;
+				} else if (args.length == 3) {
+					position = (Integer) args[1];
+					length = (Integer) args[2];
+				} else {
+					length = ((byte[]) args[0]).length;
+				}
+				return null;
+			}
+
+			return null;
+		}
+	}
+
+	static class StaticContext extends ApplicationContext {
+
+		private String					appLocalAddress;
+
+		private Map<String, FutureAcceptorService>	pluginServlets	= new HashMap<String, FutureAcceptorService>();
+
+		StaticContext(String appLocalAddress) {
+			super(new StaticConfiguration(), "");
+			this.appLocalAddress = appLocalAddress;
+			this.pluginServlets.put("none", new FutureAcceptorService() {
+
+				public void accept(Session session, ReadFuture future) throws Exception {
+				}
+			});
+		}
+
+		public String getAppLocalAddress() {
+			return appLocalAddress;
+		}
+
+		public Map<String, FutureAcceptorService> getPluginServlets() {
+			return pluginServlets;
+		}
+	}
+
+	static class StaticConfiguration extends ApplicationConfiguration {
+
+		StaticConfiguration() {
+			setServletsConfiguration(new ServicesConfiguration());
+		}
+	}
+}
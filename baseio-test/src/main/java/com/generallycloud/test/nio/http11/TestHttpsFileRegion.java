@@ -0,0 +1,128 @@
+package com.generallycloud.test.nio.http11;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.http11.ServerHTTPProtocolFactory;
+import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
+import com.generallycloud.nio.common.FileUtil;
+import com.generallycloud.nio.common.SharedBundle;
+import com.generallycloud.nio.common.ssl.SSLUtil;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.extend.IOAcceptorUtil;
+import com.generallycloud.nio.protocol.ReadFuture;
+
+/**
+ * SSL连接上下载比内存池(256 * 6400)更大的文件，文件分段加密写出
+ */
+public class TestHttpsFileRegion {
+
+	public static void main(String[] args) throws Exception {
+
+		SharedBundle.instance().loadAllProperties("http");
+
+		final File file = File.createTempFile("https-file-region", ".bin");
+
+		final byte[] data = new byte[1024 * 1024 * 3 + 123];
+
+		new Random(1).nextBytes(data);
+
+		FileUtil.write(file, data);
+
+		IOEventHandleAdaptor eventHandleAdaptor = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				HttpReadFuture f = (HttpReadFuture) future;
+
+				f.setResponseFile(file, 0, file.length());
+
+				session.flush(f);
+			}
+		};
+
+		SocketChannelAcceptor acceptor = IOAcceptorUtil.getTCPAcceptor(eventHandleAdaptor);
+
+		acceptor.getContext().setProtocolFactory(new ServerHTTPProtocolFactory());
+
+		acceptor.getContext().setSslContext(SSLUtil.init());
+
+		acceptor.bind();
+
+		trustAll();
+
+		int port = acceptor.getContext().getServerConfiguration().getSERVER_TCP_PORT();
+
+		for (int i = 0; i < 3; i++) {
+
+			HttpsURLConnection c = (HttpsURLConnection) new URL("https://localhost:" + port + "/file")
+					.openConnection();
+
+			c.setReadTimeout(10000);
+
+			InputStream in = c.getInputStream();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+			byte[] buf = new byte[8192];
+
+			int n;
+
+			for (; (n = in.read(buf)) != -1;) {
+				out.write(buf, 0, n);
+			}
+
+			in.close();
+
+			System.out.println("download " + out.size() + ",equals:" + Arrays.equals(out.toByteArray(), data));
+		}
+
+		acceptor.unbind();
+
+		file.delete();
+	}
+
+	// 测试证书不是受信任的证书
+	static void trustAll() throws Exception {
+
+		TrustManager[] trustManagers = new TrustManager[] { new X509TrustManager() {
+
+			public void checkClientTrusted(X509Certificate[] chain, String authType) {
+			}
+
+			public void checkServerTrusted(X509Certificate[] chain, String authType) {
+			}
+
+			public X509Certificate[] getAcceptedIssuers() {
+				return null;
+			}
+		} };
+
+		SSLContext context = SSLContext.getInstance("TLS");
+
+		context.init(null, trustManagers, null);
+
+		HttpsURLConnection.setDefaultSSLSocketFactory(context.getSocketFactory());
+
+		HttpsURLConnection.setDefaultHostnameVerifier(new HostnameVerifier() {
+
+			public boolean verify(String hostname, SSLSession session) {
+				return true;
+			}
+		});
+	}
+}
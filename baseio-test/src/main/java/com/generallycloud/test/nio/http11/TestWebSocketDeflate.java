@@ -0,0 +1,418 @@
+package com.generallycloud.test.nio.http11;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.generallycloud.nio.Encoding;
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.http11.ClientHTTPProtocolFactory;
+import com.generallycloud.nio.codec.http11.ServerHTTPProtocolFactory;
+import com.generallycloud.nio.codec.http11.WebSocketDeflate;
+import com.generallycloud.nio.codec.http11.WebSocketDeflateContext;
+import com.generallycloud.nio.codec.http11.WebSocketProtocolDecoder;
+import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
+import com.generallycloud.nio.codec.http11.future.WebSocketReadFuture;
+import com.generallycloud.nio.codec.http11.future.WebSocketTextReadFutureImpl;
+import com.generallycloud.nio.codec.http11.future.WebSocketUpgradeRequestFuture;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.SharedBundle;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.IOAcceptorUtil;
+import com.generallycloud.nio.extend.IOConnectorUtil;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * permessage-deflate的协商，服务端返回非法参数时客户端关闭连接，
+ * 以及压缩帧(含分片)经服务端解压、压缩后的往返
+ */
+public class TestWebSocketDeflate {
+
+	static final byte[]	TAIL	= new byte[] { 0, 0, (byte) 0xff, (byte) 0xff };
+
+	public static void main(String[] args) throws Exception {
+
+		SharedBundle.instance().loadAllProperties("http");
+
+		testNegotiate();
+
+		testIllegalResponse();
+
+		testRoundTrip();
+
+		TestAssert.printResult();
+	}
+
+	static void testNegotiate() {
+
+		WebSocketDeflate deflate = new WebSocketDeflate();
+
+		WebSocketDeflateContext context = deflate.negotiate("permessage-deflate; client_max_window_bits");
+
+		assertTrue("offer accepted", context != null && "permessage-deflate".equals(context.getExtension()));
+
+		context = deflate.negotiate("permessage-deflate; server_max_window_bits=10, permessage-deflate");
+
+		assertTrue("second offer accepted", context != null && "permessage-deflate".equals(context.getExtension()));
+
+		assertTrue("unknown extension", deflate.negotiate("x-webkit-deflate-frame") == null);
+
+		context = deflate.negotiate("permessage-deflate; server_no_context_takeover");
+
+		assertTrue("server_no_context_takeover", context != null
+				&& "permessage-deflate; server_no_context_takeover".equals(context.getExtension()));
+
+		assertTrue("response accepted", accept(deflate, "permessage-deflate; server_no_context_takeover"));
+
+		assertTrue("not deflate", !accept(deflate, "x-webkit-deflate-frame"));
+
+		assertTrue("illegal param rejected", isIOException(deflate, "permessage-deflate; foo"));
+
+		assertTrue("small window rejected", isIOException(deflate, "permessage-deflate; client_max_window_bits=10"));
+	}
+
+	static boolean accept(WebSocketDeflate deflate, String extension) {
+		try {
+			return deflate.accept(extension) != null;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	static boolean isIOException(WebSocketDeflate deflate, String extension) {
+		try {
+			deflate.accept(extension);
+			return false;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * 服务端返回客户端无法接受的扩展参数，客户端握手失败并关闭连接
+	 */
+	static void testIllegalResponse() throws Exception {
+
+		final ServerSocket server = new ServerSocket(0);
+
+		final boolean[] closed = new boolean[1];
+
+		Thread t = new Thread(new Runnable() {
+
+			public void run() {
+
+				try {
+
+					Socket socket = server.accept();
+
+					socket.setSoTimeout(5000);
+
+					readHeader(socket.getInputStream());
+
+					OutputStream out = socket.getOutputStream();
+
+					out.write(("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: websocket\r\n"
+							+ "Sec-WebSocket-Accept: none\r\n"
+							+ "Sec-WebSocket-Extensions: permessage-deflate; foo\r\n\r\n").getBytes());
+
+					out.flush();
+
+					closed[0] = socket.getInputStream().read() == -1;
+
+					socket.close();
+
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+
+		t.start();
+
+		IOEventHandleAdaptor adaptor = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				((HttpReadFuture) future).updateWebSocketProtocol();
+			}
+		};
+
+		SocketChannelConnector connector = IOConnectorUtil.getTCPConnector(adaptor);
+
+		try {
+
+			connector.getContext().setProtocolFactory(new ClientHTTPProtocolFactory());
+
+			connector.getContext().getServerConfiguration().setSERVER_HOST("localhost");
+
+			connector.getContext().getServerConfiguration().setSERVER_TCP_PORT(server.getLocalPort());
+
+			Session session = connector.connect();
+
+			session.flush(new WebSocketUpgradeRequestFuture(session.getContext(), "/ws"));
+
+			t.join(6000);
+
+			assertTrue("illegal extension closes connection", closed[0]);
+
+		} finally {
+
+			CloseUtil.close(connector);
+
+			server.close();
+		}
+	}
+
+	static void testRoundTrip() throws Exception {
+
+		IOEventHandleAdaptor eventHandleAdaptor = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				if (future instanceof HttpReadFuture) {
+
+					HttpReadFuture f = (HttpReadFuture) future;
+
+					f.updateWebSocketProtocol();
+
+					session.flush(f);
+
+					return;
+				}
+
+				WebSocketReadFuture f = (WebSocketReadFuture) future;
+
+				if (f.getType() != WebSocketProtocolDecoder.TYPE_TEXT) {
+					return;
+				}
+
+				WebSocketReadFuture reply = new WebSocketTextReadFutureImpl(session.getContext());
+
+				reply.write(f.getData().toString(Encoding.UTF8));
+
+				session.flush(reply);
+			}
+		};
+
+		SocketChannelAcceptor acceptor = IOAcceptorUtil.getTCPAcceptor(eventHandleAdaptor);
+
+		acceptor.getContext().setProtocolFactory(new ServerHTTPProtocolFactory());
+
+		acceptor.bind();
+
+		int port = acceptor.getContext().getServerConfiguration().getSERVER_TCP_PORT();
+
+		Socket socket = new Socket("localhost", port);
+
+		try {
+
+			socket.setSoTimeout(5000);
+
+			OutputStream out = socket.getOutputStream();
+
+			out.write(("GET /ws HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+					+ "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n"
+					+ "Sec-WebSocket-Extensions: permessage-deflate; client_max_window_bits\r\n\r\n").getBytes());
+
+			out.flush();
+
+			String header = readHeader(socket.getInputStream());
+
+			assertTrue("upgrade with permessage-deflate", header.startsWith("HTTP/1.1 101")
+					&& header.contains("Sec-WebSocket-Extensions:permessage-deflate\r\n"));
+
+			// 双方都保留上下文
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+			Inflater inflater = new Inflater(true);
+
+			StringBuilder b = new StringBuilder();
+
+			for (int i = 0; i < 200; i++) {
+				b.append("hello deflate ").append(i).append(';');
+			}
+
+			String text = b.toString();
+
+			byte[] compressed = compress(deflater, text.getBytes("UTF-8"));
+
+			// 压缩后的数据分为两个帧，只有第一个帧设置RSV1
+			int half = compressed.length / 2;
+
+			writeFrame(out, 0x40 | WebSocketProtocolDecoder.TYPE_TEXT, compressed, 0, half);
+
+			writeFrame(out, 0x80 | WebSocketProtocolDecoder.TYPE_CONTINUATION, compressed, half, compressed.length - half);
+
+			assertTrue("fragmented compressed round trip", text.equals(readText(socket, inflater)));
+
+			compressed = compress(deflater, text.getBytes("UTF-8"));
+
+			writeFrame(out, 0x80 | 0x40 | WebSocketProtocolDecoder.TYPE_TEXT, compressed, 0, compressed.length);
+
+			assertTrue("context takeover round trip", text.equals(readText(socket, inflater)));
+
+			byte[] plain = "short".getBytes("UTF-8");
+
+			writeFrame(out, 0x80 | WebSocketProtocolDecoder.TYPE_TEXT, plain, 0, plain.length);
+
+			assertTrue("uncompressed message", "short".equals(readText(socket, inflater)));
+
+		} finally {
+
+			socket.close();
+
+			acceptor.unbind();
+		}
+
+		// 等待服务端释放端口
+		ThreadUtil.sleep(100);
+	}
+
+	static String readHeader(InputStream in) throws IOException {
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+
+		for (;;) {
+
+			int b = in.read();
+
+			if (b == -1) {
+				throw new IOException("closed:" + header);
+			}
+
+			header.write(b);
+
+			if (header.toString().endsWith("\r\n\r\n")) {
+				return header.toString();
+			}
+		}
+	}
+
+	static byte[] compress(Deflater deflater, byte[] data) {
+
+		deflater.setInput(data);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		byte[] buf = new byte[1024];
+
+		for (;;) {
+
+			int n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+
+			out.write(buf, 0, n);
+
+			if (n < buf.length) {
+				break;
+			}
+		}
+
+		byte[] array = out.toByteArray();
+
+		// 去掉结尾的0x00 0x00 0xff 0xff
+		return Arrays.copyOf(array, array.length - TAIL.length);
+	}
+
+	static void writeFrame(OutputStream out, int b0, byte[] payload, int offset, int length) throws IOException {
+
+		byte[] mask = new byte[] { 5, 6, 7, 8 };
+
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(length + 8);
+
+		frame.write(b0);
+
+		if (length < 126) {
+			frame.write(0x80 | length);
+		} else {
+			frame.write(0x80 | 126);
+			frame.write(length >> 8);
+			frame.write(length);
+		}
+
+		frame.write(mask);
+
+		byte[] masked = Arrays.copyOfRange(payload, offset, offset + length);
+
+		WebSocketProtocolDecoder.mask(masked, 0, length, mask, 0);
+
+		frame.write(masked);
+
+		out.write(frame.toByteArray());
+
+		out.flush();
+	}
+
+	static String readText(Socket socket, Inflater inflater) throws Exception {
+
+		DataInputStream in = new DataInputStream(socket.getInputStream());
+
+		ByteArrayOutputStream message = new ByteArrayOutputStream();
+
+		boolean compressed = false;
+
+		for (boolean first = true;; first = false) {
+
+			int b0 = in.readUnsignedByte();
+
+			if (first) {
+				compressed = (b0 & 0x40) != 0;
+			}
+
+			int length = in.readUnsignedByte() & 0x7f;
+
+			if (length == 126) {
+				length = in.readUnsignedShort();
+			} else if (length == 127) {
+				length = (int) in.readLong();
+			}
+
+			byte[] payload = new byte[length];
+
+			in.readFully(payload);
+
+			message.write(payload);
+
+			if ((b0 & 0x80) != 0) {
+				break;
+			}
+		}
+
+		if (!compressed) {
+			return message.toString("UTF-8");
+		}
+
+		message.write(TAIL);
+
+		inflater.setInput(message.toByteArray());
+
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+
+		byte[] buf = new byte[1024];
+
+		for (;;) {
+
+			int n = inflater.inflate(buf);
+
+			if (n == 0) {
+				break;
+			}
+
+			text.write(buf, 0, n);
+		}
+
+		return text.toString("UTF-8");
+	}
+}
@@ -0,0 +1,325 @@
+package com.generallycloud.test.nio.http11;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Random;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.http11.ServerHTTPProtocolFactory;
+import com.generallycloud.nio.codec.http11.WebSocketProtocolDecoder;
+import com.generallycloud.nio.codec.http11.WebSocketProtocolFactory;
+import com.generallycloud.nio.codec.http11.future.AbstractHttpReadFuture;
+import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
+import com.generallycloud.nio.codec.http11.future.WebSocketReadFuture;
+import com.generallycloud.nio.codec.http11.future.WebSocketReadFutureImpl;
+import com.generallycloud.nio.codec.http11.future.WebSocketTextReadFutureImpl;
+import com.generallycloud.nio.common.SharedBundle;
+import com.generallycloud.nio.component.BufferedOutputStream;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.extend.IOAcceptorUtil;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * 5M的消息拆分为多个continuation帧发送，服务端聚合为一个完整消息，
+ * 超过配置的limit的消息关闭连接，非聚合模式下大帧按块交给业务处理
+ */
+public class TestWebSocketFragments {
+
+	static final int	LIMIT	= 1024 * 1024 * 8;
+
+	static volatile int	maxChunk;
+
+	public static void main(String[] args) throws Exception {
+
+		SharedBundle.instance().loadAllProperties("http");
+
+		IOEventHandleAdaptor eventHandleAdaptor = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				if (future instanceof HttpReadFuture) {
+
+					HttpReadFuture f = (HttpReadFuture) future;
+
+					f.updateWebSocketProtocol();
+
+					session.flush(f);
+
+					return;
+				}
+
+				WebSocketReadFuture f = (WebSocketReadFuture) future;
+
+				if (f.getType() != WebSocketProtocolDecoder.TYPE_BINARY) {
+					return;
+				}
+
+				BufferedOutputStream data = f.getData();
+
+				maxChunk = Math.max(maxChunk, data.size());
+
+				// 非聚合模式下在session中拼接各个块
+				ByteArrayOutputStream message = (ByteArrayOutputStream) session.getAttribute("message");
+
+				if (message == null) {
+					message = new ByteArrayOutputStream();
+					session.setAttribute("message", message);
+				}
+
+				message.write(data.array(), 0, data.size());
+
+				if (!f.isEof()) {
+					return;
+				}
+
+				session.removeAttribute("message");
+
+				byte[] array = message.toByteArray();
+
+				WebSocketReadFuture reply = new WebSocketTextReadFutureImpl(session.getContext());
+
+				reply.write(array.length + ":" + checksum(array, 0, array.length));
+
+				session.flush(reply);
+			}
+		};
+
+		SocketChannelAcceptor acceptor = IOAcceptorUtil.getTCPAcceptor(eventHandleAdaptor);
+
+		acceptor.getContext().setProtocolFactory(new ServerHTTPProtocolFactory());
+
+		WebSocketProtocolFactory webSocketProtocolFactory = AbstractHttpReadFuture.getWebSocketProtocolFactory();
+
+		// 默认上限为1M，这里需要容纳5M的消息
+		webSocketProtocolFactory.setLimit(LIMIT);
+
+		acceptor.bind();
+
+		int port = acceptor.getContext().getServerConfiguration().getSERVER_TCP_PORT();
+
+		try {
+
+			byte[] message = new byte[1024 * 1024 * 5 + 7];
+
+			new Random(1).nextBytes(message);
+
+			String expect = message.length + ":" + checksum(message, 0, message.length);
+
+			Socket socket = upgrade(port);
+
+			try {
+
+				// 分为6个帧，最后一帧不足1M
+				writeMessage(socket.getOutputStream(), message, 1024 * 1024);
+
+				assertTrue("aggregate continuation frames", expect.equals(readText(socket)));
+
+				// 同一连接上再发送一个不分片的消息
+				writeMessage(socket.getOutputStream(), message, message.length);
+
+				assertTrue("single frame after fragments", expect.equals(readText(socket)));
+
+			} finally {
+
+				socket.close();
+			}
+
+			socket = upgrade(port);
+
+			try {
+
+				byte[] large = new byte[LIMIT + 1];
+
+				boolean closed = false;
+
+				try {
+
+					writeMessage(socket.getOutputStream(), large, 1024 * 1024);
+
+					closed = socket.getInputStream().read() == -1;
+
+				} catch (IOException e) {
+					// 服务端关闭连接时可能还在发送
+					closed = true;
+				}
+
+				assertTrue("message over limit closed", closed);
+
+			} finally {
+
+				socket.close();
+			}
+
+			webSocketProtocolFactory.setAggregate(false);
+
+			socket = upgrade(port);
+
+			try {
+
+				maxChunk = 0;
+
+				writeMessage(socket.getOutputStream(), message, message.length);
+
+				assertTrue("stream single frame", expect.equals(readText(socket)));
+
+				assertTrue("stream chunk size " + maxChunk, maxChunk <= WebSocketReadFutureImpl.STREAM_CHUNK_SIZE);
+
+				writeMessage(socket.getOutputStream(), message, 1024 * 1024);
+
+				assertTrue("stream continuation frames", expect.equals(readText(socket)));
+
+			} finally {
+
+				socket.close();
+			}
+
+		} finally {
+
+			webSocketProtocolFactory.setAggregate(true);
+
+			webSocketProtocolFactory.setLimit(WebSocketProtocolDecoder.DEFAULT_LIMIT);
+
+			acceptor.unbind();
+		}
+
+		TestAssert.printResult();
+	}
+
+	static long checksum(byte[] array, int offset, int length) {
+
+		long sum = 0;
+
+		for (int i = offset; i < offset + length; i++) {
+			sum = sum * 31 + array[i];
+		}
+
+		return sum;
+	}
+
+	static Socket upgrade(int port) throws IOException {
+
+		Socket socket = new Socket("localhost", port);
+
+		socket.setSoTimeout(10000);
+
+		OutputStream out = socket.getOutputStream();
+
+		out.write(("GET /ws HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+				+ "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n").getBytes());
+
+		out.flush();
+
+		InputStream in = socket.getInputStream();
+
+		ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+		for (;;) {
+
+			int b = in.read();
+
+			if (b == -1) {
+				throw new IOException("closed before upgrade:" + response);
+			}
+
+			response.write(b);
+
+			if (response.toString().endsWith("\r\n\r\n")) {
+				break;
+			}
+		}
+
+		if (!response.toString().startsWith("HTTP/1.1 101")) {
+			throw new IOException("upgrade failed:" + response);
+		}
+
+		return socket;
+	}
+
+	/**
+	 * 按fragmentSize拆分为BINARY + CONTINUATION帧，客户端的帧需要mask
+	 */
+	static void writeMessage(OutputStream out, byte[] message, int fragmentSize) throws IOException {
+
+		byte[] mask = new byte[] { 1, 2, 3, 4 };
+
+		for (int offset = 0; offset < message.length;) {
+
+			int length = Math.min(fragmentSize, message.length - offset);
+
+			boolean fin = offset + length == message.length;
+
+			int type = offset == 0 ? WebSocketProtocolDecoder.TYPE_BINARY : WebSocketProtocolDecoder.TYPE_CONTINUATION;
+
+			ByteArrayOutputStream frame = new ByteArrayOutputStream(length + 14);
+
+			frame.write((fin ? 0x80 : 0) | type);
+
+			if (length < 126) {
+				frame.write(0x80 | length);
+			} else if (length <= 0xffff) {
+				frame.write(0x80 | 126);
+				frame.write(length >> 8);
+				frame.write(length);
+			} else {
+				frame.write(0x80 | 127);
+				for (int i = 7; i >= 0; i--) {
+					frame.write(i > 3 ? 0 : length >> (i << 3));
+				}
+			}
+
+			frame.write(mask);
+
+			byte[] payload = new byte[length];
+
+			System.arraycopy(message, offset, payload, 0, length);
+
+			WebSocketProtocolDecoder.mask(payload, 0, length, mask, 0);
+
+			frame.write(payload);
+
+			out.write(frame.toByteArray());
+
+			offset += length;
+		}
+
+		out.flush();
+	}
+
+	static String readText(Socket socket) throws IOException {
+
+		DataInputStream in = new DataInputStream(socket.getInputStream());
+
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+
+		for (;;) {
+
+			int b0 = in.readUnsignedByte();
+
+			int length = in.readUnsignedByte() & 0x7f;
+
+			if (length == 126) {
+				length = in.readUnsignedShort();
+			} else if (length == 127) {
+				length = (int) in.readLong();
+			}
+
+			byte[] payload = new byte[length];
+
+			in.readFully(payload);
+
+			text.write(payload);
+
+			if ((b0 & 0x80) != 0) {
+				return text.toString();
+			}
+		}
+	}
+}
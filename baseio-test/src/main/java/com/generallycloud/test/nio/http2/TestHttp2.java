@@ -0,0 +1,267 @@
+package com.generallycloud.test.nio.http2;
+
+import static com.generallycloud.nio.codec.http2.Http2Frame.*;
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.http11.future.HttpReadFuture;
+import com.generallycloud.nio.codec.http2.Http2ProtocolFactory;
+import com.generallycloud.nio.codec.http2.hpack.HpackDecoder;
+import com.generallycloud.nio.codec.http2.hpack.HpackEncoder;
+import com.generallycloud.nio.codec.http2.hpack.HpackHeaderField;
+import com.generallycloud.nio.common.SharedBundle;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.component.BufferedOutputStream;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.extend.IOAcceptorUtil;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * HTTP/2 prior knowledge(preface一次收到以及分两次收到)和HTTP/1.1请求共用一个端口，
+ * 请求与响应的帧按HPACK编解码
+ */
+public class TestHttp2 {
+
+	public static void main(String[] args) throws Exception {
+
+		SharedBundle.instance().loadAllProperties("http");
+
+		IOEventHandleAdaptor eventHandleAdaptor = new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				HttpReadFuture f = (HttpReadFuture) future;
+
+				f.write("hello " + f.getRequestURI() + " " + f.getVersion());
+
+				session.flush(f);
+			}
+		};
+
+		SocketChannelAcceptor acceptor = IOAcceptorUtil.getTCPAcceptor(eventHandleAdaptor);
+
+		acceptor.getContext().setProtocolFactory(new Http2ProtocolFactory());
+
+		acceptor.bind();
+
+		int port = acceptor.getContext().getServerConfiguration().getSERVER_TCP_PORT();
+
+		try {
+
+			String body = http2(port, "/a", 0);
+
+			assertTrue("prior knowledge " + body, "hello /a HTTP/2.0".equals(body));
+
+			// "PR"可能是PROPFIND，需要等待更多的数据
+			body = http2(port, "/b", 2);
+
+			assertTrue("split preface(2) " + body, "hello /b HTTP/2.0".equals(body));
+
+			body = http2(port, "/c", 10);
+
+			assertTrue("split preface(10) " + body, "hello /c HTTP/2.0".equals(body));
+
+			String response = http11(port, "/d");
+
+			assertTrue("http/1.1 " + response,
+					response.startsWith("HTTP/1.1 200") && response.endsWith("hello /d HTTP/1.1"));
+
+		} finally {
+
+			acceptor.unbind();
+		}
+
+		TestAssert.printResult();
+	}
+
+	/**
+	 * @param split preface先发送的字节数，0表示不拆分
+	 */
+	static String http2(int port, String path, int split) throws IOException {
+
+		Socket socket = new Socket("localhost", port);
+
+		try {
+
+			socket.setSoTimeout(5000);
+
+			OutputStream out = socket.getOutputStream();
+
+			if (split > 0) {
+
+				out.write(CONNECTION_PREFACE, 0, split);
+
+				out.flush();
+
+				ThreadUtil.sleep(200);
+
+				out.write(CONNECTION_PREFACE, split, CONNECTION_PREFACE.length - split);
+
+			} else {
+
+				out.write(CONNECTION_PREFACE);
+			}
+
+			BufferedOutputStream frames = new BufferedOutputStream();
+
+			writeFrameHeader(frames, 0, TYPE_SETTINGS, 0, 0);
+
+			BufferedOutputStream block = new BufferedOutputStream();
+
+			HpackEncoder encoder = new HpackEncoder();
+
+			encoder.encode(":method", "GET", block);
+			encoder.encode(":scheme", "http", block);
+			encoder.encode(":path", path, block);
+			encoder.encode(":authority", "localhost", block);
+
+			writeFrameHeader(frames, block.size(), TYPE_HEADERS, FLAG_END_HEADERS | FLAG_END_STREAM, 1);
+
+			frames.write(block.array(), 0, block.size());
+
+			out.write(frames.array(), 0, frames.size());
+
+			out.flush();
+
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+
+			HpackDecoder decoder = new HpackDecoder(4096);
+
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+			String status = null;
+
+			boolean settings = false;
+
+			for (;;) {
+
+				byte[] header = new byte[FRAME_HEADER_LENGTH];
+
+				in.readFully(header);
+
+				int length = ((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8) | (header[2] & 0xff);
+
+				int type = header[3] & 0xff;
+
+				int flags = header[4] & 0xff;
+
+				int streamID = readInt(header, 5) & 0x7fffffff;
+
+				byte[] payload = new byte[length];
+
+				in.readFully(payload);
+
+				if (type == TYPE_SETTINGS && (flags & FLAG_ACK) == 0) {
+					// 服务端的第一个帧
+					settings = status == null && body.size() == 0;
+					continue;
+				}
+
+				if (streamID != 1) {
+					continue;
+				}
+
+				if (type == TYPE_HEADERS) {
+
+					List<HpackHeaderField> headers = new ArrayList<HpackHeaderField>();
+
+					decoder.decode(payload, 0, length, headers);
+
+					for (HpackHeaderField f : headers) {
+						if (":status".equals(f.getName())) {
+							status = f.getValue();
+						}
+					}
+
+				} else if (type == TYPE_DATA) {
+
+					body.write(payload, 0, length);
+				}
+
+				if ((flags & FLAG_END_STREAM) != 0) {
+					break;
+				}
+			}
+
+			if (!settings || !"200".equals(status)) {
+				return "settings:" + settings + ",status:" + status;
+			}
+
+			return new String(body.toByteArray());
+
+		} finally {
+
+			socket.close();
+		}
+	}
+
+	static String http11(int port, String path) throws IOException {
+
+		Socket socket = new Socket("localhost", port);
+
+		try {
+
+			socket.setSoTimeout(5000);
+
+			OutputStream out = socket.getOutputStream();
+
+			out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes());
+
+			out.flush();
+
+			InputStream in = socket.getInputStream();
+
+			ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+			int contentLength = -1;
+
+			int headerEnd = -1;
+
+			for (;;) {
+
+				int b = in.read();
+
+				if (b == -1) {
+					break;
+				}
+
+				response.write(b);
+
+				if (headerEnd == -1) {
+
+					String s = response.toString();
+
+					if (s.endsWith("\r\n\r\n")) {
+
+						headerEnd = s.length();
+
+						int index = s.indexOf("Content-Length:");
+
+						contentLength = Integer.parseInt(s.substring(index + 15, s.indexOf("\r\n", index)).trim());
+					}
+				}
+
+				if (headerEnd != -1 && response.size() - headerEnd == contentLength) {
+					break;
+				}
+			}
+
+			return response.toString();
+
+		} finally {
+
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.generallycloud.test.nio.linebased;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.generallycloud.nio.codec.line.LineBasedProtocolFactory;
+import com.generallycloud.nio.codec.line.future.LineBasedReadFuture;
+import com.generallycloud.nio.codec.line.future.LineBasedReadFutureImpl;
+import com.generallycloud.nio.common.ByteBufferUtil;
+import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.IOEventHandleAdaptor;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+
+/**
+ * direct buffer按8个字节比较查找分隔符的结果与逐字节查找一致；
+ * \r\n被拆到两次读取中时同样去掉\r，heap以及direct buffer都覆盖
+ */
+public class TestLineBasedScanner {
+
+	private static final byte	LF	= LineBasedReadFuture.LINE_BASE;
+
+	public static void main(String[] args) throws Exception {
+
+		assertTrue("direct indexOf little endian", scanAll(ByteOrder.LITTLE_ENDIAN));
+
+		assertTrue("direct indexOf big endian", scanAll(ByteOrder.BIG_ENDIAN));
+
+		BaseContext context = new BaseContextImpl(new ServerConfiguration());
+
+		context.setIOEventHandleAdaptor(new IOEventHandleAdaptor() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+			}
+		});
+
+		context.setProtocolFactory(new LineBasedProtocolFactory());
+
+		// 解码使用context的编码，启动后才有
+		context.start();
+
+		try {
+
+			for (int i = 0; i < 2; i++) {
+
+				boolean direct = i == 1;
+
+				String type = direct ? " direct" : " heap";
+
+				assertTrue("single read" + type, "hello".equals(readLine(context, direct, "hello\r\n")));
+
+				assertTrue("crlf split" + type, "hello".equals(readLine(context, direct, "hello\r", "\n")));
+
+				assertTrue("crlf split after cache" + type,
+						"hello world".equals(readLine(context, direct, "hello ", "world\r", "\n")));
+
+				assertTrue("empty line split" + type, "".equals(readLine(context, direct, "\r", "\n")));
+
+				// 不是分隔符之前的\r要保留
+				assertTrue("cr kept" + type, "hello\rx".equals(readLine(context, direct, "hello\r", "x\r\n")));
+
+				assertTrue("remaining" + type, remainingAfterLine(context, direct));
+			}
+
+		} finally {
+			LifeCycleUtil.stop(context);
+		}
+
+		TestAssert.printResult();
+	}
+
+	// 不同的position、长度以及分隔符位置(包括8字节边界和尾部)，与逐字节查找比较
+	private static boolean scanAll(ByteOrder order) {
+
+		// 0x8a与\n只有最高位不同
+		byte[] fillers = { 'a', (byte) 0x8a, 0x0b, 0x09, (byte) 0xff, 0 };
+
+		for (int length = 0; length <= 40; length++) {
+
+			for (int position = 0; position <= Math.min(9, length); position++) {
+
+				for (int target = -1; target < length; target++) {
+
+					ByteBuffer buffer = ByteBuffer.allocateDirect(length).order(order);
+
+					for (int i = 0; i < length; i++) {
+						buffer.put(i, i == target ? LF : fillers[(i + length) % fillers.length]);
+					}
+
+					buffer.position(position);
+
+					int expect = target >= position ? target : -1;
+
+					if (target >= 0 && target < position) {
+						// position之前的分隔符不算，之后再放一个
+						if (length - 1 > position) {
+							buffer.put(length - 1, LF);
+							expect = length - 1;
+						}
+					}
+
+					int index = ByteBufferUtil.indexOf(buffer, LF);
+
+					if (index != expect || buffer.position() != position) {
+						System.out.println("length:" + length + ",position:" + position + ",target:" + target
+								+ ",index:" + index);
+						return false;
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private static String readLine(BaseContext context, boolean direct, String... segments) throws IOException {
+
+		LineBasedReadFutureImpl future = new LineBasedReadFutureImpl(context, LF, true, 1024);
+
+		for (int i = 0; i < segments.length; i++) {
+
+			boolean complete = future.read(null, wrap(segments[i], direct));
+
+			if (complete != (i == segments.length - 1)) {
+				return null;
+			}
+		}
+
+		return future.getText();
+	}
+
+	// 一次读取中有多行时，只消费第一行
+	private static boolean remainingAfterLine(BaseContext context, boolean direct) throws IOException {
+
+		ByteBuffer buffer = wrap("first\r\nsecond\r\n", direct);
+
+		LineBasedReadFutureImpl first = new LineBasedReadFutureImpl(context, LF, true, 1024);
+
+		LineBasedReadFutureImpl second = new LineBasedReadFutureImpl(context, LF, true, 1024);
+
+		return first.read(null, buffer) && "first".equals(first.getText()) && buffer.position() == 7
+				&& second.read(null, buffer) && "second".equals(second.getText()) && !buffer.hasRemaining();
+	}
+
+	private static ByteBuffer wrap(String text, boolean direct) {
+
+		byte[] array = text.getBytes();
+
+		ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(array.length) : ByteBuffer.allocate(array.length);
+
+		buffer.put(array);
+
+		buffer.flip();
+
+		return buffer;
+	}
+}
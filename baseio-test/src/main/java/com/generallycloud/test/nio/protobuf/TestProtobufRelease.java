@@ -0,0 +1,145 @@
+package com.generallycloud.test.nio.protobuf;
+
+import static com.generallycloud.test.nio.common.TestAssert.assertTrue;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.generallycloud.nio.acceptor.SocketChannelAcceptor;
+import com.generallycloud.nio.codec.protobuf.ProtobufProtocolFactory;
+import com.generallycloud.nio.codec.protobuf.future.ProtobufIOEventHandle;
+import com.generallycloud.nio.codec.protobuf.future.ProtobufReadFuture;
+import com.generallycloud.nio.codec.protobuf.future.ProtobufReadFutureImpl;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.protocol.ReadFuture;
+import com.generallycloud.test.nio.common.TestAssert;
+import com.generallycloud.test.nio.protobuf.TestProtoBufBean.SearchRequest;
+import com.generallycloud.test.nio.protobuf.TestProtoBufBean.SearchRequest.Corpus;
+
+/**
+ * 已经解析过的protobuf即使keepBinary，release时也不再复制binary(之后getBinary抛出IllegalStateException)，
+ * 未解析的在release之后仍然可以getMessage
+ */
+public class TestProtobufRelease {
+
+	private static final int	PORT	= 18311;
+
+	public static void main(String[] args) throws Exception {
+
+		final BlockingQueue<ProtobufReadFuture> received = new ArrayBlockingQueue<ProtobufReadFuture>(4);
+
+		ProtobufIOEventHandle serverHandle = new ProtobufIOEventHandle() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+
+				ProtobufReadFuture f = (ProtobufReadFuture) future;
+
+				if (f.getFutureID().intValue() == 1) {
+					f.getMessage();
+				}
+
+				f.keepBinary();
+
+				// 交给其它线程，在release之后读取
+				received.offer(f);
+			}
+		};
+
+		serverHandle.regist(SearchRequest.getDefaultInstance());
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		SocketChannelAcceptor acceptor = new SocketChannelAcceptor();
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(serverHandle);
+
+		context.setProtocolFactory(new ProtobufProtocolFactory());
+
+		acceptor.setContext(context);
+
+		acceptor.bind();
+
+		ProtobufIOEventHandle clientHandle = new ProtobufIOEventHandle() {
+
+			public void accept(Session session, ReadFuture future) throws Exception {
+			}
+		};
+
+		clientHandle.regist(SearchRequest.getDefaultInstance());
+
+		ServerConfiguration clientConfiguration = new ServerConfiguration();
+
+		clientConfiguration.setSERVER_HOST("localhost");
+
+		clientConfiguration.setSERVER_TCP_PORT(PORT);
+
+		BaseContext clientContext = new BaseContextImpl(clientConfiguration);
+
+		clientContext.setIOEventHandleAdaptor(clientHandle);
+
+		clientContext.setProtocolFactory(new ProtobufProtocolFactory());
+
+		SocketChannelConnector connector = new SocketChannelConnector();
+
+		connector.setContext(clientContext);
+
+		try {
+
+			Session session = connector.connect();
+
+			SearchRequest request = SearchRequest.newBuilder().setCorpus(Corpus.IMAGES).setPageNumber(100)
+					.setQuery("test").setResultPerPage(10).build();
+
+			ProtobufReadFuture f = new ProtobufReadFutureImpl(session.getContext(), 1, "test-protobuf");
+
+			f.writeProtobuf(request);
+
+			session.flush(f);
+
+			ProtobufReadFuture parsed = received.poll(3000, TimeUnit.MILLISECONDS);
+
+			f = new ProtobufReadFutureImpl(session.getContext(), 2, "test-protobuf");
+
+			f.writeProtobuf(request);
+
+			session.flush(f);
+
+			ProtobufReadFuture kept = received.poll(3000, TimeUnit.MILLISECONDS);
+
+			// 等待IO线程release
+			ThreadUtil.sleep(200);
+
+			boolean dropped = false;
+
+			try {
+				parsed.getBinary();
+			} catch (IllegalStateException e) {
+				dropped = true;
+			}
+
+			assertTrue("parsed binary not copied", dropped && request.equals(parsed.getMessage()));
+
+			assertTrue("kept binary parsed after release", kept != null && kept.getBinary() != null
+					&& request.equals(kept.getMessage()));
+
+		} finally {
+
+			CloseUtil.close(connector);
+
+			acceptor.unbind();
+		}
+
+		TestAssert.printResult();
+	}
+}
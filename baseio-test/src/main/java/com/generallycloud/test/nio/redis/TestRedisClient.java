@@ -3,6 +3,10 @@ package com.generallycloud.test.nio.redis;
 import com.generallycloud.nio.codec.redis.RedisProtocolFactory;
 import com.generallycloud.nio.codec.redis.future.RedisClient;
 import com.generallycloud.nio.codec.redis.future.RedisIOEventHandle;
+import com.generallycloud.nio.codec.redis.future.RedisNode;
+import com.generallycloud.nio.codec.redis.future.RedisPipeline;
+import com.generallycloud.nio.codec.redis.future.RedisSEListener;
+import com.generallycloud.nio.codec.redis.future.RedisWaiter;
 import com.generallycloud.nio.common.CloseUtil;
 import com.generallycloud.nio.common.ThreadUtil;
 import com.generallycloud.nio.component.BaseContextImpl;
@@ -30,6 +34,8 @@ public class TestRedisClient {
 
 		context.addSessionEventListener(new LoggerSEListener());
 
+		context.addSessionEventListener(new RedisSEListener());
+
 		context.addSessionEventListener(new ConnectorCloseSEListener(connector));
 
 		context.setProtocolFactory(new RedisProtocolFactory());
@@ -60,6 +66,24 @@ public class TestRedisClient {
 
 		System.out.println("__________________res______" + value);
 
+		RedisWaiter w1 = client.setAsync("async", "async value");
+
+		RedisWaiter w2 = client.getAsync("async");
+
+		System.out.println("__________________res______" + w1.get(3000) + "," + w2.get(3000));
+
+		RedisPipeline pipeline = client.pipeline();
+
+		for (int i = 0; i < 100; i++) {
+			pipeline.set("key" + i, "value" + i);
+		}
+
+		pipeline.get("key99").ping();
+
+		RedisNode[] nodes = pipeline.sync();
+
+		System.out.println("__________________res______" + nodes.length + "," + nodes[100] + "," + nodes[101]);
+
 		ThreadUtil.sleep(100);
 
 		CloseUtil.close(connector);
@@ -0,0 +1,91 @@
+package com.generallycloud.test.nio.redis;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.generallycloud.nio.codec.redis.future.RedisClient;
+import com.generallycloud.nio.codec.redis.future.RedisClientPool;
+import com.generallycloud.nio.common.LifeCycleUtil;
+import com.generallycloud.nio.common.ThreadUtil;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+
+public class TestRedisClientPool {
+
+	public static void main(String[] args) throws Exception {
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_HOST("localhost");
+		configuration.setSERVER_TCP_PORT(6379);
+		configuration.setSERVER_CORE_SIZE(1);
+
+		final RedisClientPool pool = new RedisClientPool(configuration);
+
+		pool.setMinSize(2);
+		pool.setMaxSize(8);
+		pool.setMaxIdleTime(2000);
+		pool.setHeartbeatInterval(1000);
+		pool.setBorrowTimeout(10000);
+
+		pool.start();
+
+		int threads = 64;
+
+		final int time = 20;
+
+		final CountDownLatch latch = new CountDownLatch(threads);
+
+		final AtomicInteger errors = new AtomicInteger();
+
+		long startTime = System.currentTimeMillis();
+
+		for (int i = 0; i < threads; i++) {
+
+			final String key = "key" + i;
+
+			new Thread(new Runnable() {
+
+				public void run() {
+
+					for (int j = 0; j < time; j++) {
+
+						try {
+
+							RedisClient client = pool.borrow();
+
+							try {
+
+								client.set(key, String.valueOf(j));
+
+								if (!String.valueOf(j).equals(client.get(key))) {
+									errors.incrementAndGet();
+								}
+
+							} finally {
+								pool.release(client);
+							}
+
+						} catch (Exception e) {
+							errors.incrementAndGet();
+							e.printStackTrace();
+						}
+					}
+
+					latch.countDown();
+				}
+			}).start();
+		}
+
+		latch.await();
+
+		System.out.println("__________________cost______" + (System.currentTimeMillis() - startTime) + ",errors:"
+				+ errors.get() + ",size:" + pool.getSize());
+
+		// 等待空闲连接被回收到minSize
+		ThreadUtil.sleep(4000);
+
+		System.out.println("__________________size______" + pool.getSize() + ",idle:" + pool.getIdleSize());
+
+		LifeCycleUtil.stop(pool);
+	}
+}
@@ -0,0 +1,287 @@
+package com.generallycloud.test.nio.redis;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.generallycloud.nio.Encoding;
+import com.generallycloud.nio.TimeoutException;
+import com.generallycloud.nio.codec.redis.RedisProtocolFactory;
+import com.generallycloud.nio.codec.redis.future.RedisClient;
+import com.generallycloud.nio.codec.redis.future.RedisIOEventHandle;
+import com.generallycloud.nio.codec.redis.future.RedisNode;
+import com.generallycloud.nio.codec.redis.future.RedisReadFutureImpl;
+import com.generallycloud.nio.codec.redis.future.RedisSEListener;
+import com.generallycloud.nio.common.CloseUtil;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.component.Session;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.connector.SocketChannelConnector;
+import com.generallycloud.nio.extend.ConnectorCloseSEListener;
+
+/**
+ * 进程内的简易redis服务端，请求使用RedisReadFutureImpl解析，
+ * 校验每个命令的编码、解码以及RedisClient的返回值
+ */
+public class TestRedisCommand {
+
+	private static final int	PORT	= 6380;
+
+	public static void main(String[] args) throws Exception {
+
+		final ServerSocket serverSocket = new ServerSocket(PORT);
+
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					serve(serverSocket.accept());
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+
+		thread.setDaemon(true);
+
+		thread.start();
+
+		SocketChannelConnector connector = new SocketChannelConnector();
+
+		ServerConfiguration configuration = new ServerConfiguration();
+
+		configuration.setSERVER_HOST("localhost");
+		configuration.setSERVER_TCP_PORT(PORT);
+
+		BaseContext context = new BaseContextImpl(configuration);
+
+		context.setIOEventHandleAdaptor(new RedisIOEventHandle());
+
+		context.addSessionEventListener(new ConnectorCloseSEListener(connector));
+
+		context.addSessionEventListener(new RedisSEListener());
+
+		context.setProtocolFactory(new RedisProtocolFactory());
+
+		connector.setContext(context);
+
+		Session session = connector.connect();
+
+		RedisClient client = new RedisClient(session);
+
+		try {
+
+			check("SET", client.set("k1", "v1"), "OK");
+			check("GET", client.get("k1"), "v1");
+			check("GET", client.get("none"), null);
+			check("PING", client.ping(), "PONG");
+			check("MSET", client.mset("k2", "v2", "k3", "v3"), "OK");
+			check("MGET", Arrays.toString(client.mget("k1", "none", "k3")), "[v1, null, v3]");
+			check("INCR", client.incr("counter"), 1L);
+			check("INCRBY", client.incrBy("counter", 10000000000L), 10000000001L);
+			check("DECR", client.decr("counter"), 10000000000L);
+			check("DECRBY", client.decrBy("counter", 1), 9999999999L);
+			check("EXPIRE", client.expire("k1", 10), true);
+			check("EXPIRE", client.expire("none", 10), false);
+			check("DEL", client.del("k1", "k2", "none"), 2L);
+			check("HSET", client.hset("h", "f", "a"), 1L);
+			check("HSET", client.hset("h", "f", "b"), 0L);
+			check("HGET", client.hget("h", "f"), "b");
+			check("LPUSH", client.lpush("l", "1", "2", "3"), 3L);
+			check("RPOP", client.rpop("l"), "1");
+			check("EVALSHA", client.evalsha("sha", new String[] { "key" }, "arg").toString(), "1;key;arg;");
+			check("EXECUTE", client.execute("ECHO".getBytes(), "中文\r\n".getBytes(Encoding.UTF8)).getValue(),
+					"中文\r\n");
+
+			try {
+				client.incr("k3");
+				throw new Exception("expect error");
+			} catch (java.io.IOException e) {
+				check("ERROR", e.getMessage(), "ERR value is not an integer");
+			}
+
+			// 服务端不响应直接关闭连接，未返回的命令不需要等到超时
+			long start = System.currentTimeMillis();
+
+			try {
+				client.execute("SHUTDOWN".getBytes());
+				throw new Exception("expect closed");
+			} catch (TimeoutException e) {
+				throw new Exception("waited until timeout");
+			} catch (java.io.IOException e) {
+				check("CLOSED", e.getMessage(), "session closed");
+			}
+
+			check("CLOSED_FAST", System.currentTimeMillis() - start < client.getTimeout(), true);
+
+			try {
+				client.ping();
+				throw new Exception("expect closed");
+			} catch (java.io.IOException e) {
+				check("AFTER_CLOSED", e.getMessage(), "session closed");
+			}
+
+			System.out.println("all commands passed");
+
+		} finally {
+			CloseUtil.close(connector);
+			CloseUtil.close(serverSocket);
+		}
+	}
+
+	private static void check(String command, Object value, Object expect) throws Exception {
+
+		if (expect == null ? value != null : !expect.equals(value)) {
+			throw new Exception(command + " expect:" + expect + ",but:" + value);
+		}
+
+		System.out.println(command + " : " + value);
+	}
+
+	private static void serve(Socket socket) throws Exception {
+
+		BaseContext context = new BaseContextImpl(new ServerConfiguration());
+
+		Map<String, Object> db = new HashMap<String, Object>();
+
+		InputStream in = socket.getInputStream();
+
+		OutputStream out = socket.getOutputStream();
+
+		byte[] array = new byte[1024];
+
+		RedisReadFutureImpl future = new RedisReadFutureImpl(context);
+
+		for (;;) {
+
+			int length = in.read(array);
+
+			if (length == -1) {
+				return;
+			}
+
+			ByteBuffer buffer = ByteBuffer.wrap(array, 0, length);
+
+			for (; buffer.hasRemaining();) {
+
+				if (!future.read(null, buffer)) {
+					break;
+				}
+
+				RedisNode[] children = future.getRedisNode().getChildren();
+
+				String[] request = new String[children.length];
+
+				for (int i = 0; i < children.length; i++) {
+					request[i] = (String) children[i].getValue();
+				}
+
+				String response = execute(db, request);
+
+				if (response == null) {
+					socket.close();
+					return;
+				}
+
+				out.write(response.getBytes(Encoding.UTF8));
+
+				future = new RedisReadFutureImpl(context);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static String execute(Map<String, Object> db, String[] r) {
+
+		String cmd = r[0];
+
+		if ("SET".equals(cmd)) {
+			db.put(r[1], r[2]);
+			return "+OK\r\n";
+		} else if ("GET".equals(cmd) || "RPOP".equals(cmd)) {
+			Object v = db.get(r[1]);
+			if (v instanceof LinkedList) {
+				v = ((LinkedList<String>) v).pollLast();
+			}
+			return bulk((String) v);
+		} else if ("PING".equals(cmd)) {
+			return "+PONG\r\n";
+		} else if ("ECHO".equals(cmd)) {
+			return bulk(r[1]);
+		} else if ("MSET".equals(cmd)) {
+			for (int i = 1; i < r.length; i += 2) {
+				db.put(r[i], r[i + 1]);
+			}
+			return "+OK\r\n";
+		} else if ("MGET".equals(cmd)) {
+			StringBuilder b = new StringBuilder("*" + (r.length - 1) + "\r\n");
+			for (int i = 1; i < r.length; i++) {
+				b.append(bulk((String) db.get(r[i])));
+			}
+			return b.toString();
+		} else if (cmd.startsWith("INCR") || cmd.startsWith("DECR")) {
+			long delta = r.length > 2 ? Long.parseLong(r[2]) : 1;
+			if (cmd.startsWith("DECR")) {
+				delta = -delta;
+			}
+			String v = (String) db.get(r[1]);
+			long value;
+			try {
+				value = (v == null ? 0 : Long.parseLong(v)) + delta;
+			} catch (NumberFormatException e) {
+				return "-ERR value is not an integer\r\n";
+			}
+			db.put(r[1], String.valueOf(value));
+			return ":" + value + "\r\n";
+		} else if ("EXPIRE".equals(cmd)) {
+			return db.containsKey(r[1]) ? ":1\r\n" : ":0\r\n";
+		} else if ("DEL".equals(cmd)) {
+			int n = 0;
+			for (int i = 1; i < r.length; i++) {
+				if (db.remove(r[i]) != null) {
+					n++;
+				}
+			}
+			return ":" + n + "\r\n";
+		} else if ("HSET".equals(cmd)) {
+			Object old = db.put(r[1] + "." + r[2], r[3]);
+			return old == null ? ":1\r\n" : ":0\r\n";
+		} else if ("HGET".equals(cmd)) {
+			return bulk((String) db.get(r[1] + "." + r[2]));
+		} else if ("LPUSH".equals(cmd)) {
+			LinkedList<String> list = (LinkedList<String>) db.get(r[1]);
+			if (list == null) {
+				list = new LinkedList<String>();
+				db.put(r[1], list);
+			}
+			for (int i = 2; i < r.length; i++) {
+				list.addFirst(r[i]);
+			}
+			return ":" + list.size() + "\r\n";
+		} else if ("SHUTDOWN".equals(cmd)) {
+			return null;
+		} else if ("EVALSHA".equals(cmd)) {
+			// 返回numkeys以及所有参数
+			StringBuilder b = new StringBuilder("*" + (r.length - 2) + "\r\n");
+			b.append(":" + r[2] + "\r\n");
+			for (int i = 3; i < r.length; i++) {
+				b.append(bulk(r[i]));
+			}
+			return b.toString();
+		}
+		return "-ERR unknown command '" + cmd + "'\r\n";
+	}
+
+	private static String bulk(String value) {
+		if (value == null) {
+			return "$-1\r\n";
+		}
+		return "$" + value.getBytes(Encoding.UTF8).length + "\r\n" + value + "\r\n";
+	}
+}
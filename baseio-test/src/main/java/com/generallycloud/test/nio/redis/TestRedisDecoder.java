@@ -0,0 +1,109 @@
+package com.generallycloud.test.nio.redis;
+
+import java.nio.ByteBuffer;
+
+import com.generallycloud.nio.Encoding;
+import com.generallycloud.nio.codec.redis.future.RedisNode;
+import com.generallycloud.nio.codec.redis.future.RedisReadFutureImpl;
+import com.generallycloud.nio.component.BaseContext;
+import com.generallycloud.nio.component.BaseContextImpl;
+import com.generallycloud.nio.configuration.ServerConfiguration;
+import com.generallycloud.nio.protocol.ProtocolException;
+
+/**
+ * 将一个多层的multi-bulk响应在每一个字节处拆分为两次读取，结果应与一次读取相同
+ */
+public class TestRedisDecoder {
+
+	public static void main(String[] args) throws Exception {
+
+		String reply = "*6\r\n" 
+				+ "$5\r\nhello\r\n" 
+				+ "$-1\r\n" 
+				+ ":-1234567890123\r\n" 
+				+ "*3\r\n+OK\r\n$0\r\n\r\n*0\r\n" 
+				+ "$12\r\nline1\r\nline2\r\n"
+				+ "-ERR unknown command\r\n";
+
+		// 紧跟着下一个响应，不应被读取
+		byte[] array = (reply + "+PONG\r\n").getBytes(Encoding.UTF8);
+
+		int length = reply.length();
+
+		BaseContext context = new BaseContextImpl(new ServerConfiguration());
+
+		String expect = read(context, array, length, length);
+
+		System.out.println(expect);
+
+		for (int i = 0; i <= length; i++) {
+
+			String value = read(context, array, length, i);
+
+			if (!expect.equals(value)) {
+				throw new Exception("split at " + i + " : " + value);
+			}
+		}
+
+		System.out.println("split at every byte passed");
+
+		// 声明了巨大的数组，不应按声明的个数分配
+		checkRejected(new RedisReadFutureImpl(context), "*2000000000\r\n");
+
+		// 嵌套数组的元素合计为5个
+		String nested = "*2\r\n*2\r\n:1\r\n:2\r\n*1\r\n:3\r\n";
+
+		checkRejected(new RedisReadFutureImpl(context, 4), nested);
+
+		if (!new RedisReadFutureImpl(context, 5).read(null, ByteBuffer.wrap(nested.getBytes(Encoding.UTF8)))) {
+			throw new Exception("nested array not complete");
+		}
+
+		System.out.println("max elements passed");
+	}
+
+	private static void checkRejected(RedisReadFutureImpl future, String reply) throws Exception {
+
+		try {
+			future.read(null, ByteBuffer.wrap(reply.getBytes(Encoding.UTF8)));
+		} catch (ProtocolException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
+
+		throw new Exception("expect rejected:" + reply.trim());
+	}
+
+	private static String read(BaseContext context, byte[] array, int length, int split) throws Exception {
+
+		RedisReadFutureImpl future = new RedisReadFutureImpl(context);
+
+		ByteBuffer buffer = ByteBuffer.wrap(array, 0, split);
+
+		boolean complete = future.read(null, buffer);
+
+		if (complete != (split == length)) {
+			throw new Exception("split at " + split + " complete:" + complete);
+		}
+
+		if (!complete) {
+
+			buffer = ByteBuffer.wrap(array, split, array.length - split);
+
+			if (!future.read(null, buffer)) {
+				throw new Exception("split at " + split + " not complete");
+			}
+		}
+
+		if (buffer.position() != length) {
+			throw new Exception("split at " + split + " position:" + buffer.position());
+		}
+
+		RedisNode node = future.getRedisNode();
+
+		RedisNode[] children = node.getChildren();
+
+		return children.length + "|" + node + "|" + children[2].getValue().getClass().getSimpleName() + "|"
+				+ children[1].getBytes();
+	}
+}